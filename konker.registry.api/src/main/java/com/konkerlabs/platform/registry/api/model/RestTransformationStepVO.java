@@ -36,6 +36,8 @@ public class RestTransformationStepVO
     @ApiModelProperty(example = "mypass", position = 4)
     private String password;
     private Map<String, String> headers = new LinkedHashMap<>();
+    @ApiModelProperty(value = "seconds to reuse the step response, 0 disables the cache", example = "60", position = 5)
+    private Long cacheTtl;
 
     @Transient
     @Override
@@ -52,6 +54,9 @@ public class RestTransformationStepVO
                 .get(RestTransformationStep.REST_URL_ATTRIBUTE_NAME));
         r.setHeaders((Map) t.getAttributes()
                 .get(RestTransformationStep.REST_ATTRIBUTE_HEADERS));
+        Optional.ofNullable(t.getAttributes().get(RestTransformationStep.REST_ATTRIBUTE_CACHE_TTL))
+                .map(ttl -> new RestTransformationStep(t.getAttributes()).getCacheTtl())
+                .ifPresent(r::setCacheTtl);
         return r;
     }
 
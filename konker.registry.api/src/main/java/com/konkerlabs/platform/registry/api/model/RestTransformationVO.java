@@ -59,6 +59,8 @@ public class RestTransformationVO
                                 put(RestTransformationStep.REST_USERNAME_ATTRIBUTE_NAME, i.getUsername());
                                 put(RestTransformationStep.REST_PASSWORD_ATTRIBUTE_NAME, i.getPassword());
                                 put(RestTransformationStep.REST_ATTRIBUTE_HEADERS, i.getHeaders());
+                                Optional.ofNullable(i.getCacheTtl())
+                                        .ifPresent(ttl -> put(RestTransformationStep.REST_ATTRIBUTE_CACHE_TTL, ttl));
                             }});
                         }
                 ).collect(Collectors.toList()));
@@ -6,8 +6,9 @@ import com.konkerlabs.platform.registry.api.exceptions.NotFoundResponseException
 import com.konkerlabs.platform.registry.api.model.EventVO;
 import com.konkerlabs.platform.registry.api.model.EventsFilter;
 import com.konkerlabs.platform.registry.business.model.Application;
-import com.konkerlabs.platform.registry.business.model.Event;
 import com.konkerlabs.platform.registry.business.model.Tenant;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventCursor;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventRepository;
 import com.konkerlabs.platform.registry.business.services.api.ApplicationService;
 import com.konkerlabs.platform.registry.business.services.api.DeviceEventService;
 import com.konkerlabs.platform.registry.business.services.api.ServiceResponse;
@@ -20,10 +21,12 @@ import org.springframework.context.annotation.Scope;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import java.time.Instant;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 @RestController
 @Scope("request")
@@ -36,6 +39,8 @@ public class IncomingEventsRestController extends AbstractRestController impleme
 
     private Set<String> validationsCode = new HashSet<>();
 
+    public static final String CONTINUATION_HEADER = "X-Continuation-Token";
+
     public static final String SEARCH_NOTES =
         "### Query Search Terms\n\n" +
         "* `device`\n\n" +
@@ -70,7 +75,10 @@ public class IncomingEventsRestController extends AbstractRestController impleme
             @ApiParam(value = "The sort order", allowableValues = "newest,oldest")
             @RequestParam(required = false, defaultValue = "newest") String sort,
             @ApiParam(value = "The number of results returned", allowableValues = "range[1, 10000]")
-            @RequestParam(required = false, defaultValue = "100") Integer limit
+            @RequestParam(required = false, defaultValue = "100") Integer limit,
+            @ApiParam(value = "Resumes the search after the last event of a previous page, as returned in its " + CONTINUATION_HEADER + " header")
+            @RequestParam(required = false) String continuation,
+            HttpServletResponse response
         ) throws BadServiceResponseException, BadRequestResponseException, NotFoundResponseException {
 
         Tenant tenant = user.getTenant();
@@ -92,12 +100,21 @@ public class IncomingEventsRestController extends AbstractRestController impleme
         Instant startingTimestamp = filter.getStartingTimestamp();
         Instant endTimestamp = filter.getEndTimestamp();
 
-        ServiceResponse<List<Event>> restDestinationResponse = deviceEventService.findIncomingBy(tenant, application, deviceGuid, channel, startingTimestamp, endTimestamp, ascending, limit);
+        ServiceResponse<EventCursor> restDestinationResponse = deviceEventService.streamIncomingBy(tenant, application, deviceGuid, channel, startingTimestamp, endTimestamp, ascending, limit, continuation);
 
         if (!restDestinationResponse.isOk()) {
             throw new BadServiceResponseException(user, restDestinationResponse, validationsCode);
-        } else {
-            return new EventVO().apply(restDestinationResponse.getResult());
+        }
+
+        try (EventCursor cursor = restDestinationResponse.getResult()) {
+            List<EventVO> events = cursor.stream()
+                    .map(new EventVO()::apply)
+                    .collect(Collectors.toList());
+
+            if (events.size() == limit)
+                response.setHeader(CONTINUATION_HEADER, cursor.getContinuationToken());
+
+            return events;
         }
 
     }
@@ -111,6 +128,10 @@ public class IncomingEventsRestController extends AbstractRestController impleme
     	for (ApplicationService.Validations value : ApplicationService.Validations.values()) {
     		validationsCode.add(value.getCode());
     	}
+
+    	for (EventRepository.Validations value : EventRepository.Validations.values()) {
+    		validationsCode.add(value.getCode());
+    	}
     }
 
 }
@@ -10,6 +10,8 @@ import com.konkerlabs.platform.registry.business.model.Device;
 import com.konkerlabs.platform.registry.business.model.Event;
 import com.konkerlabs.platform.registry.business.model.Event.EventActor;
 import com.konkerlabs.platform.registry.business.model.Tenant;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventContinuation;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventCursor;
 import com.konkerlabs.platform.registry.business.services.api.ApplicationService;
 import com.konkerlabs.platform.registry.business.services.api.DeviceEventService;
 import com.konkerlabs.platform.registry.business.services.api.ServiceResponseBuilder;
@@ -118,8 +120,8 @@ public class IncomingEventsRestControllerTest extends WebLayerTestContext {
         incomingEvents.add(event1);
         incomingEvents.add(event2);
 
-        when(deviceEventService.findIncomingBy(org.mockito.Matchers.any(Tenant.class), org.mockito.Matchers.any(Application.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.eq(false), org.mockito.Matchers.eq(100)))
-                .thenReturn(ServiceResponseBuilder.<List<Event>>ok().withResult(incomingEvents).build());
+        when(deviceEventService.streamIncomingBy(org.mockito.Matchers.any(Tenant.class), org.mockito.Matchers.any(Application.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.eq(false), org.mockito.Matchers.eq(100), org.mockito.Matchers.isNull(String.class)))
+                .thenReturn(ServiceResponseBuilder.<EventCursor>ok().withResult(cursorOf(incomingEvents)).build());
 
         when(applicationService.getByApplicationName(tenant, application.getName()))
         		.thenReturn(ServiceResponseBuilder.<Application>ok().withResult(application).build());
@@ -148,8 +150,8 @@ public class IncomingEventsRestControllerTest extends WebLayerTestContext {
         incomingEvents.add(event1);
         incomingEvents.add(event2);
 
-        when(deviceEventService.findIncomingBy(org.mockito.Matchers.any(Tenant.class), org.mockito.Matchers.any(Application.class), org.mockito.Matchers.eq("0000"), org.mockito.Matchers.eq("temp"), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.eq(false), org.mockito.Matchers.eq(100)))
-                .thenReturn(ServiceResponseBuilder.<List<Event>>ok().withResult(incomingEvents).build());
+        when(deviceEventService.streamIncomingBy(org.mockito.Matchers.any(Tenant.class), org.mockito.Matchers.any(Application.class), org.mockito.Matchers.eq("0000"), org.mockito.Matchers.eq("temp"), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.eq(false), org.mockito.Matchers.eq(100), org.mockito.Matchers.isNull(String.class)))
+                .thenReturn(ServiceResponseBuilder.<EventCursor>ok().withResult(cursorOf(incomingEvents)).build());
 
         when(applicationService.getByApplicationName(tenant, application.getName()))
 				.thenReturn(ServiceResponseBuilder.<Application>ok().withResult(application).build());
@@ -179,8 +181,8 @@ public class IncomingEventsRestControllerTest extends WebLayerTestContext {
         incomingEvents.add(event1);
         incomingEvents.add(event2);
 
-        when(deviceEventService.findIncomingBy(org.mockito.Matchers.any(Tenant.class), org.mockito.Matchers.any(Application.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.eq(true), org.mockito.Matchers.eq(100)))
-                .thenReturn(ServiceResponseBuilder.<List<Event>>ok().withResult(incomingEvents).build());
+        when(deviceEventService.streamIncomingBy(org.mockito.Matchers.any(Tenant.class), org.mockito.Matchers.any(Application.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.eq(true), org.mockito.Matchers.eq(100), org.mockito.Matchers.isNull(String.class)))
+                .thenReturn(ServiceResponseBuilder.<EventCursor>ok().withResult(cursorOf(incomingEvents)).build());
 
         when(applicationService.getByApplicationName(tenant, application.getName()))
 				.thenReturn(ServiceResponseBuilder.<Application>ok().withResult(application).build());
@@ -210,8 +212,8 @@ public class IncomingEventsRestControllerTest extends WebLayerTestContext {
         incomingEvents.add(event1);
         incomingEvents.add(event2);
 
-        when(deviceEventService.findIncomingBy(org.mockito.Matchers.any(Tenant.class), org.mockito.Matchers.any(Application.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.eq(false), org.mockito.Matchers.eq(500)))
-                .thenReturn(ServiceResponseBuilder.<List<Event>>ok().withResult(incomingEvents).build());
+        when(deviceEventService.streamIncomingBy(org.mockito.Matchers.any(Tenant.class), org.mockito.Matchers.any(Application.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.eq(false), org.mockito.Matchers.eq(500), org.mockito.Matchers.isNull(String.class)))
+                .thenReturn(ServiceResponseBuilder.<EventCursor>ok().withResult(cursorOf(incomingEvents)).build());
 
         when(applicationService.getByApplicationName(tenant, application.getName()))
 				.thenReturn(ServiceResponseBuilder.<Application>ok().withResult(application).build());
@@ -275,4 +277,37 @@ public class IncomingEventsRestControllerTest extends WebLayerTestContext {
 
     }
 
+    @Test
+    public void shouldReturnTheContinuationTokenWhenThePageIsFull() throws Exception {
+
+        List<Event> incomingEvents = new ArrayList<>();
+        incomingEvents.add(event1);
+        incomingEvents.add(event2);
+
+        when(deviceEventService.streamIncomingBy(org.mockito.Matchers.any(Tenant.class), org.mockito.Matchers.any(Application.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.eq(false), org.mockito.Matchers.eq(2), org.mockito.Matchers.eq("previous")))
+                .thenReturn(ServiceResponseBuilder.<EventCursor>ok().withResult(cursorOf(incomingEvents)).build());
+
+        when(applicationService.getByApplicationName(tenant, application.getName()))
+				.thenReturn(ServiceResponseBuilder.<Application>ok().withResult(application).build());
+
+        getMockMvc().perform(MockMvcRequestBuilders.get("/" + application.getName() + "/incomingEvents")
+                                                   .param("limit", "2")
+                                                   .param("continuation", "previous")
+                                                   .contentType("application/json")
+                                                   .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(IncomingEventsRestController.CONTINUATION_HEADER,
+                            new EventContinuation(event2.getTimestamp().toEpochMilli(), "0").toToken()))
+                    .andExpect(jsonPath("$.result", hasSize(2)))
+                    ;
+
+    }
+
+    private EventCursor cursorOf(List<Event> events) {
+        return new EventCursor(events.iterator(),
+                event -> event,
+                event -> new EventContinuation(event.getTimestamp().toEpochMilli(), "0"),
+                () -> {});
+    }
+
 }
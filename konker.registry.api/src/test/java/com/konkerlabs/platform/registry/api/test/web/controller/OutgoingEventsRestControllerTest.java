@@ -3,6 +3,7 @@ package com.konkerlabs.platform.registry.api.test.web.controller;
 import com.konkerlabs.platform.registry.api.config.WebMvcConfig;
 import com.konkerlabs.platform.registry.api.test.config.MongoTestConfig;
 import com.konkerlabs.platform.registry.api.test.config.WebTestConfiguration;
+import com.konkerlabs.platform.registry.api.web.controller.IncomingEventsRestController;
 import com.konkerlabs.platform.registry.api.web.controller.OutgoingEventsRestController;
 import com.konkerlabs.platform.registry.api.web.wrapper.CrudResponseAdvice;
 import com.konkerlabs.platform.registry.business.model.Application;
@@ -10,6 +11,8 @@ import com.konkerlabs.platform.registry.business.model.Device;
 import com.konkerlabs.platform.registry.business.model.Event;
 import com.konkerlabs.platform.registry.business.model.Event.EventActor;
 import com.konkerlabs.platform.registry.business.model.Tenant;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventContinuation;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventCursor;
 import com.konkerlabs.platform.registry.business.services.api.ApplicationService;
 import com.konkerlabs.platform.registry.business.services.api.DeviceEventService;
 import com.konkerlabs.platform.registry.business.services.api.ServiceResponseBuilder;
@@ -118,8 +121,8 @@ public class OutgoingEventsRestControllerTest extends WebLayerTestContext {
         outgoingEvents.add(event1);
         outgoingEvents.add(event2);
 
-        when(deviceEventService.findOutgoingBy(org.mockito.Matchers.any(Tenant.class), org.mockito.Matchers.any(Application.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.eq(false), org.mockito.Matchers.eq(100)))
-                .thenReturn(ServiceResponseBuilder.<List<Event>>ok().withResult(outgoingEvents).build());
+        when(deviceEventService.streamOutgoingBy(org.mockito.Matchers.any(Tenant.class), org.mockito.Matchers.any(Application.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.eq(false), org.mockito.Matchers.eq(100), org.mockito.Matchers.isNull(String.class)))
+                .thenReturn(ServiceResponseBuilder.<EventCursor>ok().withResult(cursorOf(outgoingEvents)).build());
 
         when(applicationService.getByApplicationName(tenant, application.getName()))
 				.thenReturn(ServiceResponseBuilder.<Application>ok().withResult(application).build());
@@ -148,8 +151,8 @@ public class OutgoingEventsRestControllerTest extends WebLayerTestContext {
         outgoingEvents.add(event1);
         outgoingEvents.add(event2);
 
-        when(deviceEventService.findOutgoingBy(org.mockito.Matchers.any(Tenant.class), org.mockito.Matchers.any(Application.class), org.mockito.Matchers.eq("0000"), org.mockito.Matchers.eq("temp"), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.eq(false), org.mockito.Matchers.eq(100)))
-                .thenReturn(ServiceResponseBuilder.<List<Event>>ok().withResult(outgoingEvents).build());
+        when(deviceEventService.streamOutgoingBy(org.mockito.Matchers.any(Tenant.class), org.mockito.Matchers.any(Application.class), org.mockito.Matchers.eq("0000"), org.mockito.Matchers.eq("temp"), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.eq(false), org.mockito.Matchers.eq(100), org.mockito.Matchers.isNull(String.class)))
+                .thenReturn(ServiceResponseBuilder.<EventCursor>ok().withResult(cursorOf(outgoingEvents)).build());
 
         when(applicationService.getByApplicationName(tenant, application.getName()))
 				.thenReturn(ServiceResponseBuilder.<Application>ok().withResult(application).build());
@@ -179,8 +182,8 @@ public class OutgoingEventsRestControllerTest extends WebLayerTestContext {
         outgoingEvents.add(event1);
         outgoingEvents.add(event2);
 
-        when(deviceEventService.findOutgoingBy(org.mockito.Matchers.any(Tenant.class), org.mockito.Matchers.any(Application.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.eq(true), org.mockito.Matchers.eq(100)))
-                .thenReturn(ServiceResponseBuilder.<List<Event>>ok().withResult(outgoingEvents).build());
+        when(deviceEventService.streamOutgoingBy(org.mockito.Matchers.any(Tenant.class), org.mockito.Matchers.any(Application.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.eq(true), org.mockito.Matchers.eq(100), org.mockito.Matchers.isNull(String.class)))
+                .thenReturn(ServiceResponseBuilder.<EventCursor>ok().withResult(cursorOf(outgoingEvents)).build());
 
         when(applicationService.getByApplicationName(tenant, application.getName()))
 				.thenReturn(ServiceResponseBuilder.<Application>ok().withResult(application).build());
@@ -210,8 +213,8 @@ public class OutgoingEventsRestControllerTest extends WebLayerTestContext {
         outgoingEvents.add(event1);
         outgoingEvents.add(event2);
 
-        when(deviceEventService.findOutgoingBy(org.mockito.Matchers.any(Tenant.class), org.mockito.Matchers.any(Application.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.eq(false), org.mockito.Matchers.eq(500)))
-                .thenReturn(ServiceResponseBuilder.<List<Event>>ok().withResult(outgoingEvents).build());
+        when(deviceEventService.streamOutgoingBy(org.mockito.Matchers.any(Tenant.class), org.mockito.Matchers.any(Application.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.eq(false), org.mockito.Matchers.eq(500), org.mockito.Matchers.isNull(String.class)))
+                .thenReturn(ServiceResponseBuilder.<EventCursor>ok().withResult(cursorOf(outgoingEvents)).build());
 
         when(applicationService.getByApplicationName(tenant, application.getName()))
 				.thenReturn(ServiceResponseBuilder.<Application>ok().withResult(application).build());
@@ -275,4 +278,37 @@ public class OutgoingEventsRestControllerTest extends WebLayerTestContext {
 
     }
 
+    @Test
+    public void shouldReturnTheContinuationTokenWhenThePageIsFull() throws Exception {
+
+        List<Event> outgoingEvents = new ArrayList<>();
+        outgoingEvents.add(event1);
+        outgoingEvents.add(event2);
+
+        when(deviceEventService.streamOutgoingBy(org.mockito.Matchers.any(Tenant.class), org.mockito.Matchers.any(Application.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(String.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.isNull(Instant.class), org.mockito.Matchers.eq(false), org.mockito.Matchers.eq(2), org.mockito.Matchers.eq("previous")))
+                .thenReturn(ServiceResponseBuilder.<EventCursor>ok().withResult(cursorOf(outgoingEvents)).build());
+
+        when(applicationService.getByApplicationName(tenant, application.getName()))
+				.thenReturn(ServiceResponseBuilder.<Application>ok().withResult(application).build());
+
+        getMockMvc().perform(MockMvcRequestBuilders.get("/" + application.getName() + "/outgoingEvents")
+                                                   .param("limit", "2")
+                                                   .param("continuation", "previous")
+                                                   .contentType("application/json")
+                                                   .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(IncomingEventsRestController.CONTINUATION_HEADER,
+                            new EventContinuation(event2.getTimestamp().toEpochMilli(), "0").toToken()))
+                    .andExpect(jsonPath("$.result", hasSize(2)))
+                    ;
+
+    }
+
+    private EventCursor cursorOf(List<Event> events) {
+        return new EventCursor(events.iterator(),
+                event -> event,
+                event -> new EventContinuation(event.getTimestamp().toEpochMilli(), "0"),
+                () -> {});
+    }
+
 }
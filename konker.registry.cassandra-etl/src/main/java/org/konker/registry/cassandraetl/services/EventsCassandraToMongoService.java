@@ -1,6 +1,7 @@
 package org.konker.registry.cassandraetl.services;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Pattern;
 
@@ -17,10 +18,16 @@ import com.konkerlabs.platform.registry.business.repositories.ApplicationReposit
 import com.konkerlabs.platform.registry.business.repositories.TenantRepository;
 import com.konkerlabs.platform.registry.business.repositories.events.EventRepositoryCassandraImpl;
 import com.konkerlabs.platform.registry.business.repositories.events.EventRepositoryMongoImpl;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventBatchResult;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventCursor;
 
 @Service
 public class EventsCassandraToMongoService {
 
+    private static final int BATCH_SIZE = 1000;
+    private static final int RETRY_ATTEMPTS = 5;
+    private static final long RETRY_INTERVAL = 1000L;
+
     private Logger LOGGER = LoggerFactory.getLogger(this.getClass());
 
     @Autowired
@@ -40,6 +47,7 @@ public class EventsCassandraToMongoService {
         LOGGER.info("Starting...");
 
         int count = 0;
+        int failed = 0;
 
         List<Tenant> tenants = tenantRepository.findAll();
 
@@ -47,25 +55,32 @@ public class EventsCassandraToMongoService {
 
         for (Tenant tenant : tenants) {
             if (filterPattern.matcher(tenant.getDomainName()).matches()) {
-                process(tenant, startInstant);
+                failed += process(tenant, startInstant);
                 count++;
             }
         }
 
         LOGGER.info("Finished! Tenants processed: " + count);
 
+        if (failed > 0)
+            throw new BusinessException(failed + " events were not migrated");
+
     }
 
-    private void process(Tenant tenant, Instant startInstant) throws BusinessException {
+    private int process(Tenant tenant, Instant startInstant) throws BusinessException {
+
+        int failed = 0;
 
         List<Application> applications = applicationRepository.findAllByTenant(tenant.getId());
         for (Application application : applications) {
-            process(tenant, application, startInstant);
+            failed += process(tenant, application, startInstant);
         }
 
+        return failed;
+
     }
 
-    private void process(Tenant tenant, Application application, Instant startInstant) throws BusinessException {
+    private int process(Tenant tenant, Application application, Instant startInstant) throws BusinessException {
 
         String deviceGuid = null;
         String channel = null;
@@ -75,21 +90,87 @@ public class EventsCassandraToMongoService {
 
         LOGGER.info("Tenant {} Application {}", tenant.getName(), application.getName());
 
-        List<Event> incomingEvents = cassandraEventsRepository.findIncomingBy(tenant, application, deviceGuid, channel, startInstant, endInstant, ascending, limit);
+        int failed = copy("Incoming",
+                cassandraEventsRepository.streamIncomingBy(tenant, application, deviceGuid, channel, startInstant, endInstant, ascending, limit, null),
+                events -> mongoEventsRepository.saveIncomingBatch(tenant, application, events));
+
+        failed += copy("Outgoing",
+                cassandraEventsRepository.streamOutgoingBy(tenant, application, deviceGuid, channel, startInstant, endInstant, ascending, limit, null),
+                events -> mongoEventsRepository.saveOutgoingBatch(tenant, application, events));
 
-        for (Event event : incomingEvents) {
-            mongoEventsRepository.saveIncoming(tenant, application, event);
+        return failed;
+
+    }
+
+    /**
+     * Reads the events through the cursor and stores them in batches, so a tenant of any
+     * size is copied in constant memory.
+     *
+     * @return the number of events that could not be stored
+     */
+    private int copy(String direction, EventCursor cursor, BatchSave save) throws BusinessException {
+
+        int count = 0;
+        int failed = 0;
+
+        try (EventCursor events = cursor) {
+            List<Event> batch = new ArrayList<>(BATCH_SIZE);
+            while (events.hasNext()) {
+                batch.add(events.next());
+                if (batch.size() == BATCH_SIZE || !events.hasNext()) {
+                    failed += saveWithRetries(batch, save);
+                    count += batch.size();
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
         }
 
-        List<Event> outgoingEvents = cassandraEventsRepository.findOutgoingBy(tenant, application, deviceGuid, channel, startInstant, endInstant, ascending, limit);
+        LOGGER.info("\t{} events: {} ({} failed)", direction, count, failed);
+
+        return failed;
 
-        for (Event event : outgoingEvents) {
-            mongoEventsRepository.saveOutgoing(tenant, application, event);
+    }
+
+    /**
+     * Events that failed on a transient store error, such as a timeout or an unavailable
+     * node, are stored again after the retry interval, up to the retry attempts.
+     *
+     * @return the number of events that could not be stored
+     */
+    private int saveWithRetries(List<Event> batch, BatchSave save) throws BusinessException {
+
+        int failed = 0;
+        List<Event> pending = batch;
+
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            if (attempt > 0) {
+                if (attempt > RETRY_ATTEMPTS) {
+                    LOGGER.error("\tGave up storing {} events after {} retries", pending.size(), RETRY_ATTEMPTS);
+                    return failed + pending.size();
+                }
+                try {
+                    Thread.sleep(RETRY_INTERVAL);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new BusinessException("Interrupted while retrying " + pending.size() + " events", e);
+                }
+            }
+
+            EventBatchResult result = save.save(pending);
+            failed += result.getFailures().size();
+
+            List<Event> retry = new ArrayList<>();
+            for (Integer index : result.getRetryable().keySet())
+                retry.add(pending.get(index));
+            pending = retry;
         }
 
-        LOGGER.info("\tIncoming events: {}", incomingEvents.size());
-        LOGGER.info("\tOutgoing events: {}", outgoingEvents.size());
+        return failed;
+
+    }
 
+    private interface BatchSave {
+        EventBatchResult save(List<Event> events) throws BusinessException;
     }
 
 }
@@ -0,0 +1,34 @@
+package com.konkerlabs.platform.registry.data.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.context.annotation.Configuration;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import lombok.Data;
+
+@Configuration
+@Data
+public class CredentialCacheConfig {
+
+    private boolean enabled;
+    private Integer maxSize;
+    private Long ttl;
+
+    public CredentialCacheConfig() {
+        Map<String, Object> defaultMap = new HashMap<>();
+        defaultMap.put("credential.cache.enabled", true);
+        defaultMap.put("credential.cache.max.size", 10000);
+        defaultMap.put("credential.cache.ttl", 60000L);
+        Config defaultConf = ConfigFactory.parseMap(defaultMap);
+
+        Config config = ConfigFactory.load().withFallback(defaultConf);
+        setEnabled(config.getBoolean("credential.cache.enabled"));
+        setMaxSize(config.getInt("credential.cache.max.size"));
+        setTtl(config.getLong("credential.cache.ttl"));
+    }
+
+}
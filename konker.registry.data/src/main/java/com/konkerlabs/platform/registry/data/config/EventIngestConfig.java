@@ -0,0 +1,49 @@
+package com.konkerlabs.platform.registry.data.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.context.annotation.Configuration;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import lombok.Data;
+
+@Configuration
+@Data
+public class EventIngestConfig {
+
+    private boolean enabled;
+    private Integer batchSize;
+    private Long flushInterval;
+    private Integer queueCapacity;
+    private Long offerTimeout;
+    private Long shutdownTimeout;
+    private Integer retryAttempts;
+    private Long retryInterval;
+
+    public EventIngestConfig() {
+        Map<String, Object> defaultMap = new HashMap<>();
+        defaultMap.put("ingest.enabled", false);
+        defaultMap.put("ingest.batch.size", 500);
+        defaultMap.put("ingest.flush.interval", 200L);
+        defaultMap.put("ingest.queue.capacity", 10000);
+        defaultMap.put("ingest.offer.timeout", 1000L);
+        defaultMap.put("ingest.shutdown.timeout", 10000L);
+        defaultMap.put("ingest.retry.attempts", 5);
+        defaultMap.put("ingest.retry.interval", 1000L);
+        Config defaultConf = ConfigFactory.parseMap(defaultMap);
+
+        Config config = ConfigFactory.load().withFallback(defaultConf);
+        setEnabled(config.getBoolean("ingest.enabled"));
+        setBatchSize(config.getInt("ingest.batch.size"));
+        setFlushInterval(config.getLong("ingest.flush.interval"));
+        setQueueCapacity(config.getInt("ingest.queue.capacity"));
+        setOfferTimeout(config.getLong("ingest.offer.timeout"));
+        setShutdownTimeout(config.getLong("ingest.shutdown.timeout"));
+        setRetryAttempts(config.getInt("ingest.retry.attempts"));
+        setRetryInterval(config.getLong("ingest.retry.interval"));
+    }
+
+}
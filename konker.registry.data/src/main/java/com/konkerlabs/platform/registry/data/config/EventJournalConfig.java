@@ -0,0 +1,58 @@
+package com.konkerlabs.platform.registry.data.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.context.annotation.Configuration;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import lombok.Data;
+
+@Configuration
+@Data
+public class EventJournalConfig {
+
+    private boolean enabled;
+    private String directory;
+    private Integer segmentSize;
+    private Integer maxSegments;
+    private boolean fsync;
+    private Long fsyncInterval;
+    private Integer fsyncBatchSize;
+    private Integer batchSize;
+    private Long replayInterval;
+    private Long retryInterval;
+    private Long shutdownTimeout;
+
+    public EventJournalConfig() {
+        Map<String, Object> defaultMap = new HashMap<>();
+        defaultMap.put("ingest.journal.enabled", false);
+        defaultMap.put("ingest.journal.directory", "/var/lib/konker/journal");
+        defaultMap.put("ingest.journal.segment.size", 64 * 1024 * 1024);
+        defaultMap.put("ingest.journal.max.segments", 32);
+        defaultMap.put("ingest.journal.fsync", true);
+        defaultMap.put("ingest.journal.fsync.interval", 2L);
+        defaultMap.put("ingest.journal.fsync.batch.size", 256);
+        defaultMap.put("ingest.journal.batch.size", 500);
+        defaultMap.put("ingest.journal.replay.interval", 200L);
+        defaultMap.put("ingest.journal.retry.interval", 1000L);
+        defaultMap.put("ingest.journal.shutdown.timeout", 10000L);
+        Config defaultConf = ConfigFactory.parseMap(defaultMap);
+
+        Config config = ConfigFactory.load().withFallback(defaultConf);
+        setEnabled(config.getBoolean("ingest.journal.enabled"));
+        setDirectory(config.getString("ingest.journal.directory"));
+        setSegmentSize(config.getInt("ingest.journal.segment.size"));
+        setMaxSegments(config.getInt("ingest.journal.max.segments"));
+        setFsync(config.getBoolean("ingest.journal.fsync"));
+        setFsyncInterval(config.getLong("ingest.journal.fsync.interval"));
+        setFsyncBatchSize(config.getInt("ingest.journal.fsync.batch.size"));
+        setBatchSize(config.getInt("ingest.journal.batch.size"));
+        setReplayInterval(config.getLong("ingest.journal.replay.interval"));
+        setRetryInterval(config.getLong("ingest.journal.retry.interval"));
+        setShutdownTimeout(config.getLong("ingest.journal.shutdown.timeout"));
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.konkerlabs.platform.registry.data.config;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.context.annotation.Configuration;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import lombok.Data;
+
+@Configuration
+@Data
+public class EventRateLimitConfig {
+
+    private boolean enabled;
+    private Double deviceRate;
+    private Double tenantRate;
+    private Double burstSeconds;
+    private Integer maxBuckets;
+    private Map<String, Double> tenantRates;
+    private Map<String, Double> deviceRates;
+
+    public EventRateLimitConfig() {
+        Map<String, Object> defaultMap = new HashMap<>();
+        defaultMap.put("ingest.rate.limit.enabled", false);
+        defaultMap.put("ingest.rate.limit.device.rate", 50.0);
+        defaultMap.put("ingest.rate.limit.tenant.rate", 1000.0);
+        defaultMap.put("ingest.rate.limit.burst.seconds", 2.0);
+        defaultMap.put("ingest.rate.limit.max.buckets", 100000);
+        defaultMap.put("ingest.rate.limit.tenants", Collections.emptyMap());
+        defaultMap.put("ingest.rate.limit.devices", Collections.emptyMap());
+        Config defaultConf = ConfigFactory.parseMap(defaultMap);
+
+        Config config = ConfigFactory.load().withFallback(defaultConf);
+        setEnabled(config.getBoolean("ingest.rate.limit.enabled"));
+        setDeviceRate(config.getDouble("ingest.rate.limit.device.rate"));
+        setTenantRate(config.getDouble("ingest.rate.limit.tenant.rate"));
+        setBurstSeconds(config.getDouble("ingest.rate.limit.burst.seconds"));
+        setMaxBuckets(config.getInt("ingest.rate.limit.max.buckets"));
+        setTenantRates(toRates(config.getObject("ingest.rate.limit.tenants").unwrapped()));
+        setDeviceRates(toRates(config.getObject("ingest.rate.limit.devices").unwrapped()));
+    }
+
+    private static Map<String, Double> toRates(Map<String, Object> values) {
+        return values.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> Double.valueOf(entry.getValue().toString())));
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.konkerlabs.platform.registry.data.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.context.annotation.Configuration;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import lombok.Data;
+
+@Configuration
+@Data
+public class EventRouteExecutorConfig {
+
+	private Integer threads;
+	private Integer queueSize;
+	private Long timeout;
+
+	public EventRouteExecutorConfig() {
+		Map<String, Object> defaultMap = new HashMap<>();
+		defaultMap.put("route.executor.threads", 16);
+		defaultMap.put("route.executor.queue.size", 1000);
+		defaultMap.put("route.executor.timeout", 60000L);
+		Config defaultConf = ConfigFactory.parseMap(defaultMap);
+
+		Config config = ConfigFactory.load().withFallback(defaultConf);
+		setThreads(config.getInt("route.executor.threads"));
+		setQueueSize(config.getInt("route.executor.queue.size"));
+		setTimeout(config.getLong("route.executor.timeout"));
+	}
+
+}
@@ -0,0 +1,37 @@
+package com.konkerlabs.platform.registry.data.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.context.annotation.Configuration;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import lombok.Data;
+
+@Configuration
+@Data
+public class EventStreamConfig {
+
+    private Long timeout;
+    private Integer batchSize;
+    private Integer pushThreads;
+    private Integer pushQueueSize;
+
+    public EventStreamConfig() {
+        Map<String, Object> defaultMap = new HashMap<>();
+        defaultMap.put("event.stream.timeout", 1800000L);
+        defaultMap.put("event.stream.batch.size", 50);
+        defaultMap.put("event.stream.push.threads", 8);
+        defaultMap.put("event.stream.push.queue.size", 1000);
+        Config defaultConf = ConfigFactory.parseMap(defaultMap);
+
+        Config config = ConfigFactory.load().withFallback(defaultConf);
+        setTimeout(config.getLong("event.stream.timeout"));
+        setBatchSize(config.getInt("event.stream.batch.size"));
+        setPushThreads(config.getInt("event.stream.push.threads"));
+        setPushQueueSize(config.getInt("event.stream.push.queue.size"));
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.konkerlabs.platform.registry.data.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.context.annotation.Configuration;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import lombok.Data;
+
+@Configuration
+@Data
+public class EventTransformationConfig {
+
+    private Integer cacheMaxSize;
+    private Integer stepTimeout;
+    private Integer tenantMaxInflight;
+
+    public EventTransformationConfig() {
+        Map<String, Object> defaultMap = new HashMap<>();
+        defaultMap.put("transformation.cache.max.size", 10000);
+        defaultMap.put("transformation.step.timeout", 30000);
+        defaultMap.put("transformation.tenant.max.inflight", 200);
+        Config defaultConf = ConfigFactory.parseMap(defaultMap);
+
+        Config config = ConfigFactory.load().withFallback(defaultConf);
+        setCacheMaxSize(config.getInt("transformation.cache.max.size"));
+        setStepTimeout(config.getInt("transformation.step.timeout"));
+        setTenantMaxInflight(config.getInt("transformation.tenant.max.inflight"));
+    }
+
+}
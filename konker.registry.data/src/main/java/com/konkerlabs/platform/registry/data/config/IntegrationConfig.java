@@ -17,6 +17,9 @@ public class IntegrationConfig {
 
 	private Integer timeoutDefault;
 	private Integer enrichment;
+	private Integer httpMaxConnections;
+	private Integer httpMaxConnectionsPerRoute;
+	private Integer httpAsyncThreads;
 
 	public IntegrationConfig() {
 		Map<String, Object> defaultMap = new HashMap<>();
@@ -24,6 +27,9 @@ public class IntegrationConfig {
 		valuesTimeout.put("default", 30000);
 		valuesTimeout.put("enrichment", 30000);
 		defaultMap.put("integration.timeout", Collections.singleton(valuesTimeout));
+		defaultMap.put("integration.http.max.connections", 200);
+		defaultMap.put("integration.http.max.connections.per.route", 20);
+		defaultMap.put("integration.http.async.threads", 50);
 		Config defaultConf = ConfigFactory.parseMap(defaultMap);
 
 		Config defaultConfListValue = ConfigFactory.parseMap(valuesTimeout);
@@ -31,6 +37,9 @@ public class IntegrationConfig {
 		Config config = ConfigFactory.load().withFallback(defaultConf);
 		setTimeoutDefault(Integer.parseInt(config.getObjectList("integration.timeout").get(0).withFallback(defaultConfListValue).get("default").render()));
 		setEnrichment(Integer.parseInt(config.getObjectList("integration.timeout").get(0).withFallback(defaultConfListValue).get("enrichment").render()));
+		setHttpMaxConnections(config.getInt("integration.http.max.connections"));
+		setHttpMaxConnectionsPerRoute(config.getInt("integration.http.max.connections.per.route"));
+		setHttpAsyncThreads(config.getInt("integration.http.async.threads"));
 	}
 
 }
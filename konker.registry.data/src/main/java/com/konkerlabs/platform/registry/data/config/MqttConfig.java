@@ -1,30 +1,40 @@
 package com.konkerlabs.platform.registry.data.config;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-import org.springframework.beans.factory.annotation.Autowired;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.integration.annotation.IntegrationComponentScan;
 import org.springframework.integration.annotation.ServiceActivator;
 import org.springframework.integration.channel.DirectChannel;
-import org.springframework.integration.channel.ExecutorChannel;
 import org.springframework.integration.config.EnableIntegration;
 import org.springframework.integration.gateway.GatewayProxyFactoryBean;
 import org.springframework.integration.mqtt.core.DefaultMqttPahoClientFactory;
-import org.springframework.integration.mqtt.inbound.AbstractMqttMessageDrivenChannelAdapter;
 import org.springframework.integration.mqtt.inbound.MqttPahoMessageDrivenChannelAdapter;
-import org.springframework.integration.mqtt.outbound.MqttPahoMessageHandler;
 import org.springframework.integration.mqtt.support.DefaultPahoMessageConverter;
 import org.springframework.messaging.MessageChannel;
-import org.springframework.messaging.MessageHandler;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import com.konkerlabs.platform.registry.integration.endpoints.MqttInboundClients;
+import com.konkerlabs.platform.registry.integration.endpoints.MqttInboundPartitioner;
+import com.konkerlabs.platform.registry.integration.gateways.MqttOutboundPublisher;
+
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 
@@ -37,29 +47,54 @@ import lombok.Data;
 @Data
 public class MqttConfig {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(MqttConfig.class);
+
     private String[] subcribeUris;
     private String[] subcribeTopics;
     private String subcribeUsername;
     private String subcribePassword;
+    private int subcribeClients;
+    private String subcribeSharedGroup;
+    private int subcribePartitions;
+    private int subcribePartitionQueueSize;
+    private long subcribePartitionBlockTimeout;
 
     private String[] publishUris;
     private String publishUsername;
     private String publishPassword;
+    private int publishClients;
+    private int publishQueueSize;
+    private int publishMaxInflight;
+    private int publishQos;
+    private String publishOverflow;
+    private long publishBlockTimeout;
+    private long publishReconnectInterval;
+    private long publishShutdownTimeout;
 
     //MQTT stuff
 
-    @Autowired
-    private Executor executor;
-
     public MqttConfig() {
     	Map<String, Object> defaultMap = new HashMap<>();
     	defaultMap.put("mqtt.subcribe.uris", Collections.singleton("tcp://dev-server:1883"));
-    	defaultMap.put("mqtt.subcribe.topics", Collections.singleton("pub/+/+"));
+    	defaultMap.put("mqtt.subcribe.topics", Arrays.asList("pub/+/+", "pub/+/+/bulk", "pub/+/+/cbor", "pub/+/+/msgpack"));
     	defaultMap.put("mqtt.subcribe.username", "user");
     	defaultMap.put("mqtt.subcribe.password", "pass");
+    	defaultMap.put("mqtt.subcribe.clients", 1);
+    	defaultMap.put("mqtt.subcribe.shared.group", "");
+    	defaultMap.put("mqtt.subcribe.partitions", 8);
+    	defaultMap.put("mqtt.subcribe.partition.queue.size", 1000);
+    	defaultMap.put("mqtt.subcribe.partition.block.timeout", 1000L);
     	defaultMap.put("mqtt.publish.uris", Collections.singleton("tcp://dev-server:1883"));
     	defaultMap.put("mqtt.publish.username", "user");
     	defaultMap.put("mqtt.publish.password", "pass");
+    	defaultMap.put("mqtt.publish.clients", 2);
+    	defaultMap.put("mqtt.publish.queue.size", 10000);
+    	defaultMap.put("mqtt.publish.max.inflight", 100);
+    	defaultMap.put("mqtt.publish.qos", 1);
+    	defaultMap.put("mqtt.publish.overflow", "block");
+    	defaultMap.put("mqtt.publish.block.timeout", 1000L);
+    	defaultMap.put("mqtt.publish.reconnect.interval", 1000L);
+    	defaultMap.put("mqtt.publish.shutdown.timeout", 10000L);
     	Config defaultConf = ConfigFactory.parseMap(defaultMap);
 
     	Config config = ConfigFactory.load().withFallback(defaultConf);
@@ -67,15 +102,33 @@ public class MqttConfig {
     	setSubcribeTopics(config.getStringList("mqtt.subcribe.topics").toArray(new String[] {}));
     	setSubcribeUsername(config.getString("mqtt.subcribe.username"));
     	setSubcribePassword(config.getString("mqtt.subcribe.password"));
+    	setSubcribeClients(config.getInt("mqtt.subcribe.clients"));
+    	setSubcribeSharedGroup(config.getString("mqtt.subcribe.shared.group"));
+    	setSubcribePartitions(config.getInt("mqtt.subcribe.partitions"));
+    	setSubcribePartitionQueueSize(config.getInt("mqtt.subcribe.partition.queue.size"));
+    	setSubcribePartitionBlockTimeout(config.getLong("mqtt.subcribe.partition.block.timeout"));
 
     	setPublishUris(config.getStringList("mqtt.publish.uris").toArray(new String[] {}));
     	setPublishUsername(config.getString("mqtt.publish.username"));
     	setPublishPassword(config.getString("mqtt.publish.password"));
+    	setPublishClients(config.getInt("mqtt.publish.clients"));
+    	setPublishQueueSize(config.getInt("mqtt.publish.queue.size"));
+    	setPublishMaxInflight(config.getInt("mqtt.publish.max.inflight"));
+    	setPublishQos(config.getInt("mqtt.publish.qos"));
+    	setPublishOverflow(config.getString("mqtt.publish.overflow"));
+    	setPublishBlockTimeout(config.getLong("mqtt.publish.block.timeout"));
+    	setPublishReconnectInterval(config.getLong("mqtt.publish.reconnect.interval"));
+    	setPublishShutdownTimeout(config.getLong("mqtt.publish.shutdown.timeout"));
+    }
+
+    @Bean(name = "konkerMqttInboundChannel")
+    public MessageChannel inboundChannel() {
+        return new DirectChannel();
     }
 
     @Bean(name = "konkerMqttInputChannel")
     public MessageChannel inputChannel() {
-        return new ExecutorChannel(executor);
+        return new DirectChannel();
     }
 
     @Bean(name = "konkerMqttOutputChannel")
@@ -102,30 +155,72 @@ public class MqttConfig {
     }
 
     public String[] topicPatternList() {
-        return getSubcribeTopics();
+        if (!isSharedSubscription())
+            return getSubcribeTopics();
+
+        return Arrays.stream(getSubcribeTopics())
+                .map(topic -> "$share/" + getSubcribeSharedGroup() + "/" + topic)
+                .toArray(String[]::new);
+    }
+
+    private boolean isSharedSubscription() {
+        return getSubcribeSharedGroup() != null && !getSubcribeSharedGroup().trim().isEmpty();
+    }
+
+    /**
+     * Without a shared subscription group every client would receive its own copy of each
+     * message, so more than one client is only used when the broker balances them.
+     */
+    private int inboundClientCount() {
+        if (getSubcribeClients() > 1 && !isSharedSubscription()) {
+            LOGGER.warn("mqtt.subcribe.clients is {} but no mqtt.subcribe.shared.group is set, using a single client",
+                    getSubcribeClients());
+            return 1;
+        }
+        return Math.max(1, getSubcribeClients());
+    }
+
+    @Bean
+    public MqttInboundClients inbound() {
+        List<MqttPahoMessageDrivenChannelAdapter> adapters = IntStream.range(0, inboundClientCount())
+                .mapToObj(client -> {
+                    MqttPahoMessageDrivenChannelAdapter adapter =
+                            new MqttPahoMessageDrivenChannelAdapter(UUID.randomUUID().toString(),
+                                    mqttInboudClientFactory(),topicPatternList());
+                    adapter.setCompletionTimeout(5000);
+                    DefaultPahoMessageConverter converter = new DefaultPahoMessageConverter();
+                    converter.setPayloadAsBytes(true);
+                    adapter.setConverter(converter);
+                    adapter.setQos(1);
+                    adapter.setOutputChannel(inboundChannel());
+                    return adapter;
+                })
+                .collect(Collectors.toList());
+
+        return new MqttInboundClients(adapters);
     }
 
     @Bean
-    public AbstractMqttMessageDrivenChannelAdapter inbound() {
-        MqttPahoMessageDrivenChannelAdapter adapter =
-                new MqttPahoMessageDrivenChannelAdapter(UUID.randomUUID().toString(),
-                        mqttInboudClientFactory(),topicPatternList());
-        adapter.setCompletionTimeout(5000);
-        adapter.setConverter(new DefaultPahoMessageConverter());
-        adapter.setQos(1);
-        adapter.setOutputChannel(inputChannel());
-        return adapter;
+    @ServiceActivator(inputChannel = "konkerMqttInboundChannel")
+    public MqttInboundPartitioner mqttInboundPartitioner() {
+        return new MqttInboundPartitioner(inputChannel(), getSubcribePartitions(), getSubcribePartitionQueueSize(),
+                getSubcribePartitionBlockTimeout());
     }
 
     @Bean
     @ServiceActivator(inputChannel = "konkerMqttOutputChannel")
-    public MessageHandler mqttOutbound() {
-        MqttPahoMessageHandler messageHandler =
-                new MqttPahoMessageHandler(UUID.randomUUID().toString(), mqttOutboundClientFactory());
-        messageHandler.setAsync(true);
-        messageHandler.setCompletionTimeout(5000);
-        messageHandler.setDefaultTopic("testTopic");
-        return messageHandler;
+    public MqttOutboundPublisher mqttOutbound() {
+        return new MqttOutboundPublisher(
+                mqttOutboundClientFactory(),
+                getPublishUris()[0],
+                getPublishClients(),
+                getPublishQueueSize(),
+                getPublishMaxInflight(),
+                getPublishQos(),
+                MqttOutboundPublisher.OverflowPolicy.valueOf(getPublishOverflow().toUpperCase()),
+                getPublishBlockTimeout(),
+                getPublishReconnectInterval(),
+                getPublishShutdownTimeout());
     }
 
     @Bean
@@ -140,6 +235,22 @@ public class MqttConfig {
 
     @Bean
     public RestTemplate enrichmentRestTemplate() {
-        return new RestTemplate();
+        IntegrationConfig integrationConfig = new IntegrationConfig();
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(integrationConfig.getHttpMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(integrationConfig.getHttpMaxConnectionsPerRoute());
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .evictExpiredConnections()
+                .evictIdleConnections(60, TimeUnit.SECONDS)
+                .build();
+
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        requestFactory.setConnectTimeout(integrationConfig.getTimeoutDefault());
+        requestFactory.setReadTimeout(integrationConfig.getTimeoutDefault());
+
+        return new RestTemplate(requestFactory);
     }
 }
@@ -28,16 +28,19 @@ public class RedisConfig {
 
 	private String host;
 	private Integer port;
+	private Integer subscriptionThreads;
     
 	public RedisConfig() {
 		Map<String, Object> defaultMap = new HashMap<>();
 		defaultMap.put("redis.master.host", "localhost");
 		defaultMap.put("redis.master.port", 6379);
+		defaultMap.put("redis.subscription.threads", 8);
 		Config defaultConf = ConfigFactory.parseMap(defaultMap);
 
 		Config config = ConfigFactory.load().withFallback(defaultConf);
 		setHost(config.getString("redis.master.host"));
 		setPort(config.getInt("redis.master.port"));
+		setSubscriptionThreads(config.getInt("redis.subscription.threads"));
 	}
 
     @Bean
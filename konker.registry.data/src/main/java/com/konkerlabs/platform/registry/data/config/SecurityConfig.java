@@ -1,7 +1,5 @@
 package com.konkerlabs.platform.registry.data.config;
 
-import java.security.NoSuchAlgorithmException;
-import java.security.spec.InvalidKeySpecException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -20,7 +18,6 @@ import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
-import org.springframework.security.authentication.encoding.PlaintextPasswordEncoder;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -33,7 +30,7 @@ import org.springframework.security.web.authentication.www.BasicAuthenticationFi
 import com.konkerlabs.platform.registry.business.services.api.DeviceRegisterService;
 import com.konkerlabs.platform.registry.data.security.KonkerBasicAuthenticationFilter;
 import com.konkerlabs.platform.registry.data.security.KonkerParamsAuthenticationFilter;
-import com.konkerlabs.platform.security.managers.PasswordManager;
+import com.konkerlabs.platform.registry.data.security.KonkerPasswordEncoder;
 
 @Configuration
 @EnableGlobalMethodSecurity(securedEnabled = true, prePostEnabled = true)
@@ -62,17 +59,7 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
         DaoAuthenticationProvider authenticationProvider = new DaoAuthenticationProvider();
         authenticationProvider.setUserDetailsService(detailsService);
-        authenticationProvider.setPasswordEncoder(new PlaintextPasswordEncoder() {
-            @Override
-            public boolean isPasswordValid(String encPass, String rawPass, Object salt) {
-                try {
-                    return new PasswordManager().validatePassword(rawPass, encPass);
-                } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
-                    LOGGER.error(e.getMessage(), e);
-                    return false;
-                }
-            }
-        });
+        authenticationProvider.setPasswordEncoder(new KonkerPasswordEncoder(new CredentialCacheConfig()));
         auth.authenticationProvider(authenticationProvider);
     }
 
@@ -92,7 +79,7 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
                     .addFilter(filter)
                     .addFilterAfter(paramsAuthFilter, BasicAuthenticationFilter.class)
                     .requestMatchers()
-                    .antMatchers("/pub/**", "/sub/**")
+                    .antMatchers("/pub/**", "/sub/**", "/stream/**")
                 .and()
                     .authorizeRequests()
                     .anyRequest()
@@ -118,7 +105,8 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
                         			item.getKey(),
                                     "POST");
                         } else if (item.getKey().equals("Access-Control-Allow-Methods") &&
-                        		httpServletRequest.getServletPath().startsWith("/sub/")) {
+                        		(httpServletRequest.getServletPath().startsWith("/sub/") ||
+                        		httpServletRequest.getServletPath().startsWith("/stream/"))) {
                         	httpServletResponse.addHeader(
                         			item.getKey(),
                                     "GET");
@@ -1,6 +1,6 @@
 package com.konkerlabs.platform.registry.data.security;
 
-import com.konkerlabs.platform.registry.business.repositories.DeviceRepository;
+import com.konkerlabs.platform.registry.business.services.api.DeviceRegisterService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -13,12 +13,12 @@ import java.util.Optional;
 public class DeviceUserDetailsService implements UserDetailsService {
 
     @Autowired
-    private DeviceRepository deviceRepository;
+    private DeviceRegisterService deviceRegisterService;
 
     @Override
     public UserDetails loadUserByUsername(String apiKey) throws UsernameNotFoundException {
         return Optional
-                .ofNullable(deviceRepository.findByApiKey(apiKey))
+                .ofNullable(deviceRegisterService.findByApiKey(apiKey))
                 .orElseThrow(() -> new UsernameNotFoundException("authentication.credentials.invalid"));
     }
 }
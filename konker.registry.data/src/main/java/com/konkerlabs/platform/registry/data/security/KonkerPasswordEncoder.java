@@ -0,0 +1,108 @@
+package com.konkerlabs.platform.registry.data.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.encoding.PlaintextPasswordEncoder;
+
+import com.konkerlabs.platform.registry.data.config.CredentialCacheConfig;
+import com.konkerlabs.platform.security.managers.PasswordManager;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Validates device secrets against their PBKDF2 security hash, remembering successful
+ * verifications for a short time. Entries are keyed by the stored security hash, so a
+ * new password invalidates them, and hold only an HMAC of the presented secret under a
+ * key that never leaves the process. Failed verifications are never cached.
+ */
+public class KonkerPasswordEncoder extends PlaintextPasswordEncoder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KonkerPasswordEncoder.class);
+
+    private static final String DIGEST_ALGORITHM = "HmacSHA256";
+
+    private CredentialCacheConfig cacheConfig;
+    private SecretKeySpec digestKey;
+    private Map<String, CacheEntry> verified;
+
+    public KonkerPasswordEncoder(CredentialCacheConfig cacheConfig) {
+        this.cacheConfig = cacheConfig;
+
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.digestKey = new SecretKeySpec(key, DIGEST_ALGORITHM);
+
+        int maxSize = cacheConfig.getMaxSize();
+        this.verified = Collections.synchronizedMap(new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    @Override
+    public boolean isPasswordValid(String encPass, String rawPass, Object salt) {
+        if (!cacheConfig.isEnabled() || !Optional.ofNullable(encPass).isPresent()
+                || !Optional.ofNullable(rawPass).isPresent())
+            return verify(rawPass, encPass);
+
+        byte[] digest;
+        try {
+            digest = digest(rawPass);
+        } catch (GeneralSecurityException e) {
+            LOGGER.error(e.getMessage(), e);
+            return verify(rawPass, encPass);
+        }
+
+        CacheEntry entry = verified.get(encPass);
+        if (Optional.ofNullable(entry).isPresent()
+                && entry.getExpiresAt() > System.currentTimeMillis()
+                && MessageDigest.isEqual(entry.getDigest(), digest))
+            return true;
+
+        boolean valid = verify(rawPass, encPass);
+        if (valid)
+            verified.put(encPass, new CacheEntry(digest, System.currentTimeMillis() + cacheConfig.getTtl()));
+
+        return valid;
+    }
+
+    protected boolean verify(String rawPass, String encPass) {
+        try {
+            return new PasswordManager().validatePassword(rawPass, encPass);
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+            LOGGER.error(e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private byte[] digest(String rawPass) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(DIGEST_ALGORITHM);
+        mac.init(digestKey);
+        return mac.doFinal(rawPass.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class CacheEntry {
+        private byte[] digest;
+        private long expiresAt;
+    }
+
+}
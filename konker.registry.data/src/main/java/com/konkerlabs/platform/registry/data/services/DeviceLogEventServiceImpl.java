@@ -11,6 +11,8 @@ import com.konkerlabs.platform.registry.business.services.api.ServiceResponse;
 import com.konkerlabs.platform.registry.business.services.api.ServiceResponseBuilder;
 import com.konkerlabs.platform.registry.config.EventStorageConfig;
 import com.konkerlabs.platform.registry.data.services.api.DeviceLogEventService;
+import com.konkerlabs.platform.registry.data.services.api.EventIngestService;
+import com.konkerlabs.platform.registry.data.services.api.EventJournalService;
 import com.konkerlabs.platform.registry.type.EventStorageConfigType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.BeanDefinition;
@@ -37,6 +39,10 @@ public class DeviceLogEventServiceImpl implements DeviceLogEventService {
     private EventSchemaService eventSchemaService;
     @Autowired
     private RedisTemplate<String, String> redisTemplate;
+    @Autowired
+    private EventIngestService eventIngestService;
+    @Autowired
+    private EventJournalService eventJournalService;
 
 
     @PostConstruct
@@ -61,6 +67,12 @@ public class DeviceLogEventServiceImpl implements DeviceLogEventService {
                 ServiceResponse<EventSchema> schemaResponse = eventSchemaService.appendIncomingSchema(event);
 
                 if (schemaResponse.isOk()) {
+                    if (eventJournalService.isEnabled())
+                        return eventJournalService.append(device.getTenant(), device.getApplication(), event);
+
+                    if (eventIngestService.isEnabled())
+                        return eventIngestService.enqueue(device.getTenant(), device.getApplication(), event);
+
                     return ServiceResponseBuilder.<Event>ok()
                             .withResult(eventRepository.saveIncoming(device.getTenant(), device.getApplication(),event)).build();
                 } else {
@@ -80,11 +92,11 @@ public class DeviceLogEventServiceImpl implements DeviceLogEventService {
             try {
                 Event saved = eventRepository.saveOutgoing(device.getTenant(), device.getApplication(), event);
                 redisTemplate.convertAndSend(
-                        device.getApiKey(),
+                        JedisTaskService.taskChannel(device.getApiKey()),
                         device.getGuid());
 
                 redisTemplate.convertAndSend(
-                        device.getApiKey() + "." + event.getOutgoing().getChannel(),
+                        JedisTaskService.taskChannel(device.getApiKey() + "." + event.getOutgoing().getChannel()),
                         device.getGuid());
 
                 return ServiceResponseBuilder.<Event>ok().withResult(saved).build();
@@ -0,0 +1,265 @@
+package com.konkerlabs.platform.registry.data.services;
+
+import com.konkerlabs.platform.registry.business.exceptions.BusinessException;
+import com.konkerlabs.platform.registry.business.model.Application;
+import com.konkerlabs.platform.registry.business.model.Event;
+import com.konkerlabs.platform.registry.business.model.Tenant;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventBatchResult;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventRepository;
+import com.konkerlabs.platform.registry.business.services.api.ServiceResponse;
+import com.konkerlabs.platform.registry.business.services.api.ServiceResponseBuilder;
+import com.konkerlabs.platform.registry.config.EventStorageConfig;
+import com.konkerlabs.platform.registry.data.config.EventIngestConfig;
+import com.konkerlabs.platform.registry.data.services.api.EventIngestService;
+import com.konkerlabs.platform.registry.type.EventStorageConfigType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+@Service
+public class EventIngestServiceImpl implements EventIngestService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventIngestServiceImpl.class);
+
+    private static final long STOP_CHECK_INTERVAL = 100L;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+    @Autowired
+    private EventStorageConfig eventStorageConfig;
+
+    private EventIngestConfig ingestConfig;
+    private EventRepository eventRepository;
+
+    private BlockingQueue<IngestEntry> queue;
+    private Thread flusher;
+    private volatile boolean running;
+
+    /**
+     * Held shared while an event is queued and exclusively to stop accepting events, so
+     * no event is queued after the flusher was told to drain the queue and stop.
+     */
+    private ReadWriteLock acceptLock = new ReentrantReadWriteLock();
+
+    public EventIngestServiceImpl() {
+        this(new EventIngestConfig());
+    }
+
+    public EventIngestServiceImpl(EventIngestConfig ingestConfig) {
+        this.ingestConfig = ingestConfig;
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            eventRepository =
+                    (EventRepository) applicationContext.getBean(
+                            eventStorageConfig.getEventRepositoryBean()
+                    );
+        } catch (Exception e) {
+            eventRepository =
+                    (EventRepository) applicationContext.getBean(
+                            EventStorageConfigType.MONGODB.bean()
+                    );
+        }
+
+        if (!ingestConfig.isEnabled())
+            return;
+
+        queue = new ArrayBlockingQueue<>(ingestConfig.getQueueCapacity());
+        running = true;
+
+        flusher = new Thread(this::flushLoop, "konker-event-ingest");
+        flusher.setDaemon(true);
+        flusher.start();
+
+        LOGGER.info("Event ingest buffer started. Batch size: {}, flush interval: {}ms, capacity: {}",
+                ingestConfig.getBatchSize(), ingestConfig.getFlushInterval(), ingestConfig.getQueueCapacity());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        acceptLock.writeLock().lock();
+        try {
+            if (!running)
+                return;
+            running = false;
+        } finally {
+            acceptLock.writeLock().unlock();
+        }
+
+        try {
+            flusher.join(ingestConfig.getShutdownTimeout());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (!queue.isEmpty())
+            LOGGER.warn("Event ingest buffer stopped with {} pending events", queue.size());
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return running;
+    }
+
+    @Override
+    public ServiceResponse<Event> enqueue(Tenant tenant, Application application, Event event) {
+        acceptLock.readLock().lock();
+        try {
+            if (!running)
+                return ServiceResponseBuilder.<Event>error()
+                        .withMessage(Messages.INGEST_NOT_RUNNING.getCode()).build();
+
+            if (queue.offer(new IngestEntry(tenant, application, event),
+                    ingestConfig.getOfferTimeout(), TimeUnit.MILLISECONDS)) {
+                return ServiceResponseBuilder.<Event>ok().withResult(event).build();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            acceptLock.readLock().unlock();
+        }
+
+        return ServiceResponseBuilder.<Event>error()
+                .withMessage(Messages.INGEST_QUEUE_FULL.getCode()).build();
+    }
+
+    /**
+     * Waits on the queue are capped to the stop check interval, so once stopped the
+     * flusher drains what is left and stores the last partial batch right away instead
+     * of waiting for the flush interval.
+     */
+    private void flushLoop() {
+        List<IngestEntry> batch = new ArrayList<>(ingestConfig.getBatchSize());
+
+        while (running || !queue.isEmpty()) {
+            try {
+                IngestEntry first = queue.poll(Math.min(ingestConfig.getFlushInterval(), STOP_CHECK_INTERVAL),
+                        TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + ingestConfig.getFlushInterval();
+
+                while (batch.size() < ingestConfig.getBatchSize()) {
+                    queue.drainTo(batch, ingestConfig.getBatchSize() - batch.size());
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (batch.size() >= ingestConfig.getBatchSize() || remaining <= 0 || !running)
+                        break;
+
+                    IngestEntry next = queue.poll(Math.min(remaining, STOP_CHECK_INTERVAL), TimeUnit.MILLISECONDS);
+                    if (next != null)
+                        batch.add(next);
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                flush(batch);
+                break;
+            } catch (Exception e) {
+                LOGGER.error("Unexpected failure while flushing incoming events", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Events the repository could not store because it is unavailable or failed on a
+     * transient error are stored again after the retry interval, up to the configured
+     * attempts, and only then given up.
+     */
+    private void flush(List<IngestEntry> batch) {
+        List<IngestEntry> pending = store(batch);
+
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            if (attempt > ingestConfig.getRetryAttempts()) {
+                LOGGER.error("Gave up storing {} buffered incoming events after {} retries",
+                        pending.size(), ingestConfig.getRetryAttempts());
+                return;
+            }
+
+            try {
+                Thread.sleep(ingestConfig.getRetryInterval());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.error("Interrupted while retrying, {} buffered incoming events were not stored", pending.size());
+                return;
+            }
+
+            pending = store(pending);
+        }
+    }
+
+    /**
+     * The batch api stores events of a single tenant and application, so the buffered
+     * events are grouped by both and every group is stored with one bulk write.
+     *
+     * @return the events to store again
+     */
+    private List<IngestEntry> store(List<IngestEntry> batch) {
+        Map<String, List<IngestEntry>> groups = batch.stream()
+                .collect(Collectors.groupingBy(IngestEntry::getGroupKey, LinkedHashMap::new, Collectors.toList()));
+
+        List<IngestEntry> retry = new ArrayList<>();
+
+        for (List<IngestEntry> group : groups.values()) {
+            IngestEntry first = group.get(0);
+            try {
+                EventBatchResult result = eventRepository.saveIncomingBatch(first.getTenant(), first.getApplication(),
+                        group.stream().map(IngestEntry::getEvent).collect(Collectors.toList()));
+
+                result.getFailures().forEach((index, message) ->
+                        LOGGER.error(MessageFormat.format("Failed to store buffered incoming event: {0}", message),
+                                group.get(index).getEvent().getIncoming().toURI(),
+                                first.getTenant().getLogLevel()));
+                result.getRetryable().keySet().forEach(index -> retry.add(group.get(index)));
+            } catch (BusinessException e) {
+                LOGGER.error(MessageFormat.format("Failed to store {0} buffered incoming events", group.size()),
+                        first.getTenant().toURI(),
+                        first.getTenant().getLogLevel(),
+                        e);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Event repository unavailable, {} buffered incoming events will be retried", group.size(), e);
+                retry.addAll(group);
+            }
+        }
+
+        return retry;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class IngestEntry {
+        private Tenant tenant;
+        private Application application;
+        private Event event;
+
+        String getGroupKey() {
+            return tenant.getDomainName() + "/" + Optional.ofNullable(application).map(Application::getName).orElse("");
+        }
+    }
+
+}
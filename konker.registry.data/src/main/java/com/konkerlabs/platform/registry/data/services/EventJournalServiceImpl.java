@@ -0,0 +1,604 @@
+package com.konkerlabs.platform.registry.data.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.konkerlabs.platform.registry.business.exceptions.BusinessException;
+import com.konkerlabs.platform.registry.business.model.Application;
+import com.konkerlabs.platform.registry.business.model.Event;
+import com.konkerlabs.platform.registry.business.model.Tenant;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventBatchResult;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventRepository;
+import com.konkerlabs.platform.registry.business.services.api.ServiceResponse;
+import com.konkerlabs.platform.registry.business.services.api.ServiceResponseBuilder;
+import com.konkerlabs.platform.registry.config.EventStorageConfig;
+import com.konkerlabs.platform.registry.data.config.EventJournalConfig;
+import com.konkerlabs.platform.registry.data.services.api.EventJournalService;
+import com.konkerlabs.platform.registry.type.EventStorageConfigType;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.MessageFormat;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * The journal is a sequence of fixed size segment files, each holding records framed
+ * as [length][crc32][json]. Records are only read up to the last committed position of
+ * the segment being written, and a zero length, a short read or a crc mismatch marks the
+ * end of an older segment, which is where a crash may have left a torn record. Every
+ * restart starts a new segment, so torn records are never appended to. At most two
+ * segments are mapped at a time, the one being written and the one being replayed, and
+ * retired ones are unmapped right away so deleted segments do not keep using disk space.
+ * <p>
+ * With fsync enabled an append is only acknowledged once its record is synced to disk.
+ * The first append waiting for a sync leads it: it waits up to the fsync interval, or
+ * until the fsync batch size is reached, while more records are appended, and then syncs
+ * all of them at once and wakes up their appenders.
+ */
+@Service
+public class EventJournalServiceImpl implements EventJournalService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventJournalServiceImpl.class);
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final int HEADER_SIZE = 8;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+    @Autowired
+    private EventStorageConfig eventStorageConfig;
+
+    private EventJournalConfig journalConfig;
+    private EventRepository eventRepository;
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    private Path directory;
+
+    private long writeSegment;
+    private MappedByteBuffer writeBuffer;
+    private volatile Position committed;
+
+    private long appendedSequence;
+    private long syncedSequence;
+    private boolean syncing;
+
+    private long readSegment = -1;
+    private MappedByteBuffer readBuffer;
+    private volatile Position replayed;
+
+    private Thread replayer;
+    private volatile boolean running;
+
+    private LongAdder appendedCount = new LongAdder();
+    private LongAdder replayedCount = new LongAdder();
+    private LongAdder failedCount = new LongAdder();
+    private LongAdder syncCount = new LongAdder();
+
+    public EventJournalServiceImpl() {
+        this(new EventJournalConfig());
+    }
+
+    public EventJournalServiceImpl(EventJournalConfig journalConfig) {
+        this.journalConfig = journalConfig;
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            eventRepository =
+                    (EventRepository) applicationContext.getBean(
+                            eventStorageConfig.getEventRepositoryBean()
+                    );
+        } catch (Exception e) {
+            eventRepository =
+                    (EventRepository) applicationContext.getBean(
+                            EventStorageConfigType.MONGODB.bean()
+                    );
+        }
+
+        if (!journalConfig.isEnabled())
+            return;
+
+        try {
+            directory = Paths.get(journalConfig.getDirectory());
+            Files.createDirectories(directory);
+
+            List<Long> segments = listSegments();
+            replayed = readCheckpoint()
+                    .orElseGet(() -> new Position(segments.isEmpty() ? 0 : segments.get(0), 0));
+
+            for (Long segment : segments)
+                if (segment < replayed.getSegment())
+                    Files.deleteIfExists(segmentPath(segment));
+
+            long lastSegment = segments.isEmpty() ? replayed.getSegment() : segments.get(segments.size() - 1);
+            openSegment(Math.max(lastSegment, replayed.getSegment()) + 1);
+        } catch (IOException e) {
+            LOGGER.error("Event journal could not be opened at {}", journalConfig.getDirectory(), e);
+            return;
+        }
+
+        running = true;
+
+        replayer = new Thread(this::replayLoop, "konker-event-journal");
+        replayer.setDaemon(true);
+        replayer.start();
+
+        LOGGER.info("Event journal started at {}. Resuming replay from segment {} position {}",
+                directory, replayed.getSegment(), replayed.getOffset());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!running)
+            return;
+
+        running = false;
+        try {
+            replayer.join(journalConfig.getShutdownTimeout());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            writeBuffer.force();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return running;
+    }
+
+    @Override
+    public ServiceResponse<Event> append(Tenant tenant, Application application, Event event) {
+        if (!running)
+            return ServiceResponseBuilder.<Event>error()
+                    .withMessage(Messages.JOURNAL_WRITE_FAILED.getCode()).build();
+
+        byte[] record;
+        try {
+            record = objectMapper.writeValueAsBytes(toRecord(tenant, application, event));
+        } catch (IOException e) {
+            LOGGER.error("Failed to serialize incoming event to the journal", e);
+            return ServiceResponseBuilder.<Event>error()
+                    .withMessage(Messages.JOURNAL_WRITE_FAILED.getCode()).build();
+        }
+
+        if (record.length + HEADER_SIZE > journalConfig.getSegmentSize())
+            return ServiceResponseBuilder.<Event>error()
+                    .withMessage(Messages.JOURNAL_WRITE_FAILED.getCode()).build();
+
+        CRC32 crc = new CRC32();
+        crc.update(record);
+
+        synchronized (this) {
+            try {
+                if (writeBuffer.remaining() < record.length + HEADER_SIZE) {
+                    if (writeSegment + 1 - replayed.getSegment() >= journalConfig.getMaxSegments())
+                        return ServiceResponseBuilder.<Event>error()
+                                .withMessage(Messages.JOURNAL_FULL.getCode()).build();
+
+                    writeBuffer.force();
+                    syncedSequence = appendedSequence;
+                    openSegment(writeSegment + 1);
+                }
+            } catch (IOException e) {
+                LOGGER.error("Failed to rotate the event journal", e);
+                return ServiceResponseBuilder.<Event>error()
+                        .withMessage(Messages.JOURNAL_WRITE_FAILED.getCode()).build();
+            }
+
+            int offset = writeBuffer.position();
+            writeBuffer.position(offset + HEADER_SIZE);
+            writeBuffer.put(record);
+            writeBuffer.putInt(offset + 4, (int) crc.getValue());
+            writeBuffer.putInt(offset, record.length);
+
+            committed = new Position(writeSegment, writeBuffer.position());
+            long sequence = ++appendedSequence;
+
+            if (journalConfig.isFsync())
+                awaitSync(sequence);
+        }
+
+        appendedCount.increment();
+        return ServiceResponseBuilder.<Event>ok().withResult(event).build();
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        if (!running)
+            return metrics;
+
+        Position head = committed;
+        Position tail = replayed;
+
+        metrics.put("pendingSegments", head.getSegment() - tail.getSegment() + 1);
+        metrics.put("lagBytes", (head.getSegment() - tail.getSegment()) * journalConfig.getSegmentSize()
+                + head.getOffset() - tail.getOffset());
+        metrics.put("appended", appendedCount.sum());
+        metrics.put("replayed", replayedCount.sum());
+        metrics.put("failed", failedCount.sum());
+        metrics.put("syncs", syncCount.sum());
+        return metrics;
+    }
+
+    /**
+     * Called holding the journal monitor, which waiting releases so other appends join
+     * the sync. The monitor is held while syncing, so the segment is never rotated and
+     * unmapped during a sync.
+     */
+    private void awaitSync(long sequence) {
+        if (syncing && appendedSequence - syncedSequence >= journalConfig.getFsyncBatchSize())
+            notifyAll();
+
+        boolean interrupted = false;
+
+        while (syncedSequence < sequence) {
+            try {
+                if (syncing) {
+                    wait();
+                    continue;
+                }
+
+                syncing = true;
+                try {
+                    long deadline = System.currentTimeMillis() + journalConfig.getFsyncInterval();
+                    long remaining;
+                    while (appendedSequence - syncedSequence < journalConfig.getFsyncBatchSize()
+                            && (remaining = deadline - System.currentTimeMillis()) > 0)
+                        wait(remaining);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+
+                writeBuffer.force();
+                syncCount.increment();
+                syncedSequence = appendedSequence;
+                syncing = false;
+                notifyAll();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private void openSegment(long segment) throws IOException {
+        MappedByteBuffer retired = writeBuffer;
+        try (FileChannel channel = FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            writeBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, journalConfig.getSegmentSize());
+        }
+        unmap(retired);
+        writeSegment = segment;
+        committed = new Position(segment, 0);
+    }
+
+    private void replayLoop() {
+        while (running || !committed.equals(replayed)) {
+            try {
+                List<JournalEntry> batch = readBatch();
+
+                if (batch.isEmpty()) {
+                    if (!running)
+                        break;
+                    Thread.sleep(journalConfig.getReplayInterval());
+                    continue;
+                }
+
+                Position stored = replay(batch);
+                if (!stored.equals(replayed)) {
+                    replayed = stored;
+                    writeCheckpoint(stored);
+                }
+
+                if (!stored.equals(batch.get(batch.size() - 1).getEnd())) {
+                    if (!running)
+                        break;
+                    Thread.sleep(journalConfig.getRetryInterval());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                LOGGER.error("Unexpected failure while replaying the event journal", e);
+            }
+        }
+    }
+
+    /**
+     * Stores the batch in order, skipping events the repository rejects, and stops at the
+     * first event that could not be stored because the repository is unavailable or
+     * failed on a transient error. Consecutive events of the same tenant and application
+     * are stored with one bulk write. Events of a run stored after its first retryable
+     * one are stored again on the retry, so replay is at least once.
+     *
+     * @return the position after the last event that does not need to be replayed again
+     */
+    private Position replay(List<JournalEntry> batch) {
+        Position stored = replayed;
+
+        int start = 0;
+        while (start < batch.size()) {
+            JournalEntry first = batch.get(start);
+
+            if (first.getEvent() == null) {
+                failedCount.increment();
+                stored = first.getEnd();
+                start++;
+                continue;
+            }
+
+            int end = start + 1;
+            while (end < batch.size() && batch.get(end).getEvent() != null
+                    && batch.get(end).getGroupKey().equals(first.getGroupKey()))
+                end++;
+
+            List<JournalEntry> run = batch.subList(start, end);
+
+            try {
+                EventBatchResult result = eventRepository.saveIncomingBatch(first.getTenant(), first.getApplication(),
+                        run.stream().map(JournalEntry::getEvent).collect(Collectors.toList()));
+
+                int retryFrom = result.getRetryable().keySet().stream().findFirst().orElse(run.size());
+
+                replayedCount.add(result.getSaved().size());
+                result.getFailures().forEach((index, message) -> {
+                    if (index >= retryFrom)
+                        return;
+                    failedCount.increment();
+                    LOGGER.error(MessageFormat.format("Failed to store journaled incoming event: {0}", message),
+                            run.get(index).getEvent().getIncoming().toURI(),
+                            first.getTenant().getLogLevel());
+                });
+
+                if (retryFrom < run.size()) {
+                    LOGGER.warn("Event repository failed to store {} journaled events, journal replay will be retried: {}",
+                            result.getRetryable().size(), result.getRetryable().get(retryFrom));
+                    return retryFrom > 0 ? run.get(retryFrom - 1).getEnd() : stored;
+                }
+            } catch (BusinessException e) {
+                failedCount.add(run.size());
+                LOGGER.error("Failed to store journaled incoming events",
+                        first.getTenant().toURI(),
+                        first.getTenant().getLogLevel(),
+                        e);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Event repository unavailable, journal replay will be retried", e);
+                return stored;
+            }
+
+            stored = run.get(run.size() - 1).getEnd();
+            start = end;
+        }
+
+        return stored;
+    }
+
+    private List<JournalEntry> readBatch() throws IOException {
+        List<JournalEntry> batch = new ArrayList<>(journalConfig.getBatchSize());
+        Position position = replayed;
+
+        while (batch.size() < journalConfig.getBatchSize()) {
+            Position head = committed;
+            boolean current = position.getSegment() == head.getSegment();
+            int limit = current ? head.getOffset() : journalConfig.getSegmentSize();
+
+            Optional<JournalEntry> entry = mapForRead(position.getSegment())
+                    .flatMap(buffer -> readEntry(buffer, position, limit));
+
+            if (entry.isPresent()) {
+                batch.add(entry.get());
+                position = entry.get().getEnd();
+                continue;
+            }
+
+            if (current || !batch.isEmpty())
+                break;
+
+            // end of an older segment, every record in it has been stored
+            Files.deleteIfExists(segmentPath(position.getSegment()));
+            position = new Position(position.getSegment() + 1, 0);
+            replayed = position;
+            writeCheckpoint(position);
+        }
+
+        return batch;
+    }
+
+    private Optional<JournalEntry> readEntry(MappedByteBuffer buffer, Position position, int limit) {
+        int offset = position.getOffset();
+        if (offset + HEADER_SIZE > limit)
+            return Optional.empty();
+
+        int length = buffer.getInt(offset);
+        if (length <= 0 || offset + HEADER_SIZE + length > limit)
+            return Optional.empty();
+
+        byte[] record = new byte[length];
+        for (int i = 0; i < length; i++)
+            record[i] = buffer.get(offset + HEADER_SIZE + i);
+
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        if ((int) crc.getValue() != buffer.getInt(offset + 4))
+            return Optional.empty();
+
+        Position end = new Position(position.getSegment(), offset + HEADER_SIZE + length);
+        try {
+            return Optional.of(fromRecord(objectMapper.readValue(record, Map.class), end));
+        } catch (IOException e) {
+            LOGGER.error("Skipping unreadable journal record at segment {} position {}",
+                    position.getSegment(), offset, e);
+            return Optional.of(new JournalEntry(null, null, null, end));
+        }
+    }
+
+    private Optional<MappedByteBuffer> mapForRead(long segment) throws IOException {
+        if (segment != readSegment) {
+            Path path = segmentPath(segment);
+            if (!Files.exists(path))
+                return Optional.empty();
+
+            unmap(readBuffer);
+            readBuffer = null;
+            readSegment = -1;
+
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                readBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                        Math.min(channel.size(), journalConfig.getSegmentSize()));
+            }
+            readSegment = segment;
+        }
+        return Optional.of(readBuffer);
+    }
+
+    /**
+     * Releases a mapping without waiting for the buffer to be garbage collected. This
+     * relies on the JDK 8 buffer cleaner and otherwise leaves the mapping to the garbage
+     * collector. Only called with buffers no other thread can still access.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        if (buffer == null)
+            return;
+
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                Method cleanMethod = cleaner.getClass().getMethod("clean");
+                cleanMethod.setAccessible(true);
+                cleanMethod.invoke(cleaner);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("Journal segment mapping left to the garbage collector", e);
+        }
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.valueOf(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private Optional<Position> readCheckpoint() throws IOException {
+        Path path = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(path))
+            return Optional.empty();
+
+        String[] values = new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim().split(" ");
+        return Optional.of(new Position(Long.parseLong(values[0]), Integer.parseInt(values[1])));
+    }
+
+    private void writeCheckpoint(Position position) throws IOException {
+        Path temporary = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.write(temporary, (position.getSegment() + " " + position.getOffset()).getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.SYNC);
+        Files.move(temporary, directory.resolve(CHECKPOINT_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Map<String, Object> toRecord(Tenant tenant, Application application, Event event) {
+        Map<String, Object> incoming = new LinkedHashMap<>();
+        incoming.put("deviceGuid", event.getIncoming().getDeviceGuid());
+        incoming.put("tenantDomain", event.getIncoming().getTenantDomain());
+        incoming.put("applicationName", event.getIncoming().getApplicationName());
+        incoming.put("channel", event.getIncoming().getChannel());
+        incoming.put("deviceId", event.getIncoming().getDeviceId());
+
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("tenant", tenant.getDomainName());
+        record.put("application", Optional.ofNullable(application).map(Application::getName).orElse(null));
+        record.put("ts", event.getTimestamp().toEpochMilli());
+        record.put("incoming", incoming);
+        record.put("payload", event.getPayload());
+        return record;
+    }
+
+    @SuppressWarnings("unchecked")
+    private JournalEntry fromRecord(Map<String, Object> record, Position end) {
+        Map<String, Object> incoming = (Map<String, Object>) record.get("incoming");
+
+        Event event = Event.builder()
+                .incoming(Event.EventActor.builder()
+                        .deviceGuid((String) incoming.get("deviceGuid"))
+                        .tenantDomain((String) incoming.get("tenantDomain"))
+                        .applicationName((String) incoming.get("applicationName"))
+                        .channel((String) incoming.get("channel"))
+                        .deviceId((String) incoming.get("deviceId"))
+                        .build())
+                .payload((String) record.get("payload"))
+                .timestamp(Instant.ofEpochMilli(((Number) record.get("ts")).longValue()))
+                .build();
+
+        return new JournalEntry(
+                Tenant.builder().domainName((String) record.get("tenant")).build(),
+                Application.builder().name((String) record.get("application")).build(),
+                event,
+                end);
+    }
+
+    @Getter
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class Position {
+        private long segment;
+        private int offset;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class JournalEntry {
+        private Tenant tenant;
+        private Application application;
+        private Event event;
+        private Position end;
+
+        String getGroupKey() {
+            return tenant.getDomainName() + "/" + Optional.ofNullable(application).map(Application::getName).orElse("");
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.konkerlabs.platform.registry.data.services;
+
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventRepository;
+import com.konkerlabs.platform.registry.config.EventRetentionConfig;
+import com.konkerlabs.platform.registry.config.EventStorageConfig;
+import com.konkerlabs.platform.registry.data.services.api.EventPurgeService;
+import com.konkerlabs.platform.registry.type.EventStorageConfigType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the purge on a single daemon thread at a fixed delay. Each run removes batches of
+ * deleted events and pauses between them, so the store never sees a burst of deletes,
+ * and stops as soon as a batch comes back empty. Runs on several nodes only compete for
+ * the same deleted events, which are removed once.
+ */
+@Service
+public class EventPurgeServiceImpl implements EventPurgeService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventPurgeServiceImpl.class);
+
+    @Autowired
+    private ApplicationContext applicationContext;
+    @Autowired
+    private EventStorageConfig eventStorageConfig;
+
+    private EventRetentionConfig retentionConfig = new EventRetentionConfig();
+    private EventRepository eventRepository;
+
+    private ScheduledExecutorService scheduler;
+
+    private LongAdder runCount = new LongAdder();
+    private LongAdder failedCount = new LongAdder();
+    private LongAdder purgedCount = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        try {
+            eventRepository =
+                    (EventRepository) applicationContext.getBean(
+                            eventStorageConfig.getEventRepositoryBean()
+                    );
+        } catch (Exception e) {
+            eventRepository =
+                    (EventRepository) applicationContext.getBean(
+                            EventStorageConfigType.MONGODB.bean()
+                    );
+        }
+
+        if (!retentionConfig.isPurgeEnabled())
+            return;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "konker-event-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::purge,
+                retentionConfig.getPurgeInterval(), retentionConfig.getPurgeInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null)
+            scheduler.shutdownNow();
+    }
+
+    @Override
+    public long purge() {
+        runCount.increment();
+
+        long purged = 0;
+        try {
+            int removed;
+            while ((removed = eventRepository.purgeDeleted(retentionConfig.getPurgeBatchSize())) > 0) {
+                purged += removed;
+                purgedCount.add(removed);
+                Thread.sleep(retentionConfig.getPurgeBatchPause());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            failedCount.increment();
+            LOGGER.error("Failed to purge deleted events", e);
+        }
+
+        if (purged > 0)
+            LOGGER.info("Purged {} deleted events", purged);
+
+        return purged;
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put("runs", runCount.sum());
+        metrics.put("failed", failedCount.sum());
+        metrics.put("purged", purgedCount.sum());
+        return metrics;
+    }
+
+}
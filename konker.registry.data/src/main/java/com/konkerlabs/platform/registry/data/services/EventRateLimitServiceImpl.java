@@ -0,0 +1,127 @@
+package com.konkerlabs.platform.registry.data.services;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.stereotype.Service;
+
+import com.konkerlabs.platform.registry.business.model.Device;
+import com.konkerlabs.platform.registry.data.config.EventRateLimitConfig;
+import com.konkerlabs.platform.registry.data.services.api.EventRateLimitService;
+
+@Service
+public class EventRateLimitServiceImpl implements EventRateLimitService {
+
+    private EventRateLimitConfig rateLimitConfig;
+
+    private Map<String, TokenBucket> deviceBuckets;
+    private Map<String, TokenBucket> tenantBuckets;
+
+    private LongAdder deviceRejected = new LongAdder();
+    private LongAdder tenantRejected = new LongAdder();
+
+    public EventRateLimitServiceImpl() {
+        this(new EventRateLimitConfig());
+    }
+
+    public EventRateLimitServiceImpl(EventRateLimitConfig rateLimitConfig) {
+        this.rateLimitConfig = rateLimitConfig;
+        this.deviceBuckets = newBuckets(rateLimitConfig.getMaxBuckets());
+        this.tenantBuckets = newBuckets(rateLimitConfig.getMaxBuckets());
+    }
+
+    @Override
+    public long tryAcquire(Device device, int events) {
+        if (!rateLimitConfig.isEnabled())
+            return 0;
+
+        TokenBucket deviceBucket = deviceBuckets.computeIfAbsent(device.getGuid(),
+                guid -> newBucket(rateLimitConfig.getDeviceRates().getOrDefault(guid, rateLimitConfig.getDeviceRate())));
+
+        long deviceWait = deviceBucket.tryAcquire(events);
+        if (deviceWait > 0) {
+            deviceRejected.add(events);
+            return deviceWait;
+        }
+
+        Optional<String> tenantDomain = Optional.ofNullable(device.getTenant()).map(tenant -> tenant.getDomainName());
+        if (!tenantDomain.isPresent())
+            return 0;
+
+        TokenBucket tenantBucket = tenantBuckets.computeIfAbsent(tenantDomain.get(),
+                domain -> newBucket(rateLimitConfig.getTenantRates().getOrDefault(domain, rateLimitConfig.getTenantRate())));
+
+        long tenantWait = tenantBucket.tryAcquire(events);
+        if (tenantWait > 0) {
+            deviceBucket.refund(events);
+            tenantRejected.add(events);
+            return tenantWait;
+        }
+
+        return 0;
+    }
+
+    @Override
+    public Map<String, Long> getRejectedCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        counts.put("device", deviceRejected.sum());
+        counts.put("tenant", tenantRejected.sum());
+        return counts;
+    }
+
+    private TokenBucket newBucket(double rate) {
+        return new TokenBucket(rate, Math.max(1, rate * rateLimitConfig.getBurstSeconds()));
+    }
+
+    private static Map<String, TokenBucket> newBuckets(int maxSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<String, TokenBucket>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TokenBucket> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    private static class TokenBucket {
+
+        private double ratePerNano;
+        private double capacity;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        TokenBucket(double rate, double capacity) {
+            this.ratePerNano = rate / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = capacity;
+            this.tokens = capacity;
+        }
+
+        synchronized long tryAcquire(int permits) {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * ratePerNano);
+            refilledAt = now;
+
+            // a batch larger than the bucket is admitted once the bucket is full and paid back afterwards
+            double required = Math.min(permits, capacity);
+            if (tokens >= required) {
+                tokens -= permits;
+                return 0;
+            }
+
+            if (ratePerNano <= 0)
+                return TimeUnit.SECONDS.toMillis(1);
+
+            return Math.max(1, TimeUnit.NANOSECONDS.toMillis((long) Math.ceil((required - tokens) / ratePerNano)));
+        }
+
+        synchronized void refund(int permits) {
+            tokens = Math.min(capacity, tokens + permits);
+        }
+    }
+
+}
@@ -1,55 +1,177 @@
 package com.konkerlabs.platform.registry.data.services;
 
-import com.konkerlabs.platform.registry.business.model.Device;
-import com.konkerlabs.platform.registry.business.model.Event;
-import com.konkerlabs.platform.registry.business.services.api.DeviceEventService;
-import com.konkerlabs.platform.registry.business.services.api.DeviceRegisterService;
-import com.konkerlabs.platform.registry.business.services.api.ServiceResponse;
+import com.konkerlabs.platform.registry.data.config.RedisConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.JedisPubSub;
+import org.springframework.web.context.request.async.DeferredResult;
 
-import java.time.Instant;
-import java.util.List;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
+/**
+ * Multiplexes every long-polling and streaming subscriber of this node over a single
+ * Redis pattern subscription. Waiting subscribers are kept in a map keyed by their channel
+ * (apiKey or apiKey.channel), so they hold no connection and no thread until a
+ * notification for their channel arrives or their request times out. Notifications are
+ * published on the channel under {@link #TASK_CHANNEL_PREFIX}, and the subscription only
+ * matches that prefix, so other Redis messages such as cache invalidations never reach it.
+ */
 @Service
 public class JedisTaskService {
 
+	private static final Logger LOGGER = LoggerFactory.getLogger(JedisTaskService.class);
+
+	public static final String TASK_CHANNEL_PREFIX = "konker.task.";
+
 	@Autowired
 	private RedisTemplate<String, String> redisTemplate;
 
 	@Autowired
-	private DeviceEventService deviceEventService;
+	private RedisConfig redisConfig;
 
-	@Autowired
-	private DeviceRegisterService deviceRegisterService;
+	private RedisMessageListenerContainer listenerContainer;
+
+	private AtomicBoolean listening = new AtomicBoolean();
 
-	protected ServiceResponse<List<Event>> response;
+	private Map<String, Set<PendingSubscription<?>>> pendingSubscriptions = new ConcurrentHashMap<>();
+
+	private Map<String, Set<Runnable>> streamListeners = new ConcurrentHashMap<>();
 
 	public JedisTaskService() {
 
 	}
 
-	public List<Event> subscribeToChannel(String channel, Instant startTimestamp, boolean asc, Integer limit) {
-		Jedis jedis = (Jedis) redisTemplate.getConnectionFactory().getConnection().getNativeConnection();
-		JedisPubSub jedisPubSub = new JedisPubSub() {
-			@Override
-			public void onMessage(String channel, String message) {
-				String deviceApiKey = channel.contains(".") ? channel.substring(0, channel.indexOf(".")) : channel;
-				String deviceChannel = channel.contains(".") ? channel.substring(channel.indexOf(".") + 1) : null;
+	@PostConstruct
+	public void init() {
+		ThreadPoolTaskExecutor dispatchExecutor = new ThreadPoolTaskExecutor();
+		dispatchExecutor.setCorePoolSize(redisConfig.getSubscriptionThreads());
+		dispatchExecutor.setMaxPoolSize(redisConfig.getSubscriptionThreads());
+		dispatchExecutor.setThreadNamePrefix("redis-subscription-");
+		dispatchExecutor.initialize();
+
+		listenerContainer = new RedisMessageListenerContainer();
+		listenerContainer.setConnectionFactory(redisTemplate.getConnectionFactory());
+		listenerContainer.setTaskExecutor(dispatchExecutor);
+		listenerContainer.addMessageListener(this::dispatch, new PatternTopic(TASK_CHANNEL_PREFIX + "*"));
+		listenerContainer.afterPropertiesSet();
+	}
 
-				Device device = deviceRegisterService.findByApiKey(deviceApiKey);
-				response = deviceEventService.findOutgoingBy(device.getTenant(), device.getApplication(), device.getGuid(),
-						deviceChannel, startTimestamp, null, asc, limit);
-				this.unsubscribe(channel);
+	@PreDestroy
+	public void shutdown() {
+		Optional.ofNullable(listenerContainer).ifPresent(container -> {
+			try {
+				container.destroy();
+			} catch (Exception e) {
+				LOGGER.warn("Failed to stop Redis subscription", e);
 			}
-		};
+		});
+	}
+
+	/**
+	 * Completes the deferred result with the supplied value on the next notification
+	 * published to the channel. The subscriber is forgotten as soon as the deferred
+	 * result completes, either by a notification or by its own timeout.
+	 */
+	public <T> void subscribeToChannel(String channel, DeferredResult<T> deferredResult, Supplier<T> resultSupplier) {
+		if (listening.compareAndSet(false, true))
+			listenerContainer.start();
+
+		PendingSubscription<T> pending = new PendingSubscription<>(deferredResult, resultSupplier);
+
+		pendingSubscriptions.compute(channel, (key, subscriptions) -> {
+			Set<PendingSubscription<?>> waiting = Optional.ofNullable(subscriptions)
+					.orElseGet(ConcurrentHashMap::newKeySet);
+			waiting.add(pending);
+			return waiting;
+		});
+
+		deferredResult.onCompletion(() -> pendingSubscriptions.computeIfPresent(channel, (key, subscriptions) -> {
+			subscriptions.remove(pending);
+			return subscriptions.isEmpty() ? null : subscriptions;
+		}));
+	}
+
+	/**
+	 * Runs the listener on every notification published to the channel until the
+	 * returned handle is run.
+	 */
+	public Runnable subscribeToStream(String channel, Runnable listener) {
+		if (listening.compareAndSet(false, true))
+			listenerContainer.start();
+
+		streamListeners.compute(channel, (key, listeners) -> {
+			Set<Runnable> subscribed = Optional.ofNullable(listeners)
+					.orElseGet(ConcurrentHashMap::newKeySet);
+			subscribed.add(listener);
+			return subscribed;
+		});
 
-		jedis.subscribe(jedisPubSub, channel);
+		return () -> streamListeners.computeIfPresent(channel, (key, listeners) -> {
+			listeners.remove(listener);
+			return listeners.isEmpty() ? null : listeners;
+		});
+	}
+
+	/**
+	 * @return the Redis channel to publish on to notify the subscribers of the channel
+	 */
+	public static String taskChannel(String channel) {
+		return TASK_CHANNEL_PREFIX + channel;
+	}
+
+	public int getPendingCount() {
+		return pendingSubscriptions.values().stream().mapToInt(Set::size).sum();
+	}
+
+	private void dispatch(Message message, byte[] pattern) {
+		String taskChannel = new String(message.getChannel(), StandardCharsets.UTF_8);
+		if (!taskChannel.startsWith(TASK_CHANNEL_PREFIX))
+			return;
+
+		String channel = taskChannel.substring(TASK_CHANNEL_PREFIX.length());
+
+		Optional.ofNullable(pendingSubscriptions.remove(channel))
+				.ifPresent(subscriptions -> subscriptions.forEach(PendingSubscription::complete));
 
-		return response.getResult();
+		Optional.ofNullable(streamListeners.get(channel))
+				.ifPresent(listeners -> listeners.forEach(Runnable::run));
+	}
+
+	private static class PendingSubscription<T> {
+
+		private DeferredResult<T> deferredResult;
+		private Supplier<T> resultSupplier;
+
+		PendingSubscription(DeferredResult<T> deferredResult, Supplier<T> resultSupplier) {
+			this.deferredResult = deferredResult;
+			this.resultSupplier = resultSupplier;
+		}
+
+		void complete() {
+			if (deferredResult.isSetOrExpired())
+				return;
+
+			try {
+				deferredResult.setResult(resultSupplier.get());
+			} catch (RuntimeException e) {
+				LOGGER.error("Failed to complete subscription", e);
+				deferredResult.setErrorResult(e);
+			}
+		}
 	}
 
 }
@@ -0,0 +1,41 @@
+package com.konkerlabs.platform.registry.data.services.api;
+
+import com.konkerlabs.platform.registry.business.model.Application;
+import com.konkerlabs.platform.registry.business.model.Event;
+import com.konkerlabs.platform.registry.business.model.Tenant;
+import com.konkerlabs.platform.registry.business.services.api.ServiceResponse;
+
+/**
+ * Bounded in-memory stage that collects incoming events from every endpoint
+ * and writes them to the configured event repository in batches, flushed
+ * whenever the batch is full or the flush interval has elapsed.
+ */
+public interface EventIngestService {
+
+    enum Messages {
+        INGEST_QUEUE_FULL("integration.event_ingest.queue_full"),
+        INGEST_NOT_RUNNING("integration.event_ingest.not_running");
+
+        private String code;
+
+        public String getCode() {
+            return code;
+        }
+
+        Messages(String code) {
+            this.code = code;
+        }
+    }
+
+    /**
+     * @return true when the buffer is enabled and accepting events
+     */
+    boolean isEnabled();
+
+    /**
+     * Queues an incoming event for a batched write, waiting up to the configured
+     * offer timeout when the queue is full.
+     */
+    ServiceResponse<Event> enqueue(Tenant tenant, Application application, Event event);
+
+}
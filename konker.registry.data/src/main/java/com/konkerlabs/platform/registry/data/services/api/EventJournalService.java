@@ -0,0 +1,48 @@
+package com.konkerlabs.platform.registry.data.services.api;
+
+import java.util.Map;
+
+import com.konkerlabs.platform.registry.business.model.Application;
+import com.konkerlabs.platform.registry.business.model.Event;
+import com.konkerlabs.platform.registry.business.model.Tenant;
+import com.konkerlabs.platform.registry.business.services.api.ServiceResponse;
+
+/**
+ * Append-only local journal of incoming events. Events are acknowledged once they
+ * are appended to a memory-mapped segment file and are written to the configured event
+ * repository in batches by a background replayer, which survives restarts by resuming
+ * from its last checkpoint.
+ */
+public interface EventJournalService {
+
+    enum Messages {
+        JOURNAL_FULL("integration.event_journal.full"),
+        JOURNAL_WRITE_FAILED("integration.event_journal.write_failed");
+
+        private String code;
+
+        public String getCode() {
+            return code;
+        }
+
+        Messages(String code) {
+            this.code = code;
+        }
+    }
+
+    /**
+     * @return true when the journal is enabled and accepting events
+     */
+    boolean isEnabled();
+
+    /**
+     * Appends an incoming event to the journal, syncing it to disk when configured to.
+     */
+    ServiceResponse<Event> append(Tenant tenant, Application application, Event event);
+
+    /**
+     * @return pending segments, replay lag in bytes and appended, replayed and failed counters
+     */
+    Map<String, Number> getMetrics();
+
+}
@@ -0,0 +1,23 @@
+package com.konkerlabs.platform.registry.data.services.api;
+
+import java.util.Map;
+
+/**
+ * Background job that physically removes the events marked as deleted when their device
+ * is removed, in throttled batches, so they stop taking storage and index space.
+ */
+public interface EventPurgeService {
+
+    /**
+     * Removes batches of deleted events until none is left or the service stops.
+     *
+     * @return number of events removed
+     */
+    long purge();
+
+    /**
+     * @return purge runs, failed runs and removed events counters
+     */
+    Map<String, Number> getMetrics();
+
+}
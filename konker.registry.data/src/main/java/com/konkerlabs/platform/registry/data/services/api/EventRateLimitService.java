@@ -0,0 +1,40 @@
+package com.konkerlabs.platform.registry.data.services.api;
+
+import java.util.Map;
+
+import com.konkerlabs.platform.registry.business.model.Device;
+
+/**
+ * In-memory token buckets, one per device and one per tenant, that bound how many
+ * incoming events each of them may send per second before any storage or routing work
+ * is done. Buckets refill continuously and hold up to a few seconds of burst.
+ */
+public interface EventRateLimitService {
+
+    enum Messages {
+        RATE_LIMIT_EXCEEDED("integration.event_rate_limit.exceeded");
+
+        private String code;
+
+        public String getCode() {
+            return code;
+        }
+
+        Messages(String code) {
+            this.code = code;
+        }
+    }
+
+    /**
+     * Takes one token per event from both the device and the tenant bucket.
+     *
+     * @return 0 when the events are admitted, otherwise the milliseconds until they would be
+     */
+    long tryAcquire(Device device, int events);
+
+    /**
+     * @return rejected event counters by limit
+     */
+    Map<String, Long> getRejectedCounts();
+
+}
@@ -83,7 +83,7 @@ public class EventPublisherRest implements EventPublisher {
             try {
 
                 String serviceURI = evaluateExpressionIfNecessary(
-                        restDestination.getServiceURI(), outgoingEvent.getPayload()
+                        restDestination.getServiceURI(), outgoingEvent
                 );
 
                 httpGateway.request(
@@ -94,7 +94,8 @@ public class EventPublisherRest implements EventPublisher {
                         URI.create(UriUtils.encodeQuery(serviceURI, "UTF-8")), MediaType.APPLICATION_JSON,
                         () -> outgoingEvent.getPayload(),
                         restDestination.getServiceUsername(),
-                        restDestination.getServicePassword()
+                        restDestination.getServicePassword(),
+                        restDestination.getTimeout()
                 );
 //                eventRepository.saveIncoming(tenant,outgoingEvent);
             } catch (IllegalArgumentException | JsonProcessingException | IntegrationException | UnsupportedEncodingException e) {
@@ -121,9 +122,9 @@ public class EventPublisherRest implements EventPublisher {
 		return headers;
 	}
 
-    private String evaluateExpressionIfNecessary(String template, String json) throws JsonProcessingException {
+    private String evaluateExpressionIfNecessary(String template, Event event) throws JsonProcessingException {
         if (ExpressionEvaluationService.EXPRESSION_TEMPLATE_PATTERN.matcher(template).matches())
-            return expressionEvaluationService.evaluateTemplate(template, jsonParsingService.toMap(json));
+            return expressionEvaluationService.evaluateTemplate(template, event.getPayloadAsMap(jsonParsingService));
         else return template;
     }
 }
@@ -5,6 +5,7 @@ import com.konkerlabs.platform.registry.business.model.Event;
 import com.konkerlabs.platform.registry.business.model.EventRoute;
 import com.konkerlabs.platform.registry.business.services.api.EventRouteService;
 import com.konkerlabs.platform.registry.business.services.api.ServiceResponse;
+import com.konkerlabs.platform.registry.data.config.EventRouteExecutorConfig;
 import com.konkerlabs.platform.registry.data.services.publishers.api.EventPublisher;
 import com.konkerlabs.platform.registry.data.services.routes.api.EventRouteExecutor;
 import com.konkerlabs.platform.registry.data.services.routes.api.EventTransformationService;
@@ -15,11 +16,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.expression.spel.SpelEvaluationException;
-import org.springframework.scheduling.annotation.AsyncResult;
 import org.springframework.stereotype.Service;
 
-import static com.konkerlabs.platform.registry.data.services.publishers.EventPublisherDevice.DEVICE_MQTT_CHANNEL;
-
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.net.URI;
 import java.text.MessageFormat;
@@ -27,7 +26,22 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Service
 public class EventRouteExecutorImpl implements EventRouteExecutor {
@@ -45,56 +59,189 @@ public class EventRouteExecutorImpl implements EventRouteExecutor {
     @Autowired
     private EventTransformationService eventTransformationService;
 
+    private EventRouteExecutorConfig executorConfig;
+
+    private List<ExecutorService> lanes;
+
+    private ScheduledExecutorService timeoutScheduler;
+
+    private Map<String, CompletableFuture<Optional<Event>>> pendingForwards = new ConcurrentHashMap<>();
+
+    public EventRouteExecutorImpl() {
+        this(new EventRouteExecutorConfig());
+    }
+
+    public EventRouteExecutorImpl(EventRouteExecutorConfig executorConfig) {
+        this.executorConfig = executorConfig;
+        this.lanes = IntStream.range(0, executorConfig.getThreads())
+                .mapToObj(lane -> newLane(lane, executorConfig.getQueueSize()))
+                .collect(Collectors.toList());
+        this.timeoutScheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("event-route-timeout"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lanes.forEach(ExecutorService::shutdown);
+        timeoutScheduler.shutdown();
+    }
+
+    /**
+     * Each route runs on one of a fixed set of single threaded lanes, chosen by its
+     * route and destination, so events keep their order for every route/destination
+     * pair while independent routes run concurrently. The returned future completes
+     * once every route has finished or timed out.
+     *
+     * Every route forwards its own copy of the event, since publishers set the outgoing
+     * actor on it. A route is either forwarded or timed out, never both: once it times
+     * out its remaining work is skipped and nothing is published for it.
+     */
     @Override
     public Future<List<Event>> execute(Event event, URI uri) {
 
-        ServiceResponse<List<EventRoute>> serviceResponse = eventRouteService.findByIncomingUri(uri);
+        ServiceResponse<List<EventRoute>> serviceResponse =
+                eventRouteService.findActiveByIncomingUriAndChannel(uri, event.getIncoming().getChannel());
 
-        List<Event> outEvents = new ArrayList<Event>();
+        if (!serviceResponse.isOk() || serviceResponse.getResult().isEmpty())
+            return CompletableFuture.completedFuture(new ArrayList<Event>());
 
-        if (serviceResponse.isOk()) {
-            List<EventRoute> eventRoutes = serviceResponse.getResult();
+        List<CompletableFuture<Optional<Event>>> routeFutures = serviceResponse.getResult()
+                .stream()
+                .map(eventRoute -> {
+                    AtomicBoolean settled = new AtomicBoolean();
+                    return withTimeout(eventRoute, settled,
+                            CompletableFuture.supplyAsync(() -> executeRoute(event, eventRoute, settled), laneFor(eventRoute))
+                                    .thenCompose(Function.identity()));
+                })
+                .collect(Collectors.toList());
 
-            String incomingPayload = event.getPayload();
+        return CompletableFuture.allOf(routeFutures.toArray(new CompletableFuture[routeFutures.size()]))
+                .thenApply(done -> routeFutures.stream()
+                        .map(CompletableFuture::join)
+                        .filter(Optional::isPresent)
+                        .map(Optional::get)
+                        .collect(Collectors.toList()));
+    }
 
-            for (EventRoute eventRoute : eventRoutes) {
-                if (!eventRoute.isActive())
-                    continue;
-                if (!eventRoute.getIncoming().getData().get(DEVICE_MQTT_CHANNEL).equals(event.getIncoming().getChannel())) {
-                    LOGGER.debug("Non matching channel for incoming event: {}", event, eventRoute.getTenant().toURI(), eventRoute.getTenant().getLogLevel());
-                    continue;
-                }
+    private CompletableFuture<Optional<Event>> executeRoute(Event event, EventRoute eventRoute, AtomicBoolean settled) {
+        if (settled.get())
+            return CompletableFuture.completedFuture(Optional.empty());
 
-                try {
-                    if (isFilterMatch(event, eventRoute)) {
-                        if (Optional.ofNullable(eventRoute.getTransformation()).isPresent()) {
-                            Optional<Event> transformed = eventTransformationService.transform(
-                                    event, eventRoute.getTransformation());
-                            if (transformed.isPresent()) {
-                                forwardEvent(eventRoute, transformed.get());
-                                outEvents.add(transformed.get());
-                            } else {
-                                logEventWithInvalidTransformation(event, eventRoute);
-                            }
-                        } else {
-                            forwardEvent(eventRoute, event);
-                            outEvents.add(event);
-                        }
-                    } else {
-                        logEventFilterMismatch(event, eventRoute);
-                    }
-                } catch (IOException e) {
-                    LOGGER.error("Error parsing JSON payload.", eventRoute.toURI(), eventRoute.getTenant().getLogLevel(), e);
-                } catch (SpelEvaluationException e) {
-                    LOGGER.error(MessageFormat
-                            .format("Error evaluating, probably malformed, expression: \"{0}\". Message payload: {1} ",
-                                    eventRoute.getFilteringExpression(),
-                                    incomingPayload), eventRoute.toURI(), eventRoute.getTenant().getLogLevel(), e);
+        try {
+            if (isFilterMatch(event, eventRoute)) {
+                if (Optional.ofNullable(eventRoute.getTransformation()).isPresent()) {
+                    return forwardInOrder(eventRoute, eventTransformationService.transformAsync(
+                            event, eventRoute.getTransformation(), eventRoute.getTenant()), event, settled);
+                } else {
+                    return CompletableFuture.completedFuture(forwardEvent(eventRoute, event.copy(), settled));
                 }
+            } else {
+                logEventFilterMismatch(event, eventRoute);
             }
+        } catch (IOException e) {
+            LOGGER.error("Error parsing JSON payload.", eventRoute.toURI(), eventRoute.getTenant().getLogLevel(), e);
+        } catch (SpelEvaluationException e) {
+            LOGGER.error(MessageFormat
+                    .format("Error evaluating, probably malformed, expression: \"{0}\". Message payload: {1} ",
+                            eventRoute.getFilteringExpression(),
+                            event.getPayload()), eventRoute.toURI(), eventRoute.getTenant().getLogLevel(), e);
+        } catch (RuntimeException e) {
+            LOGGER.error(MessageFormat.format("Error executing route \"{0}\"", eventRoute.getName()),
+                    eventRoute.toURI(), eventRoute.getTenant().getLogLevel(), e);
         }
 
-        return new AsyncResult<List<Event>>(outEvents);
+        return CompletableFuture.completedFuture(Optional.empty());
+    }
+
+    /**
+     * Transformations of the same route run concurrently and free the lane while their
+     * steps are in flight, so each transformed event is forwarded only after the one
+     * before it on the route. This runs on the route lane, so the pending forward of a
+     * route is only ever replaced by that single thread.
+     */
+    private CompletableFuture<Optional<Event>> forwardInOrder(EventRoute eventRoute,
+                                                              CompletableFuture<Optional<Event>> transformation,
+                                                              Event event,
+                                                              AtomicBoolean settled) {
+        String key = routeKey(eventRoute);
+
+        CompletableFuture<Optional<Event>> previous = pendingForwards
+                .getOrDefault(key, CompletableFuture.completedFuture(Optional.empty()));
+
+        CompletableFuture<Optional<Event>> forwarded = previous
+                .handle((result, error) -> result)
+                .thenCombine(transformation, (ignored, transformed) -> forwardTransformed(event, eventRoute, transformed, settled));
+
+        pendingForwards.put(key, forwarded);
+        forwarded.whenComplete((result, error) -> pendingForwards.remove(key, forwarded));
+        return forwarded;
+    }
+
+    private Optional<Event> forwardTransformed(Event event, EventRoute eventRoute, Optional<Event> transformed,
+                                               AtomicBoolean settled) {
+        try {
+            if (transformed.isPresent()) {
+                return forwardEvent(eventRoute, transformed.get().copy(), settled);
+            } else {
+                logEventWithInvalidTransformation(event, eventRoute);
+            }
+            return transformed;
+        } catch (RuntimeException e) {
+            LOGGER.error(MessageFormat.format("Error executing route \"{0}\"", eventRoute.getName()),
+                    eventRoute.toURI(), eventRoute.getTenant().getLogLevel(), e);
+            return Optional.empty();
+        }
+    }
+
+    private CompletableFuture<Optional<Event>> withTimeout(EventRoute eventRoute, AtomicBoolean settled,
+                                                           CompletableFuture<Optional<Event>> routeFuture) {
+        ScheduledFuture<?> timeout = timeoutScheduler.schedule(() -> {
+            if (settled.compareAndSet(false, true) && routeFuture.complete(Optional.empty()))
+                LOGGER.warn(MessageFormat.format("Route \"{0}\" timed out after {1} ms",
+                        eventRoute.getName(), executorConfig.getTimeout()),
+                        eventRoute.toURI(), eventRoute.getTenant().getLogLevel());
+        }, executorConfig.getTimeout(), TimeUnit.MILLISECONDS);
+
+        routeFuture.whenComplete((result, error) -> timeout.cancel(false));
+        return routeFuture;
+    }
+
+    private ExecutorService laneFor(EventRoute eventRoute) {
+        return lanes.get(Math.floorMod(routeKey(eventRoute).hashCode(), lanes.size()));
+    }
+
+    private String routeKey(EventRoute eventRoute) {
+        return eventRoute.getGuid() + Optional.ofNullable(eventRoute.getOutgoing())
+                .map(EventRoute.RouteActor::getUri)
+                .map(URI::toString)
+                .orElse("");
+    }
+
+    /**
+     * A full lane blocks the submitter instead of running the route on its thread,
+     * which would break the ordering of that lane.
+     */
+    private static ExecutorService newLane(int lane, int queueSize) {
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                daemonThreads("event-route-" + lane),
+                (task, executor) -> {
+                    if (executor.isShutdown())
+                        throw new RejectedExecutionException("Event route lane is shut down");
+                    try {
+                        executor.getQueue().put(task);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException(e);
+                    }
+                });
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
     }
 
     private boolean isFilterMatch(Event event, EventRoute eventRoute) throws JsonProcessingException {
@@ -102,19 +249,32 @@ public class EventRouteExecutorImpl implements EventRouteExecutor {
                 .filter(filter -> !filter.isEmpty());
 
         if (expression.isPresent()) {
-            Map<String, Object> objectMap = jsonParsingService.toMap(event.getPayload());
+            Map<String, Object> objectMap = event.getPayloadAsMap(jsonParsingService);
             return evaluationService.evaluateConditional(expression.get(), objectMap);
         } else
             return true;
     }
 
-    private void forwardEvent(EventRoute eventRoute, Event event) {
+    /**
+     * Publishes the event unless the route has already timed out, and claims the route
+     * so its timeout can no longer fire.
+     */
+    private Optional<Event> forwardEvent(EventRoute eventRoute, Event event, AtomicBoolean settled) {
+        if (!settled.compareAndSet(false, true)) {
+            LOGGER.debug(MessageFormat.format("Skipped forwarding timed out route \"{0}\". Message payload: {1} ",
+                    eventRoute.getName(), event.getPayload()),
+                    eventRoute.toURI(),
+                    eventRoute.getTenant().getLogLevel());
+            return Optional.empty();
+        }
+
         EventPublisher eventPublisher = (EventPublisher) applicationContext
                 .getBean(eventRoute.getOutgoing().getUri().getScheme());
         eventPublisher.send(event, eventRoute.getOutgoing().getUri(),
                 eventRoute.getOutgoing().getData(),
                 eventRoute.getTenant(),
                 eventRoute.getApplication());
+        return Optional.of(event);
     }
 
     private void logEventFilterMismatch(Event event, EventRoute eventRoute) {
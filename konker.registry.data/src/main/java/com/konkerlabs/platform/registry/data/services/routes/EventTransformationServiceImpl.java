@@ -3,13 +3,16 @@ package com.konkerlabs.platform.registry.data.services.routes;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.konkerlabs.platform.registry.business.model.Event;
 import com.konkerlabs.platform.registry.business.model.RestTransformationStep;
+import com.konkerlabs.platform.registry.business.model.Tenant;
 import com.konkerlabs.platform.registry.business.model.Transformation;
 import com.konkerlabs.platform.registry.business.model.TransformationStep;
+import com.konkerlabs.platform.registry.data.config.EventTransformationConfig;
 import com.konkerlabs.platform.registry.data.services.routes.api.EventTransformationService;
 import com.konkerlabs.platform.registry.integration.exceptions.IntegrationException;
 import com.konkerlabs.platform.registry.integration.gateways.HttpGateway;
 import com.konkerlabs.platform.utilities.expressions.ExpressionEvaluationService;
 import com.konkerlabs.platform.utilities.parsers.json.JsonParsingService;
+import lombok.Value;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,12 +22,28 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
 import org.springframework.util.StringUtils;
 
+import javax.annotation.PreDestroy;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 
 @Component
 public class EventTransformationServiceImpl implements EventTransformationService {
@@ -38,6 +57,50 @@ public class EventTransformationServiceImpl implements EventTransformationServic
     @Autowired
     private HttpGateway httpGateway;
 
+    private EventTransformationConfig transformationConfig;
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder cacheEvictions = new LongAdder();
+    private final LongAdder inflight = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    private final Map<String, CachedResponse> responseCache;
+
+    private final Map<String, Semaphore> tenantPermits = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService timeoutScheduler;
+
+    public EventTransformationServiceImpl() {
+        this(new EventTransformationConfig());
+    }
+
+    public EventTransformationServiceImpl(EventTransformationConfig transformationConfig) {
+        this.transformationConfig = transformationConfig;
+        int maxSize = transformationConfig.getCacheMaxSize();
+        responseCache = Collections.synchronizedMap(new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                if (size() > maxSize) {
+                    cacheEvictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        });
+        timeoutScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-transformation-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timeoutScheduler.shutdown();
+    }
+
     @Override
     public Optional<Event> transform(Event original, Transformation transformation) {
         Optional.ofNullable(original)
@@ -45,34 +108,165 @@ public class EventTransformationServiceImpl implements EventTransformationServic
         Optional.ofNullable(transformation)
                 .orElseThrow(() -> new IllegalArgumentException("Transformation cannot be null"));
 
-        Optional<Event> transformed = Optional.of(
+        // The first step reads the original event, so it reuses the payload already parsed for routing
+        Optional<Event> transformed = Optional.of(original);
+
+        List<TransformationStep> steps = transformation.getSteps();
+        for (int index = 0; index < steps.size(); index++) {
+            if (transformed.isPresent())
+                transformed = Optional.ofNullable(applyStep(transformed.get(), steps.get(index),
+                        stepScope(transformation.getTenant(), transformation, index)));
+            else break;
+        }
+
+        return transformed.map(event -> detached(original, event));
+    }
+
+    /**
+     * Every step starts when the previous one completes, so no thread waits on a step
+     * response. A tenant with too many transformations in flight has new ones dropped
+     * instead of queued, and a step without a response within the step timeout ends
+     * its transformation with no event.
+     */
+    @Override
+    public CompletableFuture<Optional<Event>> transformAsync(Event original, Transformation transformation, Tenant tenant) {
+        Optional.ofNullable(original)
+            .orElseThrow(() -> new IllegalArgumentException("Event cannot be null"));
+        Optional.ofNullable(transformation)
+                .orElseThrow(() -> new IllegalArgumentException("Transformation cannot be null"));
+
+        String tenantDomain = Optional.ofNullable(tenant).map(Tenant::getDomainName).orElse("");
+        Semaphore permits = tenantPermits.computeIfAbsent(tenantDomain,
+                domain -> new Semaphore(transformationConfig.getTenantMaxInflight()));
+
+        if (!permits.tryAcquire()) {
+            rejected.increment();
+            LOGGER.warn("Transformation \"{}\" dropped, tenant {} has {} transformations in flight",
+                    transformation.getName(), tenantDomain, transformationConfig.getTenantMaxInflight());
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        inflight.increment();
+
+        CompletableFuture<Event> transformed = CompletableFuture.completedFuture(original);
+        List<TransformationStep> steps = transformation.getSteps();
+        for (int index = 0; index < steps.size(); index++) {
+            TransformationStep step = steps.get(index);
+            String scope = stepScope(Optional.ofNullable(tenant).orElse(transformation.getTenant()), transformation, index);
+            transformed = transformed.thenCompose(event -> Optional.ofNullable(event)
+                    .map(current -> applyStepAsync(current, step, scope))
+                    .orElseGet(() -> CompletableFuture.completedFuture(null)));
+        }
+
+        return transformed.handle((event, error) -> {
+            permits.release();
+            inflight.decrement();
+
+            if (error != null) {
+                LOGGER.error("Failed to apply transformation \"" + transformation.getName() + "\"", error);
+                return Optional.empty();
+            }
+            return Optional.ofNullable(event).map(current -> detached(original, current));
+        });
+    }
+
+    private Event detached(Event original, Event event) {
+        return event == original ?
             Event.builder()
                 .incoming(original.getIncoming())
                 .payload(original.getPayload())
                 .timestamp(original.getTimestamp())
-                .build()
-        );
+                .build() : event;
+    }
 
-        for (TransformationStep step : transformation.getSteps()) {
-            if (transformed.isPresent())
-                transformed = Optional.ofNullable(applyStep(transformed.get(),step));
-            else break;
+    private Event applyStep(Event event, TransformationStep step, String scope) {
+        Optional<StepRequest> stepRequest = stepRequest(event, step, scope);
+        if (!stepRequest.isPresent())
+            return null;
+
+        StepRequest request = stepRequest.get();
+        String stepResponse = cachedResponse(request);
+
+        if (stepResponse == null) {
+            try {
+                stepResponse = httpGateway.request(
+                        request.getMethod(),
+                        request.getHeaders(),
+                        request.getUri(), MediaType.APPLICATION_JSON,
+                        () -> event.getPayload(),
+                        request.getUsername(),
+                        request.getPassword(),
+                        transformationConfig.getStepTimeout());
+            } catch (IntegrationException e) {
+                LOGGER.error("Failed to request step URL", e);
+                return null;
+            }
+            cacheResponse(request, stepResponse);
         }
 
-        return transformed;
+        return stepEvent(event, stepResponse);
+    }
+
+    private CompletableFuture<Event> applyStepAsync(Event event, TransformationStep step, String scope) {
+        Optional<StepRequest> stepRequest = stepRequest(event, step, scope);
+        if (!stepRequest.isPresent())
+            return CompletableFuture.completedFuture(null);
+
+        StepRequest request = stepRequest.get();
+        String cached = cachedResponse(request);
+
+        if (cached != null)
+            return CompletableFuture.completedFuture(stepEvent(event, cached));
+
+        CompletableFuture<String> response = Optional.ofNullable(httpGateway.requestAsync(
+                request.getMethod(),
+                request.getHeaders(),
+                request.getUri(), MediaType.APPLICATION_JSON,
+                () -> event.getPayload(),
+                request.getUsername(),
+                request.getPassword(),
+                transformationConfig.getStepTimeout()))
+                .orElseGet(() -> {
+                    CompletableFuture<String> missing = new CompletableFuture<>();
+                    missing.completeExceptionally(new IntegrationException("No response for step " + request.getUri()));
+                    return missing;
+                });
+
+        return withStepTimeout(request, response)
+                .thenApply(stepResponse -> {
+                    cacheResponse(request, stepResponse);
+                    return stepEvent(event, stepResponse);
+                })
+                .exceptionally(error -> {
+                    LOGGER.error("Failed to request step URL", error);
+                    return null;
+                });
+    }
+
+    private CompletableFuture<String> withStepTimeout(StepRequest request, CompletableFuture<String> response) {
+        ScheduledFuture<?> timeout = timeoutScheduler.schedule(() -> {
+            if (response.completeExceptionally(new TimeoutException(
+                    "Step " + request.getUri() + " timed out after " + transformationConfig.getStepTimeout() + " ms")))
+                timedOut.increment();
+        }, transformationConfig.getStepTimeout(), TimeUnit.MILLISECONDS);
+
+        response.whenComplete((result, error) -> timeout.cancel(false));
+        return response;
     }
 
-    private Event applyStep(Event event, TransformationStep step) {
+    private Optional<StepRequest> stepRequest(Event event, TransformationStep step, String scope) {
         try {
+            Map<String, Object> payload = event.getPayloadAsMap(jsonParsingService);
+
             String stepUrl = evaluationService
                     .evaluateTemplate(
                             (String) step.getAttributes().get(RestTransformationStep.REST_URL_ATTRIBUTE_NAME),
-                            jsonParsingService.toMap(event.getPayload()));
+                            payload);
 
             String stepMethod = evaluationService
                     .evaluateTemplate(
                             (String) step.getAttributes().get(RestTransformationStep.REST_ATTRIBUTE_METHOD),
-                            jsonParsingService.toMap(event.getPayload()));
+                            payload);
 
             if(StringUtils.isEmpty(stepMethod)){
                 stepMethod = HttpMethod.POST.name();
@@ -86,34 +280,120 @@ public class EventTransformationServiceImpl implements EventTransformationServic
                         });
                     });
 
-            String stepResponse = httpGateway.request(
+            String username = (String) step.getAttributes().get(RestTransformationStep.REST_USERNAME_ATTRIBUTE_NAME);
+            String password = (String) step.getAttributes().get(RestTransformationStep.REST_PASSWORD_ATTRIBUTE_NAME);
+            long cacheTtl = new RestTransformationStep(step.getAttributes()).getCacheTtl();
+
+            return Optional.of(new StepRequest(
                     HttpMethod.resolve(stepMethod),
                     headers,
-                    new URI(stepUrl), MediaType.APPLICATION_JSON,
-                    () -> event.getPayload(),
-                    (String) step.getAttributes().get(RestTransformationStep.REST_USERNAME_ATTRIBUTE_NAME),
-                    (String) step.getAttributes().get(RestTransformationStep.REST_PASSWORD_ATTRIBUTE_NAME));
-
-            if (isValidResponse(stepResponse))
-                return Event.builder()
-                        .incoming(event.getIncoming())
-                        .timestamp(event.getTimestamp())
-                        .payload(stepResponse).build();
-            else
-                return null;
+                    new URI(stepUrl),
+                    username,
+                    password,
+                    cacheTtl > 0 ? cacheKey(scope, stepMethod, stepUrl, username, password, headers, event.getPayload()) : null,
+                    cacheTtl));
         } catch (JsonProcessingException e) {
             LOGGER.error("Malformed JSON", e);
-            return null;
+            return Optional.empty();
         } catch (ParseException|EvaluationException e) {
             LOGGER.error("Malformed URL template", e);
-            return null;
-        } catch (IntegrationException e) {
-            LOGGER.error("Failed to request step URL", e);
-            return null;
+            return Optional.empty();
         } catch (URISyntaxException e) {
             LOGGER.error("Failed to encode step URL", e);
+            return Optional.empty();
+        }
+    }
+
+    private Event stepEvent(Event event, String stepResponse) {
+        if (isValidResponse(stepResponse))
+            return Event.builder()
+                    .incoming(event.getIncoming())
+                    .timestamp(event.getTimestamp())
+                    .payload(stepResponse).build();
+        else
+            return null;
+    }
+
+    /**
+     * Identifies the step a cached response belongs to, so a response is only ever reused
+     * by the step of the same tenant and transformation that requested it.
+     */
+    private String stepScope(Tenant tenant, Transformation transformation, int index) {
+        return String.join(" ",
+                String.valueOf(Optional.ofNullable(tenant).map(Tenant::getDomainName).orElse(null)),
+                String.valueOf(transformation.getId()),
+                String.valueOf(transformation.getGuid()),
+                String.valueOf(index));
+    }
+
+    /**
+     * The step response depends on everything that is sent, so besides the step itself the
+     * key holds the evaluated URL, the method and a digest of the credentials, the headers
+     * and the body.
+     */
+    private String cacheKey(String scope, String method, String url, String username, String password,
+                            HttpHeaders headers, String body) {
+        String sent = String.join("\n", String.valueOf(username), String.valueOf(password),
+                String.valueOf(new TreeMap<>(headers)), String.valueOf(body));
+        return String.join(" ", scope, method, url,
+                DigestUtils.md5DigestAsHex(sent.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private String cachedResponse(StepRequest request) {
+        if (request.getCacheKey() == null)
+            return null;
+
+        CachedResponse cached = responseCache.get(request.getCacheKey());
+
+        if (cached == null || cached.getExpiresAt() <= System.currentTimeMillis()) {
+            if (cached != null)
+                responseCache.remove(request.getCacheKey(), cached);
+            cacheMisses.increment();
             return null;
         }
+
+        cacheHits.increment();
+        return cached.getResponse();
+    }
+
+    private void cacheResponse(StepRequest request, String stepResponse) {
+        if (request.getCacheKey() != null && stepResponse != null)
+            responseCache.put(request.getCacheKey(), new CachedResponse(stepResponse,
+                    System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(request.getCacheTtl())));
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        long hits = cacheHits.sum();
+        long misses = cacheMisses.sum();
+
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put("inflight", inflight.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("timedOut", timedOut.sum());
+        metrics.put("cacheSize", responseCache.size());
+        metrics.put("cacheHits", hits);
+        metrics.put("cacheMisses", misses);
+        metrics.put("cacheEvictions", cacheEvictions.sum());
+        metrics.put("cacheHitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        return metrics;
+    }
+
+    @Value
+    private static class StepRequest {
+        private HttpMethod method;
+        private HttpHeaders headers;
+        private URI uri;
+        private String username;
+        private String password;
+        private String cacheKey;
+        private long cacheTtl;
+    }
+
+    @Value
+    private static class CachedResponse {
+        private String response;
+        private long expiresAt;
     }
 
     private boolean isValidResponse(String stepResponse) {
@@ -1,7 +1,6 @@
 package com.konkerlabs.platform.registry.data.services.routes.api;
 
 import com.konkerlabs.platform.registry.business.model.Event;
-import org.springframework.scheduling.annotation.Async;
 
 import java.net.URI;
 import java.util.List;
@@ -9,6 +8,9 @@ import java.util.concurrent.Future;
 
 public interface EventRouteExecutor {
 
-    @Async
+    /**
+     * Runs the active routes of the incoming URI concurrently, returning a future that
+     * completes with the forwarded events once every route has finished.
+     */
     Future<List<Event>> execute(Event incomingEvent, URI uri);
 }
@@ -1,12 +1,19 @@
 package com.konkerlabs.platform.registry.data.services.routes.api;
 
 import com.konkerlabs.platform.registry.business.model.Event;
+import com.konkerlabs.platform.registry.business.model.Tenant;
 import com.konkerlabs.platform.registry.business.model.Transformation;
 
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public interface EventTransformationService {
 
     Optional<Event> transform(Event original, Transformation transformation);
 
+    CompletableFuture<Optional<Event>> transformAsync(Event original, Transformation transformation, Tenant tenant);
+
+    Map<String, Number> getMetrics();
+
 }
@@ -1,15 +1,43 @@
 package com.konkerlabs.platform.registry.integration.controllers;
 
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.konkerlabs.platform.registry.data.services.api.EventJournalService;
+import com.konkerlabs.platform.registry.data.services.api.EventPurgeService;
+import com.konkerlabs.platform.registry.data.services.api.EventRateLimitService;
+import com.konkerlabs.platform.registry.data.services.routes.api.EventTransformationService;
+import com.konkerlabs.platform.registry.integration.endpoints.MqttInboundPartitioner;
+import com.konkerlabs.platform.registry.integration.gateways.MqttOutboundPublisher;
+
 @RestController
 @Scope("request")
 @RequestMapping(value = "/status")
 public class StatusController {
 
+    @Autowired
+    private MqttOutboundPublisher mqttOutboundPublisher;
+
+    @Autowired
+    private MqttInboundPartitioner mqttInboundPartitioner;
+
+    @Autowired
+    private EventRateLimitService eventRateLimitService;
+
+    @Autowired
+    private EventJournalService eventJournalService;
+
+    @Autowired
+    private EventTransformationService eventTransformationService;
+
+    @Autowired
+    private EventPurgeService eventPurgeService;
+
     /**
      * Tell Marathon that the application is healthy
      *
@@ -20,4 +48,64 @@ public class StatusController {
         return "ok";
     }
 
+    /**
+     * Outgoing MQTT queue size, in flight messages, delivery counters and latency
+     *
+     * @return
+     */
+    @GetMapping(path = "/mqtt")
+    public Map<String, Number> mqtt() {
+        return mqttOutboundPublisher.getMetrics();
+    }
+
+    /**
+     * Incoming MQTT messages queued on the partitions, processed, failed and dropped
+     *
+     * @return
+     */
+    @GetMapping(path = "/mqtt/inbound")
+    public Map<String, Number> mqttInbound() {
+        return mqttInboundPartitioner.getMetrics();
+    }
+
+    /**
+     * Incoming events rejected by the device and tenant rate limits
+     *
+     * @return
+     */
+    @GetMapping(path = "/ratelimit")
+    public Map<String, Long> rateLimit() {
+        return eventRateLimitService.getRejectedCounts();
+    }
+
+    /**
+     * Incoming event journal replay lag and counters
+     *
+     * @return
+     */
+    @GetMapping(path = "/journal")
+    public Map<String, Number> journal() {
+        return eventJournalService.getMetrics();
+    }
+
+    /**
+     * Transformations in flight, dropped and timed out, and the step response cache hit rate
+     *
+     * @return
+     */
+    @GetMapping(path = "/transformation")
+    public Map<String, Number> transformation() {
+        return eventTransformationService.getMetrics();
+    }
+
+    /**
+     * Purge runs and deleted events physically removed
+     *
+     * @return
+     */
+    @GetMapping(path = "/purge")
+    public Map<String, Number> purge() {
+        return eventPurgeService.getMetrics();
+    }
+
 }
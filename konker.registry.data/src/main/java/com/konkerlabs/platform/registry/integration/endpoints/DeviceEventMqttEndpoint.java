@@ -1,7 +1,12 @@
 package com.konkerlabs.platform.registry.integration.endpoints;
 
 import com.konkerlabs.platform.registry.business.exceptions.BusinessException;
+import com.konkerlabs.platform.registry.business.model.Event;
+import com.konkerlabs.platform.registry.business.services.api.ServiceResponse;
+import com.konkerlabs.platform.registry.integration.exceptions.IngestUnavailableException;
+import com.konkerlabs.platform.registry.integration.exceptions.RateLimitExceededException;
 import com.konkerlabs.platform.registry.integration.processors.DeviceEventProcessor;
+import com.konkerlabs.platform.utilities.parsers.json.PayloadEncoding;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,11 +16,17 @@ import org.springframework.integration.mqtt.support.MqttHeaders;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessagingException;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
 @MessageEndpoint
 public class DeviceEventMqttEndpoint {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DeviceEventMqttEndpoint.class);
 
+    private static final String BULK_SUFFIX = "bulk";
+
     private DeviceEventProcessor deviceEventProcessor;
 
     @Autowired
@@ -24,7 +35,7 @@ public class DeviceEventMqttEndpoint {
     }
 
     @ServiceActivator(inputChannel = "konkerMqttInputChannel")
-    public void onEvent(Message<String> message) throws MessagingException {
+    public void onEvent(Message<?> message) throws MessagingException {
 
         if (LOGGER.isDebugEnabled())
             LOGGER.debug("A message has arrived -> " + message.toString());
@@ -34,15 +45,49 @@ public class DeviceEventMqttEndpoint {
             throw new MessagingException(message,"Topic cannot be null or empty");
         }
 
+        String suffix = extractFromResource(topic.toString(),3);
+        Optional<PayloadEncoding> binaryEncoding = PayloadEncoding.fromName(suffix)
+                .filter(encoding -> encoding != PayloadEncoding.JSON);
+
         try {
-            deviceEventProcessor.process(extractFromResource(topic.toString(),1),
-                    extractFromResource(topic.toString(),2),
-                    message.getPayload());
+            if (BULK_SUFFIX.equals(suffix)) {
+                List<ServiceResponse<Event>> responses = deviceEventProcessor.processBulk(
+                        extractFromResource(topic.toString(),1),
+                        extractFromResource(topic.toString(),2),
+                        payloadAsString(message));
+                for (int i = 0; i < responses.size(); i++) {
+                    if (!responses.get(i).isOk())
+                        LOGGER.error("Bulk item {} rejected on topic {}: {}", i, topic, responses.get(i).getResponseMessages().keySet());
+                }
+            } else if (binaryEncoding.isPresent()) {
+                deviceEventProcessor.process(extractFromResource(topic.toString(),1),
+                        extractFromResource(topic.toString(),2),
+                        payloadAsBytes(message),
+                        binaryEncoding.get());
+            } else {
+                deviceEventProcessor.process(extractFromResource(topic.toString(),1),
+                        extractFromResource(topic.toString(),2),
+                        payloadAsString(message));
+            }
+        } catch (RateLimitExceededException e) {
+            LOGGER.debug("Rate limit exceeded, message on topic {} has been dropped", topic);
+        } catch (IngestUnavailableException e) {
+            LOGGER.warn("Event ingest is overloaded, message on topic {} has been dropped", topic);
         } catch (BusinessException be) {
-            LOGGER.error(message.getPayload(),be);
+            LOGGER.error(payloadAsString(message),be);
         }
     }
 
+    private String payloadAsString(Message<?> message) {
+        Object payload = message.getPayload();
+        return payload instanceof byte[] ? new String((byte[]) payload, StandardCharsets.UTF_8) : payload.toString();
+    }
+
+    private byte[] payloadAsBytes(Message<?> message) {
+        Object payload = message.getPayload();
+        return payload instanceof byte[] ? (byte[]) payload : payload.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
     private String extractFromResource(String channel, int index) {
         try {
             return channel.split("/")[index];
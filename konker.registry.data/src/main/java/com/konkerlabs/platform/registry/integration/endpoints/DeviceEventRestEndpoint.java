@@ -1,38 +1,58 @@
 package com.konkerlabs.platform.registry.integration.endpoints;
 
 import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.konkerlabs.platform.registry.business.exceptions.BusinessException;
 import com.konkerlabs.platform.registry.business.model.Device;
 import com.konkerlabs.platform.registry.business.model.Event;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventCursor;
 import com.konkerlabs.platform.registry.business.services.api.DeviceEventService;
 import com.konkerlabs.platform.registry.business.services.api.DeviceRegisterService;
 import com.konkerlabs.platform.registry.business.services.api.ServiceResponse;
+import com.konkerlabs.platform.registry.data.config.EventStreamConfig;
 import com.konkerlabs.platform.registry.data.services.JedisTaskService;
+import com.konkerlabs.platform.registry.integration.exceptions.IngestUnavailableException;
+import com.konkerlabs.platform.registry.integration.exceptions.RateLimitExceededException;
 import com.konkerlabs.platform.registry.integration.gateways.HttpGateway;
 import com.konkerlabs.platform.registry.integration.processors.DeviceEventProcessor;
 import com.konkerlabs.platform.registry.integration.serializers.EventJsonView;
 import com.konkerlabs.platform.registry.integration.serializers.EventVO;
 import com.konkerlabs.platform.utilities.parsers.json.JsonParsingService;
+import com.konkerlabs.platform.utilities.parsers.json.PayloadEncoding;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.annotation.PreDestroy;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executor;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 @RestController
@@ -57,13 +77,16 @@ public class DeviceEventRestEndpoint {
         }
     }
 
+    private static final ObjectWriter STREAM_WRITER = new ObjectMapper().writerWithView(EventJsonView.class);
+
     private ApplicationContext applicationContext;
     private DeviceEventProcessor deviceEventProcessor;
     private JsonParsingService jsonParsingService;
     private DeviceEventService deviceEventService;
     private DeviceRegisterService deviceRegisterService;
-    private Executor executor;
     private JedisTaskService jedisTaskService;
+    private EventStreamConfig eventStreamConfig;
+    private ExecutorService streamExecutor;
 
     @Autowired
     public DeviceEventRestEndpoint(ApplicationContext applicationContext,
@@ -71,15 +94,21 @@ public class DeviceEventRestEndpoint {
                                    JsonParsingService jsonParsingService,
                                    DeviceEventService deviceEventService,
                                    DeviceRegisterService deviceRegisterService,
-                                   Executor executor,
-                                   JedisTaskService jedisTaskService) {
+                                   JedisTaskService jedisTaskService,
+                                   EventStreamConfig eventStreamConfig) {
         this.applicationContext = applicationContext;
         this.deviceEventProcessor = deviceEventProcessor;
         this.jsonParsingService = jsonParsingService;
         this.deviceEventService = deviceEventService;
         this.deviceRegisterService = deviceRegisterService;
-        this.executor = executor;
         this.jedisTaskService = jedisTaskService;
+        this.eventStreamConfig = eventStreamConfig;
+        this.streamExecutor = newStreamExecutor();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        streamExecutor.shutdownNow();
     }
 
     @RequestMapping(
@@ -138,16 +167,152 @@ public class DeviceEventRestEndpoint {
             deferredResult.setResult(EventVO.from(response.getResult()));
 
     	} else {
-    		CompletableFuture.supplyAsync(() -> {
-    			String subChannel = Optional.ofNullable(channel).isPresent() ? apiKey+"."+channel : apiKey;
-    			return jedisTaskService.subscribeToChannel(subChannel, startTimestamp, asc, limit);
-    		}, executor)
-    		.whenCompleteAsync((result, throwable) -> deferredResult.setResult(EventVO.from(result)), executor);
+    		String subChannel = Optional.ofNullable(channel).isPresent() ? apiKey+"."+channel : apiKey;
+    		jedisTaskService.subscribeToChannel(subChannel, deferredResult, () -> EventVO.from(
+    				deviceEventService.findOutgoingBy(device.getTenant(), device.getApplication(), device.getGuid(),
+    						channel, startTimestamp, null, asc, limit).getResult()));
     	}
 
     	return deferredResult;
     }
 
+    /**
+     * Streams the outgoing events of the device as Server-Sent Events. The device is
+     * authenticated once per connection, and events are pushed as they are published.
+     * Each event id is the continuation token of the event, so a reconnecting client
+     * resumes right after the last event it received through the Last-Event-ID header,
+     * even among events sharing a timestamp, or after the offset parameter. A numeric
+     * Last-Event-ID is still read as a timestamp.
+     */
+    @RequestMapping(
+            value = { "stream/{apiKey}", "stream/{apiKey}/{channel}" },
+            method = RequestMethod.GET,
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(@PathVariable("apiKey") String apiKey,
+                                   @PathVariable(name="channel", required=false) String channel,
+                                   @AuthenticationPrincipal Device principal,
+                                   @RequestParam(name = "offset", required = false) Optional<Long> offset,
+                                   @RequestHeader(name = "Last-Event-ID", required = false) Optional<String> lastEventId,
+                                   Locale locale,
+                                   HttpServletResponse httpResponse) throws IOException {
+
+        SseEmitter emitter = new SseEmitter(eventStreamConfig.getTimeout());
+
+        Optional<String> invalid = Optional.empty();
+        Device device = deviceRegisterService.findByApiKey(apiKey);
+
+        if (!principal.getApiKey().equals(apiKey))
+            invalid = Optional.of(Messages.INVALID_RESOURCE.getCode());
+        else if (Optional.ofNullable(channel).isPresent() &&
+                (channel.length() > 32 || Pattern.compile("[^A-Za-z0-9_-]").matcher(channel).find()))
+            invalid = Optional.of(Messages.INVALID_CHANNEL_PATTERN.getCode());
+        else if (!Optional.ofNullable(device).isPresent())
+            invalid = Optional.of(Messages.DEVICE_NOT_FOUND.getCode());
+
+        if (invalid.isPresent()) {
+            httpResponse.setStatus(HttpStatus.BAD_REQUEST.value());
+            emitter.send(SseEmitter.event()
+                    .name("error")
+                    .data(applicationContext.getMessage(invalid.get(), null, locale)));
+            emitter.complete();
+            return emitter;
+        }
+
+        Optional<Long> resumeFrom = lastEventId.filter(id -> id.matches("\\d+")).map(Long::valueOf);
+        StreamCursor cursor = new StreamCursor(
+                (resumeFrom.isPresent() ? resumeFrom : offset).map(Instant::ofEpochMilli).orElse(Instant.now()),
+                lastEventId.filter(id -> !resumeFrom.isPresent()).orElse(null));
+
+        Runnable push = () -> schedulePush(emitter, cursor, () -> pushEvents(emitter, device, channel, cursor, locale));
+        String subChannel = Optional.ofNullable(channel).isPresent() ? apiKey+"."+channel : apiKey;
+        Runnable unsubscribe = jedisTaskService.subscribeToStream(subChannel, push);
+
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+
+        push.run();
+
+        return emitter;
+    }
+
+    /**
+     * Pushes run on the stream executor, never on the Redis subscription threads. A stream
+     * has at most one push waiting, since a single push sends everything after its cursor.
+     * When the executor is saturated the stream is completed, and the client resumes from
+     * its last event when it reconnects.
+     */
+    private void schedulePush(SseEmitter emitter, StreamCursor cursor, Runnable push) {
+        if (!cursor.getScheduled().compareAndSet(false, true))
+            return;
+
+        try {
+            streamExecutor.execute(() -> {
+                cursor.getScheduled().set(false);
+                push.run();
+            });
+        } catch (RejectedExecutionException e) {
+            cursor.getScheduled().set(false);
+            emitter.complete();
+        }
+    }
+
+    /**
+     * Sends every event after the cursor and moves the cursor past them. Notifications
+     * may arrive concurrently, so pushes to the same stream are serialized.
+     */
+    private void pushEvents(SseEmitter emitter, Device device, String channel, StreamCursor cursor, Locale locale) {
+        synchronized (cursor) {
+            try {
+                int pushed;
+                do {
+                    pushed = 0;
+                    ServiceResponse<EventCursor> response = deviceEventService.streamOutgoingBy(device.getTenant(),
+                            device.getApplication(), device.getGuid(), channel,
+                            cursor.getContinuationToken() == null ? cursor.getStart() : null, null,
+                            true, eventStreamConfig.getBatchSize(), cursor.getContinuationToken());
+
+                    if (!response.isOk()) {
+                        String message = response.getResponseMessages().keySet().stream().findFirst()
+                                .orElse(Messages.INVALID_REQUEST_BODY.getCode());
+                        emitter.send(SseEmitter.event()
+                                .name("error")
+                                .data(applicationContext.getMessage(message, null, locale)));
+                        emitter.complete();
+                        return;
+                    }
+
+                    try (EventCursor events = response.getResult()) {
+                        while (events.hasNext()) {
+                            Event event = events.next();
+                            String id = events.getContinuationToken();
+
+                            Optional<EventVO> eventVO = Optional.ofNullable(EventVO.from(Collections.singletonList(event)).get(0));
+                            if (eventVO.isPresent())
+                                emitter.send(SseEmitter.event()
+                                        .id(id)
+                                        .data(STREAM_WRITER.writeValueAsString(eventVO.get()), MediaType.APPLICATION_JSON));
+                            cursor.setContinuationToken(id);
+                            pushed++;
+                        }
+                    }
+                } while (pushed == eventStreamConfig.getBatchSize());
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    private ExecutorService newStreamExecutor() {
+        AtomicInteger threads = new AtomicInteger();
+        return new ThreadPoolExecutor(eventStreamConfig.getPushThreads(), eventStreamConfig.getPushThreads(), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(eventStreamConfig.getPushQueueSize()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "event-stream-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
     private EventResponse buildResponse(String message, Locale locale) {
         return EventResponse.builder()
                 .code(message)
@@ -173,6 +338,14 @@ public class DeviceEventRestEndpoint {
 
         try {
             deviceEventProcessor.process(apiKey,channel,body);
+        } catch (RateLimitExceededException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(e.getRetryAfter()))
+                    .body(buildResponse(e.getMessage(),locale));
+        } catch (IngestUnavailableException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(e.getRetryAfter()))
+                    .body(buildResponse(e.getMessage(),locale));
         } catch (BusinessException e) {
             return new ResponseEntity<EventResponse>(buildResponse(e.getMessage(),locale),HttpStatus.BAD_REQUEST);
         }
@@ -183,10 +356,136 @@ public class DeviceEventRestEndpoint {
         		HttpStatus.OK);
     }
 
+    /**
+     * Same as {@link #onEvent} for payloads encoded as CBOR or MessagePack, chosen by
+     * the request content type.
+     */
+    @RequestMapping(value = "pub/{apiKey}/{channel}",
+            method = RequestMethod.POST,
+            consumes = { PayloadEncoding.CBOR_VALUE, PayloadEncoding.MSGPACK_VALUE, PayloadEncoding.X_MSGPACK_VALUE })
+    public ResponseEntity<EventResponse> onBinaryEvent(HttpServletRequest servletRequest,
+                                                       @PathVariable("apiKey") String apiKey,
+                                                       @PathVariable("channel") String channel,
+                                                       @AuthenticationPrincipal Device principal,
+                                                       @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                       @RequestBody byte[] body,
+                                                       Locale locale) {
+        if (!principal.getApiKey().equals(apiKey))
+            return new ResponseEntity<EventResponse>(buildResponse(Messages.INVALID_RESOURCE.getCode(),locale), HttpStatus.NOT_FOUND);
+
+        if (servletRequest.getHeader(HttpGateway.KONKER_VERSION_HEADER) != null)
+            return new ResponseEntity<EventResponse>(buildResponse(Messages.INVALID_REQUEST_ORIGIN.getCode(), locale), HttpStatus.FORBIDDEN);
+
+        Optional<PayloadEncoding> encoding = PayloadEncoding.fromContentType(contentType);
+        if (!encoding.isPresent())
+            return new ResponseEntity<EventResponse>(buildResponse(Messages.INVALID_REQUEST_BODY.getCode(),locale), HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+
+        try {
+            deviceEventProcessor.process(apiKey, channel, body, encoding.get());
+        } catch (RateLimitExceededException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(e.getRetryAfter()))
+                    .body(buildResponse(e.getMessage(),locale));
+        } catch (IngestUnavailableException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(e.getRetryAfter()))
+                    .body(buildResponse(e.getMessage(),locale));
+        } catch (BusinessException e) {
+            return new ResponseEntity<EventResponse>(buildResponse(e.getMessage(),locale),HttpStatus.BAD_REQUEST);
+        }
+
+        return new ResponseEntity<EventResponse>(
+                EventResponse.builder().code(String.valueOf(HttpStatus.OK.value()))
+                .message(HttpStatus.OK.name()).build(),
+                HttpStatus.OK);
+    }
+
+    @RequestMapping(value = "pub/{apiKey}/{channel}/bulk",
+            method = RequestMethod.POST)
+    public ResponseEntity<BulkEventResponse> onBulkEvent(HttpServletRequest servletRequest,
+                                                         @PathVariable("apiKey") String apiKey,
+                                                         @PathVariable("channel") String channel,
+                                                         @AuthenticationPrincipal Device principal,
+                                                         @RequestBody String body,
+                                                         Locale locale) {
+        if (!principal.getApiKey().equals(apiKey))
+            return new ResponseEntity<BulkEventResponse>(buildBulkResponse(Messages.INVALID_RESOURCE.getCode(), locale), HttpStatus.NOT_FOUND);
+
+        if (servletRequest.getHeader(HttpGateway.KONKER_VERSION_HEADER) != null)
+            return new ResponseEntity<BulkEventResponse>(buildBulkResponse(Messages.INVALID_REQUEST_ORIGIN.getCode(), locale), HttpStatus.FORBIDDEN);
+
+        List<ServiceResponse<Event>> responses;
+        try {
+            responses = deviceEventProcessor.processBulk(apiKey, channel, body);
+        } catch (RateLimitExceededException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(e.getRetryAfter()))
+                    .body(buildBulkResponse(e.getMessage(), locale));
+        } catch (IngestUnavailableException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(e.getRetryAfter()))
+                    .body(buildBulkResponse(e.getMessage(), locale));
+        } catch (BusinessException e) {
+            return new ResponseEntity<BulkEventResponse>(buildBulkResponse(e.getMessage(), locale), HttpStatus.BAD_REQUEST);
+        }
+
+        List<EventResponse> items = new ArrayList<>(responses.size());
+        boolean allOk = true;
+        for (ServiceResponse<Event> response : responses) {
+            if (response.isOk()) {
+                items.add(EventResponse.builder().code(String.valueOf(HttpStatus.OK.value()))
+                        .message(HttpStatus.OK.name()).build());
+            } else {
+                allOk = false;
+                String code = response.getResponseMessages().keySet().stream().findFirst()
+                        .orElse(Messages.INVALID_REQUEST_BODY.getCode());
+                items.add(buildResponse(code, locale));
+            }
+        }
+
+        HttpStatus status = allOk ? HttpStatus.OK : HttpStatus.MULTI_STATUS;
+        return new ResponseEntity<BulkEventResponse>(
+                BulkEventResponse.builder().code(String.valueOf(status.value()))
+                .message(status.name())
+                .items(items).build(),
+                status);
+    }
+
+    private String retryAfterSeconds(long retryAfter) {
+        return String.valueOf(Math.max(1, TimeUnit.MILLISECONDS.toSeconds(retryAfter + 999)));
+    }
+
+    private BulkEventResponse buildBulkResponse(String message, Locale locale) {
+        return BulkEventResponse.builder()
+                .code(message)
+                .message(applicationContext.getMessage(message, null, locale)).build();
+    }
+
+    /**
+     * Position of a stream: the continuation token of the last event sent, or the
+     * timestamp the stream starts after while no event was sent.
+     */
+    @Getter
+    @AllArgsConstructor
+    private static class StreamCursor {
+        private final Instant start;
+        @Setter
+        private volatile String continuationToken;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+    }
+
     @Data
     @Builder
     static class EventResponse {
         private String code;
         private String message;
     }
+
+    @Data
+    @Builder
+    static class BulkEventResponse {
+        private String code;
+        private String message;
+        private List<EventResponse> items;
+    }
 }
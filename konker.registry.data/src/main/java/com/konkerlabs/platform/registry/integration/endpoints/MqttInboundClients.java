@@ -0,0 +1,69 @@
+package com.konkerlabs.platform.registry.integration.endpoints;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.integration.mqtt.inbound.AbstractMqttMessageDrivenChannelAdapter;
+
+import java.util.List;
+
+/**
+ * Runs a group of inbound MQTT clients as a single lifecycle bean, so the number of
+ * clients can be chosen by configuration instead of by the number of declared beans.
+ */
+public class MqttInboundClients implements SmartLifecycle, BeanFactoryAware, InitializingBean {
+
+    private List<? extends AbstractMqttMessageDrivenChannelAdapter> adapters;
+
+    private volatile boolean running;
+
+    public MqttInboundClients(List<? extends AbstractMqttMessageDrivenChannelAdapter> adapters) {
+        this.adapters = adapters;
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        adapters.forEach(adapter -> adapter.setBeanFactory(beanFactory));
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        adapters.forEach(AbstractMqttMessageDrivenChannelAdapter::afterPropertiesSet);
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return true;
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    @Override
+    public void start() {
+        adapters.forEach(AbstractMqttMessageDrivenChannelAdapter::start);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        adapters.forEach(AbstractMqttMessageDrivenChannelAdapter::stop);
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE / 2;
+    }
+
+}
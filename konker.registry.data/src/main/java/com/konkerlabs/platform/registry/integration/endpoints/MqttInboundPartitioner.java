@@ -0,0 +1,120 @@
+package com.konkerlabs.platform.registry.integration.endpoints;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.integration.mqtt.support.MqttHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Dispatches inbound MQTT messages to a fixed set of single threaded partitions chosen
+ * by the device api key in the topic, so the messages of each device are processed in
+ * the order they arrived while different devices are processed in parallel.
+ * <p>
+ * A full partition blocks the MQTT client thread for at most the block timeout, which
+ * slows down the reads from the broker while the partition catches up. Messages still
+ * waiting after the timeout are dropped and counted, so the client thread is never held
+ * long enough to miss its keepalive.
+ */
+public class MqttInboundPartitioner implements MessageHandler, DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MqttInboundPartitioner.class);
+
+    private MessageChannel outputChannel;
+
+    private long blockTimeout;
+
+    private List<ThreadPoolExecutor> partitions;
+
+    private LongAdder processedCount = new LongAdder();
+    private LongAdder failedCount = new LongAdder();
+    private LongAdder droppedCount = new LongAdder();
+
+    public MqttInboundPartitioner(MessageChannel outputChannel, int partitions, int queueSize, long blockTimeout) {
+        this.outputChannel = outputChannel;
+        this.blockTimeout = blockTimeout;
+        this.partitions = IntStream.range(0, partitions)
+                .mapToObj(partition -> newPartition(partition, queueSize))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void handleMessage(Message<?> message) throws MessagingException {
+        try {
+            partitionFor(message).execute(() -> {
+                try {
+                    outputChannel.send(message);
+                    processedCount.increment();
+                } catch (RuntimeException e) {
+                    failedCount.increment();
+                    LOGGER.error("Failed to process inbound MQTT message", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            droppedCount.increment();
+            LOGGER.warn("Dropped inbound MQTT message on topic {}: {}",
+                    message.getHeaders().get(MqttHeaders.TOPIC), e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        partitions.forEach(ExecutorService::shutdown);
+    }
+
+    public Map<String, Number> getMetrics() {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put("queued", partitions.stream().mapToInt(partition -> partition.getQueue().size()).sum());
+        metrics.put("processed", processedCount.sum());
+        metrics.put("failed", failedCount.sum());
+        metrics.put("dropped", droppedCount.sum());
+        return metrics;
+    }
+
+    private ThreadPoolExecutor partitionFor(Message<?> message) {
+        String topic = Optional.ofNullable(message.getHeaders().get(MqttHeaders.TOPIC))
+                .map(Object::toString)
+                .orElse("");
+        String[] resources = topic.split("/");
+        String apiKey = resources.length > 1 ? resources[1] : topic;
+
+        return partitions.get(Math.floorMod(apiKey.hashCode(), partitions.size()));
+    }
+
+    private ThreadPoolExecutor newPartition(int partition, int queueSize) {
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "mqtt-inbound-" + partition);
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (task, executor) -> {
+                    if (executor.isShutdown())
+                        throw new RejectedExecutionException("MQTT inbound partition is shut down");
+                    try {
+                        if (!executor.getQueue().offer(task, blockTimeout, TimeUnit.MILLISECONDS))
+                            throw new RejectedExecutionException("MQTT inbound partition " + partition + " is full");
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException(e);
+                    }
+                });
+    }
+}
@@ -0,0 +1,22 @@
+package com.konkerlabs.platform.registry.integration.exceptions;
+
+import com.konkerlabs.platform.registry.business.exceptions.BusinessException;
+
+public class IngestUnavailableException extends BusinessException {
+    private static final long serialVersionUID = -2284791457823090128L;
+
+    private long retryAfter;
+
+    public IngestUnavailableException(String message, long retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return milliseconds after which the ingest is expected to accept events again
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+
+}
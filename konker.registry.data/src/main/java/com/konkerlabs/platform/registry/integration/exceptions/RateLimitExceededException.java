@@ -0,0 +1,22 @@
+package com.konkerlabs.platform.registry.integration.exceptions;
+
+import com.konkerlabs.platform.registry.business.exceptions.BusinessException;
+
+public class RateLimitExceededException extends BusinessException {
+    private static final long serialVersionUID = 4311864190247311513L;
+
+    private long retryAfter;
+
+    public RateLimitExceededException(String message, long retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return milliseconds until the rejected events would be admitted
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+
+}
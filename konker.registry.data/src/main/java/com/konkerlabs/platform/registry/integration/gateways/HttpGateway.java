@@ -9,6 +9,7 @@ import org.springframework.http.MediaType;
 
 import java.net.URI;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 
 
@@ -24,4 +25,30 @@ public interface HttpGateway {
                        String user,
                        String password) throws IntegrationException;
 
+    /**
+     * Same as {@link #request(HttpMethod, HttpHeaders, URI, MediaType, Supplier, String, String)}
+     * with connect and read timeouts of its own. A null timeout uses the default one.
+     */
+    <T> String request(HttpMethod method,
+                       HttpHeaders headers,
+                       URI uri,
+                       MediaType mediaType,
+                       Supplier<T> body,
+                       String user,
+                       String password,
+                       Integer timeout) throws IntegrationException;
+
+    /**
+     * Sends the request on a bounded pool of threads. The returned future completes
+     * exceptionally with an {@link IntegrationException} if the request fails.
+     */
+    <T> CompletableFuture<String> requestAsync(HttpMethod method,
+                                               HttpHeaders headers,
+                                               URI uri,
+                                               MediaType mediaType,
+                                               Supplier<T> body,
+                                               String user,
+                                               String password,
+                                               Integer timeout);
+
 }
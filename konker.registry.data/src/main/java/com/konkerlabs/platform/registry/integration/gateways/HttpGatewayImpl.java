@@ -3,9 +3,20 @@ package com.konkerlabs.platform.registry.integration.gateways;
 import static java.text.MessageFormat.format;
 
 import java.net.URI;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,7 +25,8 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Base64Utils;
 import org.springframework.web.client.RestClientException;
@@ -23,6 +35,11 @@ import org.springframework.web.client.RestTemplate;
 import com.konkerlabs.platform.registry.data.config.IntegrationConfig;
 import com.konkerlabs.platform.registry.integration.exceptions.IntegrationException;
 
+/**
+ * Requests share the pooled HTTP client of the injected {@link RestTemplate}. Requests
+ * with a timeout other than the default one use a template of their own that is backed
+ * by that same client, so connections are reused whatever the timeout is.
+ */
 @Component
 public class HttpGatewayImpl implements HttpGateway {
 
@@ -34,7 +51,22 @@ public class HttpGatewayImpl implements HttpGateway {
     @Autowired
     private RestTemplate restTemplate;
 
-    private HttpHeaders defaultHeaders;
+    private Map<Integer, RestTemplate> timeoutTemplates = new ConcurrentHashMap<>();
+
+    private ExecutorService asyncExecutor;
+
+    @PostConstruct
+    public void init() {
+        int threads = integrationConfig.getHttpAsyncThreads();
+        asyncExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 100),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Optional.ofNullable(asyncExecutor).ifPresent(ExecutorService::shutdown);
+    }
 
     @Override
     public <T> String request(
@@ -45,6 +77,19 @@ public class HttpGatewayImpl implements HttpGateway {
             Supplier<T> body,
             String username,
             String password) throws IntegrationException {
+        return request(method, headers, uri, mediaType, body, username, password, null);
+    }
+
+    @Override
+    public <T> String request(
+            HttpMethod method,
+            HttpHeaders headers,
+            URI uri,
+            MediaType mediaType,
+            Supplier<T> body,
+            String username,
+            String password,
+            Integer timeout) throws IntegrationException {
 
         Optional.ofNullable(method)
                 .orElseThrow(() -> new IllegalStateException("HTTP method must be provided"));
@@ -55,35 +100,31 @@ public class HttpGatewayImpl implements HttpGateway {
         Optional.ofNullable(restTemplate)
                 .orElseThrow(() -> new IllegalStateException("RestTemplate must be provided"));
 
-        Optional.ofNullable(headers).orElse(new HttpHeaders());
-
         if ((username != null && password == null) || username == null && password != null) {
             throw new IllegalStateException("Username and Password must be both provided together");
         }
 
         try {
 
-            Optional.ofNullable(defaultHeaders).ifPresent(item -> {
-                item.entrySet().forEach(header->{
-                    headers.put(header.getKey(), header.getValue());
-                });
-            });
+            HttpHeaders requestHeaders = new HttpHeaders();
+            Optional.ofNullable(headers).ifPresent(requestHeaders::putAll);
+            Optional.ofNullable(mediaType).ifPresent(requestHeaders::setContentType);
+            requestHeaders.add(KONKER_VERSION_HEADER, "0.1");
 
             if ((username != null && !username.trim().isEmpty()) || (password != null && !password.trim().isEmpty())) {
                 String encodedCredentials = Base64Utils
                         .encodeToString(format("{0}:{1}", username, password).getBytes());
 
-                headers.add("Authorization", format("Basic {0}", encodedCredentials));
+                requestHeaders.add("Authorization", format("Basic {0}", encodedCredentials));
             }
 
             HttpEntity<String> entity = new HttpEntity(
                     Optional.ofNullable(body).orElse(() -> null).get(),
-                    headers
+                    requestHeaders
             );
 
             LOGGER.debug("Requesting {} from {}.", method, uri);
-            setUp(null, mediaType);
-            ResponseEntity<String> exchange = restTemplate.exchange(uri, method, entity, String.class);
+            ResponseEntity<String> exchange = restTemplateFor(timeout).exchange(uri, method, entity, String.class);
 
             if (exchange.getStatusCode().is2xxSuccessful()) {
                 return exchange.getBody();
@@ -100,20 +141,43 @@ public class HttpGatewayImpl implements HttpGateway {
         }
     }
 
-    private void setUp(Optional<Integer> timeout, MediaType mediaType) {
+    @Override
+    public <T> CompletableFuture<String> requestAsync(
+            HttpMethod method,
+            HttpHeaders headers,
+            URI uri,
+            MediaType mediaType,
+            Supplier<T> body,
+            String username,
+            String password,
+            Integer timeout) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return request(method, headers, uri, mediaType, body, username, password, timeout);
+            } catch (IntegrationException e) {
+                throw new CompletionException(e);
+            }
+        }, asyncExecutor);
+    }
+
+    private RestTemplate restTemplateFor(Integer timeout) {
+        if (!Optional.ofNullable(timeout).filter(value -> !value.equals(integrationConfig.getTimeoutDefault())).isPresent())
+            return restTemplate;
 
-        defaultHeaders = new HttpHeaders();
-        defaultHeaders.setContentType(mediaType);
-        defaultHeaders.add(KONKER_VERSION_HEADER, "0.1");
+        ClientHttpRequestFactory requestFactory = restTemplate.getRequestFactory();
+        if (!(requestFactory instanceof HttpComponentsClientHttpRequestFactory))
+            return restTemplate;
 
-        Integer clientTimeout =
-                Optional.ofNullable(timeout).isPresent() ?
-                        timeout.get() :
-                        integrationConfig.getTimeoutDefault();
+        return timeoutTemplates.computeIfAbsent(timeout, value -> {
+            HttpComponentsClientHttpRequestFactory timeoutFactory = new HttpComponentsClientHttpRequestFactory(
+                    ((HttpComponentsClientHttpRequestFactory) requestFactory).getHttpClient());
+            timeoutFactory.setConnectTimeout(value);
+            timeoutFactory.setReadTimeout(value);
 
-        Optional.ofNullable(restTemplate.getRequestFactory()).ifPresent(item -> {
-            ((SimpleClientHttpRequestFactory) item).setReadTimeout(clientTimeout);
-            ((SimpleClientHttpRequestFactory) item).setConnectTimeout(clientTimeout);
+            RestTemplate template = new RestTemplate(timeoutFactory);
+            template.setMessageConverters(restTemplate.getMessageConverters());
+            template.setErrorHandler(restTemplate.getErrorHandler());
+            return template;
         });
     }
 }
@@ -7,5 +7,5 @@ import org.springframework.messaging.handler.annotation.Header;
 @MessagingGateway(defaultRequestChannel = "konkerMqttOutputChannel",
                   defaultReplyTimeout = "1")
 public interface MqttMessageGateway {
-    String send(String message, @Header(MqttHeaders.TOPIC) String topic);
+    void send(String message, @Header(MqttHeaders.TOPIC) String topic);
 }
@@ -0,0 +1,365 @@
+package com.konkerlabs.platform.registry.integration.gateways;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.integration.mqtt.core.DefaultMqttPahoClientFactory;
+import org.springframework.integration.mqtt.support.MqttHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes outgoing MQTT messages through a pool of client connections. Messages are
+ * queued on a bounded queue and taken by one worker per connection, each of them keeping at
+ * most a fixed number of unacknowledged publications in flight, so a burst of outgoing
+ * events never holds the threads that produced them for longer than the configured wait.
+ * While the broker is unreachable the workers hold their message and retry the connection,
+ * so messages wait on the queue instead of failing one by one. Stopping drains the queue
+ * for up to the shutdown timeout and counts whatever is left as dropped.
+ */
+public class MqttOutboundPublisher implements MessageHandler, SmartLifecycle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MqttOutboundPublisher.class);
+
+    public enum OverflowPolicy {
+        BLOCK, DROP
+    }
+
+    private DefaultMqttPahoClientFactory clientFactory;
+    private String serverUri;
+    private int clients;
+    private int maxInflight;
+    private int qos;
+    private OverflowPolicy overflowPolicy;
+    private long blockTimeout;
+    private long reconnectInterval;
+    private long shutdownTimeout;
+
+    private BlockingQueue<PendingPublish> queue;
+    private List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+    private volatile boolean stopped;
+
+    private LongAdder inflight = new LongAdder();
+    private LongAdder published = new LongAdder();
+    private LongAdder failed = new LongAdder();
+    private LongAdder dropped = new LongAdder();
+    private LongAdder totalLatency = new LongAdder();
+    private AtomicLong maxLatency = new AtomicLong();
+
+    public MqttOutboundPublisher(DefaultMqttPahoClientFactory clientFactory,
+                                 String serverUri,
+                                 int clients,
+                                 int queueSize,
+                                 int maxInflight,
+                                 int qos,
+                                 OverflowPolicy overflowPolicy,
+                                 long blockTimeout,
+                                 long reconnectInterval,
+                                 long shutdownTimeout) {
+        this.clientFactory = clientFactory;
+        this.serverUri = serverUri;
+        this.clients = Math.max(1, clients);
+        this.maxInflight = Math.max(1, maxInflight);
+        this.qos = qos;
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeout = blockTimeout;
+        this.reconnectInterval = reconnectInterval;
+        this.shutdownTimeout = shutdownTimeout;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+    }
+
+    @Override
+    public void handleMessage(Message<?> message) throws MessagingException {
+        String topic = Optional.ofNullable(message.getHeaders().get(MqttHeaders.TOPIC))
+                .map(Object::toString)
+                .orElseThrow(() -> new MessagingException(message, "MQTT topic header is required"));
+        Object payload = message.getPayload();
+        byte[] bytes = payload instanceof byte[] ?
+                (byte[]) payload : payload.toString().getBytes(StandardCharsets.UTF_8);
+
+        if (stopped) {
+            dropped.increment();
+            LOGGER.warn("Outgoing MQTT publisher is stopped, message to topic {} has been dropped", topic);
+            return;
+        }
+
+        PendingPublish pending = new PendingPublish(topic, bytes);
+
+        boolean queued;
+        try {
+            queued = overflowPolicy == OverflowPolicy.BLOCK ?
+                    queue.offer(pending, blockTimeout, TimeUnit.MILLISECONDS) : queue.offer(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+
+        if (!queued) {
+            dropped.increment();
+            LOGGER.warn("Outgoing MQTT queue is full, message to topic {} has been dropped", topic);
+        }
+    }
+
+    public Map<String, Number> getMetrics() {
+        long delivered = published.sum();
+
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put("queued", queue.size());
+        metrics.put("inflight", inflight.sum());
+        metrics.put("published", delivered);
+        metrics.put("failed", failed.sum());
+        metrics.put("dropped", dropped.sum());
+        metrics.put("averageLatencyMillis", delivered == 0 ? 0 :
+                TimeUnit.NANOSECONDS.toMillis(totalLatency.sum() / delivered));
+        metrics.put("maxLatencyMillis", TimeUnit.NANOSECONDS.toMillis(maxLatency.get()));
+        return metrics;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running)
+            return;
+
+        running = true;
+        stopped = false;
+        for (int i = 0; i < clients; i++) {
+            Thread worker = new Thread(new Worker(), "mqtt-outbound-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    @Override
+    public void stop() {
+        List<Thread> stopping;
+        synchronized (this) {
+            if (!running)
+                return;
+
+            running = false;
+            stopped = true;
+            stopping = new ArrayList<>(workers);
+            workers.clear();
+        }
+
+        long droppedBefore = dropped.sum();
+        long deadline = System.currentTimeMillis() + shutdownTimeout;
+        join(stopping, deadline);
+
+        stopping.forEach(Thread::interrupt);
+        join(stopping, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(1));
+
+        List<PendingPublish> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        dropped.add(remaining.size());
+
+        long discarded = dropped.sum() - droppedBefore;
+        if (discarded > 0)
+            LOGGER.warn("Outgoing MQTT publisher stopped, {} queued messages have been dropped", discarded);
+    }
+
+    private void join(List<Thread> threads, long deadline) {
+        try {
+            for (Thread thread : threads)
+                thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return true;
+    }
+
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE / 2;
+    }
+
+    private void delivered(PendingPublish pending) {
+        long latency = System.nanoTime() - pending.queuedAt;
+
+        published.increment();
+        totalLatency.add(latency);
+        maxLatency.accumulateAndGet(latency, Math::max);
+    }
+
+    private void failed(PendingPublish pending, Throwable cause) {
+        failed.increment();
+        LOGGER.error("Failed to publish MQTT message to topic {}", pending.topic, cause);
+    }
+
+    private class Worker implements Runnable {
+
+        private IMqttAsyncClient client;
+        private Semaphore window = new Semaphore(maxInflight);
+        private boolean disconnected;
+
+        /**
+         * Keeps taking messages after the publisher is stopped until the queue is empty.
+         */
+        @Override
+        public void run() {
+            PendingPublish pending = null;
+            try {
+                while (running || !queue.isEmpty()) {
+                    pending = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (pending != null)
+                        publish(pending);
+                    pending = null;
+                }
+            } catch (InterruptedException e) {
+                if (pending != null)
+                    dropped.increment();
+                Thread.currentThread().interrupt();
+            } finally {
+                disconnect();
+            }
+        }
+
+        private void publish(PendingPublish pending) throws InterruptedException {
+            window.acquire();
+            inflight.increment();
+
+            try {
+                while (true) {
+                    IMqttAsyncClient connected;
+                    try {
+                        connected = connectedClient();
+                    } catch (MqttException e) {
+                        awaitReconnect(e);
+                        continue;
+                    }
+
+                    try {
+                        connected.publish(pending.topic, pending.payload, qos, false, null,
+                                new IMqttActionListener() {
+                                    @Override
+                                    public void onSuccess(IMqttToken token) {
+                                        release();
+                                        delivered(pending);
+                                    }
+
+                                    @Override
+                                    public void onFailure(IMqttToken token, Throwable cause) {
+                                        release();
+                                        failed(pending, cause);
+                                    }
+                                });
+                        return;
+                    } catch (MqttException e) {
+                        if (!isConnectionLost(e)) {
+                            release();
+                            failed(pending, e);
+                            return;
+                        }
+                        awaitReconnect(e);
+                    } catch (RuntimeException e) {
+                        release();
+                        failed(pending, e);
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                release();
+                throw e;
+            }
+        }
+
+        private boolean isConnectionLost(MqttException e) {
+            return e.getReasonCode() == MqttException.REASON_CODE_CLIENT_NOT_CONNECTED
+                    || e.getReasonCode() == MqttException.REASON_CODE_CONNECTION_LOST;
+        }
+
+        private void awaitReconnect(MqttException cause) throws InterruptedException {
+            if (!disconnected) {
+                disconnected = true;
+                LOGGER.warn("MQTT broker {} is unavailable, holding outgoing messages until it reconnects",
+                        serverUri, cause);
+            }
+            Thread.sleep(reconnectInterval);
+        }
+
+        private void release() {
+            inflight.decrement();
+            window.release();
+        }
+
+        private IMqttAsyncClient connectedClient() throws MqttException {
+            if (client == null)
+                client = clientFactory.getAsyncClientInstance(serverUri, UUID.randomUUID().toString());
+
+            if (!client.isConnected()) {
+                MqttConnectOptions options = clientFactory.getConnectionOptions();
+                options.setMaxInflight(maxInflight);
+                client.connect(options).waitForCompletion(5000);
+            }
+
+            if (disconnected) {
+                disconnected = false;
+                LOGGER.info("MQTT broker {} reconnected, {} outgoing messages queued", serverUri, queue.size());
+            }
+
+            return client;
+        }
+
+        private void disconnect() {
+            Optional.ofNullable(client).ifPresent(mqttClient -> {
+                try {
+                    if (mqttClient.isConnected())
+                        mqttClient.disconnect().waitForCompletion(5000);
+                    mqttClient.close();
+                } catch (MqttException e) {
+                    LOGGER.warn("Failed to close MQTT client", e);
+                }
+            });
+        }
+    }
+
+    private static class PendingPublish {
+
+        private String topic;
+        private byte[] payload;
+        private long queuedAt = System.nanoTime();
+
+        PendingPublish(String topic, byte[] payload) {
+            this.topic = topic;
+            this.payload = payload;
+        }
+    }
+
+}
@@ -1,6 +1,11 @@
 package com.konkerlabs.platform.registry.integration.processors;
 
 import java.text.MessageFormat;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.slf4j.Logger;
@@ -10,13 +15,22 @@ import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.konkerlabs.platform.registry.business.exceptions.BusinessException;
 import com.konkerlabs.platform.registry.business.model.Device;
 import com.konkerlabs.platform.registry.business.model.Event;
 import com.konkerlabs.platform.registry.business.services.api.DeviceRegisterService;
 import com.konkerlabs.platform.registry.business.services.api.ServiceResponse;
+import com.konkerlabs.platform.registry.business.services.api.ServiceResponseBuilder;
 import com.konkerlabs.platform.registry.data.services.api.DeviceLogEventService;
+import com.konkerlabs.platform.registry.data.services.api.EventIngestService;
+import com.konkerlabs.platform.registry.data.services.api.EventJournalService;
+import com.konkerlabs.platform.registry.data.services.api.EventRateLimitService;
 import com.konkerlabs.platform.registry.data.services.routes.api.EventRouteExecutor;
+import com.konkerlabs.platform.registry.integration.exceptions.IngestUnavailableException;
+import com.konkerlabs.platform.registry.integration.exceptions.RateLimitExceededException;
+import com.konkerlabs.platform.utilities.parsers.json.JsonParsingService;
+import com.konkerlabs.platform.utilities.parsers.json.PayloadEncoding;
 
 @Component
 @Scope(BeanDefinition.SCOPE_PROTOTYPE)
@@ -26,7 +40,9 @@ public class DeviceEventProcessor {
         APIKEY_MISSING("integration.event_processor.api_key.missing"),
         CHANNEL_MISSING("integration.event_processor.channel.missing"),
         DEVICE_NOT_FOUND("integration.event_processor.channel.not_found"),
-        INVALID_PAYLOAD("integration.event_processor.payload.invalid");
+        INVALID_PAYLOAD("integration.event_processor.payload.invalid"),
+        INVALID_BULK_SIZE("integration.event_processor.bulk.size.invalid"),
+        INVALID_TIMESTAMP("integration.event_processor.timestamp.invalid");
 
         private String code;
 
@@ -39,6 +55,12 @@ public class DeviceEventProcessor {
         }
     }
 
+    public static final String BULK_TIMESTAMP_FIELD = "_ts";
+
+    public static final int BULK_MAX_ITEMS = 1000;
+
+    public static final long INGEST_RETRY_AFTER = 1000L;
+
     private static final String EVENT_DROPPED = "Incoming event has been dropped: [Device: {0}] - [Payload: {1}]";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DeviceEventProcessor.class);
@@ -46,28 +68,138 @@ public class DeviceEventProcessor {
     private EventRouteExecutor eventRouteExecutor;
     private DeviceRegisterService deviceRegisterService;
     private DeviceLogEventService deviceLogEventService;
+    private JsonParsingService jsonParsingService;
+    private EventRateLimitService eventRateLimitService;
 
     @Autowired
     public DeviceEventProcessor(DeviceLogEventService deviceLogEventService,
                                 EventRouteExecutor eventRouteExecutor,
-                                DeviceRegisterService deviceRegisterService) {
+                                DeviceRegisterService deviceRegisterService,
+                                JsonParsingService jsonParsingService,
+                                EventRateLimitService eventRateLimitService) {
         this.deviceLogEventService = deviceLogEventService;
         this.eventRouteExecutor = eventRouteExecutor;
         this.deviceRegisterService = deviceRegisterService;
+        this.jsonParsingService = jsonParsingService;
+        this.eventRateLimitService = eventRateLimitService;
     }
 
     public void process(String apiKey, String channel, String payload) throws BusinessException {
+        process(apiKey, channel, payload, null);
+    }
+
+    public void process(String apiKey, String channel, String payload, Instant timestamp) throws BusinessException {
+        Device device = findDevice(apiKey, channel);
+        checkRateLimit(device, 1);
+        doProcess(device, channel, payload, timestamp);
+    }
+
+    /**
+     * Processes a payload sent in a binary encoding. It is decoded straight into the
+     * parsed views of the event, which is then stored with its payload as JSON text.
+     */
+    public void process(String apiKey, String channel, byte[] payload, PayloadEncoding encoding) throws BusinessException {
+        Device device = findDevice(apiKey, channel);
+        checkRateLimit(device, 1);
+
+        Event event = buildEvent(device, channel, null, null);
+        try {
+            event.setPayload(jsonParsingService.toJsonNode(payload, encoding), jsonParsingService);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            throw new BusinessException(Messages.INVALID_PAYLOAD.getCode());
+        }
+
+        doProcess(device, event);
+    }
+
+    /**
+     * Processes a bulk body, either a JSON array or newline-delimited JSON objects, as one
+     * event per item. The device is looked up once for the whole body and every item
+     * gets its own response. An item may carry its own timestamp in the
+     * {@value #BULK_TIMESTAMP_FIELD} field, as epoch milliseconds or an ISO-8601 instant.
+     * Once the ingest stops accepting events the remaining items are rejected with it,
+     * and the whole body is rejected when no item was accepted yet.
+     */
+    public List<ServiceResponse<Event>> processBulk(String apiKey, String channel, String body) throws BusinessException {
+        Device device = findDevice(apiKey, channel);
+
+        List<Map<String, Object>> items;
+        try {
+            items = jsonParsingService.toListOfMaps(body);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            throw new BusinessException(Messages.INVALID_PAYLOAD.getCode());
+        }
+
+        if (items.isEmpty() || items.size() > BULK_MAX_ITEMS)
+            throw new BusinessException(Messages.INVALID_BULK_SIZE.getCode());
+
+        checkRateLimit(device, items.size());
+
+        List<ServiceResponse<Event>> responses = new ArrayList<>(items.size());
+        boolean accepted = false;
+        for (Map<String, Object> item : items) {
+            try {
+                Instant timestamp = extractTimestamp(item);
+                doProcess(device, channel, jsonParsingService.toJsonString(item), timestamp);
+                responses.add(ServiceResponseBuilder.<Event>ok().build());
+                accepted = true;
+            } catch (IngestUnavailableException e) {
+                if (!accepted)
+                    throw e;
+                while (responses.size() < items.size())
+                    responses.add(ServiceResponseBuilder.<Event>error().withMessage(e.getMessage()).build());
+                break;
+            } catch (BusinessException e) {
+                responses.add(ServiceResponseBuilder.<Event>error().withMessage(e.getMessage()).build());
+            } catch (JsonProcessingException | IllegalArgumentException e) {
+                responses.add(ServiceResponseBuilder.<Event>error()
+                        .withMessage(Messages.INVALID_PAYLOAD.getCode()).build());
+            }
+        }
+
+        return responses;
+    }
 
+    private Device findDevice(String apiKey, String channel) throws BusinessException {
         Optional.ofNullable(apiKey).filter(s -> !s.isEmpty())
                 .orElseThrow(() -> new BusinessException(Messages.APIKEY_MISSING.getCode()));
 
         Optional.ofNullable(channel).filter(s -> !s.isEmpty())
                 .orElseThrow(() -> new BusinessException(Messages.CHANNEL_MISSING.getCode()));
 
-        Device device = Optional.ofNullable(deviceRegisterService.findByApiKey(apiKey))
+        return Optional.ofNullable(deviceRegisterService.findByApiKey(apiKey))
                 .orElseThrow(() -> new BusinessException(Messages.DEVICE_NOT_FOUND.getCode()));
+    }
+
+    private void checkRateLimit(Device device, int events) throws RateLimitExceededException {
+        long retryAfter = eventRateLimitService.tryAcquire(device, events);
+
+        if (retryAfter > 0)
+            throw new RateLimitExceededException(EventRateLimitService.Messages.RATE_LIMIT_EXCEEDED.getCode(), retryAfter);
+    }
+
+    private Instant extractTimestamp(Map<String, Object> item) throws BusinessException {
+        Object value = item.remove(BULK_TIMESTAMP_FIELD);
+
+        if (!Optional.ofNullable(value).isPresent())
+            return null;
 
-        Event event = Event.builder()
+        try {
+            if (value instanceof Number)
+                return Instant.ofEpochMilli(((Number) value).longValue());
+            else
+                return Instant.parse(value.toString());
+        } catch (DateTimeParseException e) {
+            throw new BusinessException(Messages.INVALID_TIMESTAMP.getCode());
+        }
+    }
+
+    private void doProcess(Device device, String channel, String payload, Instant timestamp) throws BusinessException {
+        doProcess(device, buildEvent(device, channel, payload, timestamp));
+    }
+
+    private Event buildEvent(Device device, String channel, String payload, Instant timestamp) {
+        return Event.builder()
                 .incoming(
                         Event.EventActor.builder()
                                 .deviceGuid(device.getGuid())
@@ -80,16 +212,38 @@ public class DeviceEventProcessor {
                                 .build()
                 )
                 .payload(payload)
+                .timestamp(timestamp)
                 .build();
+    }
+
+    /**
+     * An ingest that cannot take more events is reported apart from invalid events, so
+     * devices are told to retry later instead of that their event was wrong.
+     */
+    private void doProcess(Device device, Event event) throws BusinessException {
         if (device.isActive()) {
 
             ServiceResponse<Event> logResponse = deviceLogEventService.logIncomingEvent(device, event);
             if (logResponse.isOk()) {
                 eventRouteExecutor.execute(event, device.toURI());
+            } else if (logResponse.getResponseMessages().containsKey(EventIngestService.Messages.INGEST_QUEUE_FULL.getCode())) {
+                LOGGER.warn(MessageFormat.format("Incoming event rejected, ingest buffer is full: [Device: {0}]",
+                        device.toURI()),
+                        event.getIncoming().toURI(),
+                        device.getLogLevel()
+                );
+                throw new IngestUnavailableException(EventIngestService.Messages.INGEST_QUEUE_FULL.getCode(), INGEST_RETRY_AFTER);
+            } else if (logResponse.getResponseMessages().containsKey(EventJournalService.Messages.JOURNAL_FULL.getCode())) {
+                LOGGER.warn(MessageFormat.format("Incoming event rejected, event journal is full: [Device: {0}]",
+                        device.toURI()),
+                        event.getIncoming().toURI(),
+                        device.getLogLevel()
+                );
+                throw new IngestUnavailableException(EventJournalService.Messages.JOURNAL_FULL.getCode(), INGEST_RETRY_AFTER);
             } else {
                 LOGGER.error(MessageFormat.format("Could not log incoming message. Probably invalid payload.: [Device: {0}] - [Payload: {1}]",
                         device.toURI(),
-                        payload),
+                        event.getPayload()),
                 		event.getIncoming().toURI(),
                 		device.getLogLevel()
                 );
@@ -99,7 +253,7 @@ public class DeviceEventProcessor {
         } else {
             LOGGER.debug(MessageFormat.format(EVENT_DROPPED,
                     device.toURI(),
-                    payload),
+                    event.getPayload()),
             		event.getIncoming().toURI(),
             		device.getLogLevel());
         }
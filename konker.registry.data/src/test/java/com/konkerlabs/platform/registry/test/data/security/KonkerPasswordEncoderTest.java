@@ -0,0 +1,96 @@
+package com.konkerlabs.platform.registry.test.data.security;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.konkerlabs.platform.registry.data.config.CredentialCacheConfig;
+import com.konkerlabs.platform.registry.data.security.KonkerPasswordEncoder;
+
+public class KonkerPasswordEncoderTest {
+
+    private static final String SECURITY_HASH = "PBKDF2WithHmac$SHA1$10000$c2FsdA==$aGFzaA==";
+    private static final String PASSWORD = "qV5NSiIvYn4V";
+
+    private CredentialCacheConfig cacheConfig;
+    private CountingEncoder subject;
+
+    @Before
+    public void setUp() {
+        cacheConfig = new CredentialCacheConfig();
+        cacheConfig.setEnabled(true);
+        cacheConfig.setMaxSize(10);
+        cacheConfig.setTtl(60000L);
+
+        subject = new CountingEncoder(cacheConfig);
+    }
+
+    @Test
+    public void shouldVerifyOnceForRepeatedValidSecrets() {
+        assertThat(subject.isPasswordValid(SECURITY_HASH, PASSWORD, null), equalTo(true));
+        assertThat(subject.isPasswordValid(SECURITY_HASH, PASSWORD, null), equalTo(true));
+
+        assertThat(subject.verifications, equalTo(1));
+    }
+
+    @Test
+    public void shouldNotAcceptADifferentSecretFromCache() {
+        subject.isPasswordValid(SECURITY_HASH, PASSWORD, null);
+
+        assertThat(subject.isPasswordValid(SECURITY_HASH, "wrong", null), equalTo(false));
+        assertThat(subject.verifications, equalTo(2));
+    }
+
+    @Test
+    public void shouldVerifyAgainWhenSecurityHashChanges() {
+        subject.isPasswordValid(SECURITY_HASH, PASSWORD, null);
+        subject.isPasswordValid(SECURITY_HASH + "=", PASSWORD, null);
+
+        assertThat(subject.verifications, equalTo(2));
+    }
+
+    @Test
+    public void shouldNotCacheFailedVerifications() {
+        subject.isPasswordValid(SECURITY_HASH, "wrong", null);
+        subject.isPasswordValid(SECURITY_HASH, "wrong", null);
+
+        assertThat(subject.verifications, equalTo(2));
+    }
+
+    @Test
+    public void shouldVerifyAgainAfterTtlExpires() {
+        cacheConfig.setTtl(-1L);
+
+        subject.isPasswordValid(SECURITY_HASH, PASSWORD, null);
+        subject.isPasswordValid(SECURITY_HASH, PASSWORD, null);
+
+        assertThat(subject.verifications, equalTo(2));
+    }
+
+    @Test
+    public void shouldAlwaysVerifyWhenCacheIsDisabled() {
+        cacheConfig.setEnabled(false);
+
+        subject.isPasswordValid(SECURITY_HASH, PASSWORD, null);
+        subject.isPasswordValid(SECURITY_HASH, PASSWORD, null);
+
+        assertThat(subject.verifications, equalTo(2));
+    }
+
+    static class CountingEncoder extends KonkerPasswordEncoder {
+        private int verifications;
+
+        CountingEncoder(CredentialCacheConfig cacheConfig) {
+            super(cacheConfig);
+        }
+
+        @Override
+        protected boolean verify(String rawPass, String encPass) {
+            verifications++;
+            return PASSWORD.equals(rawPass);
+        }
+    }
+
+}
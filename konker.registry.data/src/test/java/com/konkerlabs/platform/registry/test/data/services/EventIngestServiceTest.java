@@ -0,0 +1,253 @@
+package com.konkerlabs.platform.registry.test.data.services;
+
+import com.konkerlabs.platform.registry.business.model.Application;
+import com.konkerlabs.platform.registry.business.model.Event;
+import com.konkerlabs.platform.registry.business.model.Tenant;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventBatchResult;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventRepository;
+import com.konkerlabs.platform.registry.business.services.api.ServiceResponse;
+import com.konkerlabs.platform.registry.config.EventStorageConfig;
+import com.konkerlabs.platform.registry.data.config.EventIngestConfig;
+import com.konkerlabs.platform.registry.data.services.EventIngestServiceImpl;
+import com.konkerlabs.platform.registry.data.services.api.EventIngestService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EventIngestServiceTest {
+
+    private EventIngestConfig config;
+    private EventRepository eventRepository;
+    private EventIngestServiceImpl subject;
+
+    private List<String> stored = new CopyOnWriteArrayList<>();
+    private List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private volatile boolean storeAvailable = true;
+
+    private Tenant tenant;
+    private Application application;
+
+    @Before
+    public void setUp() throws Exception {
+        config = new EventIngestConfig();
+        config.setEnabled(true);
+        config.setBatchSize(5);
+        config.setFlushInterval(10000L);
+        config.setQueueCapacity(1000);
+        config.setOfferTimeout(100L);
+        config.setShutdownTimeout(5000L);
+        config.setRetryAttempts(5);
+        config.setRetryInterval(10L);
+
+        eventRepository = mock(EventRepository.class);
+        when(eventRepository.saveIncomingBatch(any(Tenant.class), any(Application.class), anyListOf(Event.class)))
+                .thenAnswer(saveAllWhenAvailable());
+
+        tenant = Tenant.builder().domainName("tenantDomain").name("tenantName").build();
+        application = Application.builder().name("applicationName").build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (subject != null)
+            subject.shutdown();
+    }
+
+    @Test
+    public void shouldFlushABatchOnceItIsFull() throws Exception {
+        start();
+
+        List<String> payloads = payloads(0, 10);
+        payloads.forEach(payload -> assertThat(subject.enqueue(tenant, application, event(payload)).isOk(), equalTo(true)));
+
+        waitFor(() -> stored.size() == payloads.size());
+
+        assertThat(stored, equalTo(payloads));
+        assertThat(batchSizes, contains(5, 5));
+    }
+
+    @Test
+    public void shouldFlushAPartialBatchOnceTheFlushIntervalElapsed() throws Exception {
+        config.setFlushInterval(200L);
+        start();
+
+        List<String> payloads = payloads(0, 3);
+        payloads.forEach(payload -> subject.enqueue(tenant, application, event(payload)));
+
+        waitFor(() -> stored.size() == payloads.size());
+
+        assertThat(stored, equalTo(payloads));
+        assertThat(batchSizes, contains(3));
+    }
+
+    @Test
+    public void shouldStoreEveryApplicationOfABatchOnItsOwn() throws Exception {
+        start();
+
+        Application otherApplication = Application.builder().name("otherApplication").build();
+        subject.enqueue(tenant, application, event("{\"index\":0}"));
+        subject.enqueue(tenant, otherApplication, event("{\"index\":1}"));
+        subject.enqueue(tenant, application, event("{\"index\":2}"));
+        subject.enqueue(tenant, otherApplication, event("{\"index\":3}"));
+        subject.enqueue(tenant, application, event("{\"index\":4}"));
+
+        waitFor(() -> stored.size() == 5);
+
+        assertThat(stored, contains("{\"index\":0}", "{\"index\":2}", "{\"index\":4}", "{\"index\":1}", "{\"index\":3}"));
+        assertThat(batchSizes, contains(3, 2));
+    }
+
+    @Test
+    public void shouldRetryTheBatchWhileTheStoreIsUnavailable() throws Exception {
+        storeAvailable = false;
+        config.setRetryAttempts(1000);
+        start();
+
+        List<String> payloads = payloads(0, 5);
+        payloads.forEach(payload -> subject.enqueue(tenant, application, event(payload)));
+        Thread.sleep(50);
+
+        assertThat(stored, empty());
+
+        storeAvailable = true;
+        waitFor(() -> stored.size() == payloads.size());
+
+        assertThat(stored, equalTo(payloads));
+    }
+
+    @Test
+    public void shouldStoreThePartialBatchOnShutdownWithoutWaitingForTheFlushInterval() throws Exception {
+        start();
+
+        List<String> payloads = payloads(0, 3);
+        payloads.forEach(payload -> subject.enqueue(tenant, application, event(payload)));
+
+        long started = System.currentTimeMillis();
+        subject.shutdown();
+
+        assertThat(System.currentTimeMillis() - started, lessThan(config.getFlushInterval()));
+        assertThat(stored, equalTo(payloads));
+        assertThat(subject.isEnabled(), equalTo(false));
+
+        ServiceResponse<Event> response = subject.enqueue(tenant, application, event("{\"index\":3}"));
+        assertThat(response.isOk(), equalTo(false));
+        assertThat(response.getResponseMessages(), hasKey(EventIngestService.Messages.INGEST_NOT_RUNNING.getCode()));
+    }
+
+    @Test
+    public void shouldStoreEveryAcceptedEventWhenShuttingDownWhileEventsAreQueued() throws Exception {
+        start();
+
+        List<String> accepted = new CopyOnWriteArrayList<>();
+        AtomicInteger index = new AtomicInteger();
+        CountDownLatch producing = new CountDownLatch(4);
+        List<Thread> producers = new ArrayList<>();
+        for (int producer = 0; producer < 4; producer++) {
+            Thread thread = new Thread(() -> {
+                producing.countDown();
+                while (true) {
+                    String payload = "{\"index\":" + index.getAndIncrement() + "}";
+                    if (!subject.enqueue(tenant, application, event(payload)).isOk())
+                        return;
+                    accepted.add(payload);
+                    sleep(1);
+                }
+            });
+            thread.start();
+            producers.add(thread);
+        }
+
+        producing.await(1, TimeUnit.SECONDS);
+        Thread.sleep(50);
+        subject.shutdown();
+        for (Thread producer : producers)
+            producer.join(1000);
+
+        assertThat(accepted, not(empty()));
+        assertThat(stored, hasSize(accepted.size()));
+        assertThat(new HashSet<>(stored), equalTo(new HashSet<>(accepted)));
+    }
+
+    private void start() {
+        ApplicationContext applicationContext = mock(ApplicationContext.class);
+        when(applicationContext.getBean(anyString())).thenReturn(eventRepository);
+
+        subject = new EventIngestServiceImpl(config);
+        ReflectionTestUtils.setField(subject, "applicationContext", applicationContext);
+        ReflectionTestUtils.setField(subject, "eventStorageConfig", new EventStorageConfig());
+        subject.init();
+    }
+
+    private Answer<EventBatchResult> saveAllWhenAvailable() {
+        return invocation -> {
+            if (!storeAvailable)
+                throw new RuntimeException("store unavailable");
+
+            List<Event> events = invocation.getArgumentAt(2, List.class);
+            EventBatchResult result = new EventBatchResult();
+            events.forEach(event -> {
+                result.addSaved(event);
+                stored.add(event.getPayload());
+            });
+            batchSizes.add(events.size());
+            return result;
+        };
+    }
+
+    private List<String> payloads(int from, int to) {
+        return IntStream.range(from, to)
+                .mapToObj(index -> "{\"index\":" + index + "}")
+                .collect(Collectors.toList());
+    }
+
+    private Event event(String payload) {
+        return Event.builder()
+                .incoming(Event.EventActor.builder()
+                        .tenantDomain(tenant.getDomainName())
+                        .deviceGuid("device-guid")
+                        .channel("data")
+                        .build())
+                .timestamp(Instant.now())
+                .payload(payload)
+                .build();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertThat(condition.getAsBoolean(), equalTo(true));
+    }
+
+}
@@ -0,0 +1,381 @@
+package com.konkerlabs.platform.registry.test.data.services;
+
+import com.konkerlabs.platform.registry.business.model.Application;
+import com.konkerlabs.platform.registry.business.model.Event;
+import com.konkerlabs.platform.registry.business.model.Tenant;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventBatchResult;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventRepository;
+import com.konkerlabs.platform.registry.business.services.api.ServiceResponse;
+import com.konkerlabs.platform.registry.config.EventStorageConfig;
+import com.konkerlabs.platform.registry.data.config.EventJournalConfig;
+import com.konkerlabs.platform.registry.data.services.EventJournalServiceImpl;
+import com.konkerlabs.platform.registry.data.services.api.EventJournalService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.stubbing.Answer;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EventJournalServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private EventJournalConfig config;
+    private EventRepository eventRepository;
+    private List<EventJournalServiceImpl> started = new ArrayList<>();
+    private List<String> stored = new CopyOnWriteArrayList<>();
+    private volatile boolean storeAvailable = true;
+
+    private Tenant tenant;
+    private Application application;
+
+    @Before
+    public void setUp() throws Exception {
+        config = new EventJournalConfig();
+        config.setEnabled(true);
+        config.setDirectory(folder.getRoot().getAbsolutePath());
+        config.setSegmentSize(4096);
+        config.setMaxSegments(4);
+        config.setFsync(false);
+        config.setBatchSize(10);
+        config.setReplayInterval(200L);
+        config.setRetryInterval(10L);
+        config.setShutdownTimeout(2000L);
+
+        eventRepository = mock(EventRepository.class);
+
+        tenant = Tenant.builder().domainName("tenantDomain").name("tenantName").build();
+        application = Application.builder().name("applicationName").build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        started.forEach(EventJournalServiceImpl::shutdown);
+    }
+
+    @Test
+    public void shouldReplayAppendedEventsInOrder() throws Exception {
+        when(eventRepository.saveIncomingBatch(any(Tenant.class), any(Application.class), anyListOf(Event.class)))
+                .thenAnswer(saveAll());
+
+        EventJournalServiceImpl subject = start();
+        List<String> payloads = payloads(0, 25);
+        payloads.forEach(payload -> assertThat(subject.append(tenant, application, event(payload)).isOk(), equalTo(true)));
+
+        waitFor(() -> subject.getMetrics().get("lagBytes").longValue() == 0);
+
+        assertThat(stored, equalTo(payloads));
+        assertThat(subject.getMetrics(), hasEntry("appended", (Number) 25L));
+        assertThat(subject.getMetrics(), hasEntry("replayed", (Number) 25L));
+    }
+
+    @Test
+    public void shouldRotateSegmentsAndDeleteThemOnceReplayed() throws Exception {
+        when(eventRepository.saveIncomingBatch(any(Tenant.class), any(Application.class), anyListOf(Event.class)))
+                .thenAnswer(saveAllWhenAvailable());
+        storeAvailable = false;
+
+        EventJournalServiceImpl subject = start();
+        List<String> payloads = payloads(0, 40);
+        payloads.forEach(payload -> assertThat(subject.append(tenant, application, event(payload)).isOk(), equalTo(true)));
+
+        assertThat(segments().size(), greaterThan(1));
+
+        storeAvailable = true;
+        waitFor(() -> stored.size() == payloads.size());
+        waitFor(() -> segments().size() == 1);
+
+        assertThat(stored, equalTo(payloads));
+    }
+
+    @Test
+    public void shouldRejectEventsWhenTheJournalIsFull() throws Exception {
+        when(eventRepository.saveIncomingBatch(any(Tenant.class), any(Application.class), anyListOf(Event.class)))
+                .thenAnswer(saveAllWhenAvailable());
+        storeAvailable = false;
+
+        EventJournalServiceImpl subject = start();
+        ServiceResponse<Event> response = null;
+        int appended = 0;
+        while (appended < 1000) {
+            response = subject.append(tenant, application, event("{\"index\":" + appended + "}"));
+            if (!response.isOk())
+                break;
+            appended++;
+        }
+
+        assertThat(response.isOk(), equalTo(false));
+        assertThat(response.getResponseMessages(), hasKey(EventJournalService.Messages.JOURNAL_FULL.getCode()));
+        assertThat(segments().size(), lessThanOrEqualTo(config.getMaxSegments()));
+
+        storeAvailable = true;
+        Event next = event("{\"index\":" + appended + "}");
+        waitFor(() -> subject.append(tenant, application, next).isOk());
+
+        int accepted = appended + 1;
+        waitFor(() -> stored.size() == accepted);
+        assertThat(stored, equalTo(payloads(0, accepted)));
+    }
+
+    @Test
+    public void shouldSkipACorruptTrailingRecordOnRecovery() throws Exception {
+        when(eventRepository.saveIncomingBatch(any(Tenant.class), any(Application.class), anyListOf(Event.class)))
+                .thenAnswer(saveAllWhenAvailable());
+        storeAvailable = false;
+
+        EventJournalServiceImpl crashed = start();
+        payloads(0, 3).forEach(payload -> crashed.append(tenant, application, event(payload)));
+        crashed.shutdown();
+
+        corruptLastRecord(segments().get(segments().size() - 1));
+
+        storeAvailable = true;
+        EventJournalServiceImpl subject = start();
+        subject.append(tenant, application, event("{\"index\":3}"));
+
+        waitFor(() -> stored.size() == 3);
+
+        assertThat(stored, contains("{\"index\":0}", "{\"index\":1}", "{\"index\":3}"));
+    }
+
+    @Test
+    public void shouldResumeFromTheCheckpointAfterARestart() throws Exception {
+        when(eventRepository.saveIncomingBatch(any(Tenant.class), any(Application.class), anyListOf(Event.class)))
+                .thenAnswer(saveAllWhenAvailable());
+
+        EventJournalServiceImpl stopped = start();
+        payloads(0, 3).forEach(payload -> stopped.append(tenant, application, event(payload)));
+        waitFor(() -> stored.size() == 3);
+        stopped.shutdown();
+
+        storeAvailable = false;
+        EventJournalServiceImpl restarted = start();
+        payloads(3, 5).forEach(payload -> restarted.append(tenant, application, event(payload)));
+        restarted.shutdown();
+
+        storeAvailable = true;
+        EventJournalServiceImpl subject = start();
+        subject.append(tenant, application, event("{\"index\":5}"));
+
+        waitFor(() -> stored.size() == 6);
+
+        assertThat(stored, equalTo(payloads(0, 6)));
+    }
+
+    @Test
+    public void shouldKeepEventsJournaledWhileTheStoreIsUnavailable() throws Exception {
+        when(eventRepository.saveIncomingBatch(any(Tenant.class), any(Application.class), anyListOf(Event.class)))
+                .thenThrow(new RuntimeException("store unavailable"))
+                .thenThrow(new RuntimeException("store unavailable"))
+                .thenAnswer(saveAll());
+
+        EventJournalServiceImpl subject = start();
+        subject.append(tenant, application, event("{\"index\":0}"));
+        subject.append(tenant, application, event("{\"index\":1}"));
+
+        waitFor(() -> subject.getMetrics().get("replayed").longValue() == 2);
+
+        assertThat(stored, contains("{\"index\":0}", "{\"index\":1}"));
+        assertThat(subject.getMetrics(), hasEntry("failed", (Number) 0L));
+    }
+
+    @Test
+    public void shouldRetryEventsThatFailedOnATransientStoreError() throws Exception {
+        when(eventRepository.saveIncomingBatch(any(Tenant.class), any(Application.class), anyListOf(Event.class)))
+                .thenAnswer(invocation -> {
+                    List<Event> events = invocation.getArgumentAt(2, List.class);
+                    EventBatchResult result = new EventBatchResult();
+                    result.addSaved(events.get(0));
+                    stored.add(events.get(0).getPayload());
+                    for (int index = 1; index < events.size(); index++)
+                        result.addRetryable(index, "write timeout");
+                    return result;
+                })
+                .thenAnswer(saveAll());
+
+        EventJournalServiceImpl subject = start();
+        subject.append(tenant, application, event("{\"index\":0}"));
+        subject.append(tenant, application, event("{\"index\":1}"));
+        subject.append(tenant, application, event("{\"index\":2}"));
+
+        waitFor(() -> stored.size() == 3);
+
+        assertThat(stored, contains("{\"index\":0}", "{\"index\":1}", "{\"index\":2}"));
+        assertThat(subject.getMetrics(), hasEntry("failed", (Number) 0L));
+    }
+
+    @Test
+    public void shouldSkipEventsTheStoreRejects() throws Exception {
+        when(eventRepository.saveIncomingBatch(any(Tenant.class), any(Application.class), anyListOf(Event.class)))
+                .thenAnswer(invocation -> {
+                    List<Event> events = invocation.getArgumentAt(2, List.class);
+                    EventBatchResult result = new EventBatchResult();
+                    for (int index = 0; index < events.size(); index++) {
+                        if (events.get(index).getPayload().equals("{\"index\":0}")) {
+                            result.addFailure(index, EventRepository.Validations.INCOMING_DEVICE_ID_DOES_NOT_EXIST.getCode());
+                        } else {
+                            result.addSaved(events.get(index));
+                            stored.add(events.get(index).getPayload());
+                        }
+                    }
+                    return result;
+                });
+
+        EventJournalServiceImpl subject = start();
+        subject.append(tenant, application, event("{\"index\":0}"));
+        subject.append(tenant, application, event("{\"index\":1}"));
+
+        waitFor(() -> subject.getMetrics().get("failed").longValue() == 1);
+
+        assertThat(stored, contains("{\"index\":1}"));
+    }
+
+    @Test
+    public void shouldShareOneSyncBetweenConcurrentAppends() throws Exception {
+        when(eventRepository.saveIncomingBatch(any(Tenant.class), any(Application.class), anyListOf(Event.class)))
+                .thenAnswer(saveAll());
+        config.setFsync(true);
+        config.setFsyncInterval(50L);
+        config.setFsyncBatchSize(1000);
+
+        EventJournalServiceImpl subject = start();
+        List<String> payloads = payloads(0, 40);
+        List<Boolean> appended = new CopyOnWriteArrayList<>();
+        List<Thread> appenders = new ArrayList<>();
+        for (int appender = 0; appender < 4; appender++) {
+            List<String> appenderPayloads = payloads.subList(appender * 10, (appender + 1) * 10);
+            Thread thread = new Thread(() -> appenderPayloads.forEach(payload ->
+                    appended.add(subject.append(tenant, application, event(payload)).isOk())));
+            thread.start();
+            appenders.add(thread);
+        }
+        for (Thread appender : appenders)
+            appender.join(5000);
+
+        assertThat(appended, hasSize(payloads.size()));
+        assertThat(appended, everyItem(equalTo(true)));
+        assertThat(subject.getMetrics().get("syncs").longValue(), allOf(greaterThan(0L), lessThan((long) payloads.size())));
+
+        waitFor(() -> stored.size() == payloads.size());
+        assertThat(new HashSet<>(stored), equalTo(new HashSet<>(payloads)));
+    }
+
+    private EventJournalServiceImpl start() {
+        ApplicationContext applicationContext = mock(ApplicationContext.class);
+        when(applicationContext.getBean(anyString())).thenReturn(eventRepository);
+
+        EventJournalServiceImpl journal = new EventJournalServiceImpl(config);
+        ReflectionTestUtils.setField(journal, "applicationContext", applicationContext);
+        ReflectionTestUtils.setField(journal, "eventStorageConfig", new EventStorageConfig());
+        journal.init();
+
+        started.add(journal);
+        return journal;
+    }
+
+    private Answer<EventBatchResult> saveAllWhenAvailable() {
+        Answer<EventBatchResult> saveAll = saveAll();
+        return invocation -> {
+            if (!storeAvailable)
+                throw new RuntimeException("store unavailable");
+            return saveAll.answer(invocation);
+        };
+    }
+
+    private Answer<EventBatchResult> saveAll() {
+        return invocation -> {
+            List<Event> events = invocation.getArgumentAt(2, List.class);
+            EventBatchResult result = new EventBatchResult();
+            events.forEach(event -> {
+                result.addSaved(event);
+                stored.add(event.getPayload());
+            });
+            return result;
+        };
+    }
+
+    private List<String> payloads(int from, int to) {
+        return IntStream.range(from, to)
+                .mapToObj(index -> "{\"index\":" + index + "}")
+                .collect(Collectors.toList());
+    }
+
+    private List<File> segments() {
+        File[] files = folder.getRoot().listFiles((dir, name) -> name.startsWith("journal-"));
+        List<File> segments = new ArrayList<>();
+        for (File file : files)
+            segments.add(file);
+        segments.sort((first, second) -> first.getName().compareTo(second.getName()));
+        return segments;
+    }
+
+    /**
+     * Flips a payload byte of the last record of the segment, as a write torn by a crash
+     * would leave it.
+     */
+    private void corruptLastRecord(File segment) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            long last = -1;
+            long offset = 0;
+            while (offset + 8 <= file.length()) {
+                file.seek(offset);
+                int length = file.readInt();
+                if (length <= 0)
+                    break;
+                last = offset;
+                offset += 8 + length;
+            }
+            assertThat(last, greaterThanOrEqualTo(0L));
+
+            file.seek(last + 8);
+            int value = file.read();
+            file.seek(last + 8);
+            file.write(value ^ 0xFF);
+        }
+    }
+
+    private Event event(String payload) {
+        return Event.builder()
+                .incoming(Event.EventActor.builder()
+                        .tenantDomain(tenant.getDomainName())
+                        .applicationName(application.getName())
+                        .deviceGuid("device_guid")
+                        .channel("data")
+                        .build())
+                .timestamp(Instant.ofEpochMilli(1474562670340L))
+                .payload(payload)
+                .build();
+    }
+
+    private void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertThat(condition.getAsBoolean(), equalTo(true));
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.konkerlabs.platform.registry.test.data.services;
+
+import com.konkerlabs.platform.registry.business.model.Device;
+import com.konkerlabs.platform.registry.business.model.Tenant;
+import com.konkerlabs.platform.registry.data.config.EventRateLimitConfig;
+import com.konkerlabs.platform.registry.data.services.EventRateLimitServiceImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class EventRateLimitServiceTest {
+
+    private EventRateLimitConfig config;
+    private Device device;
+    private Device otherDevice;
+
+    @Before
+    public void setUp() throws Exception {
+        config = new EventRateLimitConfig();
+        config.setEnabled(true);
+        config.setDeviceRate(1.0);
+        config.setTenantRate(100.0);
+        config.setBurstSeconds(2.0);
+
+        Tenant tenant = Tenant.builder().domainName("tenantDomain").name("tenantName").build();
+        device = Device.builder().guid("device_guid").tenant(tenant).build();
+        otherDevice = Device.builder().guid("other_device_guid").tenant(tenant).build();
+    }
+
+    @Test
+    public void shouldAdmitEverythingWhenDisabled() throws Exception {
+        config.setEnabled(false);
+        EventRateLimitServiceImpl subject = new EventRateLimitServiceImpl(config);
+
+        for (int i = 0; i < 10; i++)
+            assertThat(subject.tryAcquire(device, 1), equalTo(0L));
+    }
+
+    @Test
+    public void shouldRejectDeviceAfterItsBurst() throws Exception {
+        EventRateLimitServiceImpl subject = new EventRateLimitServiceImpl(config);
+
+        assertThat(subject.tryAcquire(device, 1), equalTo(0L));
+        assertThat(subject.tryAcquire(device, 1), equalTo(0L));
+        assertThat(subject.tryAcquire(device, 1), greaterThan(0L));
+        assertThat(subject.tryAcquire(otherDevice, 1), equalTo(0L));
+        assertThat(subject.getRejectedCounts(), hasEntry("device", 1L));
+    }
+
+    @Test
+    public void shouldRejectTenantAfterItsBurst() throws Exception {
+        config.setDeviceRate(100.0);
+        config.setTenantRates(Collections.singletonMap("tenantDomain", 1.0));
+        EventRateLimitServiceImpl subject = new EventRateLimitServiceImpl(config);
+
+        assertThat(subject.tryAcquire(device, 2), equalTo(0L));
+        assertThat(subject.tryAcquire(otherDevice, 1), greaterThan(0L));
+        assertThat(subject.getRejectedCounts(), hasEntry("tenant", 1L));
+    }
+
+    @Test
+    public void shouldAdmitBatchLargerThanTheBucketWhenFull() throws Exception {
+        EventRateLimitServiceImpl subject = new EventRateLimitServiceImpl(config);
+
+        assertThat(subject.tryAcquire(device, 10), equalTo(0L));
+        assertThat(subject.tryAcquire(device, 1), greaterThan(0L));
+    }
+
+}
@@ -0,0 +1,218 @@
+package com.konkerlabs.platform.registry.test.data.services;
+
+import com.konkerlabs.platform.registry.business.model.Application;
+import com.konkerlabs.platform.registry.business.model.Event;
+import com.konkerlabs.platform.registry.business.model.EventRoute;
+import com.konkerlabs.platform.registry.business.model.Tenant;
+import com.konkerlabs.platform.registry.business.model.Transformation;
+import com.konkerlabs.platform.registry.business.services.api.EventRouteService;
+import com.konkerlabs.platform.registry.business.services.api.ServiceResponseBuilder;
+import com.konkerlabs.platform.registry.data.config.EventRouteExecutorConfig;
+import com.konkerlabs.platform.registry.data.services.publishers.api.EventPublisher;
+import com.konkerlabs.platform.registry.data.services.routes.EventRouteExecutorImpl;
+import com.konkerlabs.platform.registry.data.services.routes.api.EventTransformationService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EventRouteExecutorConcurrencyTest {
+
+    private static final String REGISTERED_TENANT_DOMAIN = "konker";
+    private static final String INCOMING_DEVICE_GUID = "1af9be20-441e-419b-84a9-cb84efd4f49d";
+
+    private EventRouteExecutorImpl subject;
+    private EventRouteService eventRouteService;
+    private EventTransformationService eventTransformationService;
+    private ApplicationContext applicationContext;
+
+    private Tenant tenant;
+    private Application application;
+    private URI incomingUri;
+
+    private List<Event> published = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        eventRouteService = mock(EventRouteService.class);
+        eventTransformationService = mock(EventTransformationService.class);
+        applicationContext = mock(ApplicationContext.class);
+
+        tenant = Tenant.builder().domainName(REGISTERED_TENANT_DOMAIN).name("konker").build();
+        application = Application.builder().name("smartffkonker").build();
+        incomingUri = new URI("device", REGISTERED_TENANT_DOMAIN, "/" + INCOMING_DEVICE_GUID, null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (subject != null)
+            subject.shutdown();
+    }
+
+    @Test
+    public void shouldForwardEveryRouteItsOwnCopyOfTheEvent() throws Exception {
+        List<String> overwrittenDestinations = new CopyOnWriteArrayList<>();
+        CountDownLatch bothRoutesPublishing = new CountDownLatch(2);
+        when(applicationContext.getBean(anyString())).thenReturn(
+                (EventPublisher) (outgoingEvent, destinationUri, data, tenant, application) -> {
+                    String destinationGuid = destinationUri.getPath().replaceAll("/", "");
+                    outgoingEvent.setOutgoing(Event.EventActor.builder()
+                            .tenantDomain(destinationUri.getAuthority())
+                            .deviceGuid(destinationGuid)
+                            .build());
+                    bothRoutesPublishing.countDown();
+                    await(bothRoutesPublishing);
+                    if (!outgoingEvent.getOutgoing().getDeviceGuid().equals(destinationGuid))
+                        overwrittenDestinations.add(destinationGuid);
+                    published.add(outgoingEvent);
+                });
+        start(5000L);
+        routes(route("route-a", "destination-a", null), route("route-b", "destination-b", null));
+
+        Event event = event("{\"index\":0}");
+        List<Event> forwarded = subject.execute(event, incomingUri).get(5, TimeUnit.SECONDS);
+
+        assertThat(forwarded, hasSize(2));
+        assertThat(published, hasSize(2));
+        assertThat(forwarded.stream().map(Event::getOutgoing).map(Event.EventActor::getDeviceGuid)
+                .collect(Collectors.toList()), containsInAnyOrder("destination-a", "destination-b"));
+        assertThat(published.get(0), not(sameInstance(published.get(1))));
+        assertThat(published, everyItem(not(sameInstance(event))));
+        assertThat(overwrittenDestinations, empty());
+        assertThat(event.getOutgoing(), nullValue());
+    }
+
+    @Test
+    public void shouldForwardTheEventsOfADeviceInOrder() throws Exception {
+        when(applicationContext.getBean(anyString())).thenReturn(
+                (EventPublisher) (outgoingEvent, destinationUri, data, tenant, application) -> published.add(outgoingEvent));
+        when(eventTransformationService.transformAsync(any(Event.class), any(Transformation.class), eq(tenant)))
+                .thenAnswer(invocation -> {
+                    Event original = invocation.getArgumentAt(0, Event.class);
+                    return CompletableFuture.supplyAsync(() -> {
+                        sleep(ThreadLocalRandom.current().nextInt(20));
+                        return Optional.of(original);
+                    });
+                });
+        start(5000L);
+        routes(route("route-a", "destination-a", Transformation.builder().name("transformation").build()));
+
+        List<String> payloads = IntStream.range(0, 50)
+                .mapToObj(index -> "{\"index\":" + index + "}")
+                .collect(Collectors.toList());
+        List<Future<List<Event>>> executions = new ArrayList<>();
+        for (String payload : payloads)
+            executions.add(subject.execute(event(payload), incomingUri));
+        for (Future<List<Event>> execution : executions)
+            execution.get(5, TimeUnit.SECONDS);
+
+        assertThat(published.stream().map(Event::getPayload).collect(Collectors.toList()), equalTo(payloads));
+    }
+
+    @Test
+    public void shouldNotForwardARouteThatTimedOut() throws Exception {
+        when(applicationContext.getBean(anyString())).thenReturn(
+                (EventPublisher) (outgoingEvent, destinationUri, data, tenant, application) -> published.add(outgoingEvent));
+        CompletableFuture<Optional<Event>> transformation = new CompletableFuture<>();
+        when(eventTransformationService.transformAsync(any(Event.class), any(Transformation.class), eq(tenant)))
+                .thenReturn(transformation);
+        start(200L);
+        routes(route("route-a", "destination-a", Transformation.builder().name("transformation").build()));
+
+        Event event = event("{\"index\":0}");
+        List<Event> forwarded = subject.execute(event, incomingUri).get(5, TimeUnit.SECONDS);
+        assertThat(forwarded, empty());
+
+        transformation.complete(Optional.of(event));
+        sleep(100);
+
+        assertThat(published, empty());
+    }
+
+    private void start(long timeout) {
+        EventRouteExecutorConfig config = new EventRouteExecutorConfig();
+        config.setThreads(4);
+        config.setQueueSize(100);
+        config.setTimeout(timeout);
+
+        subject = new EventRouteExecutorImpl(config);
+        ReflectionTestUtils.setField(subject, "eventRouteService", eventRouteService);
+        ReflectionTestUtils.setField(subject, "eventTransformationService", eventTransformationService);
+        ReflectionTestUtils.setField(subject, "applicationContext", applicationContext);
+    }
+
+    private void routes(EventRoute... routes) {
+        when(eventRouteService.findActiveByIncomingUriAndChannel(incomingUri, "data"))
+                .thenReturn(ServiceResponseBuilder.<List<EventRoute>>ok().withResult(Arrays.asList(routes)).build());
+    }
+
+    private EventRoute route(String guid, String destinationGuid, Transformation transformation) throws Exception {
+        return EventRoute.builder()
+                .guid(guid)
+                .name(guid)
+                .tenant(tenant)
+                .application(application)
+                .incoming(EventRoute.RouteActor.builder().uri(incomingUri)
+                        .data(Collections.singletonMap(EventRoute.DEVICE_MQTT_CHANNEL, "data")).build())
+                .outgoing(EventRoute.RouteActor.builder()
+                        .uri(new URI("device", REGISTERED_TENANT_DOMAIN, "/" + destinationGuid, null))
+                        .data(Collections.singletonMap(EventRoute.DEVICE_MQTT_CHANNEL, "in")).build())
+                .transformation(transformation)
+                .active(true)
+                .build();
+    }
+
+    private Event event(String payload) {
+        return Event.builder()
+                .incoming(Event.EventActor.builder()
+                        .tenantDomain(REGISTERED_TENANT_DOMAIN)
+                        .deviceGuid(INCOMING_DEVICE_GUID)
+                        .channel("data")
+                        .build())
+                .timestamp(Instant.now())
+                .payload(payload)
+                .build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
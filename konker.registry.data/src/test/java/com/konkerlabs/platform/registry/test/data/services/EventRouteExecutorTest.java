@@ -31,6 +31,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.function.Supplier;
@@ -101,16 +102,17 @@ public class EventRouteExecutorTest extends BusinessLayerTestSupport {
         }.toURI();
 
         when(
-                httpGateway.request(
+                httpGateway.requestAsync(
                         eq(HttpMethod.POST),
                         Mockito.any(HttpHeaders.class),
                         Mockito.any(URI.class),
                         Mockito.any(MediaType.class),
                         Mockito.any(Supplier.class),
                         Mockito.anyString(),
-                        Mockito.anyString()
+                        Mockito.anyString(),
+                        Mockito.anyInt()
                 )
-        ).thenReturn(transformationResponse);
+        ).thenReturn(CompletableFuture.completedFuture(transformationResponse));
     }
 
     @After
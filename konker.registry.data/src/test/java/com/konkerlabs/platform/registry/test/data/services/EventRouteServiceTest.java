@@ -561,6 +561,27 @@ public class EventRouteServiceTest extends BusinessLayerTestSupport {
         assertThat(routes.get(2).getId(), equalTo("71fb0d48-674b-4f64-a3e5-0256ff3a63ba"));
     }
 
+    @Test
+    @UsingDataSet(locations = {"/fixtures/tenants.json", "/fixtures/applications.json", "/fixtures/transformations.json", "/fixtures/event-routes.json"})
+    public void shouldReturnActiveRoutesByIncomingUriAndChannel() throws Exception {
+        ServiceResponse<List<EventRoute>> response = subject.findActiveByIncomingUriAndChannel(route.getIncoming().getUri(), "data");
+
+        assertThat(response, isResponseOk());
+        assertThat(response.getResult(), hasSize(3));
+
+        response = subject.findActiveByIncomingUriAndChannel(route.getIncoming().getUri(), "command");
+
+        assertThat(response, isResponseOk());
+        assertThat(response.getResult(), empty());
+    }
+
+    @Test
+    public void shouldReturnAnErrorMessageIfIncomingUriIsNull() throws Exception {
+        ServiceResponse<List<EventRoute>> response = subject.findActiveByIncomingUriAndChannel(null, "data");
+
+        assertThat(response, hasErrorMessage(EventRouteService.Validations.EVENT_ROUTE_URI_NULL.getCode()));
+    }
+
     /* ---------------------- remove ------------------------- */
 
     @Test
@@ -0,0 +1,85 @@
+package com.konkerlabs.platform.registry.test.data.services;
+
+import com.konkerlabs.platform.registry.data.config.RedisConfig;
+import com.konkerlabs.platform.registry.data.services.JedisTaskService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class JedisTaskServiceTest {
+
+    private static final String API_KEY = "e4399b2ed998";
+    private static final String CHANNEL = API_KEY + ".data";
+
+    private JedisTaskService subject;
+
+    private AtomicInteger notified = new AtomicInteger();
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+        when(redisTemplate.getConnectionFactory()).thenReturn(mock(RedisConnectionFactory.class));
+
+        subject = new JedisTaskService();
+        ReflectionTestUtils.setField(subject, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(subject, "redisConfig", new RedisConfig());
+        subject.init();
+
+        // the subscription is not started, messages are dispatched by the test
+        ReflectionTestUtils.setField(subject, "listening", new AtomicBoolean(true));
+
+        subject.subscribeToStream(CHANNEL, notified::incrementAndGet);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        subject.shutdown();
+    }
+
+    @Test
+    public void shouldNotifyTheSubscribersOfATaskChannel() {
+        publish(JedisTaskService.taskChannel(CHANNEL));
+
+        assertThat(notified.get(), equalTo(1));
+    }
+
+    @Test
+    public void shouldIgnoreMessagesPublishedOnOtherChannels() {
+        publish("konker.device.invalidation");
+        publish(CHANNEL);
+        publish(JedisTaskService.taskChannel(API_KEY + ".other"));
+
+        assertThat(notified.get(), equalTo(0));
+    }
+
+    @Test
+    public void shouldStopNotifyingOnceUnsubscribed() {
+        Runnable unsubscribe = subject.subscribeToStream(CHANNEL, notified::incrementAndGet);
+        unsubscribe.run();
+
+        publish(JedisTaskService.taskChannel(CHANNEL));
+
+        assertThat(notified.get(), equalTo(1));
+    }
+
+    private void publish(String channel) {
+        ReflectionTestUtils.invokeMethod(subject, "dispatch",
+                new DefaultMessage(channel.getBytes(StandardCharsets.UTF_8), "guid".getBytes(StandardCharsets.UTF_8)),
+                (JedisTaskService.TASK_CHANNEL_PREFIX + "*").getBytes(StandardCharsets.UTF_8));
+    }
+
+}
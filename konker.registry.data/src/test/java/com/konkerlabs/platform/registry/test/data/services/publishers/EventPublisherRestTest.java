@@ -213,7 +213,7 @@ public class EventPublisherRestTest extends BusinessLayerTestSupport {
 
         subject.send(event, destinationUri, null, tenant, application);
 
-        verify(httpGateway, never()).request(any(), any(), any(), any(), any(), any(), any());
+        verify(httpGateway, never()).request(any(), any(), any(), any(), any(), any(), any(), any());
         verify(eventRepository, never()).saveIncoming(tenant, application, event);
     }
 
@@ -223,7 +223,7 @@ public class EventPublisherRestTest extends BusinessLayerTestSupport {
 
         subject.send(event, destinationUri, null, tenant, application);
 
-        verify(httpGateway, never()).request(any(), any(), any(), any(), any(), any(), any());
+        verify(httpGateway, never()).request(any(), any(), any(), any(), any(), any(), any(), any());
         verify(eventRepository, never()).saveIncoming(tenant, application, event);
     }
 
@@ -240,7 +240,8 @@ public class EventPublisherRestTest extends BusinessLayerTestSupport {
                 eq(MediaType.APPLICATION_JSON),
                 argLambda(objectSupplier -> objectSupplier.get().equals(event.getPayload())),
                 eq(destination.getServiceUsername()),
-                eq(destination.getServicePassword())
+                eq(destination.getServicePassword()),
+                eq(destination.getTimeout())
         );
 //        inOrder.verify(eventRepository).saveIncoming(eq(tenant),eq(event));
     }
@@ -2,6 +2,7 @@ package com.konkerlabs.platform.registry.test.data.services.routes;
 
 import com.konkerlabs.platform.registry.business.model.Event;
 import com.konkerlabs.platform.registry.business.model.RestTransformationStep;
+import com.konkerlabs.platform.registry.business.model.Tenant;
 import com.konkerlabs.platform.registry.business.model.Transformation;
 import com.konkerlabs.platform.registry.business.model.TransformationStep;
 import com.konkerlabs.platform.registry.config.PubServerConfig;
@@ -34,12 +35,16 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 
 import static com.konkerlabs.platform.registry.data.services.publishers.EventPublisherDevice.DEVICE_MQTT_CHANNEL;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -157,7 +162,8 @@ public class EventTransformationServiceTest {
                         eq(MediaType.APPLICATION_JSON),
                         bodyCaptor.capture(),
                         eq(transformationServiceUsername),
-                        eq(transformationServicePassword))
+                        eq(transformationServicePassword),
+                        Mockito.anyInt())
         ).thenThrow(IntegrationException.class);
 
         Optional<Event> transformed = subject.transform(event, transformation);
@@ -175,7 +181,8 @@ public class EventTransformationServiceTest {
                         eq(MediaType.APPLICATION_JSON),
                         bodyCaptor.capture(),
                         eq(transformationServiceUsername),
-                        eq(transformationServicePassword))
+                        eq(transformationServicePassword),
+                        Mockito.anyInt())
         ).thenReturn("");
 
         Optional<Event> transformed = subject.transform(event, transformation);
@@ -192,7 +199,8 @@ public class EventTransformationServiceTest {
                         eq(MediaType.APPLICATION_JSON),
                         bodyCaptor.capture(),
                         eq(transformationServiceUsername),
-                        eq(transformationServicePassword))
+                        eq(transformationServicePassword),
+                        Mockito.anyInt())
         ).thenReturn("[]");
 
         Optional<Event> transformed = subject.transform(event, transformation);
@@ -209,7 +217,8 @@ public class EventTransformationServiceTest {
                         eq(MediaType.APPLICATION_JSON),
                         bodyCaptor.capture(),
                         eq(transformationServiceUsername),
-                        eq(transformationServicePassword))
+                        eq(transformationServicePassword),
+                        Mockito.anyInt())
         ).thenReturn("{}");
 
         Optional<Event> transformed = subject.transform(event, transformation);
@@ -233,7 +242,8 @@ public class EventTransformationServiceTest {
                         eq(MediaType.APPLICATION_JSON),
                         bodyCaptor.capture(),
                         eq(transformationServiceUsername),
-                        eq(transformationServicePassword))
+                        eq(transformationServicePassword),
+                        Mockito.anyInt())
         ).thenReturn(firstStepResponseJson);
 
         Optional<Event> transformed = subject.transform(event, transformation);
@@ -270,7 +280,8 @@ public class EventTransformationServiceTest {
                         eq(MediaType.APPLICATION_JSON),
                         bodyCaptor.capture(),
                         eq(transformationServiceUsername),
-                        eq(transformationServicePassword))
+                        eq(transformationServicePassword),
+                        Mockito.anyInt())
         ).thenReturn(firstStepResponseJson);
 
         String secondStepURI = "http://server:8080/service/@{#customerId}/verify";
@@ -298,7 +309,8 @@ public class EventTransformationServiceTest {
                         eq(MediaType.APPLICATION_JSON),
                         bodyCaptor.capture(),
                         eq(""),
-                        eq(""))
+                        eq(""),
+                        Mockito.anyInt())
         ).thenReturn(secondStepResponseJson);
 
         Optional<Event> transformed = subject.transform(event, transformation);
@@ -310,4 +322,100 @@ public class EventTransformationServiceTest {
             assertThat(e.getPayload(), equalTo(secondStepResponseJson));
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldReuseTheStepResponseWhenCacheTtlIsSet() throws Exception {
+        String cachedUrl = "http://server:8080/cached/@{#field}";
+        String stepResponseJson = "{\"cached\" : true}";
+
+        transformation.getSteps().get(0).getAttributes().put(RestTransformationStep.REST_URL_ATTRIBUTE_NAME, cachedUrl);
+        transformation.getSteps().get(0).getAttributes().put(RestTransformationStep.REST_ATTRIBUTE_CACHE_TTL, 60);
+
+        URI uri = URI.create(cachedUrl.replaceAll("\\@\\{.*}", "value"));
+
+        reset(httpGateway);
+        when(
+                httpGateway.request(
+                        eq(HttpMethod.POST),
+                        Mockito.any(HttpHeaders.class),
+                        eq(uri),
+                        eq(MediaType.APPLICATION_JSON),
+                        bodyCaptor.capture(),
+                        eq(transformationServiceUsername),
+                        eq(transformationServicePassword),
+                        Mockito.anyInt())
+        ).thenReturn(stepResponseJson);
+
+        Optional<Event> first = subject.transform(event, transformation);
+        Optional<Event> second = subject.transform(event, transformation);
+
+        assertThat(first.get().getPayload(), equalTo(stepResponseJson));
+        assertThat(second.get().getPayload(), equalTo(stepResponseJson));
+        verify(httpGateway, times(1)).request(
+                eq(HttpMethod.POST),
+                Mockito.any(HttpHeaders.class),
+                eq(uri),
+                eq(MediaType.APPLICATION_JSON),
+                Mockito.any(),
+                eq(transformationServiceUsername),
+                eq(transformationServicePassword),
+                Mockito.anyInt());
+    }
+
+    @Test
+    public void shouldReturnATransformedEventAsynchronously() throws Exception {
+        String stepResponseJson = "{\"async\" : true}";
+
+        when(
+                httpGateway.requestAsync(
+                        eq(HttpMethod.POST),
+                        Mockito.any(HttpHeaders.class),
+                        Mockito.any(URI.class),
+                        eq(MediaType.APPLICATION_JSON),
+                        bodyCaptor.capture(),
+                        eq(transformationServiceUsername),
+                        eq(transformationServicePassword),
+                        Mockito.anyInt())
+        ).thenReturn(CompletableFuture.completedFuture(stepResponseJson));
+
+        Optional<Event> transformed = subject.transformAsync(event, transformation,
+                Tenant.builder().domainName("tenant").build()).get();
+
+        assertThat(transformed.isPresent(), equalTo(true));
+        assertThat(transformed.get().getPayload(), equalTo(stepResponseJson));
+        assertThat(transformed.get().getTimestamp(), equalTo(event.getTimestamp()));
+    }
+
+    @Test
+    public void shouldReturnEmptyEventAsynchronouslyInCaseOfAnIntegrationException() throws Exception {
+        CompletableFuture<String> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IntegrationException("Service unavailable"));
+
+        when(
+                httpGateway.requestAsync(
+                        eq(HttpMethod.POST),
+                        Mockito.any(HttpHeaders.class),
+                        Mockito.any(URI.class),
+                        eq(MediaType.APPLICATION_JSON),
+                        bodyCaptor.capture(),
+                        eq(transformationServiceUsername),
+                        eq(transformationServicePassword),
+                        Mockito.anyInt())
+        ).thenReturn(failed);
+
+        Optional<Event> transformed = subject.transformAsync(event, transformation,
+                Tenant.builder().domainName("tenant").build()).get();
+
+        assertThat(transformed, equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void shouldReturnEmptyEventAsynchronouslyWhenTheGatewayReturnsNoResponse() throws Exception {
+        reset(httpGateway);
+
+        Optional<Event> transformed = subject.transformAsync(event, transformation,
+                Tenant.builder().domainName("tenant").build()).get();
+
+        assertThat(transformed, equalTo(Optional.empty()));
+    }
+}
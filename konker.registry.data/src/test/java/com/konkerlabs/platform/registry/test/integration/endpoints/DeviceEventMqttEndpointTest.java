@@ -12,9 +12,11 @@ import org.springframework.messaging.Message;
 import org.springframework.messaging.MessagingException;
 
 import java.text.MessageFormat;
+import java.util.Collections;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class DeviceEventMqttEndpointTest {
 
@@ -61,4 +63,13 @@ public class DeviceEventMqttEndpointTest {
 
         verify(processor).process(deviceId,channel,payload);
     }
+    @Test
+    public void shouldDelegateBulkEventToItsProcessor() throws Exception {
+        when(processor.processBulk(deviceId,channel,payload)).thenReturn(Collections.emptyList());
+        message = MessageBuilder.withPayload(payload).setHeader(MqttHeaders.TOPIC,topic + "/bulk").build();
+
+        subject.onEvent(message);
+
+        verify(processor).processBulk(deviceId,channel,payload);
+    }
 }
\ No newline at end of file
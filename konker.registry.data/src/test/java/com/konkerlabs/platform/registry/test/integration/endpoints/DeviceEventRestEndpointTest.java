@@ -1,13 +1,26 @@
 package com.konkerlabs.platform.registry.test.integration.endpoints;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-import java.util.concurrent.Executor;
+import java.time.Instant;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
 
 import org.junit.After;
 import org.junit.Before;
@@ -15,12 +28,14 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -29,13 +44,23 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MvcResult;
 
+import com.konkerlabs.platform.registry.business.model.Application;
 import com.konkerlabs.platform.registry.business.model.Device;
+import com.konkerlabs.platform.registry.business.model.Event;
+import com.konkerlabs.platform.registry.business.model.Tenant;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventContinuation;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventCursor;
 import com.konkerlabs.platform.registry.business.services.api.DeviceEventService;
 import com.konkerlabs.platform.registry.business.services.api.DeviceRegisterService;
+import com.konkerlabs.platform.registry.business.services.api.ServiceResponseBuilder;
+import com.konkerlabs.platform.registry.data.config.EventStreamConfig;
 import com.konkerlabs.platform.registry.data.config.WebMvcConfig;
 import com.konkerlabs.platform.registry.data.services.JedisTaskService;
+import com.konkerlabs.platform.registry.data.services.api.EventIngestService;
 import com.konkerlabs.platform.registry.integration.endpoints.DeviceEventRestEndpoint;
+import com.konkerlabs.platform.registry.integration.exceptions.IngestUnavailableException;
 import com.konkerlabs.platform.registry.integration.processors.DeviceEventProcessor;
 import com.konkerlabs.platform.registry.test.data.base.BusinessTestConfiguration;
 import com.konkerlabs.platform.registry.test.data.base.SecurityTestConfiguration;
@@ -74,9 +99,6 @@ public class DeviceEventRestEndpointTest extends WebLayerTestContext {
     @Autowired
     private DeviceRegisterService deviceRegisterService;
 
-    @Autowired
-    private Executor executor;
-
     @Autowired
     private JedisTaskService jedisTaskService;
 
@@ -86,6 +108,7 @@ public class DeviceEventRestEndpointTest extends WebLayerTestContext {
     private String INVALID_CHANNEL_CHAR = "dataç";
     private Long OFFSET = 1475765814662l;
     private Long waitTime = 30000l;
+    private Long EVENT_TIMESTAMP = 1475765814700l;
 
     @Before
     public void setUp() throws Exception {
@@ -96,13 +119,14 @@ public class DeviceEventRestEndpointTest extends WebLayerTestContext {
                 jsonParsingService,
                 deviceEventService,
                 deviceRegisterService,
-                executor,
-                jedisTaskService);
+                jedisTaskService,
+                new EventStreamConfig());
     }
 
 	@After
 	public void tearDown() {
-		Mockito.reset(jsonParsingService);
+		Mockito.reset(jsonParsingService, deviceEventService, deviceRegisterService, jedisTaskService,
+				applicationContext.getBean(DeviceEventProcessor.class));
 	}
 
     @Test
@@ -136,6 +160,91 @@ public class DeviceEventRestEndpointTest extends WebLayerTestContext {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    public void shouldReturnErrorOnStreamWithInvalidChannel() throws Exception {
+        Device device = Device.builder().deviceId("tug6g6essh4m")
+                .active(true)
+                .apiKey(DEVICE_USER)
+                .guid("67014de6-81db-11e6-a5bc-3f99b38315c6").build();
+
+        SecurityContext context = SecurityContextHolder.getContext();
+        Authentication auth = new UsernamePasswordAuthenticationToken(device, null);
+        context.setAuthentication(auth);
+
+        getMockMvc().perform(
+                get("/stream/"+ DEVICE_USER +"/"+ INVALID_CHANNEL_CHAR)
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void shouldStreamEventsAfterTheOffsetAndOnEveryNotification() throws Exception {
+        Device device = streamingDevice();
+        when(deviceEventService.streamOutgoingBy(any(Tenant.class), any(Application.class), anyString(), anyString(),
+                eq(Instant.ofEpochMilli(OFFSET)), (Instant) isNull(), eq(true), eq(50), (String) isNull()))
+                .thenReturn(ServiceResponseBuilder.<EventCursor>ok().withResult(cursor(0, 2)).build());
+        when(deviceEventService.streamOutgoingBy(any(Tenant.class), any(Application.class), anyString(), anyString(),
+                (Instant) isNull(), (Instant) isNull(), eq(true), eq(50), eq(token(1))))
+                .thenReturn(ServiceResponseBuilder.<EventCursor>ok().withResult(cursor(2, 3)).build());
+
+        MvcResult result = getMockMvc().perform(
+                get("/stream/" + DEVICE_USER + "/" + VALID_CHANNEL)
+                        .param("offset", String.valueOf(OFFSET))
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        waitFor(() -> streamed(result).contains("id:" + token(1) + "\n"));
+
+        ArgumentCaptor<Runnable> listener = ArgumentCaptor.forClass(Runnable.class);
+        verify(jedisTaskService).subscribeToStream(eq(device.getApiKey() + "." + VALID_CHANNEL), listener.capture());
+        listener.getValue().run();
+
+        waitFor(() -> streamed(result).contains("id:" + token(2) + "\n"));
+        assertInOrder(streamed(result), 0, 3);
+    }
+
+    @Test
+    public void shouldStreamEveryBatchOfEventsSharingATimestamp() throws Exception {
+        streamingDevice();
+        when(deviceEventService.streamOutgoingBy(any(Tenant.class), any(Application.class), anyString(), anyString(),
+                eq(Instant.ofEpochMilli(OFFSET)), (Instant) isNull(), eq(true), eq(50), (String) isNull()))
+                .thenReturn(ServiceResponseBuilder.<EventCursor>ok().withResult(cursor(0, 50)).build());
+        when(deviceEventService.streamOutgoingBy(any(Tenant.class), any(Application.class), anyString(), anyString(),
+                (Instant) isNull(), (Instant) isNull(), eq(true), eq(50), eq(token(49))))
+                .thenReturn(ServiceResponseBuilder.<EventCursor>ok().withResult(cursor(50, 51)).build());
+
+        MvcResult result = getMockMvc().perform(
+                get("/stream/" + DEVICE_USER + "/" + VALID_CHANNEL)
+                        .param("offset", String.valueOf(OFFSET))
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        waitFor(() -> streamed(result).contains("id:" + token(50) + "\n"));
+        assertInOrder(streamed(result), 0, 51);
+    }
+
+    @Test
+    public void shouldResumeTheStreamAfterTheLastEventId() throws Exception {
+        streamingDevice();
+        when(deviceEventService.streamOutgoingBy(any(Tenant.class), any(Application.class), anyString(), anyString(),
+                (Instant) isNull(), (Instant) isNull(), eq(true), eq(50), eq(token(1))))
+                .thenReturn(ServiceResponseBuilder.<EventCursor>ok().withResult(cursor(2, 4)).build());
+
+        MvcResult result = getMockMvc().perform(
+                get("/stream/" + DEVICE_USER + "/" + VALID_CHANNEL)
+                        .header("Last-Event-ID", token(1))
+                        .param("offset", String.valueOf(OFFSET))
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        waitFor(() -> streamed(result).contains("id:" + token(3) + "\n"));
+        assertInOrder(streamed(result), 2, 4);
+        assertThat(streamed(result).contains("id:" + token(1) + "\n"), equalTo(false));
+    }
+
     @Test
     public void shouldRefuseRequestFromKonkerPlataform() throws Exception {
         Device device = Device.builder().deviceId("tug6g6essh4m")
@@ -165,6 +274,91 @@ public class DeviceEventRestEndpointTest extends WebLayerTestContext {
 
     }
 
+    @Test
+    public void shouldAskToRetryLaterWhenTheIngestBufferIsFull() throws Exception {
+        Device device = Device.builder().deviceId("tug6g6essh4m")
+                .active(true)
+                .apiKey("e4399b2ed998")
+                .guid("67014de6-81db-11e6-a5bc-3f99b38315c6").build();
+
+        String json = "{\"temperature\": 18, \"unit\": \"celsius\"}";
+
+        SecurityContext context = SecurityContextHolder.getContext();
+        Authentication auth = new UsernamePasswordAuthenticationToken(device, null);
+        context.setAuthentication(auth);
+
+        when(jsonParsingService.isValid(json)).thenReturn(true);
+        doThrow(new IngestUnavailableException(EventIngestService.Messages.INGEST_QUEUE_FULL.getCode(), 1500L))
+                .when(applicationContext.getBean(DeviceEventProcessor.class))
+                .process(device.getApiKey(), VALID_CHANNEL, json);
+
+        getMockMvc().perform(
+                post("/pub/" + device.getApiKey() + "/" + VALID_CHANNEL)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(json))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "2"))
+                .andExpect(content().string(org.hamcrest.Matchers.containsString(
+                        EventIngestService.Messages.INGEST_QUEUE_FULL.getCode())));
+    }
+
+    private Device streamingDevice() {
+        Device device = Device.builder().deviceId("tug6g6essh4m")
+                .active(true)
+                .apiKey(DEVICE_USER)
+                .tenant(Tenant.builder().domainName("konker").name("konker").build())
+                .application(Application.builder().name("konker").build())
+                .guid("67014de6-81db-11e6-a5bc-3f99b38315c6").build();
+
+        SecurityContext context = SecurityContextHolder.getContext();
+        Authentication auth = new UsernamePasswordAuthenticationToken(device, null);
+        context.setAuthentication(auth);
+
+        when(deviceRegisterService.findByApiKey(DEVICE_USER)).thenReturn(device);
+        when(jedisTaskService.subscribeToStream(anyString(), any(Runnable.class))).thenReturn(() -> {});
+        return device;
+    }
+
+    private EventCursor cursor(int from, int to) {
+        return new EventCursor(IntStream.range(from, to).iterator(),
+                (Integer index) -> Event.builder()
+                        .incoming(Event.EventActor.builder().deviceGuid("67014de6-81db-11e6-a5bc-3f99b38315c6")
+                                .channel(VALID_CHANNEL).build())
+                        .timestamp(Instant.ofEpochMilli(EVENT_TIMESTAMP))
+                        .payload("{\"index\":" + index + "}")
+                        .build(),
+                (Integer index) -> new EventContinuation(EVENT_TIMESTAMP, "event" + index),
+                () -> {});
+    }
+
+    private String token(int index) {
+        return new EventContinuation(EVENT_TIMESTAMP, "event" + index).toToken();
+    }
+
+    private String streamed(MvcResult result) {
+        try {
+            return result.getResponse().getContentAsString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void assertInOrder(String streamed, int from, int to) {
+        int previous = -1;
+        for (int index = from; index < to; index++) {
+            int position = streamed.indexOf("id:" + token(index) + "\n");
+            assertThat(previous, lessThan(position));
+            previous = position;
+        }
+    }
+
+    private void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertThat(condition.getAsBoolean(), equalTo(true));
+    }
+
     @Configuration
     static class DeviceEventRestEndpointTestContextConfig {
         @Bean
@@ -197,10 +391,5 @@ public class DeviceEventRestEndpointTest extends WebLayerTestContext {
         public RedisTemplate<String, String> redisTemplate() {
             return Mockito.mock(RedisTemplate.class);
         }
-
-        @Bean
-        public Executor executor() {
-            return Mockito.mock(Executor.class);
-        }
     }
 }
@@ -0,0 +1,157 @@
+package com.konkerlabs.platform.registry.test.integration.endpoints;
+
+import com.konkerlabs.platform.registry.integration.endpoints.MqttInboundPartitioner;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.integration.mqtt.support.MqttHeaders;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class MqttInboundPartitionerTest {
+
+    private static final String API_KEY = "e4399b2ed998";
+    private static final String OTHER_API_KEY = "2ed998e4399b";
+
+    private MqttInboundPartitioner subject;
+
+    private List<Message<?>> processed = new CopyOnWriteArrayList<>();
+    private Map<String, String> threadsByApiKey = new ConcurrentHashMap<>();
+    private List<String> conflictingApiKeys = new CopyOnWriteArrayList<>();
+
+    @After
+    public void tearDown() throws Exception {
+        if (subject != null)
+            subject.destroy();
+    }
+
+    @Test
+    public void shouldProcessTheMessagesOfADeviceOnTheSamePartition() throws Exception {
+        subject = new MqttInboundPartitioner(recordingChannel(), 4, 100, 1000L);
+
+        for (int index = 0; index < 20; index++) {
+            send(API_KEY, index);
+            send(OTHER_API_KEY, index);
+        }
+
+        waitFor(() -> subject.getMetrics().get("processed").longValue() == 40);
+        assertThat(processed, hasSize(40));
+        assertThat(threadsByApiKey.keySet(), containsInAnyOrder(API_KEY, OTHER_API_KEY));
+        assertThat(threadsByApiKey.values(), everyItem(startsWith("mqtt-inbound-")));
+        assertThat(conflictingApiKeys, empty());
+    }
+
+    @Test
+    public void shouldProcessTheMessagesOfADeviceInOrder() throws Exception {
+        subject = new MqttInboundPartitioner(recordingChannel(), 2, 1000, 1000L);
+
+        List<String> payloads = IntStream.range(0, 200)
+                .mapToObj(index -> "{\"index\":" + index + "}")
+                .collect(Collectors.toList());
+        for (int index = 0; index < payloads.size(); index++)
+            send(API_KEY, index);
+
+        waitFor(() -> processed.size() == payloads.size());
+        assertThat(processed.stream().map(Message::getPayload).collect(Collectors.toList()), equalTo(payloads));
+    }
+
+    @Test
+    public void shouldDropMessagesWhenThePartitionIsStillFullAfterTheBlockTimeout() throws Exception {
+        CountDownLatch released = new CountDownLatch(1);
+        MessageChannel blockedChannel = channel(message -> {
+            await(released);
+            processed.add(message);
+        });
+        subject = new MqttInboundPartitioner(blockedChannel, 1, 2, 50L);
+
+        // one message is being processed and two are queued, the partition is saturated
+        for (int index = 0; index < 3; index++)
+            send(API_KEY, index);
+        waitFor(() -> subject.getMetrics().get("queued").intValue() == 2);
+
+        long started = System.currentTimeMillis();
+        send(API_KEY, 3);
+        long blocked = System.currentTimeMillis() - started;
+
+        assertThat(blocked, allOf(greaterThanOrEqualTo(50L), lessThan(1000L)));
+        assertThat(subject.getMetrics(), hasEntry("dropped", (Number) 1L));
+
+        released.countDown();
+
+        waitFor(() -> subject.getMetrics().get("processed").longValue() == 3);
+        assertThat(processed, hasSize(3));
+    }
+
+    @Test
+    public void shouldCountMessagesThatFailedToBeProcessed() throws Exception {
+        subject = new MqttInboundPartitioner(channel(message -> {
+            throw new IllegalStateException("failed");
+        }), 1, 10, 1000L);
+
+        send(API_KEY, 0);
+
+        waitFor(() -> subject.getMetrics().get("failed").longValue() == 1);
+        assertThat(subject.getMetrics(), hasEntry("processed", (Number) 0L));
+    }
+
+    private MessageChannel recordingChannel() {
+        return channel(message -> {
+            String apiKey = message.getHeaders().get(MqttHeaders.TOPIC).toString().split("/")[1];
+            String thread = Thread.currentThread().getName();
+            if (!thread.equals(threadsByApiKey.computeIfAbsent(apiKey, key -> thread)))
+                conflictingApiKeys.add(apiKey);
+            processed.add(message);
+        });
+    }
+
+    private static MessageChannel channel(Consumer<Message<?>> receiver) {
+        return new MessageChannel() {
+            @Override
+            public boolean send(Message<?> message) {
+                return send(message, INDEFINITE_TIMEOUT);
+            }
+
+            @Override
+            public boolean send(Message<?> message, long timeout) {
+                receiver.accept(message);
+                return true;
+            }
+        };
+    }
+
+    private void send(String apiKey, int index) {
+        subject.handleMessage(MessageBuilder.withPayload("{\"index\":" + index + "}")
+                .setHeader(MqttHeaders.TOPIC, "pub/" + apiKey + "/data")
+                .build());
+    }
+
+    private void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertThat(condition.getAsBoolean(), equalTo(true));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -21,6 +21,7 @@ import org.springframework.web.client.RestTemplate;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 
 import static java.text.MessageFormat.format;
@@ -226,6 +227,29 @@ public class HttpGatewayTest {
                 eq(String.class));
     }
 
+    @Test
+    public void shouldRequestWithDestinationTimeout() throws IntegrationException {
+        when(restTemplate.exchange(eq(uri), eq(HttpMethod.GET), httpEntityCaptor.capture(),
+                eq(String.class))).thenReturn(new ResponseEntity<String>("response", HttpStatus.OK));
+
+        String response = httpGateway.request(method, headers, uri, mediaType, () -> null, USERNAME, PASSWORD, 5000);
+
+        assertThat(response, equalTo("response"));
+        assertThat(headers.getFirst("Authorization"), nullValue());
+    }
+
+    @Test
+    public void shouldCompleteAsyncRequestExceptionallyOnFailure() throws Exception {
+        when(restTemplate.exchange(eq(uri), eq(method), httpEntityCaptor.capture(),
+                eq(String.class))).thenReturn(new ResponseEntity<String>("Server error",HttpStatus.INTERNAL_SERVER_ERROR));
+
+        CompletableFuture<String> response = httpGateway.requestAsync(method, headers, uri, mediaType, null, USERNAME, PASSWORD, null);
+
+        thrown.expectCause(instanceOf(IntegrationException.class));
+
+        response.get();
+    }
+
     @Test
     public void shouldRaiseAnExceptionIfResponseStatusIsNotA2xxStatus() throws Exception {
         String errorBody = "Server error";
@@ -0,0 +1,200 @@
+package com.konkerlabs.platform.registry.test.integration.gateways;
+
+import com.konkerlabs.platform.registry.integration.gateways.MqttOutboundPublisher;
+import com.konkerlabs.platform.registry.integration.gateways.MqttOutboundPublisher.OverflowPolicy;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.integration.mqtt.core.DefaultMqttPahoClientFactory;
+import org.springframework.integration.mqtt.support.MqttHeaders;
+import org.springframework.integration.support.MessageBuilder;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MqttOutboundPublisherTest {
+
+    private static final String SERVER_URI = "tcp://dev-server:1883";
+
+    private DefaultMqttPahoClientFactory clientFactory;
+    private IMqttAsyncClient client;
+
+    private AtomicBoolean brokerUp = new AtomicBoolean(true);
+    private AtomicBoolean connected = new AtomicBoolean();
+    private volatile long publishDelay;
+    private List<String> publishedTopics = new CopyOnWriteArrayList<>();
+
+    private MqttOutboundPublisher subject;
+
+    @Before
+    public void setUp() throws Exception {
+        IMqttToken token = mock(IMqttToken.class);
+
+        client = mock(IMqttAsyncClient.class);
+        when(client.isConnected()).thenAnswer(invocation -> connected.get());
+        when(client.connect(any(MqttConnectOptions.class))).thenAnswer(invocation -> {
+            if (!brokerUp.get())
+                throw new MqttException(MqttException.REASON_CODE_SERVER_CONNECT_ERROR);
+            connected.set(true);
+            return token;
+        });
+        when(client.disconnect()).thenReturn(token);
+        when(client.publish(anyString(), any(byte[].class), anyInt(), anyBoolean(), any(), any(IMqttActionListener.class)))
+                .thenAnswer(invocation -> {
+                    if (!brokerUp.get()) {
+                        connected.set(false);
+                        throw new MqttException(MqttException.REASON_CODE_CLIENT_NOT_CONNECTED);
+                    }
+                    Thread.sleep(publishDelay);
+                    publishedTopics.add(invocation.getArgumentAt(0, String.class));
+                    invocation.getArgumentAt(5, IMqttActionListener.class).onSuccess(token);
+                    return null;
+                });
+
+        clientFactory = mock(DefaultMqttPahoClientFactory.class);
+        when(clientFactory.getAsyncClientInstance(anyString(), anyString())).thenReturn(client);
+        when(clientFactory.getConnectionOptions()).thenReturn(new MqttConnectOptions());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (subject != null)
+            subject.stop();
+    }
+
+    @Test
+    public void shouldPublishQueuedMessagesInOrder() throws Exception {
+        subject = publisher(OverflowPolicy.BLOCK, 10, 1000L);
+        subject.start();
+
+        send(0, 5);
+
+        waitFor(() -> subject.getMetrics().get("published").longValue() == 5);
+        assertThat(publishedTopics, contains("topic0", "topic1", "topic2", "topic3", "topic4"));
+    }
+
+    @Test
+    public void shouldDropMessagesWhenTheQueueIsFull() throws Exception {
+        subject = publisher(OverflowPolicy.DROP, 2, 1000L);
+
+        send(0, 5);
+
+        assertThat(subject.getMetrics(), hasEntry("queued", (Number) 2));
+        assertThat(subject.getMetrics(), hasEntry("dropped", (Number) 3L));
+    }
+
+    @Test
+    public void shouldDropMessagesWhenTheQueueIsStillFullAfterTheBlockTimeout() throws Exception {
+        subject = new MqttOutboundPublisher(clientFactory, SERVER_URI, 1, 1, 10, 1,
+                OverflowPolicy.BLOCK, 50L, 20L, 1000L);
+
+        long started = System.currentTimeMillis();
+        send(0, 2);
+
+        assertThat(System.currentTimeMillis() - started, greaterThanOrEqualTo(50L));
+        assertThat(subject.getMetrics(), hasEntry("dropped", (Number) 1L));
+    }
+
+    @Test
+    public void shouldHoldMessagesWhileTheBrokerIsDownAndPublishThemOnReconnect() throws Exception {
+        brokerUp.set(false);
+        subject = publisher(OverflowPolicy.BLOCK, 10, 1000L);
+        subject.start();
+
+        send(0, 3);
+        Thread.sleep(200);
+
+        assertThat(subject.getMetrics(), hasEntry("published", (Number) 0L));
+        assertThat(subject.getMetrics(), hasEntry("failed", (Number) 0L));
+
+        brokerUp.set(true);
+
+        waitFor(() -> subject.getMetrics().get("published").longValue() == 3);
+        assertThat(publishedTopics, contains("topic0", "topic1", "topic2"));
+        assertThat(subject.getMetrics(), hasEntry("failed", (Number) 0L));
+    }
+
+    @Test
+    public void shouldRetryAMessageWhenTheConnectionIsLost() throws Exception {
+        subject = publisher(OverflowPolicy.BLOCK, 10, 1000L);
+        subject.start();
+
+        send(0, 1);
+        waitFor(() -> subject.getMetrics().get("published").longValue() == 1);
+
+        brokerUp.set(false);
+        send(1, 2);
+        Thread.sleep(100);
+        brokerUp.set(true);
+
+        waitFor(() -> subject.getMetrics().get("published").longValue() == 2);
+        assertThat(publishedTopics, contains("topic0", "topic1"));
+        assertThat(subject.getMetrics(), hasEntry("failed", (Number) 0L));
+    }
+
+    @Test
+    public void shouldPublishQueuedMessagesBeforeStopping() throws Exception {
+        publishDelay = 20;
+        subject = publisher(OverflowPolicy.BLOCK, 10, 5000L);
+        subject.start();
+
+        send(0, 5);
+        subject.stop();
+
+        assertThat(publishedTopics, hasSize(5));
+        assertThat(subject.getMetrics(), hasEntry("dropped", (Number) 0L));
+    }
+
+    @Test
+    public void shouldCountMessagesLeftWhenStoppingWhileTheBrokerIsDown() throws Exception {
+        brokerUp.set(false);
+        subject = publisher(OverflowPolicy.BLOCK, 10, 200L);
+        subject.start();
+
+        send(0, 3);
+        subject.stop();
+
+        assertThat(subject.getMetrics(), hasEntry("published", (Number) 0L));
+        assertThat(subject.getMetrics(), hasEntry("queued", (Number) 0));
+        assertThat(subject.getMetrics(), hasEntry("dropped", (Number) 3L));
+
+        send(3, 4);
+        assertThat(subject.getMetrics(), hasEntry("dropped", (Number) 4L));
+    }
+
+    private MqttOutboundPublisher publisher(OverflowPolicy overflowPolicy, int queueSize, long shutdownTimeout) {
+        return new MqttOutboundPublisher(clientFactory, SERVER_URI, 1, queueSize, 10, 1,
+                overflowPolicy, 1000L, 20L, shutdownTimeout);
+    }
+
+    private void send(int from, int to) {
+        for (int index = from; index < to; index++)
+            subject.handleMessage(MessageBuilder.withPayload("{\"index\":" + index + "}")
+                    .setHeader(MqttHeaders.TOPIC, "topic" + index)
+                    .build());
+    }
+
+    private void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertThat(condition.getAsBoolean(), equalTo(true));
+    }
+
+}
@@ -1,5 +1,9 @@
 package com.konkerlabs.platform.registry.test.integration.processors;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
@@ -41,7 +45,10 @@ import com.konkerlabs.platform.registry.business.services.api.ServiceResponse;
 import com.konkerlabs.platform.registry.business.services.api.ServiceResponseBuilder;
 import com.konkerlabs.platform.registry.data.config.RedisConfig;
 import com.konkerlabs.platform.registry.data.services.api.DeviceLogEventService;
+import com.konkerlabs.platform.registry.data.services.api.EventIngestService;
+import com.konkerlabs.platform.registry.data.services.api.EventJournalService;
 import com.konkerlabs.platform.registry.data.services.routes.api.EventRouteExecutor;
+import com.konkerlabs.platform.registry.integration.exceptions.IngestUnavailableException;
 import com.konkerlabs.platform.registry.integration.processors.DeviceEventProcessor;
 import com.konkerlabs.platform.registry.test.data.base.BusinessTestConfiguration;
 import com.konkerlabs.platform.registry.test.data.base.IntegrationLayerTestContext;
@@ -207,6 +214,132 @@ public class DeviceEventProcessorTest {
         verify(deviceLogEventService, times(1)).logIncomingEvent(any(Device.class), any(Event.class));
     }
 
+    @Test
+    public void shouldRaiseAnExceptionIfIngestBufferIsFull() throws Exception {
+        when(deviceRegisterService.findByApiKey(sourceApiKey)).thenReturn(device);
+
+        when(deviceLogEventService.logIncomingEvent(eq(device), eq(event))).thenReturn(
+                ServiceResponseBuilder.<Event>error()
+                        .withMessage(EventIngestService.Messages.INGEST_QUEUE_FULL.getCode()).build()
+        );
+
+        thrown.expect(IngestUnavailableException.class);
+        thrown.expectMessage(EventIngestService.Messages.INGEST_QUEUE_FULL.getCode());
+
+        try {
+            subject.process(sourceApiKey, incomingChannel, originalPayload);
+        } finally {
+            verify(eventRouteExecutor, never()).execute(any(Event.class), any(URI.class));
+        }
+    }
+
+    @Test
+    public void shouldRaiseAnExceptionIfTheEventJournalIsFull() throws Exception {
+        when(deviceRegisterService.findByApiKey(sourceApiKey)).thenReturn(device);
+
+        when(deviceLogEventService.logIncomingEvent(eq(device), eq(event))).thenReturn(
+                ServiceResponseBuilder.<Event>error()
+                        .withMessage(EventJournalService.Messages.JOURNAL_FULL.getCode()).build()
+        );
+
+        thrown.expect(IngestUnavailableException.class);
+        thrown.expectMessage(EventJournalService.Messages.JOURNAL_FULL.getCode());
+
+        try {
+            subject.process(sourceApiKey, incomingChannel, originalPayload);
+        } finally {
+            verify(eventRouteExecutor, never()).execute(any(Event.class), any(URI.class));
+        }
+    }
+
+    @Test
+    public void shouldProcessEachItemOfABulkBody() throws Exception {
+        when(deviceRegisterService.findByApiKey(sourceApiKey)).thenReturn(device);
+        when(deviceLogEventService.logIncomingEvent(eq(device), any(Event.class))).thenReturn(
+                ServiceResponseBuilder.<Event>ok().withResult(event).build()
+        );
+
+        List<ServiceResponse<Event>> responses = subject.processBulk(sourceApiKey, incomingChannel,
+                "[{\"temperature\": 18, \"_ts\": 1474562670340}, {\"temperature\": 19}]");
+
+        assertThat(responses, hasSize(2));
+        assertThat(responses.get(0).isOk(), equalTo(true));
+        assertThat(responses.get(1).isOk(), equalTo(true));
+        verify(deviceRegisterService, times(1)).findByApiKey(sourceApiKey);
+        verify(deviceLogEventService, times(2)).logIncomingEvent(eq(device), any(Event.class));
+        verify(eventRouteExecutor, times(2)).execute(any(Event.class), any(URI.class));
+    }
+
+    @Test
+    public void shouldReportInvalidTimestampPerBulkItem() throws Exception {
+        when(deviceRegisterService.findByApiKey(sourceApiKey)).thenReturn(device);
+        when(deviceLogEventService.logIncomingEvent(eq(device), any(Event.class))).thenReturn(
+                ServiceResponseBuilder.<Event>ok().withResult(event).build()
+        );
+
+        List<ServiceResponse<Event>> responses = subject.processBulk(sourceApiKey, incomingChannel,
+                "{\"temperature\": 18, \"_ts\": \"yesterday\"}\n{\"temperature\": 19}");
+
+        assertThat(responses, hasSize(2));
+        assertThat(responses.get(0).getResponseMessages(),
+                hasKey(DeviceEventProcessor.Messages.INVALID_TIMESTAMP.getCode()));
+        assertThat(responses.get(1).isOk(), equalTo(true));
+        verify(eventRouteExecutor, times(1)).execute(any(Event.class), any(URI.class));
+    }
+
+    @Test
+    public void shouldRejectTheRemainingBulkItemsOnceTheIngestBufferIsFull() throws Exception {
+        ServiceResponse<Event> queueFull = ServiceResponseBuilder.<Event>error()
+                .withMessage(EventIngestService.Messages.INGEST_QUEUE_FULL.getCode()).build();
+
+        when(deviceRegisterService.findByApiKey(sourceApiKey)).thenReturn(device);
+        when(deviceLogEventService.logIncomingEvent(eq(device), any(Event.class))).thenReturn(
+                ServiceResponseBuilder.<Event>ok().withResult(event).build(), queueFull);
+
+        List<ServiceResponse<Event>> responses = subject.processBulk(sourceApiKey, incomingChannel,
+                "[{\"temperature\": 18}, {\"temperature\": 19}, {\"temperature\": 20}]");
+
+        assertThat(responses, hasSize(3));
+        assertThat(responses.get(0).isOk(), equalTo(true));
+        assertThat(responses.get(1).getResponseMessages(), hasKey(EventIngestService.Messages.INGEST_QUEUE_FULL.getCode()));
+        assertThat(responses.get(2).getResponseMessages(), hasKey(EventIngestService.Messages.INGEST_QUEUE_FULL.getCode()));
+        verify(deviceLogEventService, times(2)).logIncomingEvent(eq(device), any(Event.class));
+        verify(eventRouteExecutor, times(1)).execute(any(Event.class), any(URI.class));
+    }
+
+    @Test
+    public void shouldRaiseAnExceptionIfTheIngestBufferIsFullBeforeAnyBulkItem() throws Exception {
+        when(deviceRegisterService.findByApiKey(sourceApiKey)).thenReturn(device);
+        when(deviceLogEventService.logIncomingEvent(eq(device), any(Event.class))).thenReturn(
+                ServiceResponseBuilder.<Event>error()
+                        .withMessage(EventIngestService.Messages.INGEST_QUEUE_FULL.getCode()).build());
+
+        thrown.expect(IngestUnavailableException.class);
+        thrown.expectMessage(EventIngestService.Messages.INGEST_QUEUE_FULL.getCode());
+
+        subject.processBulk(sourceApiKey, incomingChannel, "[{\"temperature\": 18}, {\"temperature\": 19}]");
+    }
+
+    @Test
+    public void shouldRaiseAnExceptionIfBulkBodyIsInvalid() throws Exception {
+        when(deviceRegisterService.findByApiKey(sourceApiKey)).thenReturn(device);
+
+        thrown.expect(BusinessException.class);
+        thrown.expectMessage(DeviceEventProcessor.Messages.INVALID_PAYLOAD.getCode());
+
+        subject.processBulk(sourceApiKey, incomingChannel, "[{\"temperature\": 18");
+    }
+
+    @Test
+    public void shouldRaiseAnExceptionIfBulkBodyIsEmpty() throws Exception {
+        when(deviceRegisterService.findByApiKey(sourceApiKey)).thenReturn(device);
+
+        thrown.expect(BusinessException.class);
+        thrown.expectMessage(DeviceEventProcessor.Messages.INVALID_BULK_SIZE.getCode());
+
+        subject.processBulk(sourceApiKey, incomingChannel, "[]");
+    }
+
     @Configuration
     static class BusinessLayerConfiguration {
         @Bean
@@ -124,6 +124,27 @@ public class Device implements URIDealer, Validatable, UserDetails {
 //				.collect(Collectors.toList());
 //	}
 
+	/**
+	 * Returns a copy of the device fields, sharing the tenant and application it
+	 * references.
+	 */
+	public Device copy() {
+		return Device.builder()
+				.id(id)
+				.tenant(tenant)
+				.deviceId(deviceId)
+				.apiKey(apiKey)
+				.securityHash(securityHash)
+				.name(name)
+				.guid(guid)
+				.description(description)
+				.registrationDate(registrationDate)
+				.logLevel(logLevel)
+				.active(active)
+				.application(application)
+				.build();
+	}
+
 	public LogLevel getLogLevel() {
 		return Optional.ofNullable(logLevel).orElse(LogLevel.WARNING);
 	}
@@ -1,19 +1,32 @@
 package com.konkerlabs.platform.registry.business.model;
 
 import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.konkerlabs.platform.registry.business.model.behaviors.URIDealer;
 import com.konkerlabs.platform.registry.integration.serializers.EventJsonView;
+import com.konkerlabs.platform.utilities.parsers.json.JsonParsingService;
+import com.konkerlabs.platform.utilities.parsers.json.JsonParsingService.JsonPathData;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.Map;
 
 @Data
 @Builder
+@EqualsAndHashCode(exclude = {"payloadMap", "payloadFlatMap"})
+@ToString(exclude = {"payloadMap", "payloadFlatMap"})
 public class Event {
 
     private Long epochTime;
@@ -29,6 +42,72 @@ public class Event {
     @JsonView(EventJsonView.class)
     private String payload;
 
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient volatile Map<String, Object> payloadMap;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient volatile Map<String, JsonPathData> payloadFlatMap;
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+        this.payloadMap = null;
+        this.payloadFlatMap = null;
+    }
+
+    /**
+     * Sets the payload from an already decoded tree, as read from a binary encoding.
+     * The payload is kept as JSON text and both parsed views are taken from the tree.
+     */
+    public void setPayload(JsonNode tree, JsonParsingService jsonParsingService) throws JsonProcessingException {
+        this.payloadMap = Collections.unmodifiableMap(jsonParsingService.toMap(tree));
+        this.payloadFlatMap = Collections.unmodifiableMap(jsonParsingService.toFlatMap(tree));
+        this.payload = tree.toString();
+    }
+
+    /**
+     * Returns the payload parsed as a map. It is parsed on the first call only and
+     * shared by every later reader of this event, so it must be treated as read-only.
+     */
+    public Map<String, Object> getPayloadAsMap(JsonParsingService jsonParsingService) throws JsonProcessingException {
+        Map<String, Object> parsed = payloadMap;
+        if (parsed == null) {
+            parsed = Collections.unmodifiableMap(jsonParsingService.toMap(payload));
+            payloadMap = parsed;
+        }
+        return parsed;
+    }
+
+    /**
+     * Returns the flattened view of the payload, parsed on the first call only.
+     */
+    public Map<String, JsonPathData> getPayloadAsFlatMap(JsonParsingService jsonParsingService) throws JsonProcessingException {
+        Map<String, JsonPathData> parsed = payloadFlatMap;
+        if (parsed == null) {
+            parsed = Collections.unmodifiableMap(jsonParsingService.toFlatMap(payload));
+            payloadFlatMap = parsed;
+        }
+        return parsed;
+    }
+
+    /**
+     * Returns a copy to hand to a single consumer, such as one route, which may set its
+     * outgoing actor. The parsed payload views are read-only, so they are shared.
+     */
+    public Event copy() {
+        Event copy = Event.builder()
+                .epochTime(epochTime)
+                .timestamp(timestamp)
+                .incoming(incoming != null ? incoming.copy() : null)
+                .outgoing(outgoing != null ? outgoing.copy() : null)
+                .payload(payload)
+                .build();
+        copy.payloadMap = payloadMap;
+        copy.payloadFlatMap = payloadFlatMap;
+        return copy;
+    }
+
     @Data
     @Builder
     @NoArgsConstructor
@@ -61,6 +140,10 @@ public class Event {
         public String getGuid() {
             return deviceGuid;
         }
+
+        public EventActor copy() {
+            return new EventActor(tenantDomain, applicationName, deviceGuid, deviceId, channel);
+        }
     }
 
     public ZonedDateTime getZonedTimestamp(String zoneId) {
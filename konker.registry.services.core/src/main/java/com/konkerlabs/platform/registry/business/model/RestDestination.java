@@ -49,6 +49,7 @@ public class RestDestination implements URIDealer, Validatable {
     private String serviceURI;
     private String serviceUsername;
     private String servicePassword;
+    private Integer timeout;
     private boolean active;
 
     public static final String URI_SCHEME = "rest";
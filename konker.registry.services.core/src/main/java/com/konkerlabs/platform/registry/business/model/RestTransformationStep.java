@@ -17,7 +17,8 @@ public class RestTransformationStep extends TransformationStep {
         ATTRIBUTES_URL_MISSING("model.transformation.rest.attributes.url.missing"),
         ATTRIBUTES_USERNAME_MISSING("model.transformation.rest.attributes.username.missing"),
         ATTRIBUTES_PASSWORD_MISSING("model.transformation.rest.attributes.password.missing"),
-        ATTRIBUTES_METHOD_INVALID("model.transformation.rest.attributes.method.invalid");
+        ATTRIBUTES_METHOD_INVALID("model.transformation.rest.attributes.method.invalid"),
+        ATTRIBUTES_CACHE_TTL_INVALID("model.transformation.rest.attributes.cache_ttl.invalid");
 
         private String code;
 
@@ -35,6 +36,11 @@ public class RestTransformationStep extends TransformationStep {
     public static final String REST_URL_ATTRIBUTE_NAME = "url";
     public static final String REST_USERNAME_ATTRIBUTE_NAME = "username";
     public static final String REST_PASSWORD_ATTRIBUTE_NAME = "password";
+    /**
+     * Seconds a response of this step is reused for the same URL, method and body.
+     * Absent or zero disables the cache.
+     */
+    public static final String REST_ATTRIBUTE_CACHE_TTL = "cacheTtl";
     public static final String URI_SCHEME = "resttransformationstep";
     public static final List<String> VALID_METHODS = Arrays.asList("POST", "GET", "PUT");
 
@@ -54,6 +60,24 @@ public class RestTransformationStep extends TransformationStep {
         return (String) getAttributes().get(REST_URL_ATTRIBUTE_NAME);
     }
 
+    public long getCacheTtl() {
+        return Optional.ofNullable(getAttributes())
+                .map(attributes -> attributes.get(REST_ATTRIBUTE_CACHE_TTL))
+                .map(RestTransformationStep::parseCacheTtl)
+                .filter(ttl -> ttl > 0)
+                .orElse(0L);
+    }
+
+    private static Long parseCacheTtl(Object value) {
+        if (value instanceof Number)
+            return ((Number) value).longValue();
+        try {
+            return Long.valueOf(value.toString().trim());
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
     @Builder
     public RestTransformationStep(Map<String, Object> attributes) {
         super(IntegrationType.REST, attributes);
@@ -88,6 +112,8 @@ public class RestTransformationStep extends TransformationStep {
                     validations.put(Validations.ATTRIBUTES_PASSWORD_MISSING.getCode(),null);
                 if(!VALID_METHODS.contains(attr.get(REST_ATTRIBUTE_METHOD)))
                     validations.put(Validations.ATTRIBUTES_METHOD_INVALID.getCode(),null);
+                if (attr.get(REST_ATTRIBUTE_CACHE_TTL) != null && parseCacheTtl(attr.get(REST_ATTRIBUTE_CACHE_TTL)) < 0)
+                    validations.put(Validations.ATTRIBUTES_CACHE_TTL_INVALID.getCode(),null);
             });
 
         return Optional.of(validations).filter(stringMap -> !stringMap.isEmpty());
@@ -5,9 +5,13 @@ import com.konkerlabs.platform.registry.business.model.Application;
 import com.konkerlabs.platform.registry.business.model.Event;
 import com.konkerlabs.platform.registry.business.model.Tenant;
 import com.konkerlabs.platform.registry.business.model.validation.CommonValidations;
+import com.konkerlabs.platform.registry.config.EventRetentionConfig;
 
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public abstract class BaseEventRepositoryImpl implements EventRepository {
@@ -33,6 +37,12 @@ public abstract class BaseEventRepositoryImpl implements EventRepository {
         }
     }
 
+    protected static final int STREAM_FETCH_SIZE = 1000;
+
+    protected EventPayloadCodec payloadCodec = new EventPayloadCodec();
+
+    protected EventRetentionConfig retentionConfig = new EventRetentionConfig();
+
     @Override
     public void removeBy(Tenant tenant, Application application, String deviceGuid) throws BusinessException {
         try {
@@ -43,6 +53,11 @@ public abstract class BaseEventRepositoryImpl implements EventRepository {
         }
     }
 
+    @Override
+    public int purgeDeleted(int batchSize) {
+        return doPurgeDeleted(Type.INCOMING, batchSize) + doPurgeDeleted(Type.OUTGOING, batchSize);
+    }
+
     @Override
     public List<Event> findIncomingBy(Tenant tenant,
                                       Application application,
@@ -53,7 +68,7 @@ public abstract class BaseEventRepositoryImpl implements EventRepository {
                                       boolean ascending,
                                       Integer limit) throws BusinessException {
         return doFindByCommon(tenant, application, deviceGuid, channel, startInstant, endInstant, ascending, limit,
-                Type.INCOMING, false);
+                Type.INCOMING);
     }
 
     @Override
@@ -66,9 +81,36 @@ public abstract class BaseEventRepositoryImpl implements EventRepository {
                                       boolean ascending,
                                       Integer limit) throws BusinessException {
         return doFindByCommon(tenant, application, deviceGuid, channel, startInstant, endInstant, ascending, limit,
-                Type.OUTGOING, false);
+                Type.OUTGOING);
     }
 
+    @Override
+    public EventCursor streamIncomingBy(Tenant tenant,
+                                        Application application,
+                                        String deviceGuid,
+                                        String channel,
+                                        Instant startInstant,
+                                        Instant endInstant,
+                                        boolean ascending,
+                                        Integer limit,
+                                        String continuationToken) throws BusinessException {
+        return doStreamByCommon(tenant, application, deviceGuid, channel, startInstant, endInstant, ascending, limit,
+                continuationToken, Type.INCOMING);
+    }
+
+    @Override
+    public EventCursor streamOutgoingBy(Tenant tenant,
+                                        Application application,
+                                        String deviceGuid,
+                                        String channel,
+                                        Instant startInstant,
+                                        Instant endInstant,
+                                        boolean ascending,
+                                        Integer limit,
+                                        String continuationToken) throws BusinessException {
+        return doStreamByCommon(tenant, application, deviceGuid, channel, startInstant, endInstant, ascending, limit,
+                continuationToken, Type.OUTGOING);
+    }
 
     @Override
     public Event saveIncoming(Tenant tenant, Application application, Event event) throws BusinessException {
@@ -80,20 +122,104 @@ public abstract class BaseEventRepositoryImpl implements EventRepository {
         return doSaveCommon(tenant, application, event, Type.OUTGOING);
     }
 
+    @Override
+    public EventBatchResult saveIncomingBatch(Tenant tenant, Application application, List<Event> events) throws BusinessException {
+        return doSaveBatchCommon(tenant, application, events, Type.INCOMING);
+    }
+
+    @Override
+    public EventBatchResult saveOutgoingBatch(Tenant tenant, Application application, List<Event> events) throws BusinessException {
+        return doSaveBatchCommon(tenant, application, events, Type.OUTGOING);
+    }
+
     protected abstract Event doSave(Tenant tenant, Application application, Event event, Type incoming) throws BusinessException;
 
+    /**
+     * Stores events that passed the common validations, keyed by their position in the
+     * batch. Stores with a bulk write override it, by default events are saved one by one.
+     */
+    protected void doSaveBatch(Tenant tenant, Application application, Map<Integer, Event> events, Type type,
+                               EventBatchResult result) {
+        events.forEach((index, event) -> {
+            try {
+                result.addSaved(doSave(tenant, application, event, type));
+            } catch (BusinessException e) {
+                result.addFailure(index, e.getMessage());
+            }
+        });
+    }
+
     protected abstract void doRemoveBy(Tenant tenant, Application application, String deviceGuid, Type incoming) throws Exception;
 
+    /**
+     * Stores that only mark removed events as deleted override it to remove them for good.
+     */
+    protected int doPurgeDeleted(Type type, int batchSize) {
+        return 0;
+    }
+
+    /**
+     * Instant at which an event falls out of the retention window of its tenant and
+     * application, counted from the event timestamp. Empty when events are kept forever.
+     */
+    protected Optional<Instant> expiresAt(String tenantDomain, String applicationName, Instant timestamp) {
+        int days = retentionConfig.getRetentionDays(tenantDomain, applicationName);
+        return days > 0 ? Optional.of(timestamp.plus(days, ChronoUnit.DAYS)) : Optional.empty();
+    }
+
     protected abstract List<Event> doFindBy(Tenant tenant, Application application, String deviceGuid, String channel,
             Instant startInstant, Instant endInstant, boolean ascending,
-            Integer limit, Type incoming, boolean b) throws BusinessException;
+            Integer limit, Type incoming) throws BusinessException;
+
+    /**
+     * Reads the events sorted by timestamp and then by the id of their continuation,
+     * starting right after the given continuation when there is one.
+     */
+    protected abstract EventCursor doStreamBy(Tenant tenant, Application application, String deviceGuid, String channel,
+            Instant startInstant, Instant endInstant, boolean ascending,
+            Integer limit, EventContinuation after, Type type) throws BusinessException;
 
     private Event doSaveCommon(Tenant tenant, Application application, Event event, Type incoming) throws BusinessException {
 
         Optional.ofNullable(tenant)
                 .filter(tenant1 -> Optional.ofNullable(tenant1.getDomainName()).filter(s -> !s.isEmpty()).isPresent())
                 .orElseThrow(() -> new BusinessException(CommonValidations.TENANT_NULL.getCode()));
-                Optional.ofNullable(event)
+
+        validateCommon(event);
+
+        return doSave(tenant, application, event, incoming);
+
+    }
+
+    private EventBatchResult doSaveBatchCommon(Tenant tenant, Application application, List<Event> events, Type type) throws BusinessException {
+
+        Optional.ofNullable(tenant)
+                .filter(tenant1 -> Optional.ofNullable(tenant1.getDomainName()).filter(s -> !s.isEmpty()).isPresent())
+                .orElseThrow(() -> new BusinessException(CommonValidations.TENANT_NULL.getCode()));
+        Optional.ofNullable(events)
+                .orElseThrow(() -> new BusinessException(CommonValidations.RECORD_NULL.getCode()));
+
+        EventBatchResult result = new EventBatchResult();
+        Map<Integer, Event> valid = new LinkedHashMap<>();
+
+        for (int index = 0; index < events.size(); index++) {
+            try {
+                validateCommon(events.get(index));
+                valid.put(index, events.get(index));
+            } catch (BusinessException e) {
+                result.addFailure(index, e.getMessage());
+            }
+        }
+
+        if (!valid.isEmpty())
+            doSaveBatch(tenant, application, valid, type, result);
+
+        return result;
+
+    }
+
+    private void validateCommon(Event event) throws BusinessException {
+        Optional.ofNullable(event)
                 .orElseThrow(() -> new BusinessException(CommonValidations.RECORD_NULL.getCode()));
         Optional.ofNullable(event.getIncoming())
                 .orElseThrow(() -> new BusinessException(Validations.EVENT_INCOMING_NULL.getCode()));
@@ -101,9 +227,6 @@ public abstract class BaseEventRepositoryImpl implements EventRepository {
                 .orElseThrow(() -> new BusinessException(Validations.INCOMING_DEVICE_GUID_NULL.getCode()));
         Optional.ofNullable(event.getIncoming().getChannel()).filter(s -> !s.isEmpty())
                 .orElseThrow(() -> new BusinessException(Validations.EVENT_INCOMING_CHANNEL_NULL.getCode()));
-
-        return doSave(tenant, application, event, incoming);
-
     }
 
     private void doRemoveByCommon(Tenant tenant, Application application, String deviceGuid, Type incoming) throws Exception {
@@ -120,7 +243,7 @@ public abstract class BaseEventRepositoryImpl implements EventRepository {
 
     private List<Event> doFindByCommon(Tenant tenant, Application application, String deviceGuid, String channel,
             Instant startInstant, Instant endInstant, boolean ascending,
-            Integer limit, Type incoming, boolean isDeleted) throws BusinessException {
+            Integer limit, Type incoming) throws BusinessException {
 
         Optional.ofNullable(tenant)
                 .filter(tenant1 -> Optional.ofNullable(tenant1.getDomainName()).filter(s -> !s.isEmpty()).isPresent())
@@ -132,7 +255,21 @@ public abstract class BaseEventRepositoryImpl implements EventRepository {
 
         return doFindBy(tenant, application, deviceGuid, channel,
                 startInstant, endInstant, ascending,
-                limit, incoming, isDeleted);
+                limit, incoming);
+
+    }
+
+    private EventCursor doStreamByCommon(Tenant tenant, Application application, String deviceGuid, String channel,
+            Instant startInstant, Instant endInstant, boolean ascending,
+            Integer limit, String continuationToken, Type type) throws BusinessException {
+
+        Optional.ofNullable(tenant)
+                .filter(tenant1 -> Optional.ofNullable(tenant1.getDomainName()).filter(s -> !s.isEmpty()).isPresent())
+                .orElseThrow(() -> new IllegalArgumentException("Tenant cannot be null"));
+
+        return doStreamBy(tenant, application, deviceGuid, channel,
+                startInstant, endInstant, ascending,
+                limit, EventContinuation.fromToken(continuationToken), type);
 
     }
 
@@ -0,0 +1,52 @@
+package com.konkerlabs.platform.registry.business.repositories.events.api;
+
+import com.konkerlabs.platform.registry.business.model.Event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Outcome of a batch save. Events that could not be stored are reported by their
+ * position in the batch, with the validation code or the store error message, and do
+ * not prevent the other events of the batch from being stored. Failures are events the
+ * store rejects and will always reject, while retryable events failed on a transient
+ * store error, such as a timeout or an unavailable node, and may be saved again later.
+ */
+public class EventBatchResult {
+
+    private List<Event> saved = new ArrayList<>();
+    private Map<Integer, String> failures = new TreeMap<>();
+    private Map<Integer, String> retryable = new TreeMap<>();
+
+    public void addSaved(Event event) {
+        saved.add(event);
+    }
+
+    public void addFailure(int index, String message) {
+        failures.put(index, message);
+    }
+
+    public void addRetryable(int index, String message) {
+        retryable.put(index, message);
+    }
+
+    public List<Event> getSaved() {
+        return Collections.unmodifiableList(saved);
+    }
+
+    public Map<Integer, String> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    public Map<Integer, String> getRetryable() {
+        return Collections.unmodifiableMap(retryable);
+    }
+
+    public boolean isOk() {
+        return failures.isEmpty() && retryable.isEmpty();
+    }
+
+}
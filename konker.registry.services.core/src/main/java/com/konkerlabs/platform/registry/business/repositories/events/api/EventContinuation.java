@@ -0,0 +1,43 @@
+package com.konkerlabs.platform.registry.business.repositories.events.api;
+
+import com.konkerlabs.platform.registry.business.exceptions.BusinessException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Position of an event in a time ordered read: its timestamp and an id that breaks ties
+ * between events with the same timestamp. Callers only see it as an opaque token and
+ * pass it back to resume a read right after that event.
+ */
+@Data
+@AllArgsConstructor
+public class EventContinuation {
+
+    private long timestamp;
+    private String id;
+
+    public String toToken() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((timestamp + ":" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static EventContinuation fromToken(String token) throws BusinessException {
+        if (!Optional.ofNullable(token).filter(s -> !s.isEmpty()).isPresent())
+            return null;
+
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(':');
+
+            return new EventContinuation(Long.parseLong(decoded.substring(0, separator)),
+                    decoded.substring(separator + 1));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new BusinessException(EventRepository.Validations.EVENT_CONTINUATION_INVALID.getCode(), e);
+        }
+    }
+
+}
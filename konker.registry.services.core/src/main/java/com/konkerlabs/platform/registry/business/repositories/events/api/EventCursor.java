@@ -0,0 +1,76 @@
+package com.konkerlabs.platform.registry.business.repositories.events.api;
+
+import com.konkerlabs.platform.registry.business.model.Event;
+
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Events of a read, mapped one at a time from the rows of the store cursor, so a read of
+ * any size is held in memory only one driver page at a time. It must be closed to release
+ * the store cursor, either directly or by closing its {@link #stream()}.
+ */
+public class EventCursor implements Iterator<Event>, AutoCloseable {
+
+    private final Iterator<Event> events;
+    private final Runnable onClose;
+
+    private EventContinuation last;
+
+    /**
+     * The continuation of each row is taken before the row is mapped to its event.
+     */
+    public <T> EventCursor(Iterator<T> rows,
+                           Function<T, Event> toEvent,
+                           Function<T, EventContinuation> toContinuation,
+                           Runnable onClose) {
+        this.onClose = onClose;
+        this.events = new Iterator<Event>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public Event next() {
+                T row = rows.next();
+                last = toContinuation.apply(row);
+                return toEvent.apply(row);
+            }
+        };
+    }
+
+    @Override
+    public boolean hasNext() {
+        return events.hasNext();
+    }
+
+    @Override
+    public Event next() {
+        return events.next();
+    }
+
+    /**
+     * Token that resumes the same read right after the last event returned, or null when
+     * no event was returned yet.
+     */
+    public String getContinuationToken() {
+        return Optional.ofNullable(last).map(EventContinuation::toToken).orElse(null);
+    }
+
+    public Stream<Event> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        onClose.run();
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.konkerlabs.platform.registry.business.repositories.events.api;
+
+import com.konkerlabs.platform.registry.config.EventPayloadCodecConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Compresses event payloads above the configured size with the configured codec,
+ * either as bytes for stores with a binary type or as text for text columns. A text
+ * payload is marked with a prefix that no JSON document starts with, so payloads
+ * stored before compression was enabled are read back as they are.
+ */
+public class EventPayloadCodec {
+
+    private static final String TEXT_MARKER = "\u0000";
+    private static final String TEXT_SEPARATOR = ":";
+
+    private PayloadCodec codec;
+    private int threshold;
+
+    public EventPayloadCodec() {
+        this(new EventPayloadCodecConfig());
+    }
+
+    public EventPayloadCodec(EventPayloadCodecConfig config) {
+        this.codec = PayloadCodec.fromCode(config.getCodec())
+                .orElseThrow(() -> new IllegalArgumentException("Unknown payload codec: " + config.getCodec()));
+        this.threshold = config.getThreshold();
+    }
+
+    /**
+     * @return the compressed payload, or empty when it should be stored as it is
+     */
+    public Optional<byte[]> encode(String payload) {
+        return content(payload).flatMap(this::compress);
+    }
+
+    public PayloadCodec getCodec() {
+        return codec;
+    }
+
+    public String decode(String codecCode, byte[] content) {
+        PayloadCodec payloadCodec = PayloadCodec.fromCode(codecCode)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown payload codec: " + codecCode));
+
+        return new String(payloadCodec.decompress(content), StandardCharsets.UTF_8);
+    }
+
+    public String encodeToText(String payload) {
+        return content(payload)
+                .flatMap(content -> compress(content)
+                        .map(compressed -> TEXT_MARKER + codec.getCode() + TEXT_SEPARATOR
+                                + Base64.getEncoder().encodeToString(compressed))
+                        .filter(encoded -> encoded.length() < content.length))
+                .orElse(payload);
+    }
+
+    /**
+     * The UTF-8 content of a payload at or above the threshold. A character takes at most
+     * three bytes per UTF-16 unit, so payloads well below the threshold are not encoded
+     * just to be measured.
+     */
+    private Optional<byte[]> content(String payload) {
+        if (codec == PayloadCodec.NONE || payload == null || (long) payload.length() * 3 < threshold)
+            return Optional.empty();
+
+        byte[] content = payload.getBytes(StandardCharsets.UTF_8);
+        return content.length >= threshold ? Optional.of(content) : Optional.empty();
+    }
+
+    private Optional<byte[]> compress(byte[] content) {
+        byte[] compressed = codec.compress(content);
+        return compressed.length < content.length ? Optional.of(compressed) : Optional.empty();
+    }
+
+    public String decodeText(String stored) {
+        if (stored == null || !stored.startsWith(TEXT_MARKER))
+            return stored;
+
+        int separator = stored.indexOf(TEXT_SEPARATOR);
+        return decode(stored.substring(TEXT_MARKER.length(), separator),
+                Base64.getDecoder().decode(stored.substring(separator + 1)));
+    }
+
+}
@@ -22,7 +22,8 @@ public interface EventRepository {
         EVENT_INCOMING_CHANNEL_NULL("repository.events.incoming_channel.not_null"),
         EVENT_OUTGOING_NULL("repository.events.outgoing.not_null"),
         EVENT_OUTGOING_CHANNEL_NULL("repository.events.outgoing_channel.not_null"),
-        EVENT_TIMESTAMP_NULL("repository.events.timestamp.not_null");
+        EVENT_TIMESTAMP_NULL("repository.events.timestamp.not_null"),
+        EVENT_CONTINUATION_INVALID("repository.events.continuation.invalid");
 
         private String code;
 
@@ -40,6 +41,15 @@ public interface EventRepository {
 
     Event saveOutgoing(Tenant tenant, Application application, Event event) throws BusinessException;
 
+    /**
+     * Stores the events of a single tenant and application in as few round trips as the
+     * store allows. An invalid or rejected event is reported in the result instead of
+     * failing the batch.
+     */
+    EventBatchResult saveIncomingBatch(Tenant tenant, Application application, List<Event> events) throws BusinessException;
+
+    EventBatchResult saveOutgoingBatch(Tenant tenant, Application application, List<Event> events) throws BusinessException;
+
     List<Event> findIncomingBy(Tenant tenant,
                                Application application,
                                String deviceGuid,
@@ -58,6 +68,39 @@ public interface EventRepository {
                                boolean ascending,
                                Integer limit) throws BusinessException;
 
+    /**
+     * Reads the events lazily from the store cursor instead of materialising them. A null
+     * limit reads the whole range, and a continuation token returned by a previous cursor
+     * resumes the read right after the last event it returned.
+     */
+    EventCursor streamIncomingBy(Tenant tenant,
+                                 Application application,
+                                 String deviceGuid,
+                                 String channel,
+                                 Instant startInstant,
+                                 Instant endInstant,
+                                 boolean ascending,
+                                 Integer limit,
+                                 String continuationToken) throws BusinessException;
+
+    EventCursor streamOutgoingBy(Tenant tenant,
+                                 Application application,
+                                 String deviceGuid,
+                                 String channel,
+                                 Instant startInstant,
+                                 Instant endInstant,
+                                 boolean ascending,
+                                 Integer limit,
+                                 String continuationToken) throws BusinessException;
+
     void removeBy(Tenant tenant, Application application, String deviceGuid) throws BusinessException;
 
+    /**
+     * Physically removes up to batchSize events of each direction that were marked as
+     * deleted by {@link #removeBy}. Stores that remove events right away purge nothing.
+     *
+     * @return number of events removed
+     */
+    int purgeDeleted(int batchSize);
+
 }
@@ -0,0 +1,90 @@
+package com.konkerlabs.platform.registry.business.repositories.events.api;
+
+import net.jpountz.lz4.LZ4Factory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression algorithms available for stored event payloads. The name of the codec
+ * is stored with each compressed payload, so payloads written with any codec, or with
+ * none, can be read whatever codec is configured for new writes.
+ */
+public enum PayloadCodec {
+
+    NONE {
+        @Override
+        public byte[] compress(byte[] content) {
+            return content;
+        }
+
+        @Override
+        public byte[] decompress(byte[] content) {
+            return content;
+        }
+    },
+    DEFLATE {
+        @Override
+        public byte[] compress(byte[] content) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(content.length / 4);
+            try (DeflaterOutputStream deflater = new DeflaterOutputStream(output)) {
+                deflater.write(content);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return output.toByteArray();
+        }
+
+        @Override
+        public byte[] decompress(byte[] content) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(content.length * 4);
+            try (InflaterInputStream inflater = new InflaterInputStream(new ByteArrayInputStream(content))) {
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = inflater.read(buffer)) > 0)
+                    output.write(buffer, 0, read);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return output.toByteArray();
+        }
+    },
+    /**
+     * LZ4 blocks do not record their original length, so it is written before the block.
+     */
+    LZ4 {
+        @Override
+        public byte[] compress(byte[] content) {
+            byte[] block = LZ4Factory.fastestInstance().fastCompressor().compress(content);
+            return ByteBuffer.allocate(4 + block.length).putInt(content.length).put(block).array();
+        }
+
+        @Override
+        public byte[] decompress(byte[] content) {
+            int length = ByteBuffer.wrap(content).getInt();
+            return LZ4Factory.fastestInstance().fastDecompressor().decompress(content, 4, length);
+        }
+    };
+
+    public abstract byte[] compress(byte[] content);
+
+    public abstract byte[] decompress(byte[] content);
+
+    public String getCode() {
+        return name().toLowerCase();
+    }
+
+    public static Optional<PayloadCodec> fromCode(String code) {
+        return Arrays.stream(values())
+                .filter(codec -> codec.getCode().equalsIgnoreCase(code))
+                .findFirst();
+    }
+
+}
@@ -0,0 +1,162 @@
+package com.konkerlabs.platform.registry.business.services;
+
+import com.konkerlabs.platform.registry.business.model.Device;
+import com.konkerlabs.platform.registry.business.services.api.DeviceCacheService;
+import com.konkerlabs.platform.registry.config.DeviceCacheConfig;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+@Service
+public class DeviceCacheServiceImpl implements DeviceCacheService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeviceCacheServiceImpl.class);
+
+    private DeviceCacheConfig cacheConfig;
+
+    private Map<String, CacheEntry> byApiKey;
+    private Map<String, CacheEntry> byTenantAndGuid;
+
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+
+    /**
+     * Incremented on every eviction, so a device loaded while it was being invalidated
+     * is not written back to the cache.
+     */
+    private AtomicLong generation = new AtomicLong();
+
+    private Optional<RedisInvalidationChannel> invalidationChannel = Optional.empty();
+
+    public DeviceCacheServiceImpl() {
+        this(new DeviceCacheConfig());
+    }
+
+    public DeviceCacheServiceImpl(DeviceCacheConfig cacheConfig) {
+        this.cacheConfig = cacheConfig;
+        this.byApiKey = boundedMap(cacheConfig.getMaxSize());
+        this.byTenantAndGuid = boundedMap(cacheConfig.getMaxSize());
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!cacheConfig.isEnabled() || !cacheConfig.isInvalidationEnabled())
+            return;
+
+        invalidationChannel = RedisInvalidationChannel.open(
+                cacheConfig.getRedisHost(),
+                cacheConfig.getRedisPort(),
+                cacheConfig.getInvalidationChannel(),
+                this::evict);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        invalidationChannel.ifPresent(RedisInvalidationChannel::close);
+
+        if (cacheConfig.isEnabled())
+            LOGGER.info("Device cache stopped. {}", getStats());
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return cacheConfig.isEnabled();
+    }
+
+    @Override
+    public Device findByApiKey(String apiKey, Supplier<Device> loader) {
+        if (!isEnabled() || !Optional.ofNullable(apiKey).isPresent())
+            return loader.get();
+
+        return lookup(byApiKey, apiKey, loader);
+    }
+
+    @Override
+    public Device findByTenantDomainNameAndDeviceGuid(String tenantDomainName, String deviceGuid, Supplier<Device> loader) {
+        if (!isEnabled() || !Optional.ofNullable(tenantDomainName).isPresent() || !Optional.ofNullable(deviceGuid).isPresent())
+            return loader.get();
+
+        return lookup(byTenantAndGuid, tenantDomainName + "/" + deviceGuid, loader);
+    }
+
+    @Override
+    public void invalidate(Device device) {
+        if (!isEnabled() || !Optional.ofNullable(device).isPresent() || !Optional.ofNullable(device.getGuid()).isPresent())
+            return;
+
+        evict(device.getGuid());
+        invalidationChannel.ifPresent(channel -> channel.publish(device.getGuid()));
+    }
+
+    @Override
+    public Stats getStats() {
+        return Stats.builder()
+                .hits(hits.get())
+                .misses(misses.get())
+                .size(byApiKey.size() + byTenantAndGuid.size())
+                .build();
+    }
+
+    private Device lookup(Map<String, CacheEntry> cache, String key, Supplier<Device> loader) {
+        CacheEntry entry = cache.get(key);
+        if (Optional.ofNullable(entry).isPresent() && entry.getExpiresAt() > System.currentTimeMillis()) {
+            hits.incrementAndGet();
+            return entry.getDevice().copy();
+        }
+
+        misses.incrementAndGet();
+        long loadedGeneration = generation.get();
+        Device device = loader.get();
+
+        synchronized (cache) {
+            if (!Optional.ofNullable(device).isPresent())
+                cache.remove(key);
+            else if (generation.get() == loadedGeneration)
+                cache.put(key, new CacheEntry(device.copy(), System.currentTimeMillis() + cacheConfig.getTtl()));
+        }
+
+        return device;
+    }
+
+    private void evict(String deviceGuid) {
+        generation.incrementAndGet();
+        evict(byApiKey, deviceGuid);
+        evict(byTenantAndGuid, deviceGuid);
+    }
+
+    private void evict(Map<String, CacheEntry> cache, String deviceGuid) {
+        synchronized (cache) {
+            cache.values().removeIf(entry -> deviceGuid.equals(entry.getDevice().getGuid()));
+        }
+    }
+
+    private static Map<String, CacheEntry> boundedMap(int maxSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class CacheEntry {
+        private Device device;
+        private long expiresAt;
+    }
+
+}
@@ -5,6 +5,7 @@ import com.konkerlabs.platform.registry.business.model.Application;
 import com.konkerlabs.platform.registry.business.model.Event;
 import com.konkerlabs.platform.registry.business.model.Tenant;
 import com.konkerlabs.platform.registry.business.model.validation.CommonValidations;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventCursor;
 import com.konkerlabs.platform.registry.business.repositories.events.api.EventRepository;
 import com.konkerlabs.platform.registry.business.services.api.ApplicationService;
 import com.konkerlabs.platform.registry.business.services.api.DeviceEventService;
@@ -141,4 +142,80 @@ public class DeviceEventServiceImpl implements DeviceEventService {
                     .build();
         }
     }
+
+    @Override
+    public ServiceResponse<EventCursor> streamIncomingBy(Tenant tenant,
+                                                         Application application,
+                                                         String deviceGuid,
+                                                         String channel,
+                                                         Instant startTimestamp,
+                                                         Instant endTimestamp,
+                                                         boolean ascending,
+                                                         Integer limit,
+                                                         String continuationToken) {
+        if (!Optional.ofNullable(tenant).isPresent())
+            return ServiceResponseBuilder.<EventCursor>error()
+                    .withMessage(CommonValidations.TENANT_NULL.getCode())
+                    .build();
+
+        if (!Optional.ofNullable(application).isPresent())
+            return ServiceResponseBuilder.<EventCursor>error()
+                    .withMessage(ApplicationService.Validations.APPLICATION_DOES_NOT_EXIST.getCode())
+                    .build();
+
+        try {
+            return ServiceResponseBuilder.<EventCursor>ok()
+                    .withResult(eventRepository.streamIncomingBy(tenant,
+                            application,
+                            deviceGuid,
+                            channel,
+                            startTimestamp,
+                            endTimestamp,
+                            ascending,
+                            limit,
+                            continuationToken)).build();
+        } catch (BusinessException e) {
+            return ServiceResponseBuilder.<EventCursor>error()
+                    .withMessage(e.getMessage())
+                    .build();
+        }
+    }
+
+    @Override
+    public ServiceResponse<EventCursor> streamOutgoingBy(Tenant tenant,
+                                                         Application application,
+                                                         String deviceGuid,
+                                                         String channel,
+                                                         Instant startTimestamp,
+                                                         Instant endTimestamp,
+                                                         boolean ascending,
+                                                         Integer limit,
+                                                         String continuationToken) {
+        if (!Optional.ofNullable(tenant).isPresent())
+            return ServiceResponseBuilder.<EventCursor>error()
+                    .withMessage(CommonValidations.TENANT_NULL.getCode())
+                    .build();
+
+        if (!Optional.ofNullable(application).isPresent())
+            return ServiceResponseBuilder.<EventCursor>error()
+                    .withMessage(ApplicationService.Validations.APPLICATION_DOES_NOT_EXIST.getCode())
+                    .build();
+
+        try {
+            return ServiceResponseBuilder.<EventCursor>ok()
+                    .withResult(eventRepository.streamOutgoingBy(tenant,
+                            application,
+                            deviceGuid,
+                            channel,
+                            startTimestamp,
+                            endTimestamp,
+                            ascending,
+                            limit,
+                            continuationToken)).build();
+        } catch (BusinessException e) {
+            return ServiceResponseBuilder.<EventCursor>error()
+                    .withMessage(e.getMessage())
+                    .build();
+        }
+    }
 }
@@ -17,6 +17,7 @@ import com.konkerlabs.platform.registry.business.repositories.EventRouteReposito
 import com.konkerlabs.platform.registry.business.repositories.TenantRepository;
 import com.konkerlabs.platform.registry.business.repositories.events.api.EventRepository;
 import com.konkerlabs.platform.registry.business.services.api.ApplicationService;
+import com.konkerlabs.platform.registry.business.services.api.DeviceCacheService;
 import com.konkerlabs.platform.registry.business.services.api.DeviceRegisterService;
 import com.konkerlabs.platform.registry.business.services.api.ServiceResponse;
 import com.konkerlabs.platform.registry.business.services.api.ServiceResponseBuilder;
@@ -61,6 +62,9 @@ public class DeviceRegisterServiceImpl implements DeviceRegisterService {
     @Autowired @Qualifier("mongoEvents")
     private EventRepository eventRepository;
 
+    @Autowired
+    private DeviceCacheService deviceCacheService;
+
     private PubServerConfig pubServerConfig = new PubServerConfig();
 
     @Override
@@ -154,6 +158,7 @@ public class DeviceRegisterServiceImpl implements DeviceRegisterService {
         LOGGER.info("Device created. Id: {}", device.getDeviceId(), tenant.toURI(), tenant.getLogLevel());
 
         Device saved = deviceRepository.save(device);
+        deviceCacheService.invalidate(saved);
 
         return ServiceResponseBuilder.<Device>ok().withResult(saved).build();
     }
@@ -193,15 +198,16 @@ public class DeviceRegisterServiceImpl implements DeviceRegisterService {
 
     @Override
     public Device findByApiKey(String apiKey) {
-        return deviceRepository.findByApiKey(apiKey);
+        return deviceCacheService.findByApiKey(apiKey, () -> deviceRepository.findByApiKey(apiKey));
     }
 
     @Override
     public Device findByTenantDomainNameAndDeviceGuid(String tenantDomainName, String deviceGuid) {
-        return deviceRepository.findByTenantAndGuid(
-                tenantRepository.findByDomainName(tenantDomainName).getId(),
-                deviceGuid
-        );
+        return deviceCacheService.findByTenantDomainNameAndDeviceGuid(tenantDomainName, deviceGuid,
+                () -> deviceRepository.findByTenantAndGuid(
+                        tenantRepository.findByDomainName(tenantDomainName).getId(),
+                        deviceGuid
+                ));
     }
 
     @Override
@@ -221,6 +227,7 @@ public class DeviceRegisterServiceImpl implements DeviceRegisterService {
         found.setActive(!found.isActive());
 
         Device updated = deviceRepository.save(found);
+        deviceCacheService.invalidate(updated);
 
         return ServiceResponseBuilder.<Device>ok()
                 .withResult(updated)
@@ -239,6 +246,7 @@ public class DeviceRegisterServiceImpl implements DeviceRegisterService {
                 existingDevice.setSecurityHash(passwordManager.createHash(randomPassword));
                 existingDevice.regenerateApiKey();
                 Device saved = deviceRepository.save(existingDevice);
+                deviceCacheService.invalidate(saved);
 
                 LOGGER.info("Password generated for device id: {}", existingDevice.getDeviceId(), tenant.toURI(), tenant.getLogLevel());
 
@@ -299,6 +307,7 @@ public class DeviceRegisterServiceImpl implements DeviceRegisterService {
         }
 
         Device saved = deviceRepository.save(deviceFromDB);
+        deviceCacheService.invalidate(saved);
 
         LOGGER.info("Device updated. Id: {}", deviceFromDB.getDeviceId(), tenant.toURI(), tenant.getLogLevel());
 
@@ -360,6 +369,7 @@ public class DeviceRegisterServiceImpl implements DeviceRegisterService {
         try {
             eventRepository.removeBy(tenant, application, device.getGuid());
             deviceRepository.delete(device);
+            deviceCacheService.invalidate(device);
         } catch (BusinessException e){
             return ServiceResponseBuilder.<Device>error()
                     .withMessage(Messages.DEVICE_REMOVED_UNSUCCESSFULLY.getCode())
@@ -0,0 +1,134 @@
+package com.konkerlabs.platform.registry.business.services;
+
+import com.konkerlabs.platform.registry.business.model.EventRoute;
+import com.konkerlabs.platform.registry.business.services.api.EventRouteIndexService;
+import com.konkerlabs.platform.registry.config.EventRouteIndexConfig;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static com.konkerlabs.platform.registry.business.model.EventRoute.DEVICE_MQTT_CHANNEL;
+
+@Service
+public class EventRouteIndexServiceImpl implements EventRouteIndexService {
+
+    private EventRouteIndexConfig indexConfig;
+
+    private Map<String, IndexEntry> index;
+
+    /**
+     * Incremented on every invalidation, so routes loaded while a device was being
+     * invalidated are not written back to the index.
+     */
+    private AtomicLong generation = new AtomicLong();
+
+    private Optional<RedisInvalidationChannel> invalidationChannel = Optional.empty();
+
+    public EventRouteIndexServiceImpl() {
+        this(new EventRouteIndexConfig());
+    }
+
+    public EventRouteIndexServiceImpl(EventRouteIndexConfig indexConfig) {
+        this.indexConfig = indexConfig;
+
+        int maxSize = indexConfig.getMaxSize();
+        this.index = Collections.synchronizedMap(new LinkedHashMap<String, IndexEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IndexEntry> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!indexConfig.isEnabled() || !indexConfig.isInvalidationEnabled())
+            return;
+
+        invalidationChannel = RedisInvalidationChannel.open(
+                indexConfig.getRedisHost(),
+                indexConfig.getRedisPort(),
+                indexConfig.getInvalidationChannel(),
+                this::evict);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        invalidationChannel.ifPresent(RedisInvalidationChannel::close);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return indexConfig.isEnabled();
+    }
+
+    @Override
+    public List<EventRoute> findActiveRoutes(URI incomingUri, String channel, Supplier<List<EventRoute>> loader) {
+        if (!isEnabled())
+            return group(loader.get()).getOrDefault(channel, Collections.emptyList());
+
+        String key = incomingUri.toString();
+        IndexEntry entry = index.get(key);
+        if (!Optional.ofNullable(entry).isPresent() || entry.getExpiresAt() <= System.currentTimeMillis()) {
+            long loadedGeneration = generation.get();
+            entry = new IndexEntry(group(loader.get()), System.currentTimeMillis() + indexConfig.getTtl());
+
+            synchronized (index) {
+                if (generation.get() == loadedGeneration)
+                    index.put(key, entry);
+            }
+        }
+
+        return entry.getRoutesByChannel().getOrDefault(channel, Collections.emptyList());
+    }
+
+    @Override
+    public void invalidate(URI incomingUri) {
+        if (!isEnabled() || !Optional.ofNullable(incomingUri).isPresent())
+            return;
+
+        evict(incomingUri.toString());
+        invalidationChannel.ifPresent(channel -> channel.publish(incomingUri.toString()));
+    }
+
+    private void evict(String key) {
+        generation.incrementAndGet();
+        index.remove(key);
+    }
+
+    private Map<String, List<EventRoute>> group(List<EventRoute> routes) {
+        return Optional.ofNullable(routes).orElse(Collections.emptyList())
+                .stream()
+                .filter(EventRoute::isActive)
+                .filter(route -> channelOf(route).isPresent())
+                .collect(Collectors.groupingBy(route -> channelOf(route).get()));
+    }
+
+    private Optional<String> channelOf(EventRoute route) {
+        return Optional.ofNullable(route.getIncoming())
+                .map(EventRoute.RouteActor::getData)
+                .map(data -> data.get(DEVICE_MQTT_CHANNEL));
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class IndexEntry {
+        private Map<String, List<EventRoute>> routesByChannel;
+        private long expiresAt;
+    }
+
+}
@@ -9,6 +9,7 @@ import java.util.UUID;
 
 import com.konkerlabs.platform.registry.business.services.api.ApplicationService;
 import com.konkerlabs.platform.registry.business.services.api.DeviceRegisterService;
+import com.konkerlabs.platform.registry.business.services.api.EventRouteIndexService;
 import com.konkerlabs.platform.registry.business.services.api.EventRouteService;
 import com.konkerlabs.platform.registry.business.services.api.ServiceResponse;
 
@@ -50,6 +51,8 @@ public class EventRouteServiceImpl implements EventRouteService {
     private DeviceRepository deviceRepository;
     @Autowired
     private RestDestinationRepository restRepository;
+    @Autowired
+    private EventRouteIndexService eventRouteIndexService;
 
     @Override
     public ServiceResponse<EventRoute> save(Tenant tenant, Application application, EventRoute route) {
@@ -107,6 +110,7 @@ public class EventRouteServiceImpl implements EventRouteService {
         fillRouteActorsDisplayName(tenant.getId(), application.getName(), route);
 
         EventRoute saved = eventRouteRepository.save(route);
+        invalidateIndex(saved);
 
         LOGGER.info("Route created. Name: {}", route.getName(), tenant.toURI(), tenant.getLogLevel());
 
@@ -156,6 +160,8 @@ public class EventRouteServiceImpl implements EventRouteService {
                     .withMessage(Validations.EVENT_ROUTE_NOT_FOUND.getCode())
                     .build();
 
+        Optional<URI> previousIncomingUri = incomingUriOf(current);
+
         current.setActive(eventRoute.isActive());
         current.setDescription(eventRoute.getDescription());
         current.setFilteringExpression(eventRoute.getFilteringExpression());
@@ -193,6 +199,8 @@ public class EventRouteServiceImpl implements EventRouteService {
         fillRouteActorsDisplayName(tenant.getId(), application.getName(), current);
 
         EventRoute saved = eventRouteRepository.save(current);
+        previousIncomingUri.ifPresent(eventRouteIndexService::invalidate);
+        invalidateIndex(saved);
 
         LOGGER.info("Route updated. Name: {}", saved.getName(), tenant.toURI(), tenant.getLogLevel());
 
@@ -334,6 +342,21 @@ public class EventRouteServiceImpl implements EventRouteService {
                 .build();
     }
 
+    @Override
+    public ServiceResponse<List<EventRoute>> findActiveByIncomingUriAndChannel(URI uri, String channel) {
+        if (!Optional.ofNullable(uri).isPresent())
+            return ServiceResponseBuilder.<List<EventRoute>>error()
+                    .withMessage(Validations.EVENT_ROUTE_URI_NULL.getCode())
+                    .build();
+
+        List<EventRoute> eventRoutes = eventRouteIndexService.findActiveRoutes(uri, channel,
+                () -> eventRouteRepository.findByIncomingUri(uri));
+
+        return ServiceResponseBuilder.<List<EventRoute>>ok()
+                .withResult(eventRoutes)
+                .build();
+    }
+
     @Override
     public ServiceResponse<EventRoute> remove(Tenant tenant, Application application, String guid) {
         if (!Optional.ofNullable(tenant).isPresent())
@@ -369,6 +392,7 @@ public class EventRouteServiceImpl implements EventRouteService {
                     .build();
 
         eventRouteRepository.delete(route);
+        invalidateIndex(route);
 
         LOGGER.info("Route removed. Name: {}", route.getName(), tenant.toURI(), tenant.getLogLevel());
 
@@ -376,4 +400,12 @@ public class EventRouteServiceImpl implements EventRouteService {
                 .withResult(route)
                 .build();
     }
+
+    private Optional<URI> incomingUriOf(EventRoute route) {
+        return Optional.ofNullable(route.getIncoming()).map(EventRoute.RouteActor::getUri);
+    }
+
+    private void invalidateIndex(EventRoute route) {
+        incomingUriOf(route).ifPresent(eventRouteIndexService::invalidate);
+    }
 }
@@ -9,32 +9,36 @@ import com.konkerlabs.platform.registry.business.model.*;
 import com.konkerlabs.platform.registry.business.model.Event.EventActor;
 import com.konkerlabs.platform.registry.business.model.EventSchema.SchemaField;
 import com.konkerlabs.platform.registry.business.model.validation.CommonValidations;
-import com.konkerlabs.platform.registry.business.repositories.ApplicationRepository;
 import com.konkerlabs.platform.registry.business.repositories.DeviceRepository;
-import com.konkerlabs.platform.registry.business.repositories.TenantRepository;
 import com.konkerlabs.platform.registry.business.repositories.events.api.EventRepository;
 import com.konkerlabs.platform.registry.business.services.api.DeviceRegisterService;
 import com.konkerlabs.platform.registry.business.services.api.EventSchemaService;
 import com.konkerlabs.platform.registry.business.services.api.ServiceResponse;
 import com.konkerlabs.platform.registry.business.services.api.ServiceResponseBuilder;
+import com.konkerlabs.platform.registry.config.EventSchemaCacheConfig;
 import com.konkerlabs.platform.utilities.parsers.json.JsonParsingService;
+import com.mongodb.BasicDBObject;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.beans.factory.config.BeanDefinition;
-import org.springframework.context.annotation.Scope;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
-@Scope(BeanDefinition.SCOPE_PROTOTYPE)
 public class EventSchemaServiceImpl implements EventSchemaService {
 
     private enum SchemaType {
@@ -65,18 +69,54 @@ public class EventSchemaServiceImpl implements EventSchemaService {
     @Autowired
     private MongoTemplate mongoTemplate;
 
-    @Autowired
-    private TenantRepository tenantRepository;
-
-    @Autowired
-    private ApplicationRepository applicationRepository;
-
     @Autowired
     private DeviceRepository deviceRepository;
 
     /*private KonkerLogger LOG = KonkerLoggerFactory.getLogger(EventSchemaServiceImpl.class);*/
     private Logger LOG = LoggerFactory.getLogger(EventSchemaServiceImpl.class);
 
+    private EventSchemaCacheConfig schemaCacheConfig;
+
+    private Map<String, KnownSchema> knownSchemas;
+
+    public EventSchemaServiceImpl() {
+        this(new EventSchemaCacheConfig());
+    }
+
+    public EventSchemaServiceImpl(EventSchemaCacheConfig schemaCacheConfig) {
+        this.schemaCacheConfig = schemaCacheConfig;
+
+        int maxSize = schemaCacheConfig.getMaxSize();
+        this.knownSchemas = Collections.synchronizedMap(new LinkedHashMap<String, KnownSchema>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, KnownSchema> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * Creates the unique index on device and channel of the schema collections, so two
+     * writers creating the same schema at once get a duplicate key instead of two
+     * documents. The index mapped on {@link EventSchema} is not created for them, as they
+     * are not its default collection.
+     */
+    @PostConstruct
+    public void ensureIndexes() {
+        for (SchemaType type : SchemaType.values()) {
+            try {
+                mongoTemplate.indexOps(type.getCollectionName()).ensureIndex(new Index()
+                        .on("deviceGuid", Sort.Direction.ASC)
+                        .on("channel", Sort.Direction.ASC)
+                        .unique()
+                        .background());
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to ensure the unique index of the {} collection", type.getCollectionName(), e);
+            }
+        }
+    }
 
     @Override
     public ServiceResponse<EventSchema> appendIncomingSchema(Event event) {
@@ -87,18 +127,26 @@ public class EventSchemaServiceImpl implements EventSchemaService {
             return ServiceResponseBuilder.<EventSchema>error()
                 .withMessage(invalid.get().getCode()).build();
 
-        EventSchema toBeSaved = null;
+        Map<String,JsonParsingService.JsonPathData> data;
         try {
-            EventActor incoming = event.getIncoming();
-            toBeSaved = prepareSchemaFor(incoming.getTenantDomain(), incoming.getApplicationName(), incoming.getDeviceGuid(), incoming.getChannel(),event.getPayload());
+            data = event.getPayloadAsFlatMap(jsonParsingService);
         } catch (JsonProcessingException e) {
             return ServiceResponseBuilder.<EventSchema>error()
                     .withMessage(Validations.EVENT_INVALID_PAYLOAD.getCode()).build();
         }
 
-        mongoTemplate.save(toBeSaved, SchemaType.INCOMING.getCollectionName());
+        EventActor incoming = event.getIncoming();
+        EventSchema known = findKnownIncomingSchema(incoming.getDeviceGuid(), incoming.getChannel());
+        Map<String, Set<JsonNodeType>> newTypes = findNewTypes(known, data);
 
-        return ServiceResponseBuilder.<EventSchema>ok().withResult(toBeSaved).build();
+        if (!Optional.ofNullable(known).isPresent() || !newTypes.isEmpty()) {
+            knownSchemas.remove(schemaKey(incoming.getDeviceGuid(), incoming.getChannel()));
+            appendToIncomingSchema(known, incoming.getDeviceGuid(), incoming.getChannel(), newTypes);
+            known = loadIncomingSchema(incoming.getDeviceGuid(), incoming.getChannel());
+        }
+
+        return ServiceResponseBuilder.<EventSchema>ok()
+                .withResult(Optional.ofNullable(known).map(this::copyOf).orElse(null)).build();
     }
 
     @Override
@@ -106,26 +154,129 @@ public class EventSchemaServiceImpl implements EventSchemaService {
         return ServiceResponseBuilder.<EventSchema>ok().build();
     }
 
-    private EventSchema prepareSchemaFor(String tenantDomain, String applicationName, String deviceId, String channel, String payload) throws JsonProcessingException {
-        Tenant tenant = tenantRepository.findByDomainName(tenantDomain);
-        Application application = applicationRepository.findByTenantAndName(tenant.getId(), applicationName);
-        ServiceResponse<EventSchema> existing = findIncomingBy(tenant, application, deviceId, channel);
+    /**
+     * Cached schemas are loaded again once their ttl expires, so a schema changed or
+     * removed by another node is seen here within the ttl. Schemas this node appends to
+     * are evicted and loaded again right away.
+     */
+    private EventSchema findKnownIncomingSchema(String deviceGuid, String channel) {
+        if (!schemaCacheConfig.isEnabled())
+            return loadIncomingSchema(deviceGuid, channel);
 
-        Map<String,JsonParsingService.JsonPathData> data = jsonParsingService.toFlatMap(payload);
+        KnownSchema known = knownSchemas.get(schemaKey(deviceGuid, channel));
+        if (Optional.ofNullable(known).filter(schema -> schema.getExpiresAt() > System.currentTimeMillis()).isPresent())
+            return known.getSchema();
 
-        EventSchema eventSchema = Optional.of(existing)
-                .filter(eventSchemaServiceResponse -> eventSchemaServiceResponse.isOk())
-                .map(eventSchemaServiceResponse -> eventSchemaServiceResponse.getResult())
-                .orElseGet(() -> {
-                    EventSchema schema = EventSchema.builder()
-                            .deviceGuid(deviceId).channel(channel).build();
-                    schema.setFields(new LinkedHashSet<>());
-                    return schema;
-                });
+        return loadIncomingSchema(deviceGuid, channel);
+    }
 
-        data.forEach((path, pathData) -> eventSchema.upsertTypeFor(path,pathData));
+    private EventSchema loadIncomingSchema(String deviceGuid, String channel) {
+        EventSchema loaded = mongoTemplate.findOne(
+                schemaQuery(deviceGuid, channel),
+                EventSchema.class, SchemaType.INCOMING.getCollectionName()
+        );
+
+        if (!schemaCacheConfig.isEnabled())
+            return loaded;
+
+        if (Optional.ofNullable(loaded).isPresent())
+            knownSchemas.put(schemaKey(deviceGuid, channel),
+                    new KnownSchema(loaded, System.currentTimeMillis() + schemaCacheConfig.getTtl()));
+        else
+            knownSchemas.remove(schemaKey(deviceGuid, channel));
+
+        return loaded;
+    }
+
+    /**
+     * Returns the types of each path that the known schema does not have yet, following
+     * the same rules as {@link EventSchema#upsertTypeFor(String, JsonParsingService.JsonPathData)}.
+     */
+    private Map<String, Set<JsonNodeType>> findNewTypes(EventSchema known, Map<String,JsonParsingService.JsonPathData> data) {
+        Map<String, Set<JsonNodeType>> newTypes = new LinkedHashMap<>();
+
+        data.forEach((path, pathData) -> {
+            Optional<SchemaField> field = Optional.ofNullable(known).flatMap(schema -> schema.getByPath(path));
+
+            if (field.isPresent()) {
+                JsonNodeType type = pathData.getTypes().get(pathData.getTypes().size()-1);
+                if (!field.get().getKnownTypes().contains(type))
+                    newTypes.put(path, Collections.singleton(type));
+            } else
+                newTypes.put(path, new LinkedHashSet<>(pathData.getTypes()));
+        });
+
+        return newTypes;
+    }
+
+    /**
+     * Adds the new paths and types with atomic updates, so concurrent writers never
+     * overwrite each other and the document is not rewritten as a whole.
+     */
+    private void appendToIncomingSchema(EventSchema known, String deviceGuid, String channel, Map<String, Set<JsonNodeType>> newTypes) {
+        String collectionName = SchemaType.INCOMING.getCollectionName();
+
+        if (!Optional.ofNullable(known).isPresent()) {
+            try {
+                mongoTemplate.upsert(schemaQuery(deviceGuid, channel),
+                        new Update()
+                                .setOnInsert("_class", EventSchema.class.getName())
+                                .setOnInsert("fields", Collections.emptyList()),
+                        collectionName);
+            } catch (DuplicateKeyException e) {
+                LOG.debug("Incoming schema already created by a concurrent writer", e);
+            }
+        }
+
+        newTypes.forEach((path, types) -> {
+            List<String> typeNames = types.stream().map(JsonNodeType::name).collect(Collectors.toList());
+
+            boolean added = Optional.ofNullable(known).flatMap(schema -> schema.getByPath(path)).isPresent() &&
+                    addTypesToPath(deviceGuid, channel, path, typeNames);
+
+            if (!added && mongoTemplate.updateFirst(
+                    schemaQuery(deviceGuid, channel).addCriteria(Criteria.where("fields.path").ne(path)),
+                    new Update().push("fields", new BasicDBObject("path", path).append("knownTypes", typeNames)),
+                    collectionName).getN() == 0)
+                addTypesToPath(deviceGuid, channel, path, typeNames);
+        });
+    }
+
+    private boolean addTypesToPath(String deviceGuid, String channel, String path, List<String> typeNames) {
+        return mongoTemplate.updateFirst(
+                schemaQuery(deviceGuid, channel).addCriteria(Criteria.where("fields.path").is(path)),
+                new Update().addToSet("fields.$.knownTypes").each(typeNames.toArray()),
+                SchemaType.INCOMING.getCollectionName()).getN() > 0;
+    }
+
+    private Query schemaQuery(String deviceGuid, String channel) {
+        return Query.query(Criteria.where("deviceGuid").is(deviceGuid).and("channel").is(channel));
+    }
+
+    private String schemaKey(String deviceGuid, String channel) {
+        return deviceGuid + "/" + channel;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class KnownSchema {
+        private final EventSchema schema;
+        private final long expiresAt;
+    }
 
-        return eventSchema;
+    private EventSchema copyOf(EventSchema schema) {
+        EventSchema copy = EventSchema.builder()
+                .id(schema.getId())
+                .deviceGuid(schema.getDeviceGuid())
+                .channel(schema.getChannel())
+                .build();
+        copy.setFields(schema.getFields().stream()
+                .map(field -> SchemaField.builder()
+                        .path(field.getPath())
+                        .knownTypes(field.getKnownTypes())
+                        .build())
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
+        return copy;
     }
 
     private Optional<Validations> validateForSchemaAppending(Event event, SchemaType type) {
@@ -0,0 +1,85 @@
+package com.konkerlabs.platform.registry.business.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * Redis pub/sub channel used by the in-process caches to tell every node which
+ * entries to drop. Messages published here are also delivered back to this node.
+ */
+class RedisInvalidationChannel {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisInvalidationChannel.class);
+
+    private String channel;
+
+    private JedisConnectionFactory connectionFactory;
+    private StringRedisTemplate redisTemplate;
+    private RedisMessageListenerContainer listenerContainer;
+
+    private RedisInvalidationChannel(String channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Connects to Redis and subscribes the listener to the channel.
+     *
+     * @return the open channel, or empty when Redis cannot be reached
+     */
+    static Optional<RedisInvalidationChannel> open(String host, int port, String channel, Consumer<String> listener) {
+        RedisInvalidationChannel invalidationChannel = new RedisInvalidationChannel(channel);
+        try {
+            invalidationChannel.connect(host, port, listener);
+            return Optional.of(invalidationChannel);
+        } catch (Exception e) {
+            LOGGER.warn("Cache invalidation channel {} unavailable, falling back to TTL eviction only", channel, e);
+            invalidationChannel.close();
+            return Optional.empty();
+        }
+    }
+
+    private void connect(String host, int port, Consumer<String> listener) throws Exception {
+        connectionFactory = new JedisConnectionFactory();
+        connectionFactory.setHostName(host);
+        connectionFactory.setPort(port);
+        connectionFactory.afterPropertiesSet();
+
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(connectionFactory);
+        listenerContainer.addMessageListener(
+                (message, pattern) -> listener.accept(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(channel));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+    }
+
+    void publish(String message) {
+        try {
+            redisTemplate.convertAndSend(channel, message);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to publish cache invalidation on channel {}: {}", channel, message, e);
+        }
+    }
+
+    void close() {
+        try {
+            if (Optional.ofNullable(listenerContainer).isPresent())
+                listenerContainer.destroy();
+            if (Optional.ofNullable(connectionFactory).isPresent())
+                connectionFactory.destroy();
+        } catch (Exception e) {
+            LOGGER.warn("Failed to close cache invalidation channel {}", channel, e);
+        }
+    }
+
+}
@@ -220,6 +220,7 @@ public class RestDestinationServiceImpl extends AbstractURLBlacklistValidation i
 		destination.setGuid(existingDestination.getGuid());
 		destination.setTenant(existingTenant);
 		destination.setApplication(application);
+		destination.setTimeout(Optional.ofNullable(destination.getTimeout()).orElse(existingDestination.getTimeout()));
 
 		Optional<Map<String, Object[]>> validations = destination.applyValidations();
 
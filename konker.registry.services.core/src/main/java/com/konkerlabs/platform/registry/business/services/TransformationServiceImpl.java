@@ -8,6 +8,7 @@ import com.konkerlabs.platform.registry.business.repositories.TenantRepository;
 import com.konkerlabs.platform.registry.business.repositories.TransformationRepository;
 import com.konkerlabs.platform.registry.business.services.api.AbstractURLBlacklistValidation;
 import com.konkerlabs.platform.registry.business.services.api.ApplicationService;
+import com.konkerlabs.platform.registry.business.services.api.EventRouteIndexService;
 import com.konkerlabs.platform.registry.business.services.api.ServiceResponse;
 import com.konkerlabs.platform.registry.business.services.api.ServiceResponseBuilder;
 import com.konkerlabs.platform.registry.business.services.api.TransformationService;
@@ -36,6 +37,8 @@ public class TransformationServiceImpl
     private TransformationRepository transformationRepository;
     @Autowired
     private EventRouteRepository eventRouteRepository;
+    @Autowired
+    private EventRouteIndexService eventRouteIndexService;
 
     @Override
     public ServiceResponse<List<Transformation>> getAll(Tenant tenant, Application application) {
@@ -201,6 +204,11 @@ public class TransformationServiceImpl
 
         Transformation saved = transformationRepository.save(fromDb);
 
+        eventRouteRepository.findByTransformationId(tenant.getId(), application.getName(), saved.getId())
+                .stream()
+                .filter(route -> Optional.ofNullable(route.getIncoming()).isPresent())
+                .forEach(route -> eventRouteIndexService.invalidate(route.getIncoming().getUri()));
+
         LOGGER.info("Transformation updated. Name: {}", saved.getName(), tenant.toURI(), tenant.getLogLevel());
 
         return ServiceResponseBuilder.<Transformation>ok().withResult(saved).build();
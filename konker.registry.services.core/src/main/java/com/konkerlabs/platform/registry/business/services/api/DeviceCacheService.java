@@ -0,0 +1,52 @@
+package com.konkerlabs.platform.registry.business.services.api;
+
+import java.util.function.Supplier;
+
+import com.konkerlabs.platform.registry.business.model.Device;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Bounded, time-evicting cache of devices by API key and by tenant and GUID.
+ * Invalidations are broadcast through a Redis channel so every node drops
+ * its copy of a device once it is changed or removed. Every caller gets its
+ * own copy of a cached device, so changes made to it are never shared.
+ */
+public interface DeviceCacheService {
+
+    @Data
+    @Builder
+    class Stats {
+        private long hits;
+        private long misses;
+        private int size;
+
+        public double getHitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    boolean isEnabled();
+
+    /**
+     * Returns the cached device for the API key, falling back to the loader on a miss.
+     * Devices that are not found are not cached.
+     */
+    Device findByApiKey(String apiKey, Supplier<Device> loader);
+
+    /**
+     * Returns the cached device for the tenant domain and GUID, falling back to the loader on a miss.
+     * Devices that are not found are not cached.
+     */
+    Device findByTenantDomainNameAndDeviceGuid(String tenantDomainName, String deviceGuid, Supplier<Device> loader);
+
+    /**
+     * Evicts the device from this node and notifies the other nodes to do the same.
+     */
+    void invalidate(Device device);
+
+    Stats getStats();
+
+}
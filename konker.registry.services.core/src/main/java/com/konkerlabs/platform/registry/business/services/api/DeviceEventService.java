@@ -6,6 +6,7 @@ import java.util.List;
 import com.konkerlabs.platform.registry.business.model.Application;
 import com.konkerlabs.platform.registry.business.model.Event;
 import com.konkerlabs.platform.registry.business.model.Tenant;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventCursor;
 
 public interface DeviceEventService {
 
@@ -66,4 +67,50 @@ public interface DeviceEventService {
                                                 Instant endTimestamp,
                                                 boolean ascending,
                                                 Integer limit);
+
+    /**
+     * Streams the incoming device events by provided arguments, resuming after the event
+     * of the continuation token when one is given. The returned cursor must be closed.
+     *
+     * @param tenant
+     * @param application
+     * @param deviceGuid
+     * @param startingTimestamp
+     * @param endTimestamp
+     * @param limit
+     * @param continuationToken
+     * @return Cursor over the found events
+     */
+    ServiceResponse<EventCursor> streamIncomingBy(Tenant tenant,
+                                                  Application application,
+                                                  String deviceGuid,
+                                                  String channel,
+                                                  Instant startingTimestamp,
+                                                  Instant endTimestamp,
+                                                  boolean ascending,
+                                                  Integer limit,
+                                                  String continuationToken);
+
+    /**
+     * Streams the outgoing device events by provided arguments, resuming after the event
+     * of the continuation token when one is given. The returned cursor must be closed.
+     *
+     * @param tenant
+     * @param application
+     * @param deviceGuid
+     * @param startingTimestamp
+     * @param endTimestamp
+     * @param limit
+     * @param continuationToken
+     * @return Cursor over the found events
+     */
+    ServiceResponse<EventCursor> streamOutgoingBy(Tenant tenant,
+                                                  Application application,
+                                                  String deviceGuid,
+                                                  String channel,
+                                                  Instant startingTimestamp,
+                                                  Instant endTimestamp,
+                                                  boolean ascending,
+                                                  Integer limit,
+                                                  String continuationToken);
 }
@@ -0,0 +1,29 @@
+package com.konkerlabs.platform.registry.business.services.api;
+
+import java.net.URI;
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.konkerlabs.platform.registry.business.model.EventRoute;
+
+/**
+ * In-memory index of the active event routes of each incoming device, grouped by channel.
+ * Devices without routes are indexed too, so their lookups never reach the database.
+ * Invalidations are broadcast through a Redis channel to keep every node in sync.
+ */
+public interface EventRouteIndexService {
+
+    boolean isEnabled();
+
+    /**
+     * Returns the active routes for the incoming URI and channel. On a miss, every route
+     * of the incoming URI is fetched with the loader and indexed.
+     */
+    List<EventRoute> findActiveRoutes(URI incomingUri, String channel, Supplier<List<EventRoute>> loader);
+
+    /**
+     * Drops the routes of the incoming URI on this node and on every other node.
+     */
+    void invalidate(URI incomingUri);
+
+}
@@ -33,6 +33,7 @@ public interface EventRouteService {
     ServiceResponse<List<EventRoute>> getAll(Tenant tenant, Application application);
     ServiceResponse<EventRoute> getByGUID(Tenant tenant, Application application, String guid);
 	ServiceResponse<List<EventRoute>> findByIncomingUri(URI uri);
+	ServiceResponse<List<EventRoute>> findActiveByIncomingUriAndChannel(URI uri, String channel);
 	ServiceResponse<EventRoute> remove(Tenant tenant, Application application, String guid);
 
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.konkerlabs.platform.registry.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.context.annotation.Configuration;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import lombok.Data;
+
+@Configuration
+@Data
+public class DeviceCacheConfig {
+
+	private boolean enabled;
+	private Integer maxSize;
+	private Long ttl;
+	private boolean invalidationEnabled;
+	private String invalidationChannel;
+	private String redisHost;
+	private Integer redisPort;
+
+	public DeviceCacheConfig() {
+		Map<String, Object> defaultMap = new HashMap<>();
+		defaultMap.put("device.cache.enabled", false);
+		defaultMap.put("device.cache.max.size", 10000);
+		defaultMap.put("device.cache.ttl", 60000L);
+		defaultMap.put("device.cache.invalidation.enabled", true);
+		defaultMap.put("device.cache.invalidation.channel", "konker.device.invalidation");
+		defaultMap.put("redis.master.host", "localhost");
+		defaultMap.put("redis.master.port", 6379);
+		Config defaultConf = ConfigFactory.parseMap(defaultMap);
+
+		Config config = ConfigFactory.load().withFallback(defaultConf);
+		setEnabled(config.getBoolean("device.cache.enabled"));
+		setMaxSize(config.getInt("device.cache.max.size"));
+		setTtl(config.getLong("device.cache.ttl"));
+		setInvalidationEnabled(config.getBoolean("device.cache.invalidation.enabled"));
+		setInvalidationChannel(config.getString("device.cache.invalidation.channel"));
+		setRedisHost(config.getString("redis.master.host"));
+		setRedisPort(config.getInt("redis.master.port"));
+	}
+
+}
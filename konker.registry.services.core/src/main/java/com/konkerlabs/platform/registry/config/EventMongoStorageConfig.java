@@ -0,0 +1,43 @@
+package com.konkerlabs.platform.registry.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.context.annotation.Configuration;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import lombok.Data;
+
+@Configuration
+@Data
+public class EventMongoStorageConfig {
+
+	private boolean indexesEnabled;
+	private boolean bucketEnabled;
+	private Integer bucketSize;
+	private Long bucketWindow;
+	private Integer validationCacheMaxSize;
+	private Long validationCacheTtl;
+
+	public EventMongoStorageConfig() {
+		Map<String, Object> defaultMap = new HashMap<>();
+		defaultMap.put("eventstorage.mongodb.indexes.enabled", true);
+		defaultMap.put("eventstorage.mongodb.bucket.enabled", false);
+		defaultMap.put("eventstorage.mongodb.bucket.size", 200);
+		defaultMap.put("eventstorage.mongodb.bucket.window", 3600000L);
+		defaultMap.put("eventstorage.mongodb.validation.cache.max.size", 10000);
+		defaultMap.put("eventstorage.mongodb.validation.cache.ttl", 60000L);
+		Config defaultConf = ConfigFactory.parseMap(defaultMap);
+
+		Config config = ConfigFactory.load().withFallback(defaultConf);
+		setIndexesEnabled(config.getBoolean("eventstorage.mongodb.indexes.enabled"));
+		setBucketEnabled(config.getBoolean("eventstorage.mongodb.bucket.enabled"));
+		setBucketSize(config.getInt("eventstorage.mongodb.bucket.size"));
+		setBucketWindow(config.getLong("eventstorage.mongodb.bucket.window"));
+		setValidationCacheMaxSize(config.getInt("eventstorage.mongodb.validation.cache.max.size"));
+		setValidationCacheTtl(config.getLong("eventstorage.mongodb.validation.cache.ttl"));
+	}
+
+}
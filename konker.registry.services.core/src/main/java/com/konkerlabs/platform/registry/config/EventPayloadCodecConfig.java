@@ -0,0 +1,31 @@
+package com.konkerlabs.platform.registry.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.context.annotation.Configuration;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import lombok.Data;
+
+@Configuration
+@Data
+public class EventPayloadCodecConfig {
+
+	private String codec;
+	private Integer threshold;
+
+	public EventPayloadCodecConfig() {
+		Map<String, Object> defaultMap = new HashMap<>();
+		defaultMap.put("eventstorage.payload.codec", "none");
+		defaultMap.put("eventstorage.payload.threshold", 512);
+		Config defaultConf = ConfigFactory.parseMap(defaultMap);
+
+		Config config = ConfigFactory.load().withFallback(defaultConf);
+		setCodec(config.getString("eventstorage.payload.codec"));
+		setThreshold(config.getInt("eventstorage.payload.threshold"));
+	}
+
+}
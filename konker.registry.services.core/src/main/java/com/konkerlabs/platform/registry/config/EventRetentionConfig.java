@@ -0,0 +1,63 @@
+package com.konkerlabs.platform.registry.config;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.context.annotation.Configuration;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigObject;
+
+import lombok.Data;
+
+@Configuration
+@Data
+public class EventRetentionConfig {
+
+	private Integer days;
+	private Map<String, Integer> tenantDays;
+	private Map<String, Integer> applicationDays;
+	private boolean purgeEnabled;
+	private Long purgeInterval;
+	private Integer purgeBatchSize;
+	private Long purgeBatchPause;
+
+	public EventRetentionConfig() {
+		Map<String, Object> defaultMap = new HashMap<>();
+		defaultMap.put("eventstorage.retention.days", 0);
+		defaultMap.put("eventstorage.retention.tenants", new HashMap<>());
+		defaultMap.put("eventstorage.retention.applications", new HashMap<>());
+		defaultMap.put("eventstorage.retention.purge.enabled", false);
+		defaultMap.put("eventstorage.retention.purge.interval", 60000L);
+		defaultMap.put("eventstorage.retention.purge.batch.size", 1000);
+		defaultMap.put("eventstorage.retention.purge.batch.pause", 200L);
+		Config defaultConf = ConfigFactory.parseMap(defaultMap);
+
+		Config config = ConfigFactory.load().withFallback(defaultConf);
+		setDays(config.getInt("eventstorage.retention.days"));
+		setTenantDays(toDays(config.getObject("eventstorage.retention.tenants")));
+		setApplicationDays(toDays(config.getObject("eventstorage.retention.applications")));
+		setPurgeEnabled(config.getBoolean("eventstorage.retention.purge.enabled"));
+		setPurgeInterval(config.getLong("eventstorage.retention.purge.interval"));
+		setPurgeBatchSize(config.getInt("eventstorage.retention.purge.batch.size"));
+		setPurgeBatchPause(config.getLong("eventstorage.retention.purge.batch.pause"));
+	}
+
+	private Map<String, Integer> toDays(ConfigObject object) {
+		Map<String, Integer> days = new HashMap<>();
+		object.forEach((key, value) -> days.put(key, ((Number) value.unwrapped()).intValue()));
+		return days;
+	}
+
+	/**
+	 * Days the events of an application are kept, overridden by application as
+	 * "tenantDomain/applicationName" and then by tenant domain. Zero keeps them forever.
+	 */
+	public int getRetentionDays(String tenantDomain, String applicationName) {
+		return Optional.ofNullable(applicationDays.get(tenantDomain + "/" + applicationName))
+				.orElseGet(() -> tenantDays.getOrDefault(tenantDomain, days));
+	}
+
+}
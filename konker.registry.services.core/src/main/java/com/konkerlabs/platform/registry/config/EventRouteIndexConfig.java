@@ -0,0 +1,46 @@
+package com.konkerlabs.platform.registry.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.context.annotation.Configuration;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import lombok.Data;
+
+@Configuration
+@Data
+public class EventRouteIndexConfig {
+
+	private boolean enabled;
+	private Integer maxSize;
+	private Long ttl;
+	private boolean invalidationEnabled;
+	private String invalidationChannel;
+	private String redisHost;
+	private Integer redisPort;
+
+	public EventRouteIndexConfig() {
+		Map<String, Object> defaultMap = new HashMap<>();
+		defaultMap.put("route.index.enabled", false);
+		defaultMap.put("route.index.max.size", 50000);
+		defaultMap.put("route.index.ttl", 300000L);
+		defaultMap.put("route.index.invalidation.enabled", true);
+		defaultMap.put("route.index.invalidation.channel", "konker.route.invalidation");
+		defaultMap.put("redis.master.host", "localhost");
+		defaultMap.put("redis.master.port", 6379);
+		Config defaultConf = ConfigFactory.parseMap(defaultMap);
+
+		Config config = ConfigFactory.load().withFallback(defaultConf);
+		setEnabled(config.getBoolean("route.index.enabled"));
+		setMaxSize(config.getInt("route.index.max.size"));
+		setTtl(config.getLong("route.index.ttl"));
+		setInvalidationEnabled(config.getBoolean("route.index.invalidation.enabled"));
+		setInvalidationChannel(config.getString("route.index.invalidation.channel"));
+		setRedisHost(config.getString("redis.master.host"));
+		setRedisPort(config.getInt("redis.master.port"));
+	}
+
+}
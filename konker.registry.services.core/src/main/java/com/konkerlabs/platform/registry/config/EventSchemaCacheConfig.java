@@ -0,0 +1,34 @@
+package com.konkerlabs.platform.registry.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.context.annotation.Configuration;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import lombok.Data;
+
+@Configuration
+@Data
+public class EventSchemaCacheConfig {
+
+	private boolean enabled;
+	private Integer maxSize;
+	private Long ttl;
+
+	public EventSchemaCacheConfig() {
+		Map<String, Object> defaultMap = new HashMap<>();
+		defaultMap.put("event.schema.cache.enabled", false);
+		defaultMap.put("event.schema.cache.max.size", 50000);
+		defaultMap.put("event.schema.cache.ttl", 300000L);
+		Config defaultConf = ConfigFactory.parseMap(defaultMap);
+
+		Config config = ConfigFactory.load().withFallback(defaultConf);
+		setEnabled(config.getBoolean("event.schema.cache.enabled"));
+		setMaxSize(config.getInt("event.schema.cache.max.size"));
+		setTtl(config.getLong("event.schema.cache.ttl"));
+	}
+
+}
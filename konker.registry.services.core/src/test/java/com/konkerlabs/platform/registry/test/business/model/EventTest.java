@@ -0,0 +1,70 @@
+package com.konkerlabs.platform.registry.test.business.model;
+
+import com.konkerlabs.platform.registry.business.model.Event;
+import com.konkerlabs.platform.utilities.parsers.json.JsonParsingServiceImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class EventTest {
+
+    private Event subject;
+    private JsonParsingServiceImpl jsonParsingService;
+
+    @Before
+    public void setUp() throws Exception {
+        jsonParsingService = spy(new JsonParsingServiceImpl());
+
+        subject = Event.builder().payload("{\"metric\":\"temperature\",\"value\":30}").build();
+    }
+
+    @Test
+    public void shouldParsePayloadOnlyOnce() throws Exception {
+        Map<String, Object> first = subject.getPayloadAsMap(jsonParsingService);
+        Map<String, Object> second = subject.getPayloadAsMap(jsonParsingService);
+
+        assertThat(first, hasEntry("metric", "temperature"));
+        assertThat(second, sameInstance(first));
+        verify(jsonParsingService, times(1)).toMap(subject.getPayload());
+    }
+
+    @Test
+    public void shouldParseFlatPayloadOnlyOnce() throws Exception {
+        subject.getPayloadAsFlatMap(jsonParsingService);
+        subject.getPayloadAsFlatMap(jsonParsingService);
+
+        assertThat(subject.getPayloadAsFlatMap(jsonParsingService), hasKey("value"));
+        verify(jsonParsingService, times(1)).toFlatMap(subject.getPayload());
+    }
+
+    @Test
+    public void shouldReparseWhenPayloadChanges() throws Exception {
+        subject.getPayloadAsMap(jsonParsingService);
+
+        subject.setPayload("{\"metric\":\"humidity\"}");
+
+        assertThat(subject.getPayloadAsMap(jsonParsingService), hasEntry("metric", "humidity"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldNotAllowChangesToTheParsedPayload() throws Exception {
+        subject.getPayloadAsMap(jsonParsingService).put("metric", "humidity");
+    }
+
+    @Test
+    public void shouldIgnoreParsedPayloadOnEquality() throws Exception {
+        Event other = Event.builder().payload(subject.getPayload()).build();
+
+        subject.getPayloadAsMap(jsonParsingService);
+
+        assertThat(subject, equalTo(other));
+    }
+
+}
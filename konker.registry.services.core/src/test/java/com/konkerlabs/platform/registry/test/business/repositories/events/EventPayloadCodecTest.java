@@ -0,0 +1,80 @@
+package com.konkerlabs.platform.registry.test.business.repositories.events;
+
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventPayloadCodec;
+import com.konkerlabs.platform.registry.business.repositories.events.api.PayloadCodec;
+import com.konkerlabs.platform.registry.config.EventPayloadCodecConfig;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class EventPayloadCodecTest {
+
+    private EventPayloadCodecConfig config;
+    private String largePayload;
+    private String smallPayload = "{\"temperature\":18}";
+
+    @Before
+    public void setUp() throws Exception {
+        config = new EventPayloadCodecConfig();
+        config.setThreshold(64);
+
+        largePayload = IntStream.range(0, 50)
+                .mapToObj(i -> "{\"temperature\":" + i + ",\"unit\":\"celsius\"}")
+                .collect(Collectors.joining(",", "[", "]"));
+    }
+
+    @Test
+    public void shouldCompressAndDecompressWithEveryCodec() throws Exception {
+        for (PayloadCodec codec : PayloadCodec.values()) {
+            config.setCodec(codec.getCode());
+            EventPayloadCodec subject = new EventPayloadCodec(config);
+
+            String stored = subject.encodeToText(largePayload);
+
+            assertThat(subject.decodeText(stored), equalTo(largePayload));
+            if (codec != PayloadCodec.NONE)
+                assertThat(stored.length(), lessThan(largePayload.length()));
+        }
+    }
+
+    @Test
+    public void shouldStorePayloadsBelowTheThresholdAsTheyAre() throws Exception {
+        config.setCodec(PayloadCodec.DEFLATE.getCode());
+        EventPayloadCodec subject = new EventPayloadCodec(config);
+
+        assertThat(subject.encode(smallPayload).isPresent(), equalTo(false));
+        assertThat(subject.encodeToText(smallPayload), equalTo(smallPayload));
+    }
+
+    @Test
+    public void shouldCompareTheThresholdWithTheEncodedSize() throws Exception {
+        config.setCodec(PayloadCodec.DEFLATE.getCode());
+        EventPayloadCodec subject = new EventPayloadCodec(config);
+
+        String multibytePayload = IntStream.range(0, 30)
+                .mapToObj(i -> "\u00e9")
+                .collect(Collectors.joining("", "{\"unit\":\"", "\"}"));
+
+        assertThat(multibytePayload.length(), lessThan(config.getThreshold()));
+        assertThat(subject.encode(multibytePayload).isPresent(), equalTo(true));
+        assertThat(subject.decodeText(subject.encodeToText(multibytePayload)), equalTo(multibytePayload));
+    }
+
+    @Test
+    public void shouldReadPayloadsStoredWithAnotherCodec() throws Exception {
+        config.setCodec(PayloadCodec.LZ4.getCode());
+        String stored = new EventPayloadCodec(config).encodeToText(largePayload);
+
+        config.setCodec(PayloadCodec.NONE.getCode());
+        EventPayloadCodec subject = new EventPayloadCodec(config);
+
+        assertThat(subject.decodeText(stored), equalTo(largePayload));
+        assertThat(subject.decodeText(smallPayload), equalTo(smallPayload));
+    }
+
+}
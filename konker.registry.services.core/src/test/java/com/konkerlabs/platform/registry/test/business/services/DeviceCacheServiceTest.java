@@ -0,0 +1,143 @@
+package com.konkerlabs.platform.registry.test.business.services;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.konkerlabs.platform.registry.business.model.Device;
+import com.konkerlabs.platform.registry.business.services.DeviceCacheServiceImpl;
+import com.konkerlabs.platform.registry.config.DeviceCacheConfig;
+
+public class DeviceCacheServiceTest {
+
+    private DeviceCacheServiceImpl subject;
+    private DeviceCacheConfig cacheConfig;
+    private Device device;
+    private AtomicInteger loads;
+    private Supplier<Device> loader;
+
+    @Before
+    public void setUp() {
+        cacheConfig = new DeviceCacheConfig();
+        cacheConfig.setEnabled(true);
+        cacheConfig.setInvalidationEnabled(false);
+        cacheConfig.setMaxSize(2);
+        cacheConfig.setTtl(60000L);
+
+        subject = new DeviceCacheServiceImpl(cacheConfig);
+
+        device = Device.builder()
+                .guid("22821842-7438-4c46-8bb2-5a2f56cd8923")
+                .apiKey("84399b2e-d99e-11e5-86bc-34238775bac9")
+                .deviceId("95c14b36ba2b43f1")
+                .build();
+
+        loads = new AtomicInteger();
+        loader = () -> {
+            loads.incrementAndGet();
+            return device;
+        };
+    }
+
+    @Test
+    public void shouldLoadOnceAndServeFromCache() {
+        assertThat(subject.findByApiKey(device.getApiKey(), loader), sameInstance(device));
+        assertThat(subject.findByApiKey(device.getApiKey(), loader), equalTo(device));
+
+        assertThat(loads.get(), equalTo(1));
+        assertThat(subject.getStats().getHits(), equalTo(1L));
+        assertThat(subject.getStats().getMisses(), equalTo(1L));
+    }
+
+    @Test
+    public void shouldReturnEveryCallerItsOwnCopy() {
+        subject.findByApiKey(device.getApiKey(), loader);
+
+        Device first = subject.findByApiKey(device.getApiKey(), loader);
+        first.setName("changed by the first caller");
+        device.setName("changed by the loader caller");
+
+        Device second = subject.findByApiKey(device.getApiKey(), loader);
+
+        assertThat(second, not(sameInstance(first)));
+        assertThat(second.getName(), nullValue());
+        assertThat(loads.get(), equalTo(1));
+    }
+
+    @Test
+    public void shouldNotCacheADeviceLoadedWhileItWasInvalidated() {
+        Supplier<Device> invalidatedWhileLoading = () -> {
+            loads.incrementAndGet();
+            subject.invalidate(device);
+            return device;
+        };
+
+        assertThat(subject.findByApiKey(device.getApiKey(), invalidatedWhileLoading), sameInstance(device));
+        subject.findByApiKey(device.getApiKey(), loader);
+        subject.findByApiKey(device.getApiKey(), loader);
+
+        assertThat(loads.get(), equalTo(2));
+    }
+
+    @Test
+    public void shouldNotCacheMissingDevices() {
+        assertThat(subject.findByApiKey("unknown", () -> null), nullValue());
+        assertThat(subject.findByApiKey("unknown", loader), sameInstance(device));
+
+        assertThat(subject.getStats().getMisses(), equalTo(2L));
+    }
+
+    @Test
+    public void shouldReloadAfterInvalidation() {
+        subject.findByApiKey(device.getApiKey(), loader);
+        subject.findByTenantDomainNameAndDeviceGuid("tenant", device.getGuid(), loader);
+
+        subject.invalidate(device);
+
+        subject.findByApiKey(device.getApiKey(), loader);
+        subject.findByTenantDomainNameAndDeviceGuid("tenant", device.getGuid(), loader);
+
+        assertThat(loads.get(), equalTo(4));
+    }
+
+    @Test
+    public void shouldReloadAfterTtlExpires() {
+        cacheConfig.setTtl(-1L);
+
+        subject.findByApiKey(device.getApiKey(), loader);
+        subject.findByApiKey(device.getApiKey(), loader);
+
+        assertThat(loads.get(), equalTo(2));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedWhenFull() {
+        subject.findByApiKey("first", loader);
+        subject.findByApiKey("second", loader);
+        subject.findByApiKey("third", loader);
+        subject.findByApiKey("first", loader);
+
+        assertThat(loads.get(), equalTo(4));
+        assertThat(subject.getStats().getSize(), equalTo(2));
+    }
+
+    @Test
+    public void shouldBypassCacheWhenDisabled() {
+        cacheConfig.setEnabled(false);
+
+        subject.findByApiKey(device.getApiKey(), loader);
+        subject.findByApiKey(device.getApiKey(), loader);
+
+        assertThat(loads.get(), equalTo(2));
+        assertThat(subject.getStats().getHits(), equalTo(0L));
+    }
+
+}
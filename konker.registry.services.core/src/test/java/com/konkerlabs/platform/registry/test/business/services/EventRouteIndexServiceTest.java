@@ -0,0 +1,132 @@
+package com.konkerlabs.platform.registry.test.business.services;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.konkerlabs.platform.registry.business.model.EventRoute;
+import com.konkerlabs.platform.registry.business.services.EventRouteIndexServiceImpl;
+import com.konkerlabs.platform.registry.config.EventRouteIndexConfig;
+
+public class EventRouteIndexServiceTest {
+
+    private EventRouteIndexServiceImpl subject;
+    private EventRouteIndexConfig indexConfig;
+    private URI incomingUri;
+    private EventRoute activeDataRoute;
+    private EventRoute inactiveDataRoute;
+    private EventRoute activeCommandRoute;
+    private AtomicInteger loads;
+    private Supplier<List<EventRoute>> loader;
+
+    @Before
+    public void setUp() throws Exception {
+        indexConfig = new EventRouteIndexConfig();
+        indexConfig.setEnabled(true);
+        indexConfig.setInvalidationEnabled(false);
+        indexConfig.setMaxSize(10);
+        indexConfig.setTtl(60000L);
+
+        subject = new EventRouteIndexServiceImpl(indexConfig);
+
+        incomingUri = new URI("device://konker/1af9be20-441e-419b-84a9-cb84efd4f49d");
+        activeDataRoute = route("data", true);
+        inactiveDataRoute = route("data", false);
+        activeCommandRoute = route("command", true);
+
+        loads = new AtomicInteger();
+        loader = () -> {
+            loads.incrementAndGet();
+            return Arrays.asList(activeDataRoute, inactiveDataRoute, activeCommandRoute);
+        };
+    }
+
+    @Test
+    public void shouldReturnOnlyActiveRoutesForTheChannel() {
+        assertThat(subject.findActiveRoutes(incomingUri, "data", loader), contains(activeDataRoute));
+        assertThat(subject.findActiveRoutes(incomingUri, "command", loader), contains(activeCommandRoute));
+        assertThat(subject.findActiveRoutes(incomingUri, "other", loader), empty());
+
+        assertThat(loads.get(), equalTo(1));
+    }
+
+    @Test
+    public void shouldIndexDevicesWithoutRoutes() {
+        Supplier<List<EventRoute>> emptyLoader = () -> {
+            loads.incrementAndGet();
+            return Collections.emptyList();
+        };
+
+        assertThat(subject.findActiveRoutes(incomingUri, "data", emptyLoader), empty());
+        assertThat(subject.findActiveRoutes(incomingUri, "data", emptyLoader), empty());
+
+        assertThat(loads.get(), equalTo(1));
+    }
+
+    @Test
+    public void shouldReloadAfterInvalidation() {
+        subject.findActiveRoutes(incomingUri, "data", loader);
+        subject.invalidate(incomingUri);
+        subject.findActiveRoutes(incomingUri, "data", loader);
+
+        assertThat(loads.get(), equalTo(2));
+    }
+
+    @Test
+    public void shouldNotIndexRoutesLoadedWhileTheyWereInvalidated() {
+        Supplier<List<EventRoute>> invalidatedWhileLoading = () -> {
+            loads.incrementAndGet();
+            subject.invalidate(incomingUri);
+            return Arrays.asList(activeDataRoute, inactiveDataRoute, activeCommandRoute);
+        };
+
+        assertThat(subject.findActiveRoutes(incomingUri, "data", invalidatedWhileLoading), contains(activeDataRoute));
+        subject.findActiveRoutes(incomingUri, "data", loader);
+        subject.findActiveRoutes(incomingUri, "data", loader);
+
+        assertThat(loads.get(), equalTo(2));
+    }
+
+    @Test
+    public void shouldReloadAfterTtlExpires() {
+        indexConfig.setTtl(-1L);
+
+        subject.findActiveRoutes(incomingUri, "data", loader);
+        subject.findActiveRoutes(incomingUri, "data", loader);
+
+        assertThat(loads.get(), equalTo(2));
+    }
+
+    @Test
+    public void shouldFilterWithoutIndexingWhenDisabled() {
+        indexConfig.setEnabled(false);
+
+        assertThat(subject.findActiveRoutes(incomingUri, "data", loader), contains(activeDataRoute));
+        subject.findActiveRoutes(incomingUri, "data", loader);
+
+        assertThat(loads.get(), equalTo(2));
+    }
+
+    private EventRoute route(String channel, boolean active) {
+        return EventRoute.builder()
+                .name(channel + (active ? "-active" : "-inactive"))
+                .incoming(EventRoute.RouteActor.builder()
+                        .uri(incomingUri)
+                        .data(Collections.singletonMap(EventRoute.DEVICE_MQTT_CHANNEL, channel))
+                        .build())
+                .active(active)
+                .build();
+    }
+
+}
@@ -1,25 +1,42 @@
 package com.konkerlabs.platform.registry.business.repositories.events;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.QueryValidationException;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.konkerlabs.platform.registry.business.exceptions.BusinessException;
 import com.konkerlabs.platform.registry.business.model.Application;
 import com.konkerlabs.platform.registry.business.model.Event;
 import com.konkerlabs.platform.registry.business.model.Event.EventActor;
 import com.konkerlabs.platform.registry.business.model.Tenant;
 import com.konkerlabs.platform.registry.business.repositories.events.api.BaseEventRepositoryImpl;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventBatchResult;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventContinuation;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventCursor;
 
 @Repository("cassandraEvents")
 public class EventRepositoryCassandraImpl extends BaseEventRepositoryImpl implements DisposableBean {
@@ -44,34 +61,105 @@ public class EventRepositoryCassandraImpl extends BaseEventRepositoryImpl implem
     @Autowired
     private Session session;
 
+    private static final int BATCH_MAX_INFLIGHT = 256;
+
+    private static final long MAX_TTL = 630720000L;
+
     private Random rnd = new Random(System.nanoTime());
 
+    private Map<String, PreparedStatement> preparedInserts = new ConcurrentHashMap<>();
+
     @Override
     protected Event doSave(Tenant tenant, Application application, Event event, Type type) throws BusinessException {
 
         event.setEpochTime(event.getTimestamp().toEpochMilli() * 1000000 + rnd.nextInt(1000000));
 
-        if (type == Type.INCOMING) {
-            saveEvent(tenant, application, event, type, INCOMING_EVENTS);
-            saveEvent(tenant, application, event, type, INCOMING_EVENTS_DEVICE_GUID);
-            saveEvent(tenant, application, event, type, INCOMING_EVENTS_DEVICE_GUID_CHANNEL);
-            saveEvent(tenant, application, event, type, INCOMING_EVENTS_CHANNEL);
-        } else if (type == Type.OUTGOING) {
-            saveEvent(tenant, application, event, type, OUTGOING_EVENTS);
-            saveEvent(tenant, application, event, type, OUTGOING_EVENTS_DEVICE_GUID);
-            saveEvent(tenant, application, event, type, OUTGOING_EVENTS_DEVICE_GUID_CHANNEL);
-            saveEvent(tenant, application, event, type, OUTGOING_EVENTS_CHANNEL);
-        }
+        String payload = payloadCodec.encodeToText(event.getPayload());
+        int ttl = ttl(tenant, application, event);
+
+        for (String table : insertTables(type))
+            saveEvent(tenant, application, event, type, table, payload, ttl);
 
         return event;
 
     }
 
-    private void saveEvent(Tenant tenant, Application application, Event event, Type type, String table) {
+    /**
+     * Every event is written to one table per read pattern. The inserts of the whole batch
+     * are sent asynchronously as prepared statements, so the token aware policy of the
+     * driver routes each one straight to a replica of its partition, with at most
+     * {@link #BATCH_MAX_INFLIGHT} writes in flight. The writes of an event are then
+     * grouped back to report it as saved, as failed when Cassandra rejects the query, or
+     * as retryable on a timeout or an unavailable node.
+     */
+    @Override
+    protected void doSaveBatch(Tenant tenant, Application application, Map<Integer, Event> events, Type type,
+                               EventBatchResult result) {
+        Semaphore inflight = new Semaphore(BATCH_MAX_INFLIGHT);
+        Map<Integer, List<ResultSetFuture>> writes = new LinkedHashMap<>();
+
+        for (Map.Entry<Integer, Event> entry : events.entrySet()) {
+            Event event = entry.getValue();
+            List<ResultSetFuture> eventWrites = new ArrayList<>();
+            writes.put(entry.getKey(), eventWrites);
+
+            if (event.getTimestamp() == null) {
+                result.addFailure(entry.getKey(), Validations.EVENT_TIMESTAMP_NULL.getCode());
+                continue;
+            }
+
+            event.setEpochTime(event.getTimestamp().toEpochMilli() * 1000000 + rnd.nextInt(1000000));
+            int ttl = ttl(tenant, application, event);
+            Object[] values = insertValues(tenant, application, event, type, payloadCodec.encodeToText(event.getPayload()), ttl);
+
+            for (String table : insertTables(type)) {
+                inflight.acquireUninterruptibly();
+                ResultSetFuture write = session.executeAsync(preparedInsert(type, table, ttl > 0).bind(values));
+                write.addListener(inflight::release, MoreExecutors.directExecutor());
+                eventWrites.add(write);
+            }
+        }
+
+        writes.forEach((index, eventWrites) -> {
+            if (eventWrites.isEmpty())
+                return;
+            try {
+                for (ResultSetFuture write : eventWrites)
+                    write.getUninterruptibly();
+                result.addSaved(events.get(index));
+            } catch (QueryValidationException e) {
+                result.addFailure(index, e.getMessage());
+            } catch (RuntimeException e) {
+                result.addRetryable(index, e.getMessage());
+            }
+        });
+    }
+
+    private List<String> insertTables(Type type) {
+        if (type == Type.OUTGOING)
+            return Arrays.asList(OUTGOING_EVENTS, OUTGOING_EVENTS_DEVICE_GUID, OUTGOING_EVENTS_DEVICE_GUID_CHANNEL, OUTGOING_EVENTS_CHANNEL);
+
+        return Arrays.asList(INCOMING_EVENTS, INCOMING_EVENTS_DEVICE_GUID, INCOMING_EVENTS_DEVICE_GUID_CHANNEL, INCOMING_EVENTS_CHANNEL);
+    }
+
+    private PreparedStatement preparedInsert(Type type, String table, boolean withTtl) {
+        return preparedInserts.computeIfAbsent(withTtl ? table + " ttl" : table,
+                key -> session.prepare(insertQuery(type, table, withTtl)));
+    }
+
+    private void saveEvent(Tenant tenant, Application application, Event event, Type type, String table, String payload, int ttl) {
+        session.execute(insertQuery(type, table, ttl > 0), insertValues(tenant, application, event, type, payload, ttl));
+    }
+
+    /**
+     * Only events within a retention window are written with a ttl, as an explicit ttl of
+     * zero would override the default_time_to_live of the table.
+     */
+    private String insertQuery(Type type, String table, boolean withTtl) {
+        StringBuilder query = new StringBuilder();
 
         if (type == Type.INCOMING) {
 
-            StringBuilder query = new StringBuilder();
             query.append("INSERT INTO ");
             query.append(REGISTRYKEYSPACE);
             query.append(".");
@@ -94,19 +182,8 @@ public class EventRepositoryCassandraImpl extends BaseEventRepositoryImpl implem
             query.append("?");
             query.append(")");
 
-            session.execute(
-                    query.toString(),
-                    tenant.getDomainName(),
-                    application.getName(),
-                    event.getEpochTime(),
-                    event.getIncoming().getChannel(),
-                    event.getIncoming().getDeviceGuid(),
-                    event.getIncoming().getDeviceId(),
-                    event.getPayload());
-
         } else if (type == Type.OUTGOING) {
 
-            StringBuilder query = new StringBuilder();
             query.append("INSERT INTO ");
             query.append(REGISTRYKEYSPACE);
             query.append(".");
@@ -137,8 +214,19 @@ public class EventRepositoryCassandraImpl extends BaseEventRepositoryImpl implem
             query.append("?");
             query.append(")");
 
-            session.execute(
-                    query.toString(),
+        }
+
+        if (withTtl)
+            query.append(" USING TTL ?");
+
+        return query.toString();
+    }
+
+    private Object[] insertValues(Tenant tenant, Application application, Event event, Type type, String payload, int ttl) {
+        Object[] values;
+
+        if (type == Type.OUTGOING)
+            values = new Object[] {
                     tenant.getDomainName(),
                     application.getName(),
                     event.getEpochTime(),
@@ -148,10 +236,36 @@ public class EventRepositoryCassandraImpl extends BaseEventRepositoryImpl implem
                     event.getIncoming().getChannel(),
                     event.getIncoming().getDeviceGuid(),
                     event.getIncoming().getDeviceId(),
-                    event.getPayload());
+                    payload};
+        else
+            values = new Object[] {
+                    tenant.getDomainName(),
+                    application.getName(),
+                    event.getEpochTime(),
+                    event.getIncoming().getChannel(),
+                    event.getIncoming().getDeviceGuid(),
+                    event.getIncoming().getDeviceId(),
+                    payload};
 
+        if (ttl > 0) {
+            values = Arrays.copyOf(values, values.length + 1);
+            values[values.length - 1] = ttl;
         }
 
+        return values;
+    }
+
+    /**
+     * Seconds left in the retention window of the event, counted from its timestamp and
+     * capped to the largest ttl Cassandra accepts. An event already past its retention
+     * still gets the shortest ttl, as zero would keep it forever. Zero when no retention
+     * window applies.
+     */
+    private int ttl(Tenant tenant, Application application, Event event) {
+        String applicationName = Optional.ofNullable(application).map(Application::getName).orElse(null);
+        return expiresAt(tenant.getDomainName(), applicationName, event.getTimestamp())
+                .map(instant -> (int) Math.min(MAX_TTL, Math.max(1L, Duration.between(Instant.now(), instant).getSeconds())))
+                .orElse(0);
     }
 
     @Override
@@ -163,8 +277,31 @@ public class EventRepositoryCassandraImpl extends BaseEventRepositoryImpl implem
                                    Instant endInstant,
                                    boolean ascending,
                                    Integer limit,
-                                   Type type,
-                                   boolean isDeleted) throws BusinessException {
+                                   Type type) throws BusinessException {
+
+        try (EventCursor cursor = doStreamBy(tenant, application, deviceGuid, channel, startInstant, endInstant,
+                ascending, limit, null, type)) {
+            return cursor.stream().collect(Collectors.toList());
+        }
+
+    }
+
+    /**
+     * The timestamp clustering key is unique within a partition, so the continuation
+     * carries it as its id and the read resumes strictly after it. Rows are read with
+     * the driver paging, fetching the next page while the current one is consumed.
+     */
+    @Override
+    protected EventCursor doStreamBy(Tenant tenant,
+                                     Application application,
+                                     String deviceGuid,
+                                     String channel,
+                                     Instant startInstant,
+                                     Instant endInstant,
+                                     boolean ascending,
+                                     Integer limit,
+                                     EventContinuation after,
+                                     Type type) throws BusinessException {
 
         StringBuilder query = new StringBuilder();
 
@@ -216,14 +353,38 @@ public class EventRepositoryCassandraImpl extends BaseEventRepositoryImpl implem
             filters.add(channel);
         }
 
-        if (startInstant != null) {
-            query.append(" AND timestamp >= ?");
-            filters.add(startInstant.toEpochMilli() * 1000000);
+        // Cassandra accepts a single restriction per bound of the timestamp, so the
+        // continuation replaces the bound it resumes from unless that bound is tighter
+        String lowerBound = " AND timestamp >= ?";
+        Long lower = startInstant != null ? startInstant.toEpochMilli() * 1000000 : null;
+        String upperBound = " AND timestamp <= ?";
+        Long upper = endInstant != null ? endInstant.toEpochMilli() * 1000000 : null;
+
+        if (after != null) {
+            long resumeFrom;
+            try {
+                resumeFrom = Long.parseLong(after.getId());
+            } catch (NumberFormatException e) {
+                throw new BusinessException(Validations.EVENT_CONTINUATION_INVALID.getCode(), e);
+            }
+
+            if (ascending && (lower == null || resumeFrom >= lower)) {
+                lowerBound = " AND timestamp > ?";
+                lower = resumeFrom;
+            } else if (!ascending && (upper == null || resumeFrom <= upper)) {
+                upperBound = " AND timestamp < ?";
+                upper = resumeFrom;
+            }
+        }
+
+        if (lower != null) {
+            query.append(lowerBound);
+            filters.add(lower);
         }
 
-        if (endInstant != null) {
-            query.append(" AND timestamp <= ?");
-            filters.add(endInstant.toEpochMilli() * 1000000);
+        if (upper != null) {
+            query.append(upperBound);
+            filters.add(upper);
         }
 
         if (ascending) {
@@ -237,73 +398,91 @@ public class EventRepositoryCassandraImpl extends BaseEventRepositoryImpl implem
             query.append(limit);
         }
 
-        final ResultSet rs = session.execute(query.toString(), filters.toArray(new Object[filters.size()]));
+        Statement statement = new SimpleStatement(query.toString(), filters.toArray(new Object[filters.size()]))
+                .setFetchSize(STREAM_FETCH_SIZE);
 
-        List<Event> events = new LinkedList<>();
+        final ResultSet rs = session.execute(statement);
 
-        while (!rs.isExhausted()) {
-            final Row row = rs.one();
+        Iterator<Row> rows = new Iterator<Row>() {
+            @Override
+            public boolean hasNext() {
+                return !rs.isExhausted();
+            }
+
+            @Override
+            public Row next() {
+                if (rs.getAvailableWithoutFetching() == STREAM_FETCH_SIZE / 4 && !rs.isFullyFetched())
+                    rs.fetchMoreResults();
+                return rs.one();
+            }
+        };
 
-            EventActor outgoingActor = null;
-            EventActor incomingActor = null;
+        return new EventCursor(rows,
+                row -> toEvent(row, type),
+                row -> new EventContinuation(row.getLong("timestamp") / 1000000, String.valueOf(row.getLong("timestamp"))),
+                () -> {});
 
-            if (type == Type.INCOMING) {
+    }
 
-                incomingActor = EventActor.builder()
-                                          .tenantDomain(row.getString("tenant_domain"))
-                                          .applicationName(row.getString("application_name"))
-                                          .deviceGuid(row.getString("device_guid"))
-                                          .deviceId(row.getString("device_id"))
-                                          .channel(row.getString("channel"))
-                                          .build();
+    private Event toEvent(Row row, Type type) {
 
-            } else if (type == Type.OUTGOING) {
+        EventActor outgoingActor = null;
+        EventActor incomingActor = null;
 
-                outgoingActor = EventActor.builder()
-                        .tenantDomain(row.getString("tenant_domain"))
-                        .applicationName(row.getString("application_name"))
-                        .deviceGuid(row.getString("device_guid"))
-                        .deviceId(row.getString("device_id"))
-                        .channel(row.getString("channel"))
-                        .build();
+        if (type == Type.INCOMING) {
 
-                incomingActor = EventActor.builder()
-                        .tenantDomain(row.getString("tenant_domain"))
-                        .applicationName(row.getString("application_name"))
-                        .deviceGuid(row.getString("incoming_device_guid"))
-                        .deviceId(row.getString("incoming_device_id"))
-                        .channel(row.getString("incoming_channel"))
-                        .build();
+            incomingActor = EventActor.builder()
+                                      .tenantDomain(row.getString("tenant_domain"))
+                                      .applicationName(row.getString("application_name"))
+                                      .deviceGuid(row.getString("device_guid"))
+                                      .deviceId(row.getString("device_id"))
+                                      .channel(row.getString("channel"))
+                                      .build();
 
-            }
+        } else if (type == Type.OUTGOING) {
 
-            Event event = Event.builder()
-                               .epochTime(row.getLong("timestamp"))
-                               .timestamp(Instant.ofEpochMilli(row.getLong("timestamp") / 1000000))
-                               .incoming(incomingActor)
-                               .outgoing(outgoingActor)
-                               .payload(row.getString("payload"))
-                               .build();
+            outgoingActor = EventActor.builder()
+                    .tenantDomain(row.getString("tenant_domain"))
+                    .applicationName(row.getString("application_name"))
+                    .deviceGuid(row.getString("device_guid"))
+                    .deviceId(row.getString("device_id"))
+                    .channel(row.getString("channel"))
+                    .build();
+
+            incomingActor = EventActor.builder()
+                    .tenantDomain(row.getString("tenant_domain"))
+                    .applicationName(row.getString("application_name"))
+                    .deviceGuid(row.getString("incoming_device_guid"))
+                    .deviceId(row.getString("incoming_device_id"))
+                    .channel(row.getString("incoming_channel"))
+                    .build();
 
-            events.add(event);
         }
 
-        return events;
+        return Event.builder()
+                    .epochTime(row.getLong("timestamp"))
+                    .timestamp(Instant.ofEpochMilli(row.getLong("timestamp") / 1000000))
+                    .incoming(incomingActor)
+                    .outgoing(outgoingActor)
+                    .payload(payloadCodec.decodeText(row.getString("payload")))
+                    .build();
 
     }
 
     @Override
     protected void doRemoveBy(Tenant tenant, Application application, String deviceGuid, Type type) throws Exception {
 
-        List<Event> keys = doFindBy(tenant, application, deviceGuid, null, null, null, false, null, type, false);
-
-        for (Event key: keys) {
-            if (type == Type.INCOMING) {
-                removeByKey(key, type);
-                saveEvent(tenant, application, key, type, INCOMING_EVENTS_DELETED);
-            } else if (type == Type.OUTGOING) {
-                removeByKey(key, type);
-                saveEvent(tenant, application, key, type, OUTGOING_EVENTS_DELETED);
+        try (EventCursor keys = doStreamBy(tenant, application, deviceGuid, null, null, null, false, null, null, type)) {
+            while (keys.hasNext()) {
+                Event key = keys.next();
+                String payload = payloadCodec.encodeToText(key.getPayload());
+                if (type == Type.INCOMING) {
+                    removeByKey(key, type);
+                    saveEvent(tenant, application, key, type, INCOMING_EVENTS_DELETED, payload);
+                } else if (type == Type.OUTGOING) {
+                    removeByKey(key, type);
+                    saveEvent(tenant, application, key, type, OUTGOING_EVENTS_DELETED, payload);
+                }
             }
         }
 
@@ -0,0 +1,189 @@
+package com.konkerlabs.platform.registry.test.business.repositories;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.konkerlabs.platform.registry.business.model.Application;
+import com.konkerlabs.platform.registry.business.model.Event;
+import com.konkerlabs.platform.registry.business.model.Tenant;
+import com.konkerlabs.platform.registry.business.repositories.events.EventRepositoryCassandraImpl;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventContinuation;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventCursor;
+import com.konkerlabs.platform.registry.config.EventRetentionConfig;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EventRepositoryCassandraTest {
+
+    private static final String DEVICE_GUID = "8363c556-84ea-11e6-92a2-4b01fea7e243";
+    private static final String CHANNEL = "temperature";
+
+    private EventRepositoryCassandraImpl eventRepository;
+    private Session session;
+    private EventRetentionConfig retentionConfig;
+
+    private List<String> insertQueries = new CopyOnWriteArrayList<>();
+    private List<Object[]> insertValues = new CopyOnWriteArrayList<>();
+
+    private Tenant tenant;
+    private Application application;
+
+    private Instant startInstant = Instant.ofEpochMilli(1474562670000L);
+    private Instant endInstant = Instant.ofEpochMilli(1474562680000L);
+
+    @Before
+    public void setUp() throws Exception {
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.isExhausted()).thenReturn(true);
+
+        session = mock(Session.class);
+        when(session.execute(any(Statement.class))).thenReturn(resultSet);
+        when(session.execute(anyString(), (Object[]) anyVararg())).thenAnswer(invocation -> {
+            Object[] arguments = invocation.getArguments();
+            insertQueries.add((String) arguments[0]);
+            insertValues.add(Arrays.copyOfRange(arguments, 1, arguments.length));
+            return resultSet;
+        });
+
+        retentionConfig = new EventRetentionConfig();
+        retentionConfig.setDays(0);
+
+        eventRepository = new EventRepositoryCassandraImpl();
+        ReflectionTestUtils.setField(eventRepository, "session", session);
+        ReflectionTestUtils.setField(eventRepository, "retentionConfig", retentionConfig);
+
+        tenant = Tenant.builder().domainName("tenantDomain").name("tenantName").build();
+        application = Application.builder().name("applicationName").build();
+    }
+
+    @Test
+    public void shouldBoundTheReadByTheStartAndEndInstants() throws Exception {
+        stream(true, null);
+
+        assertThat(statement().getQueryString(), allOf(
+                containsString(" AND timestamp >= ? AND timestamp <= ?"),
+                not(containsString("timestamp > ?")),
+                not(containsString("timestamp < ?"))));
+        assertThat(values(), hasItems(nanos(startInstant), nanos(endInstant)));
+    }
+
+    @Test
+    public void shouldReplaceTheStartInstantWithTheContinuationWhenReadingAscending() throws Exception {
+        long resumeFrom = nanos(startInstant) + 5000000000L;
+
+        stream(true, new EventContinuation(resumeFrom / 1000000, String.valueOf(resumeFrom)));
+
+        assertThat(statement().getQueryString(), allOf(
+                containsString(" AND timestamp > ? AND timestamp <= ?"),
+                not(containsString("timestamp >= ?"))));
+        assertThat(values(), hasItems(resumeFrom, nanos(endInstant)));
+        assertThat(values(), not(hasItem(nanos(startInstant))));
+    }
+
+    @Test
+    public void shouldReplaceTheEndInstantWithTheContinuationWhenReadingDescending() throws Exception {
+        long resumeFrom = nanos(startInstant) + 5000000000L;
+
+        stream(false, new EventContinuation(resumeFrom / 1000000, String.valueOf(resumeFrom)));
+
+        assertThat(statement().getQueryString(), allOf(
+                containsString(" AND timestamp >= ? AND timestamp < ?"),
+                not(containsString("timestamp <= ?"))));
+        assertThat(values(), hasItems(nanos(startInstant), resumeFrom));
+        assertThat(values(), not(hasItem(nanos(endInstant))));
+    }
+
+    @Test
+    public void shouldKeepTheStartInstantWhenItIsAfterTheContinuation() throws Exception {
+        long resumeFrom = nanos(startInstant) - 5000000000L;
+
+        stream(true, new EventContinuation(resumeFrom / 1000000, String.valueOf(resumeFrom)));
+
+        assertThat(statement().getQueryString(), allOf(
+                containsString(" AND timestamp >= ? AND timestamp <= ?"),
+                not(containsString("timestamp > ?"))));
+        assertThat(values(), not(hasItem(resumeFrom)));
+    }
+
+    @Test
+    public void shouldLeaveTheTtlToTheTableWhenNoRetentionApplies() throws Exception {
+        eventRepository.saveIncoming(tenant, application, event());
+
+        assertThat(insertQueries, hasSize(4));
+        assertThat(insertQueries, everyItem(not(containsString("USING TTL"))));
+        insertValues.forEach(values -> assertThat(values.length, equalTo(7)));
+    }
+
+    @Test
+    public void shouldWriteTheRemainingRetentionAsTheTtl() throws Exception {
+        retentionConfig.setDays(30);
+
+        eventRepository.saveIncoming(tenant, application, event());
+
+        assertThat(insertQueries, hasSize(4));
+        assertThat(insertQueries, everyItem(endsWith(" USING TTL ?")));
+        insertValues.forEach(values -> {
+            assertThat(values.length, equalTo(8));
+            assertThat((Integer) values[7], allOf(greaterThan(29 * 86400), lessThanOrEqualTo(30 * 86400)));
+        });
+    }
+
+    private Event event() {
+        return Event.builder()
+                .incoming(Event.EventActor.builder()
+                        .tenantDomain(tenant.getDomainName())
+                        .applicationName(application.getName())
+                        .deviceGuid(DEVICE_GUID)
+                        .channel(CHANNEL)
+                        .build())
+                .timestamp(Instant.now())
+                .payload("{\"temperature\":22}")
+                .build();
+    }
+
+    private void stream(boolean ascending, EventContinuation after) throws Exception {
+        try (EventCursor cursor = eventRepository.streamIncomingBy(tenant, application, DEVICE_GUID, CHANNEL,
+                startInstant, endInstant, ascending, 10, after != null ? after.toToken() : null)) {
+            assertThat(cursor.hasNext(), equalTo(false));
+        }
+    }
+
+    private SimpleStatement statement() {
+        ArgumentCaptor<Statement> statement = ArgumentCaptor.forClass(Statement.class);
+        verify(session).execute(statement.capture());
+        return (SimpleStatement) statement.getValue();
+    }
+
+    private List<Long> values() {
+        SimpleStatement statement = statement();
+        return IntStream.range(0, statement.valuesCount())
+                .mapToObj(statement::getObject)
+                .filter(Long.class::isInstance)
+                .map(Long.class::cast)
+                .collect(Collectors.toList());
+    }
+
+    private long nanos(Instant instant) {
+        return instant.toEpochMilli() * 1000000;
+    }
+
+}
@@ -2,33 +2,75 @@ package com.konkerlabs.platform.registry.business.repositories.events;
 
 import com.konkerlabs.platform.registry.business.exceptions.BusinessException;
 import com.konkerlabs.platform.registry.business.model.Application;
+import com.konkerlabs.platform.registry.business.model.Device;
 import com.konkerlabs.platform.registry.business.model.Event;
 import com.konkerlabs.platform.registry.business.model.Tenant;
 import com.konkerlabs.platform.registry.business.model.validation.CommonValidations;
 import com.konkerlabs.platform.registry.business.repositories.DeviceRepository;
 import com.konkerlabs.platform.registry.business.repositories.TenantRepository;
 import com.konkerlabs.platform.registry.business.repositories.events.api.BaseEventRepositoryImpl;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventBatchResult;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventContinuation;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventCursor;
+import com.konkerlabs.platform.registry.config.EventMongoStorageConfig;
 import com.mongodb.BasicDBObject;
+import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.CompoundIndexDefinition;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.BasicUpdate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.stereotype.Repository;
 
+import javax.annotation.PostConstruct;
 import java.text.MessageFormat;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Repository("mongoEvents")
 public class EventRepositoryMongoImpl extends BaseEventRepositoryImpl {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventRepositoryMongoImpl.class);
+
+    public static final String EVENTS_INCOMING_BUCKET_COLLECTION_NAME = "incomingEventBuckets";
+    public static final String EVENTS_OUTGOING_BUCKET_COLLECTION_NAME = "outgoingEventBuckets";
+
+    /**
+     * Write errors caused by the document itself: bad value, document validation, too
+     * large and duplicate key. Any other write error is taken as transient.
+     */
+    private static final Set<Integer> REJECTED_WRITE_CODES = new HashSet<>(Arrays.asList(2, 121, 10334, 11000, 11001));
+
     @Autowired
     private MongoTemplate mongoTemplate;
     @Autowired
@@ -36,16 +78,167 @@ public class EventRepositoryMongoImpl extends BaseEventRepositoryImpl {
     @Autowired
     private DeviceRepository deviceRepository;
 
+    private EventMongoStorageConfig storageConfig = new EventMongoStorageConfig();
+
+    private Map<String, ValidatedEntity> validatedEntities = Collections.synchronizedMap(
+            new LinkedHashMap<String, ValidatedEntity>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ValidatedEntity> eldest) {
+                    return size() > storageConfig.getValidationCacheMaxSize();
+                }
+            });
+
+    /**
+     * Creates the compound indexes behind every find and remove of this repository, in
+     * the background so a large collection does not block startup. Indexes that already
+     * exist are left untouched. Events past their retention are expired by a ttl index on
+     * their expiry date, and a sparse index holds only the events marked as deleted for
+     * the purge to find. The single event collections keep their indexes once buckets are
+     * enabled, as the events written before the switch are still read from them.
+     */
+    @PostConstruct
+    public void ensureIndexes() {
+        if (!storageConfig.isIndexesEnabled())
+            return;
+
+        for (Type type : Type.values()) {
+            String actor = type.getActorFieldName();
+            try {
+                ensureIndex(type.getCollectionName(),
+                        actor + ".tenantDomain", actor + ".deviceGuid", actor + ".channel", "ts", "_id");
+                ensureIndex(type.getCollectionName(),
+                        actor + ".tenantDomain", actor + ".deviceGuid", "ts", "_id");
+                ensureIndex(type.getCollectionName(),
+                        actor + ".tenantDomain", "ts", "_id");
+                if (storageConfig.isBucketEnabled()) {
+                    ensureIndex(bucketCollectionName(type),
+                            actor + ".tenantDomain", actor + ".deviceGuid", actor + ".channel", "start");
+                    ensureIndex(bucketCollectionName(type),
+                            actor + ".tenantDomain", actor + ".deviceGuid", actor + ".channel", "last");
+                    ensureIndex(bucketCollectionName(type),
+                            actor + ".tenantDomain", actor + ".deviceGuid", actor + ".channel", "first");
+                    ensureIndex(bucketCollectionName(type),
+                            actor + ".tenantDomain", actor + ".deviceGuid", "last");
+                    ensureIndex(bucketCollectionName(type),
+                            actor + ".tenantDomain", actor + ".deviceGuid", "first");
+                    ensureIndex(bucketCollectionName(type),
+                            actor + ".tenantDomain", "last");
+                    ensureIndex(bucketCollectionName(type),
+                            actor + ".tenantDomain", "first");
+                }
+                for (String collectionName : collectionNames(type)) {
+                    mongoTemplate.indexOps(collectionName).ensureIndex(
+                            new Index().on("expireAt", Sort.Direction.ASC).expire(0).background());
+                    mongoTemplate.indexOps(collectionName).ensureIndex(
+                            new Index().on("deleted", Sort.Direction.ASC).sparse().background());
+                }
+            } catch (RuntimeException e) {
+                LOGGER.warn("Failed to ensure the indexes of the {} events", actor, e);
+            }
+        }
+    }
+
+    private void ensureIndex(String collectionName, String... fields) {
+        DBObject keys = new BasicDBObject();
+        Arrays.stream(fields).forEach(field -> keys.put(field, 1));
+        mongoTemplate.indexOps(collectionName).ensureIndex(new CompoundIndexDefinition(keys).background());
+    }
+
+    private String bucketCollectionName(Type type) {
+        return type.equals(Type.INCOMING) ? EVENTS_INCOMING_BUCKET_COLLECTION_NAME : EVENTS_OUTGOING_BUCKET_COLLECTION_NAME;
+    }
+
+    /**
+     * Collections holding the events of a type: the bucket collection first when buckets
+     * are enabled, followed by the single event collection written before the switch.
+     */
+    private List<String> collectionNames(Type type) {
+        return storageConfig.isBucketEnabled()
+                ? Arrays.asList(bucketCollectionName(type), type.getCollectionName())
+                : Collections.singletonList(type.getCollectionName());
+    }
+
     @Override
     protected Event doSave(Tenant tenant, Application application, Event event, Type type) throws BusinessException {
-        Optional.ofNullable(tenantRepository.findByDomainName(tenant.getDomainName()))
-                .orElseThrow(() -> new BusinessException(CommonValidations.TENANT_DOES_NOT_EXIST.getCode()));
+        validate(tenant, event, type);
+
+        event.getIncoming().setTenantDomain(tenant.getDomainName());
+
+        DBObject toSave = toDBObject(event, type);
+
+        if (storageConfig.isBucketEnabled())
+            saveToBucket(toSave, event, type);
+        else
+            mongoTemplate.save(toSave, type.getCollectionName());
+
+        return event;
+    }
+
+    /**
+     * Validations run event by event, so invalid events are reported on their own and the
+     * remaining ones are sent in a single unordered bulk write. A write error only fails
+     * the event it belongs to.
+     */
+    @Override
+    protected void doSaveBatch(Tenant tenant, Application application, Map<Integer, Event> events, Type type,
+                               EventBatchResult result) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED,
+                storageConfig.isBucketEnabled() ? bucketCollectionName(type) : type.getCollectionName());
+
+        List<Integer> indexes = new ArrayList<>();
+        List<Event> accepted = new ArrayList<>();
+
+        for (Map.Entry<Integer, Event> entry : events.entrySet()) {
+            Event event = entry.getValue();
+            try {
+                validate(tenant, event, type);
+            } catch (BusinessException e) {
+                result.addFailure(entry.getKey(), e.getMessage());
+                continue;
+            }
+
+            event.getIncoming().setTenantDomain(tenant.getDomainName());
+            DBObject toSave = toDBObject(event, type);
+
+            if (storageConfig.isBucketEnabled())
+                bulk.upsert(bucketQuery(event, type), bucketUpdate(toSave, event));
+            else
+                bulk.insert(toSave);
 
-        Tenant existingTenant = tenantRepository.findByDomainName(tenant.getDomainName());
+            indexes.add(entry.getKey());
+            accepted.add(event);
+        }
+
+        if (accepted.isEmpty())
+            return;
+
+        Set<Integer> failed = new HashSet<>();
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            e.getErrors().forEach(error -> {
+                failed.add(error.getIndex());
+                if (REJECTED_WRITE_CODES.contains(error.getCode()))
+                    result.addFailure(indexes.get(error.getIndex()), error.getMessage());
+                else
+                    result.addRetryable(indexes.get(error.getIndex()), error.getMessage());
+            });
+        }
+
+        for (int i = 0; i < accepted.size(); i++)
+            if (!failed.contains(i))
+                result.addSaved(accepted.get(i));
+    }
+
+    private void validate(Tenant tenant, Event event, Type type) throws BusinessException {
+        String tenantId = validated("tenant:" + tenant.getDomainName(),
+                () -> Optional.ofNullable(tenantRepository.findByDomainName(tenant.getDomainName())).map(Tenant::getId))
+                .orElseThrow(() -> new BusinessException(CommonValidations.TENANT_DOES_NOT_EXIST.getCode()));
 
-        Optional.ofNullable(
-                deviceRepository.findByTenantAndGuid(existingTenant.getId(), event.getIncoming().getDeviceGuid())
-        ).orElseThrow(() -> new BusinessException(Validations.INCOMING_DEVICE_ID_DOES_NOT_EXIST.getCode()));
+        validatedDevice(tenantId, event.getIncoming().getDeviceGuid())
+                .orElseThrow(() -> new BusinessException(Validations.INCOMING_DEVICE_ID_DOES_NOT_EXIST.getCode()));
 
         Optional.ofNullable(event.getTimestamp())
                 .orElseThrow(() -> new BusinessException(Validations.EVENT_TIMESTAMP_NULL.getCode()));
@@ -58,13 +251,46 @@ public class EventRepositoryMongoImpl extends BaseEventRepositoryImpl {
             Optional.ofNullable(event.getOutgoing().getChannel()).filter(s -> !s.isEmpty())
                     .orElseThrow(() -> new BusinessException(Validations.EVENT_OUTGOING_CHANNEL_NULL.getCode()));
 
-            Optional.ofNullable(
-                    deviceRepository.findByTenantAndGuid(existingTenant.getId(),event.getOutgoing().getDeviceGuid())
-            ).orElseThrow(() -> new BusinessException(Validations.OUTGOING_DEVICE_ID_DOES_NOT_EXIST.getCode()));
+            validatedDevice(tenantId, event.getOutgoing().getDeviceGuid())
+                    .orElseThrow(() -> new BusinessException(Validations.OUTGOING_DEVICE_ID_DOES_NOT_EXIST.getCode()));
         }
+    }
 
-        event.getIncoming().setTenantDomain(tenant.getDomainName());
+    private Optional<String> validatedDevice(String tenantId, String deviceGuid) {
+        return validated(validatedDeviceKey(tenantId, deviceGuid),
+                () -> Optional.ofNullable(deviceRepository.findByTenantAndGuid(tenantId, deviceGuid)).map(Device::getGuid));
+    }
+
+    private static String validatedDeviceKey(String tenantId, String deviceGuid) {
+        return "device:" + tenantId + ":" + deviceGuid;
+    }
+
+    /**
+     * Tenants and devices only need to be found once in a while to validate the events
+     * saved for them, so found ones are kept for the cache ttl and steady state saves run
+     * a single insert. Missing ones are looked up again on every save. A removed device
+     * is evicted when its events are removed through this repository, other nodes keep
+     * accepting its events until their entry expires.
+     */
+    private Optional<String> validated(String key, Supplier<Optional<String>> lookup) {
+        ValidatedEntity cached = validatedEntities.get(key);
+        if (cached != null && cached.getExpiresAt() > System.currentTimeMillis())
+            return Optional.of(cached.getId());
+
+        Optional<String> found = lookup.get();
+        found.ifPresent(id -> validatedEntities.put(key,
+                new ValidatedEntity(id, System.currentTimeMillis() + storageConfig.getValidationCacheTtl())));
+        return found;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class ValidatedEntity {
+        private final String id;
+        private final long expiresAt;
+    }
 
+    private DBObject toDBObject(Event event, Type type) {
         DBObject incoming = new BasicDBObject();
         incoming.put("deviceGuid",event.getIncoming().getDeviceGuid());
         incoming.put("tenantDomain",event.getIncoming().getTenantDomain());
@@ -77,7 +303,15 @@ public class EventRepositoryMongoImpl extends BaseEventRepositoryImpl {
         toSave.removeField("ts");
         toSave.put("ts", event.getTimestamp().toEpochMilli());
         toSave.put(Type.INCOMING.getActorFieldName(), incoming);
-        toSave.put("payload", event.getPayload());
+        Optional<byte[]> compressedPayload = payloadCodec.encode(event.getPayload());
+        if (compressedPayload.isPresent()) {
+            toSave.put("payload", compressedPayload.get());
+            toSave.put("payloadCodec", payloadCodec.getCodec().getCode());
+        } else {
+            toSave.put("payload", event.getPayload());
+        }
+        expiresAt(event.getIncoming().getTenantDomain(), event.getIncoming().getApplicationName(), event.getTimestamp())
+                .ifPresent(instant -> toSave.put("expireAt", Date.from(instant)));
 
         if (type.equals(Type.OUTGOING)) {
             DBObject outgoing = new BasicDBObject();
@@ -90,9 +324,50 @@ public class EventRepositoryMongoImpl extends BaseEventRepositoryImpl {
             toSave.put(Type.OUTGOING.getActorFieldName(), outgoing);
         }
 
-        mongoTemplate.save(toSave, type.getCollectionName());
+        return toSave;
+    }
 
-        return event;
+    /**
+     * Appends the event to the open bucket of its tenant, device, channel and time window.
+     * A full bucket no longer matches the query, so the upsert starts a new one for the
+     * same window.
+     */
+    private void saveToBucket(DBObject toSave, Event event, Type type) {
+        mongoTemplate.upsert(bucketQuery(event, type), bucketUpdate(toSave, event), bucketCollectionName(type));
+    }
+
+    private Query bucketQuery(Event event, Type type) {
+        Event.EventActor actor = type.equals(Type.OUTGOING) ? event.getOutgoing() : event.getIncoming();
+        long ts = event.getTimestamp().toEpochMilli();
+        long window = storageConfig.getBucketWindow();
+
+        return Query.query(Criteria.where(MessageFormat.format("{0}.{1}", type.getActorFieldName(), "tenantDomain")).is(actor.getTenantDomain())
+                .and(MessageFormat.format("{0}.{1}", type.getActorFieldName(), "deviceGuid")).is(actor.getDeviceGuid())
+                .and(MessageFormat.format("{0}.{1}", type.getActorFieldName(), "channel")).is(actor.getChannel())
+                .and("start").is(ts - Math.floorMod(ts, window))
+                .and("count").lt(storageConfig.getBucketSize())
+                .and("deleted").exists(false));
+    }
+
+    /**
+     * Events in a bucket get their own id, which breaks timestamp ties when the unwound
+     * events are read with a continuation. A bucket expires with the latest of its events.
+     */
+    private Update bucketUpdate(DBObject toSave, Event event) {
+        long ts = event.getTimestamp().toEpochMilli();
+
+        toSave.put("id", new ObjectId());
+
+        DBObject max = new BasicDBObject("last", ts);
+        Optional.ofNullable(toSave.removeField("expireAt")).ifPresent(expireAt -> max.put("expireAt", expireAt));
+
+        DBObject update = new BasicDBObject();
+        update.put("$push", new BasicDBObject("events", toSave));
+        update.put("$inc", new BasicDBObject("count", 1));
+        update.put("$min", new BasicDBObject("first", ts));
+        update.put("$max", max);
+
+        return new BasicUpdate(update);
     }
 
     protected List<Event> doFindBy(Tenant tenant,
@@ -103,16 +378,64 @@ public class EventRepositoryMongoImpl extends BaseEventRepositoryImpl {
                                  Instant endInstant,
                                  boolean ascending,
                                  Integer limit,
-                                 Type type,
-                                 boolean isDeleted) throws BusinessException {
+                                 Type type) throws BusinessException {
+
+        try (EventCursor cursor = doStreamBy(tenant, application, deviceGuid, channel, startInstant, endInstant,
+                ascending, limit, null, type)) {
+            return cursor.stream().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Events are sorted by timestamp and then by their id, so the continuation of the last
+     * event read is a unique position to resume from. With buckets enabled, the events
+     * written to the single event collection before the switch are merged into the read
+     * in the same order.
+     */
+    @Override
+    protected EventCursor doStreamBy(Tenant tenant,
+                                     Application application,
+                                     String deviceGuid,
+                                     String channel,
+                                     Instant startInstant,
+                                     Instant endInstant,
+                                     boolean ascending,
+                                     Integer limit,
+                                     EventContinuation after,
+                                     Type type) throws BusinessException {
+
+        if (after != null && !ObjectId.isValid(after.getId()))
+            throw new BusinessException(Validations.EVENT_CONTINUATION_INVALID.getCode());
+
+        CloseableIterator<EventRow> rows = streamFromEvents(tenant, deviceGuid, channel, startInstant, endInstant,
+                ascending, limit, after, type);
+
+        if (storageConfig.isBucketEnabled())
+            rows = merge(streamFromBuckets(tenant, deviceGuid, channel, startInstant, endInstant, ascending, after, type),
+                    rows, ascending, limit);
+
+        return new EventCursor(rows,
+                row -> toEvent(row.getEvent()),
+                row -> new EventContinuation(row.getTimestamp(), row.getId().toString()),
+                rows::close);
+    }
+
+    private CloseableIterator<EventRow> streamFromEvents(Tenant tenant,
+                                                         String deviceGuid,
+                                                         String channel,
+                                                         Instant startInstant,
+                                                         Instant endInstant,
+                                                         boolean ascending,
+                                                         Integer limit,
+                                                         EventContinuation after,
+                                                         Type type) {
 
         List<Criteria> criterias = new ArrayList<>();
 
         Optional.ofNullable(deviceGuid).ifPresent(instant -> criterias.add(Criteria.where(MessageFormat.format("{0}.{1}", type.getActorFieldName(),"deviceGuid")).is(deviceGuid)));
         Optional.ofNullable(startInstant).ifPresent(instant -> criterias.add(Criteria.where("ts").gt(instant.toEpochMilli())));
         Optional.ofNullable(endInstant).ifPresent(instant -> criterias.add(Criteria.where("ts").lte(instant.toEpochMilli())));
-        Optional.ofNullable(isDeleted)
-                .ifPresent(deleted -> criterias.add(Criteria.where("deleted").exists(deleted)));
+        criterias.add(Criteria.where("deleted").exists(false));
         Optional.ofNullable(channel)
                 .ifPresent(ch -> {
                     criterias.add(
@@ -120,6 +443,7 @@ public class EventRepositoryMongoImpl extends BaseEventRepositoryImpl {
                                     .is(ch)
                     );
                 });
+        Optional.ofNullable(after).ifPresent(continuation -> criterias.add(after("ts", "_id", continuation, ascending)));
 
         Query query = Query.query(
                 Criteria.where(
@@ -131,49 +455,243 @@ public class EventRepositoryMongoImpl extends BaseEventRepositoryImpl {
 
         Sort.Direction sort = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
 
-        List<DBObject> result = mongoTemplate.find(query.with(new Sort(new Sort.Order(sort, "ts"))),
+        CloseableIterator<DBObject> rows = mongoTemplate.stream(
+                query.with(new Sort(sort, "ts", "_id")),
                 DBObject.class,
                 type.getCollectionName());
 
-        return result.stream().map(dbObject -> {
-            dbObject.removeField("_id");
-            dbObject.removeField("_class");
-            return dbObject;
-        }).map(dbObject -> Event.builder()
-                .incoming(
-                        ((Supplier<Event.EventActor>) () -> {
-                            return Optional.ofNullable((DBObject) dbObject.get(Type.INCOMING.getActorFieldName()))
-                                    .map(dbObject1 -> {
-                                        return Event.EventActor.builder()
-                                                .deviceGuid(Optional.ofNullable(dbObject1.get("deviceGuid")).isPresent() ? dbObject1.get("deviceGuid").toString() : null)
-                                                .tenantDomain(Optional.ofNullable(dbObject1.get("tenantDomain")).isPresent() ? dbObject1.get("tenantDomain").toString() : null)
-                                                .applicationName(Optional.ofNullable(dbObject1.get("applicationName")).isPresent() ? dbObject1.get("applicationName").toString() : null)
-                                                .channel(Optional.ofNullable(dbObject1.get("channel")).isPresent() ? dbObject1.get("channel").toString() : null)
-                                                .deviceId(Optional.ofNullable(dbObject1.get("deviceId")).isPresent() ? dbObject1.get("deviceId").toString() : null)
-                                                .build();
-                                    }).orElse(null);
-                        }).get()
-                )
-                .outgoing(
-                    ((Supplier<Event.EventActor>) () -> {
-                        return Optional.ofNullable((DBObject)dbObject.get(Type.OUTGOING.getActorFieldName()))
-                            .map(dbObject1 -> {
-                                return Event.EventActor.builder()
-                                        .deviceGuid(Optional.ofNullable(dbObject1.get("deviceGuid")).isPresent() ? dbObject1.get("deviceGuid").toString() : null)
-                                        .tenantDomain(Optional.ofNullable(dbObject1.get("tenantDomain")).isPresent() ? dbObject1.get("tenantDomain").toString() : null)
-                                        .applicationName(Optional.ofNullable(dbObject1.get("applicationName")).isPresent() ? dbObject1.get("applicationName").toString() : null)
-                                        .channel(Optional.ofNullable(dbObject1.get("channel")).isPresent() ? dbObject1.get("channel").toString() : null)
-                                        .deviceId(Optional.ofNullable(dbObject1.get("deviceId")).isPresent() ? dbObject1.get("deviceId").toString() : null)
-                                        .build();
-                            })
-                            .orElse(null);
-                    }).get()
-                )
-                .payload(dbObject.get("payload").toString())
+        return rows(rows, row -> new EventRow(row, (ObjectId) row.get("_id")), rows::close);
+    }
+
+    /**
+     * Keyset condition of the events sorted after the continuation: a later timestamp, or
+     * the same timestamp and a greater id.
+     */
+    private Criteria after(String tsField, String idField, EventContinuation continuation, boolean ascending) {
+        ObjectId id = new ObjectId(continuation.getId());
+
+        return new Criteria().orOperator(
+                ascending ? Criteria.where(tsField).gt(continuation.getTimestamp()) : Criteria.where(tsField).lt(continuation.getTimestamp()),
+                ascending ? Criteria.where(tsField).is(continuation.getTimestamp()).and(idField).gt(id)
+                        : Criteria.where(tsField).is(continuation.getTimestamp()).and(idField).lt(id));
+    }
+
+    /**
+     * Only buckets whose time span overlaps the requested range are read, newest last
+     * first on descending reads and oldest first first on ascending ones. No event of a
+     * bucket still unread can sort ahead of that bound, so an event is returned as soon
+     * as it sorts ahead of the next bucket, and a limited read stops fetching buckets once
+     * it has returned its limit instead of unwinding and sorting every bucket in range.
+     */
+    private CloseableIterator<EventRow> streamFromBuckets(Tenant tenant,
+                                                          String deviceGuid,
+                                                          String channel,
+                                                          Instant startInstant,
+                                                          Instant endInstant,
+                                                          boolean ascending,
+                                                          EventContinuation after,
+                                                          Type type) {
+
+        List<Criteria> bucketCriterias = new ArrayList<>();
+        List<Predicate<EventRow>> eventFilters = new ArrayList<>();
+
+        Optional.ofNullable(deviceGuid).ifPresent(guid -> bucketCriterias.add(Criteria.where(MessageFormat.format("{0}.{1}", type.getActorFieldName(),"deviceGuid")).is(guid)));
+        Optional.ofNullable(channel).ifPresent(ch -> bucketCriterias.add(Criteria.where(MessageFormat.format("{0}.{1}", type.getActorFieldName(),"channel")).is(ch)));
+        bucketCriterias.add(Criteria.where("deleted").exists(false));
+        Optional.ofNullable(startInstant).ifPresent(instant -> {
+            bucketCriterias.add(Criteria.where("last").gt(instant.toEpochMilli()));
+            eventFilters.add(row -> row.getTimestamp() > instant.toEpochMilli());
+        });
+        Optional.ofNullable(endInstant).ifPresent(instant -> {
+            bucketCriterias.add(Criteria.where("first").lte(instant.toEpochMilli()));
+            eventFilters.add(row -> row.getTimestamp() <= instant.toEpochMilli());
+        });
+        Optional.ofNullable(after).ifPresent(continuation -> {
+            bucketCriterias.add(ascending ? Criteria.where("last").gte(continuation.getTimestamp())
+                    : Criteria.where("first").lte(continuation.getTimestamp()));
+            eventFilters.add(row -> isAfter(row, continuation, ascending));
+        });
+
+        Query query = Query.query(Criteria.where(
+                MessageFormat.format("{0}.{1}", type.getActorFieldName(),"tenantDomain")).is(tenant.getDomainName())
+                .andOperator(bucketCriterias.toArray(new Criteria[bucketCriterias.size()])));
+
+        DBCursor buckets = mongoTemplate.getCollection(bucketCollectionName(type))
+                .find(query.getQueryObject())
+                .sort(ascending ? new BasicDBObject("first", 1) : new BasicDBObject("last", -1))
+                .batchSize(Math.max(1, STREAM_FETCH_SIZE / Math.max(1, storageConfig.getBucketSize())));
+
+        return unwind(buckets, ascending, row -> eventFilters.stream().allMatch(filter -> filter.test(row)));
+    }
+
+    /**
+     * Whether the event sorts after the continuation: a later timestamp, or the same
+     * timestamp and a greater id.
+     */
+    private static boolean isAfter(EventRow row, EventContinuation continuation, boolean ascending) {
+        int compared = row.getTimestamp() != continuation.getTimestamp()
+                ? Long.compare(row.getTimestamp(), continuation.getTimestamp())
+                : row.getId().compareTo(new ObjectId(continuation.getId()));
+        return ascending ? compared > 0 : compared < 0;
+    }
+
+    /**
+     * Unwinds buckets sorted by their bound into their events sorted by timestamp and id.
+     * Only the events of the buckets overlapping the one being returned are held.
+     */
+    private static CloseableIterator<EventRow> unwind(DBCursor buckets, boolean ascending, Predicate<EventRow> filter) {
+        Comparator<EventRow> order = Comparator.comparingLong(EventRow::getTimestamp).thenComparing(EventRow::getId);
+        PriorityQueue<EventRow> pending = new PriorityQueue<>(ascending ? order : order.reversed());
+
+        return new CloseableIterator<EventRow>() {
+            private DBObject nextBucket = buckets.hasNext() ? buckets.next() : null;
+
+            @Override
+            public boolean hasNext() {
+                while (nextBucket != null && (pending.isEmpty() || !sortsAhead(pending.peek(), nextBucket))) {
+                    for (Object event : (List<?>) nextBucket.get("events")) {
+                        EventRow row = new EventRow((DBObject) event, (ObjectId) ((DBObject) event).get("id"));
+                        if (filter.test(row))
+                            pending.add(row);
+                    }
+                    nextBucket = buckets.hasNext() ? buckets.next() : null;
+                }
+                return !pending.isEmpty();
+            }
+
+            @Override
+            public EventRow next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return pending.poll();
+            }
+
+            @Override
+            public void close() {
+                buckets.close();
+            }
+
+            private boolean sortsAhead(EventRow row, DBObject bucket) {
+                return ascending ? row.getTimestamp() < ((Number) bucket.get("first")).longValue()
+                        : row.getTimestamp() > ((Number) bucket.get("last")).longValue();
+            }
+        };
+    }
+
+    private static CloseableIterator<EventRow> rows(Iterator<DBObject> rows, Function<DBObject, EventRow> toRow,
+                                                    Runnable onClose) {
+        return new CloseableIterator<EventRow>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public EventRow next() {
+                return toRow.apply(rows.next());
+            }
+
+            @Override
+            public void close() {
+                onClose.run();
+            }
+        };
+    }
+
+    /**
+     * Merges two reads sorted the same way into one, up to the limit. Event ids are
+     * object ids in both layouts, so ties on the timestamp are broken the same way the
+     * store sorts them.
+     */
+    private static CloseableIterator<EventRow> merge(CloseableIterator<EventRow> first,
+                                                     CloseableIterator<EventRow> second,
+                                                     boolean ascending,
+                                                     Integer limit) {
+        Comparator<EventRow> order = Comparator.comparingLong(EventRow::getTimestamp).thenComparing(EventRow::getId);
+        Comparator<EventRow> comparator = ascending ? order : order.reversed();
+        int max = Optional.ofNullable(limit).filter(integer -> integer > 0).orElse(Integer.MAX_VALUE);
+
+        return new CloseableIterator<EventRow>() {
+            private EventRow nextFirst = first.hasNext() ? first.next() : null;
+            private EventRow nextSecond = second.hasNext() ? second.next() : null;
+            private int returned;
+
+            @Override
+            public boolean hasNext() {
+                return returned < max && (nextFirst != null || nextSecond != null);
+            }
+
+            @Override
+            public EventRow next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                EventRow row;
+                if (nextSecond == null || (nextFirst != null && comparator.compare(nextFirst, nextSecond) <= 0)) {
+                    row = nextFirst;
+                    nextFirst = first.hasNext() ? first.next() : null;
+                } else {
+                    row = nextSecond;
+                    nextSecond = second.hasNext() ? second.next() : null;
+                }
+                returned++;
+                return row;
+            }
+
+            @Override
+            public void close() {
+                try {
+                    first.close();
+                } finally {
+                    second.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Event document of a read, with the id that orders it among the events sharing its
+     * timestamp.
+     */
+    @Getter
+    @AllArgsConstructor
+    private static class EventRow {
+
+        private final DBObject event;
+        private final ObjectId id;
+
+        long getTimestamp() {
+            return (Long) event.get("ts");
+        }
+    }
+
+    private Event toEvent(DBObject dbObject) {
+        Object payload = dbObject.get("payload");
+        Object codec = dbObject.get("payloadCodec");
+
+        return Event.builder()
+                .incoming(toActor((DBObject) dbObject.get(Type.INCOMING.getActorFieldName())))
+                .outgoing(toActor((DBObject) dbObject.get(Type.OUTGOING.getActorFieldName())))
+                .payload(codec != null ? payloadCodec.decode(codec.toString(), (byte[]) payload) : payload.toString())
                 .timestamp(Instant.ofEpochMilli((Long) dbObject.get("ts")))
-                .build())
-        .collect(Collectors.toList());
+                .build();
+    }
 
+    private Event.EventActor toActor(DBObject actor) {
+        if (actor == null)
+            return null;
+
+        return Event.EventActor.builder()
+                .deviceGuid(toString(actor.get("deviceGuid")))
+                .tenantDomain(toString(actor.get("tenantDomain")))
+                .applicationName(toString(actor.get("applicationName")))
+                .channel(toString(actor.get("channel")))
+                .deviceId(toString(actor.get("deviceId")))
+                .build();
+    }
+
+    private String toString(Object value) {
+        return value != null ? value.toString() : null;
     }
 
     /**
@@ -186,6 +704,8 @@ public class EventRepositoryMongoImpl extends BaseEventRepositoryImpl {
      */
     protected void doRemoveBy(Tenant tenant, Application application, String deviceGuid, Type type) throws Exception {
 
+        validatedEntities.remove(validatedDeviceKey(tenant.getId(), deviceGuid));
+
         List<Criteria> criterias = new ArrayList<>();
 
         criterias.add(
@@ -200,6 +720,36 @@ public class EventRepositoryMongoImpl extends BaseEventRepositoryImpl {
 
         Update update = new Update();
         update.set("deleted", true);
-        mongoTemplate.updateMulti(query, update, DBObject.class, type.getCollectionName());
+        for (String collectionName : collectionNames(type))
+            mongoTemplate.updateMulti(query, update, DBObject.class, collectionName);
+    }
+
+    /**
+     * Removes a batch of the events marked as deleted by their ids, found through the
+     * sparse index on the deleted flag, filling the batch from every collection of the
+     * type in turn.
+     */
+    @Override
+    protected int doPurgeDeleted(Type type, int batchSize) {
+        int removed = 0;
+        for (String collectionName : collectionNames(type))
+            if (removed < batchSize)
+                removed += purgeDeleted(collectionName, batchSize - removed);
+        return removed;
+    }
+
+    private int purgeDeleted(String collectionName, int batchSize) {
+        Query query = Query.query(Criteria.where("deleted").is(true)).limit(batchSize);
+        query.fields().include("_id");
+
+        List<Object> ids = mongoTemplate.find(query, DBObject.class, collectionName)
+                .stream()
+                .map(row -> row.get("_id"))
+                .collect(Collectors.toList());
+
+        if (ids.isEmpty())
+            return 0;
+
+        return mongoTemplate.remove(Query.query(Criteria.where("_id").in(ids)), collectionName).getN();
     }
 }
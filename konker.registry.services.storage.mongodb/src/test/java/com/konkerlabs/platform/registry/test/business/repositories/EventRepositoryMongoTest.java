@@ -5,9 +5,15 @@ import com.konkerlabs.platform.registry.business.model.Application;
 import com.konkerlabs.platform.registry.business.model.Event;
 import com.konkerlabs.platform.registry.business.model.Tenant;
 import com.konkerlabs.platform.registry.business.model.validation.CommonValidations;
+import com.konkerlabs.platform.registry.business.model.Device;
+import com.konkerlabs.platform.registry.business.repositories.DeviceRepository;
 import com.konkerlabs.platform.registry.business.repositories.TenantRepository;
 import com.konkerlabs.platform.registry.business.repositories.events.EventRepositoryMongoImpl;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventBatchResult;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventCursor;
 import com.konkerlabs.platform.registry.business.repositories.events.api.EventRepository;
+import com.konkerlabs.platform.registry.config.EventMongoStorageConfig;
+import com.konkerlabs.platform.registry.config.EventRetentionConfig;
 import com.konkerlabs.platform.registry.test.base.BusinessLayerTestSupport;
 import com.konkerlabs.platform.registry.test.base.BusinessTestConfiguration;
 import com.konkerlabs.platform.registry.test.base.MongoTestConfiguration;
@@ -26,14 +32,27 @@ import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration(classes = {
@@ -288,4 +307,295 @@ public class EventRepositoryMongoTest extends BusinessLayerTestSupport {
 
         assertThat(events.get(0).getTimestamp().toEpochMilli(),equalTo(thirdEventTimestamp.toEpochMilli()));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldPageThroughEventsWithTheSameTimestampUsingTheContinuationToken() throws Exception {
+        for (int i = 0; i < 3; i++)
+            eventRepository.saveIncoming(tenant, application, Event.builder()
+                    .incoming(incomingEvent.getIncoming())
+                    .timestamp(firstEventTimestamp)
+                    .payload("{\"index\":" + i + "}").build());
+
+        List<String> payloads = new ArrayList<>();
+        String continuation = null;
+        for (int page = 0; page < 3; page++) {
+            try (EventCursor cursor = eventRepository.streamIncomingBy(tenant, application, deviceGuid, "command",
+                    null, null, true, 1, continuation)) {
+                cursor.forEachRemaining(event -> payloads.add(event.getPayload()));
+                continuation = cursor.getContinuationToken();
+            }
+        }
+
+        assertThat(payloads, contains("{\"index\":0}", "{\"index\":1}", "{\"index\":2}"));
+
+        try (EventCursor cursor = eventRepository.streamIncomingBy(tenant, application, deviceGuid, "command",
+                null, null, true, 1, continuation)) {
+            assertThat(cursor.hasNext(), equalTo(false));
+        }
+    }
+
+    @Test
+    public void shouldRaiseAnExceptionIfTheContinuationTokenIsInvalid() throws Exception {
+        thrown.expect(BusinessException.class);
+        thrown.expectMessage(EventRepository.Validations.EVENT_CONTINUATION_INVALID.getCode());
+
+        eventRepository.streamIncomingBy(tenant, application, deviceGuid, null, null, null, false, 10, "not a token");
+    }
+
+    @Test
+    public void shouldCreateTheCompoundIndexesOfTheEventCollections() throws Exception {
+        ((EventRepositoryMongoImpl) eventRepository).ensureIndexes();
+
+        List<Object> indexedKeys = mongoTemplate.getCollection(EventRepositoryMongoImpl.EVENTS_INCOMING_COLLECTION_NAME)
+                .getIndexInfo()
+                .stream()
+                .map(index -> index.get("key"))
+                .collect(Collectors.toList());
+
+        DBObject deviceChannelIndex = new BasicDBObject();
+        deviceChannelIndex.put("incoming.tenantDomain", 1);
+        deviceChannelIndex.put("incoming.deviceGuid", 1);
+        deviceChannelIndex.put("incoming.channel", 1);
+        deviceChannelIndex.put("ts", 1);
+        deviceChannelIndex.put("_id", 1);
+
+        assertThat(indexedKeys, hasItem(deviceChannelIndex));
+    }
+
+    @Test
+    public void shouldSaveAndRetrieveBucketedEvents() throws Exception {
+        EventMongoStorageConfig bucketConfig = new EventMongoStorageConfig();
+        bucketConfig.setBucketEnabled(true);
+        bucketConfig.setBucketSize(2);
+
+        Object storageConfig = ReflectionTestUtils.getField(eventRepository, "storageConfig");
+        ReflectionTestUtils.setField(eventRepository, "storageConfig", bucketConfig);
+        try {
+            for (Instant timestamp : new Instant[] {firstEventTimestamp, secondEventTimestamp, thirdEventTimestamp}) {
+                incomingEvent.setTimestamp(timestamp);
+                eventRepository.saveIncoming(tenant, application, incomingEvent);
+            }
+
+            assertThat(mongoTemplate.getCollection(EventRepositoryMongoImpl.EVENTS_INCOMING_BUCKET_COLLECTION_NAME).count(),
+                    equalTo(2L));
+
+            List<Event> events = eventRepository.findIncomingBy(tenant, application, deviceGuid, "command",
+                    firstEventTimestamp, null, false, 10);
+
+            assertThat(events, hasSize(2));
+            assertThat(events.get(0).getTimestamp(), equalTo(thirdEventTimestamp));
+            assertThat(events.get(1).getTimestamp(), equalTo(secondEventTimestamp));
+            assertThat(events.get(0).getPayload(), equalTo(incomingPayload));
+        } finally {
+            ReflectionTestUtils.setField(eventRepository, "storageConfig", storageConfig);
+            mongoTemplate.dropCollection(EventRepositoryMongoImpl.EVENTS_INCOMING_BUCKET_COLLECTION_NAME);
+        }
+    }
+
+    @Test
+    public void shouldPageThroughOverlappingBucketsInOrder() throws Exception {
+        EventMongoStorageConfig bucketConfig = new EventMongoStorageConfig();
+        bucketConfig.setBucketEnabled(true);
+        bucketConfig.setBucketSize(2);
+
+        Object storageConfig = ReflectionTestUtils.getField(eventRepository, "storageConfig");
+        ReflectionTestUtils.setField(eventRepository, "storageConfig", bucketConfig);
+        try {
+            // written out of order, so every bucket spans the time of the others
+            for (int index : new int[] {4, 0, 3, 1, 2})
+                eventRepository.saveIncoming(tenant, application, Event.builder()
+                        .incoming(incomingEvent.getIncoming())
+                        .timestamp(firstEventTimestamp.plusMillis(index))
+                        .payload("{\"index\":" + index + "}").build());
+
+            assertThat(mongoTemplate.getCollection(EventRepositoryMongoImpl.EVENTS_INCOMING_BUCKET_COLLECTION_NAME).count(),
+                    equalTo(3L));
+
+            List<String> payloads = new ArrayList<>();
+            String continuation = null;
+            for (int page = 0; page < 3; page++) {
+                try (EventCursor cursor = eventRepository.streamIncomingBy(tenant, application, deviceGuid, "command",
+                        null, null, false, 2, continuation)) {
+                    cursor.forEachRemaining(event -> payloads.add(event.getPayload()));
+                    continuation = cursor.getContinuationToken();
+                }
+            }
+
+            assertThat(payloads, contains("{\"index\":4}", "{\"index\":3}", "{\"index\":2}", "{\"index\":1}", "{\"index\":0}"));
+        } finally {
+            ReflectionTestUtils.setField(eventRepository, "storageConfig", storageConfig);
+            mongoTemplate.dropCollection(EventRepositoryMongoImpl.EVENTS_INCOMING_BUCKET_COLLECTION_NAME);
+        }
+    }
+
+    @Test
+    public void shouldReadTheEventsSavedBeforeBucketsWereEnabled() throws Exception {
+        eventRepository.saveIncoming(tenant, application, incomingEvent);
+        incomingEvent.setTimestamp(thirdEventTimestamp);
+        eventRepository.saveIncoming(tenant, application, incomingEvent);
+
+        EventMongoStorageConfig bucketConfig = new EventMongoStorageConfig();
+        bucketConfig.setBucketEnabled(true);
+
+        Object storageConfig = ReflectionTestUtils.getField(eventRepository, "storageConfig");
+        ReflectionTestUtils.setField(eventRepository, "storageConfig", bucketConfig);
+        try {
+            incomingEvent.setTimestamp(secondEventTimestamp);
+            eventRepository.saveIncoming(tenant, application, incomingEvent);
+
+            List<Event> events = eventRepository.findIncomingBy(tenant, application, deviceGuid, "command",
+                    null, null, true, 10);
+            assertThat(events.stream().map(Event::getTimestamp).collect(Collectors.toList()),
+                    contains(firstEventTimestamp, secondEventTimestamp, thirdEventTimestamp));
+
+            List<Event> latest = eventRepository.findIncomingBy(tenant, application, deviceGuid, "command",
+                    null, null, false, 2);
+            assertThat(latest.stream().map(Event::getTimestamp).collect(Collectors.toList()),
+                    contains(thirdEventTimestamp, secondEventTimestamp));
+
+            eventRepository.removeBy(tenant, application, deviceGuid);
+
+            assertThat(eventRepository.findIncomingBy(tenant, application, deviceGuid, "command",
+                    null, null, true, 10), empty());
+            assertThat(eventRepository.purgeDeleted(10), equalTo(3));
+        } finally {
+            ReflectionTestUtils.setField(eventRepository, "storageConfig", storageConfig);
+            mongoTemplate.dropCollection(EventRepositoryMongoImpl.EVENTS_INCOMING_BUCKET_COLLECTION_NAME);
+        }
+    }
+
+    @Test
+    public void shouldKeepTheIndexesOfTheEventCollectionsOnceBucketsAreEnabled() throws Exception {
+        EventMongoStorageConfig bucketConfig = new EventMongoStorageConfig();
+        bucketConfig.setBucketEnabled(true);
+
+        Object storageConfig = ReflectionTestUtils.getField(eventRepository, "storageConfig");
+        ReflectionTestUtils.setField(eventRepository, "storageConfig", bucketConfig);
+        try {
+            mongoTemplate.dropCollection(EventRepositoryMongoImpl.EVENTS_INCOMING_COLLECTION_NAME);
+            ((EventRepositoryMongoImpl) eventRepository).ensureIndexes();
+
+            List<Object> indexedKeys = mongoTemplate.getCollection(EventRepositoryMongoImpl.EVENTS_INCOMING_COLLECTION_NAME)
+                    .getIndexInfo()
+                    .stream()
+                    .map(index -> index.get("key"))
+                    .collect(Collectors.toList());
+
+            assertThat(indexedKeys, hasItem(new BasicDBObject("deleted", 1)));
+            assertThat(indexedKeys, hasItem(new BasicDBObject("incoming.tenantDomain", 1)
+                    .append("ts", 1)
+                    .append("_id", 1)));
+        } finally {
+            ReflectionTestUtils.setField(eventRepository, "storageConfig", storageConfig);
+            mongoTemplate.dropCollection(EventRepositoryMongoImpl.EVENTS_INCOMING_BUCKET_COLLECTION_NAME);
+        }
+    }
+
+    @Test
+    public void shouldStoreTheExpiryOfTheApplicationRetention() throws Exception {
+        EventRetentionConfig retentionConfig = new EventRetentionConfig();
+        retentionConfig.setDays(30);
+        retentionConfig.setApplicationDays(Collections.singletonMap(tenant.getDomainName() + "/smartffkonker", 7));
+
+        Object defaultConfig = ReflectionTestUtils.getField(eventRepository, "retentionConfig");
+        ReflectionTestUtils.setField(eventRepository, "retentionConfig", retentionConfig);
+        try {
+            incomingEvent.getIncoming().setApplicationName("smartffkonker");
+            eventRepository.saveIncoming(tenant, application, incomingEvent);
+        } finally {
+            ReflectionTestUtils.setField(eventRepository, "retentionConfig", defaultConfig);
+        }
+
+        DBObject saved = mongoTemplate.findOne(Query.query(Criteria.where("incoming.deviceGuid").is(deviceGuid)),
+                DBObject.class, EventRepositoryMongoImpl.EVENTS_INCOMING_COLLECTION_NAME);
+
+        assertThat(saved.get("expireAt"), equalTo(Date.from(firstEventTimestamp.plus(7, ChronoUnit.DAYS))));
+    }
+
+    @Test
+    public void shouldPurgeTheDeletedEventsInBatches() throws Exception {
+        eventRepository.saveIncoming(tenant, application, incomingEvent);
+        incomingEvent.setTimestamp(secondEventTimestamp);
+        eventRepository.saveIncoming(tenant, application, incomingEvent);
+
+        eventRepository.removeBy(tenant, application, deviceGuid);
+
+        assertThat(eventRepository.purgeDeleted(1), equalTo(1));
+        assertThat(eventRepository.purgeDeleted(1), equalTo(1));
+        assertThat(eventRepository.purgeDeleted(1), equalTo(0));
+        assertThat(mongoTemplate.getCollection(EventRepositoryMongoImpl.EVENTS_INCOMING_COLLECTION_NAME).count(),
+                equalTo(0L));
+    }
+
+    @Test
+    public void shouldSaveTheValidEventsOfABatchAndReportTheInvalidOnesByIndex() throws Exception {
+        Event unknownDevice = Event.builder()
+                .incoming(Event.EventActor.builder()
+                        .channel("command")
+                        .deviceGuid("unknown_device")
+                        .tenantDomain(tenant.getDomainName())
+                        .build())
+                .timestamp(secondEventTimestamp)
+                .payload(incomingPayload).build();
+        Event second = Event.builder()
+                .incoming(incomingEvent.getIncoming())
+                .timestamp(thirdEventTimestamp)
+                .payload(incomingPayload).build();
+
+        EventBatchResult result = eventRepository.saveIncomingBatch(tenant, application,
+                Arrays.asList(incomingEvent, unknownDevice, second));
+
+        assertThat(result.isOk(), equalTo(false));
+        assertThat(result.getSaved(), contains(incomingEvent, second));
+        assertThat(result.getFailures().keySet(), contains(1));
+        assertThat(result.getFailures().get(1),
+                equalTo(EventRepository.Validations.INCOMING_DEVICE_ID_DOES_NOT_EXIST.getCode()));
+        assertThat(mongoTemplate.count(Query.query(Criteria.where("incoming.deviceGuid").is(deviceGuid)),
+                EventRepositoryMongoImpl.EVENTS_INCOMING_COLLECTION_NAME), equalTo(2L));
+    }
+
+    @Test
+    public void shouldLookUpTenantAndDeviceOnlyOnceWhenSavingManyEvents() throws Exception {
+        TenantRepository tenants = mock(TenantRepository.class);
+        DeviceRepository devices = mock(DeviceRepository.class);
+        MongoTemplate template = mock(MongoTemplate.class);
+        when(tenants.findByDomainName(tenant.getDomainName())).thenReturn(tenant);
+        when(devices.findByTenantAndGuid(tenant.getId(), deviceGuid)).thenReturn(Device.builder().guid(deviceGuid).build());
+
+        EventRepositoryMongoImpl repository = new EventRepositoryMongoImpl();
+        ReflectionTestUtils.setField(repository, "tenantRepository", tenants);
+        ReflectionTestUtils.setField(repository, "deviceRepository", devices);
+        ReflectionTestUtils.setField(repository, "mongoTemplate", template);
+
+        for (int i = 0; i < 100; i++)
+            repository.saveIncoming(tenant, application, incomingEvent);
+
+        verify(tenants, times(1)).findByDomainName(anyString());
+        verify(devices, times(1)).findByTenantAndGuid(anyString(), anyString());
+        verify(template, times(100)).save(any(DBObject.class), eq(EventRepositoryMongoImpl.EVENTS_INCOMING_COLLECTION_NAME));
+    }
+
+    @Test
+    public void shouldLookUpARemovedDeviceAgainOnTheNextSave() throws Exception {
+        TenantRepository tenants = mock(TenantRepository.class);
+        DeviceRepository devices = mock(DeviceRepository.class);
+        MongoTemplate template = mock(MongoTemplate.class);
+        when(tenants.findByDomainName(tenant.getDomainName())).thenReturn(tenant);
+        when(devices.findByTenantAndGuid(tenant.getId(), deviceGuid))
+                .thenReturn(Device.builder().guid(deviceGuid).build())
+                .thenReturn(null);
+
+        EventRepositoryMongoImpl repository = new EventRepositoryMongoImpl();
+        ReflectionTestUtils.setField(repository, "tenantRepository", tenants);
+        ReflectionTestUtils.setField(repository, "deviceRepository", devices);
+        ReflectionTestUtils.setField(repository, "mongoTemplate", template);
+
+        repository.saveIncoming(tenant, application, incomingEvent);
+        repository.removeBy(tenant, application, deviceGuid);
+
+        thrown.expect(BusinessException.class);
+        thrown.expectMessage(EventRepository.Validations.INCOMING_DEVICE_ID_DOES_NOT_EXIST.getCode());
+
+        repository.saveIncoming(tenant, application, incomingEvent);
+    }
+}
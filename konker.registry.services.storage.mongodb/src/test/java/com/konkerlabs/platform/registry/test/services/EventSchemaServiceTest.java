@@ -6,30 +6,41 @@ import com.konkerlabs.platform.registry.business.repositories.ApplicationReposit
 import com.konkerlabs.platform.registry.business.repositories.DeviceRepository;
 import com.konkerlabs.platform.registry.business.repositories.TenantRepository;
 import com.konkerlabs.platform.registry.business.repositories.events.api.EventRepository;
+import com.konkerlabs.platform.registry.business.services.EventSchemaServiceImpl;
 import com.konkerlabs.platform.registry.business.services.api.EventSchemaService;
 import com.konkerlabs.platform.registry.business.services.api.ServiceResponse;
+import com.konkerlabs.platform.registry.config.EventSchemaCacheConfig;
 import com.konkerlabs.platform.registry.config.PubServerConfig;
 import com.konkerlabs.platform.registry.test.base.BusinessLayerTestSupport;
 import com.konkerlabs.platform.registry.test.base.BusinessTestConfiguration;
 import com.konkerlabs.platform.registry.test.base.MongoTestConfiguration;
 import com.konkerlabs.platform.registry.test.base.matchers.ServiceResponseMatchers;
+import com.konkerlabs.platform.utilities.parsers.json.JsonParsingService;
 import com.lordofthejars.nosqlunit.annotation.UsingDataSet;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 
 import static com.konkerlabs.platform.registry.test.base.matchers.ServiceResponseMatchers.isResponseOk;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration(classes = {
@@ -51,6 +62,10 @@ public class EventSchemaServiceTest extends BusinessLayerTestSupport {
     private EventRepository eventRepository;
     @Autowired
     private EventSchemaService eventSchemaService;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private JsonParsingService jsonParsingService;
 
     private String deviceGuid = "8363c556-84ea-11e6-92a2-4b01fea7e243";
 
@@ -152,6 +167,69 @@ public class EventSchemaServiceTest extends BusinessLayerTestSupport {
         assertThat(schema.getResult(),equalTo(secondEventSchema));
     }
 
+    @Test
+    public void shouldAppendOnlyNewTypesToKnownPaths() throws Exception {
+        eventSchemaService.appendIncomingSchema(incomingEvent);
+        eventSchemaService.appendIncomingSchema(incomingEvent);
+
+        incomingEvent.setPayload(secondJson);
+
+        ServiceResponse<EventSchema> schema = eventSchemaService.appendIncomingSchema(incomingEvent);
+
+        assertThat(schema,isResponseOk());
+        assertThat(schema.getResult().getFields().size(),equalTo(2));
+        assertThat(schema.getResult().getByPath(secondField).get().getKnownTypes(),
+                equalTo(new HashSet<>(Arrays.asList(JsonNodeType.OBJECT, JsonNodeType.STRING, JsonNodeType.NUMBER))));
+        assertThat(schema.getResult().getByPath(firstField).get().getKnownTypes(),
+                equalTo(new HashSet<>(Arrays.asList(JsonNodeType.OBJECT, JsonNodeType.STRING))));
+    }
+
+    @Test
+    public void shouldCreateTheUniqueIndexOfTheIncomingSchemas() throws Exception {
+        EventSchemaServiceImpl service = new EventSchemaServiceImpl();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+        service.ensureIndexes();
+
+        DBObject index = mongoTemplate.getCollection("incomingEventSchema")
+                .getIndexInfo()
+                .stream()
+                .filter(info -> info.get("key").equals(new BasicDBObject("deviceGuid", 1).append("channel", 1)))
+                .findFirst()
+                .orElse(null);
+
+        assertThat(index, notNullValue());
+        assertThat(index.get("unique"), equalTo(true));
+    }
+
+    @Test
+    public void shouldLoadACachedSchemaAgainOnceItsTtlExpires() throws Exception {
+        EventSchemaCacheConfig cacheConfig = new EventSchemaCacheConfig();
+        cacheConfig.setEnabled(true);
+        cacheConfig.setTtl(100L);
+
+        EventSchemaServiceImpl cachedService = new EventSchemaServiceImpl(cacheConfig);
+        ReflectionTestUtils.setField(cachedService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(cachedService, "jsonParsingService", jsonParsingService);
+
+        cachedService.appendIncomingSchema(incomingEvent);
+
+        // removed by another node, the cached schema is still used within its ttl
+        mongoTemplate.remove(Query.query(Criteria.where("deviceGuid").is(deviceGuid)), "incomingEventSchema");
+        cachedService.appendIncomingSchema(incomingEvent);
+        assertThat(mongoTemplate.count(Query.query(Criteria.where("deviceGuid").is(deviceGuid)), "incomingEventSchema"),
+                equalTo(0L));
+
+        Thread.sleep(150);
+
+        ServiceResponse<EventSchema> schema = cachedService.appendIncomingSchema(incomingEvent);
+
+        assertThat(schema, isResponseOk());
+        schema.getResult().setId(null);
+        assertThat(schema.getResult(), equalTo(firstEventSchema));
+        assertThat(mongoTemplate.count(Query.query(Criteria.where("deviceGuid").is(deviceGuid)), "incomingEventSchema"),
+                equalTo(1L));
+    }
+
     @Test
     @UsingDataSet(locations = {"/fixtures/tenants.json", "/fixtures/applications.json", "/fixtures/devices.json", "/fixtures/eventSchemas.json"})
     public void shouldRetrieveAllDistinctChannelByDeviceGuid() throws Exception {
@@ -3,6 +3,7 @@ package com.konkerlabs.platform.registry.web.controllers;
 import com.fasterxml.jackson.databind.node.JsonNodeType;
 import com.konkerlabs.platform.registry.business.model.*;
 import com.konkerlabs.platform.registry.business.model.Event.EventDecorator;
+import com.konkerlabs.platform.registry.business.repositories.events.api.EventCursor;
 import com.konkerlabs.platform.registry.business.services.api.DeviceEventService;
 import com.konkerlabs.platform.registry.business.services.api.EventSchemaService;
 import com.konkerlabs.platform.registry.business.services.api.ServiceResponse;
@@ -28,6 +29,7 @@ import org.springframework.web.servlet.ModelAndView;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
@@ -104,60 +106,67 @@ public class DeviceVisualizationController implements ApplicationContextAware {
 	@SuppressWarnings("rawtypes")
 	private List doSearch(String dateStart, String dateEnd, boolean online, String deviceGuid,
 			String channel, Locale locale, int limit) {
+		Optional<List> invalid = validateSearch(dateStart, dateEnd, online, deviceGuid, channel, locale);
+		if (invalid.isPresent()) {
+			return invalid.get();
+		}
+
+    	ServiceResponse<List<Event>> response = deviceEventService.findIncomingBy(tenant, application,
+				deviceGuid, channel, online ? null : toInstant(dateStart),
+    			online ? null : toInstant(dateEnd), false, limit);
+
+    	List<EventDecorator> eventsResult = decorateEventResult(response);
+		return eventsResult;
+	}
+
+	@SuppressWarnings("rawtypes")
+	private Optional<List> validateSearch(String dateStart, String dateEnd, boolean online, String deviceGuid,
+			String channel, Locale locale) {
 		if (deviceGuid.isEmpty()) {
     		Map<String, String> message = new HashMap<>();
     		message.put("message", applicationContext.getMessage(Messages.DEVICE_IS_MANDATORY.getCode(),null,locale));
-    		return Arrays.asList(message);
+    		return Optional.of(Arrays.asList(message));
     	}
 
     	if (channel.isEmpty()) {
     		Map<String, String> message = new HashMap<>();
     		message.put("message", applicationContext.getMessage(Messages.CHANNE_IS_MANDATORY.getCode(),null,locale));
-    		return Arrays.asList(message);
+    		return Optional.of(Arrays.asList(message));
     	}
 
     	if (!online && StringUtils.isEmpty(dateStart)) {
     		Map<String, String> message = new HashMap<>();
     		message.put("message", applicationContext.getMessage(Messages.DATESTART_IS_MANDATORY.getCode(),null,locale));
-    		return Arrays.asList(message);
+    		return Optional.of(Arrays.asList(message));
     	}
 
     	if (!online && StringUtils.isEmpty(dateEnd)) {
     		Map<String, String> message = new HashMap<>();
     		message.put("message", applicationContext.getMessage(Messages.DATEEND_IS_MANDATORY.getCode(),null,locale));
-    		return Arrays.asList(message);
+    		return Optional.of(Arrays.asList(message));
     	}
 
-    	if (online) {
-    		ServiceResponse<List<Event>> response = deviceEventService.findIncomingBy(tenant, application, deviceGuid, channel, null,
-        			null, false, limit);
-
-    		List<EventDecorator> eventsResult = decorateEventResult(response);
-    		return eventsResult;
-    	}
-
-    	LocalDateTime start = LocalDateTime.parse(dateStart, DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss", user.getLanguage().getLocale()));
-    	LocalDateTime end = LocalDateTime.parse(dateEnd, DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss",  user.getLanguage().getLocale()));
-    	ZonedDateTime zonedDateStart = ZonedDateTime.of(start, ZoneId.of(user.getZoneId().getId()));
-    	ZonedDateTime zonedDateEnd = ZonedDateTime.of(end, ZoneId.of(user.getZoneId().getId()));
-
-    	ServiceResponse<List<Event>> response = deviceEventService.findIncomingBy(tenant, application,
-				deviceGuid, channel, zonedDateStart.toInstant(),
-    			zonedDateEnd.toInstant(), false, limit);
+    	return Optional.empty();
+	}
 
-    	List<EventDecorator> eventsResult = decorateEventResult(response);
-		return eventsResult;
+	private Instant toInstant(String date) {
+    	LocalDateTime dateTime = LocalDateTime.parse(date, DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss", user.getLanguage().getLocale()));
+    	return ZonedDateTime.of(dateTime, ZoneId.of(user.getZoneId().getId())).toInstant();
 	}
 
 	private List<EventDecorator> decorateEventResult(ServiceResponse<List<Event>> response) {
-		List<EventDecorator> eventsResult = new ArrayList<>();
-		response.getResult().forEach(r -> eventsResult.add(EventDecorator.builder()
-				.timestampFormated(instantToStringConverter.convert(r.getTimestamp()))
-				.timestamp(r.getTimestamp().toEpochMilli())
-				.incoming(r.getIncoming())
-				.payload(r.getPayload())
-				.build()));
-		return eventsResult;
+		return response.getResult().stream()
+				.map(this::decorate)
+				.collect(Collectors.toList());
+	}
+
+	private EventDecorator decorate(Event event) {
+		return EventDecorator.builder()
+				.timestampFormated(instantToStringConverter.convert(event.getTimestamp()))
+				.timestamp(event.getTimestamp().toEpochMilli())
+				.incoming(event.getIncoming())
+				.payload(event.getPayload())
+				.build();
 	}
 
     @RequestMapping("/loading/channel/")
@@ -212,10 +221,25 @@ public class DeviceVisualizationController implements ApplicationContextAware {
             }
 
             int limit = environmentConfig.getCsvDownloadRowsLimit();
-            List events = doSearch(dateStart, dateEnd, online, deviceGuid, channel, locale, limit);
-
     		EventCsvDownload csvDownload = new EventCsvDownload();
-			csvDownload.download(events, response, additionalHeaders);
+
+            if (validateSearch(dateStart, dateEnd, online, deviceGuid, channel, locale).isPresent()) {
+                csvDownload.download(Collections.emptyIterator(), response, additionalHeaders);
+                return;
+            }
+
+            ServiceResponse<EventCursor> events = deviceEventService.streamIncomingBy(tenant, application,
+                    deviceGuid, channel, online ? null : toInstant(dateStart),
+                    online ? null : toInstant(dateEnd), false, limit, null);
+
+            if (!events.isOk()) {
+                csvDownload.download(Collections.emptyIterator(), response, additionalHeaders);
+                return;
+            }
+
+            try (EventCursor cursor = events.getResult()) {
+                csvDownload.download(cursor.stream().map(this::decorate).iterator(), response, additionalHeaders);
+            }
 		} catch (IOException | SecurityException | NoSuchMethodException e) {
 			LOGGER.error("Error to generate CSV",
 						Device.builder().guid(deviceGuid).build().toURI(),
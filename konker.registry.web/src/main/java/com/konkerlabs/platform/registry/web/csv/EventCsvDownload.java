@@ -19,7 +19,11 @@ import java.util.Map.Entry;
 
 public class EventCsvDownload {
 	
-	public void download(List<EventDecorator> data, HttpServletResponse response, List<String> additionalHeaders) throws IOException, SecurityException, NoSuchMethodException {
+	/**
+	 * Writes the events as they are read from the iterator, so an export is never held in
+	 * memory as a whole.
+	 */
+	public void download(Iterator<EventDecorator> data, HttpServletResponse response, List<String> additionalHeaders) throws IOException, SecurityException, NoSuchMethodException {
 		String headerKey = "Content-Disposition";
 		String headerValue = String.format("attachment; filename=\"%s\"", "events.csv");
 
@@ -38,7 +42,8 @@ public class EventCsvDownload {
 		bufferHeader.deleteCharAt(bufferHeader.lastIndexOf(","));
 		writer.println(bufferHeader.toString());
 				
-		for (EventDecorator event : data) {
+		while (data.hasNext()) {
+			EventDecorator event = data.next();
 			Map<String, String> jsonMap = new LinkedHashMap<>();
 			
 			jsonToMap("", new ObjectMapper().readTree(event.getPayload()), jsonMap);
@@ -0,0 +1,28 @@
+package com.konkerlabs.platform.utilities.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import lombok.Data;
+
+@Data
+public class ExpressionConfig {
+
+    private Integer cacheMaxSize;
+    private boolean compilerEnabled;
+
+    public ExpressionConfig() {
+        Map<String, Object> defaultMap = new HashMap<>();
+        defaultMap.put("expression.cache.max.size", 1000);
+        defaultMap.put("expression.compiler.enabled", false);
+        Config defaultConf = ConfigFactory.parseMap(defaultMap);
+
+        Config config = ConfigFactory.load().withFallback(defaultConf);
+        setCacheMaxSize(config.getInt("expression.cache.max.size"));
+        setCompilerEnabled(config.getBoolean("expression.compiler.enabled"));
+    }
+
+}
@@ -3,11 +3,25 @@ package com.konkerlabs.platform.utilities.expressions;
 import java.util.Map;
 import java.util.regex.Pattern;
 
+import lombok.Builder;
+import lombok.Data;
+
 public interface ExpressionEvaluationService {
 
     Pattern EXPRESSION_TEMPLATE_PATTERN = Pattern.compile(".*\\@\\{.*}.*");
 
+    @Data
+    @Builder
+    class Stats {
+        private long hits;
+        private long misses;
+        private long compiled;
+        private long compileFailures;
+        private int size;
+    }
+
     boolean evaluateConditional(String conditionalExpression, Map<String, Object> evaluationContext);
     String evaluateTemplate(String expressionTemplate, Map<String, Object> evaluationContext);
+    Stats getStats();
 
 }
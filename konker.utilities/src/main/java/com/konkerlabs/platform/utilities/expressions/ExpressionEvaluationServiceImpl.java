@@ -1,27 +1,75 @@
 package com.konkerlabs.platform.utilities.expressions;
 
+import com.konkerlabs.platform.utilities.config.ExpressionConfig;
 import com.konkerlabs.platform.utilities.support.Functions;
-import org.springframework.beans.factory.config.BeanDefinition;
-import org.springframework.context.annotation.Scope;
+import lombok.Getter;
+import lombok.Setter;
 import org.springframework.context.expression.MapAccessor;
+import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.EvaluationException;
 import org.springframework.expression.Expression;
+import org.springframework.expression.common.CompositeStringExpression;
 import org.springframework.expression.common.TemplateParserContext;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpression;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StringUtils;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
+/**
+ * Parsed expressions are kept in a bounded LRU cache keyed by their text. When the
+ * compiler is enabled each expression is compiled to bytecode after its first
+ * evaluation. Expressions that cannot be compiled stay interpreted, and compiled ones
+ * fall back to the interpreter if a later evaluation fails.
+ */
 @Component
-@Scope(BeanDefinition.SCOPE_PROTOTYPE)
 public class ExpressionEvaluationServiceImpl implements ExpressionEvaluationService {
 
+    private static final TemplateParserContext TEMPLATE_PARSER_CONTEXT = new TemplateParserContext("@{","}");
+    private static final MapAccessor MAP_ACCESSOR = new MapAccessor();
+
+    private ExpressionConfig expressionConfig;
+    private SpelExpressionParser parser;
+    private Method urlEncodeFunction;
+
+    private Map<String, CachedExpression> templates;
+    private Map<String, CachedExpression> conditionals;
+
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+    private AtomicLong compiled = new AtomicLong();
+    private AtomicLong compileFailures = new AtomicLong();
+
+    public ExpressionEvaluationServiceImpl() {
+        this(new ExpressionConfig());
+    }
+
+    public ExpressionEvaluationServiceImpl(ExpressionConfig expressionConfig) {
+        this.expressionConfig = expressionConfig;
+        this.parser = new SpelExpressionParser(new SpelParserConfiguration(
+                expressionConfig.isCompilerEnabled() ? SpelCompilerMode.MIXED : SpelCompilerMode.OFF,
+                getClass().getClassLoader()));
+        this.templates = boundedMap(expressionConfig.getCacheMaxSize());
+        this.conditionals = boundedMap(expressionConfig.getCacheMaxSize());
+
+        try {
+            this.urlEncodeFunction = Functions.class.getDeclaredMethod("urlEncode", new Class[] {String.class});
+        } catch (NoSuchMethodException e) {
+            throw new EvaluationException("Fail to register function to evaluation context", e);
+        }
+    }
+
     @Override
     public String evaluateTemplate(String expressionTemplate, Map<String, Object> evaluationContext) {
         Optional.ofNullable(expressionTemplate)
@@ -31,20 +79,14 @@ public class ExpressionEvaluationServiceImpl implements ExpressionEvaluationServ
         Optional.ofNullable(evaluationContext)
             .orElseThrow(() -> new IllegalArgumentException("Evaluation context cannot be null"));
 
-        Expression expression = new SpelExpressionParser().parseExpression(expressionTemplate
-                ,new TemplateParserContext("@{","}"));
-
         StandardEvaluationContext standardEvaluationContext = new StandardEvaluationContext();
-        try {
-            standardEvaluationContext.registerFunction("urlEncode",
-                    Functions.class.getDeclaredMethod("urlEncode", new Class[] {String.class}));
-        } catch (NoSuchMethodException e) {
-            throw new EvaluationException("Fail to register function to evaluation context", e);
-        }
-        standardEvaluationContext.addPropertyAccessor(new MapAccessor());
+        standardEvaluationContext.registerFunction("urlEncode", urlEncodeFunction);
+        standardEvaluationContext.addPropertyAccessor(MAP_ACCESSOR);
         standardEvaluationContext.setVariables(evaluationContext);
 
-        return expression.getValue(standardEvaluationContext,String.class);
+        return evaluate(templates, expressionTemplate,
+                template -> parser.parseExpression(template, TEMPLATE_PARSER_CONTEXT),
+                standardEvaluationContext, String.class);
     }
 
     @Override
@@ -56,12 +98,99 @@ public class ExpressionEvaluationServiceImpl implements ExpressionEvaluationServ
         Optional.ofNullable(evaluationContext)
                 .orElseThrow(() -> new IllegalArgumentException("Evaluation context cannot be null"));
 
-        Expression expression = new SpelExpressionParser().parseExpression(conditionalExpression);
-
         StandardEvaluationContext standardEvaluationContext = new StandardEvaluationContext();
-        standardEvaluationContext.addPropertyAccessor(new MapAccessor());
+        standardEvaluationContext.addPropertyAccessor(MAP_ACCESSOR);
         standardEvaluationContext.setVariables(evaluationContext);
 
-        return expression.getValue(standardEvaluationContext,Boolean.class);
+        return evaluate(conditionals, conditionalExpression, parser::parseExpression,
+                standardEvaluationContext, Boolean.class);
+    }
+
+    @Override
+    public Stats getStats() {
+        return Stats.builder()
+                .hits(hits.get())
+                .misses(misses.get())
+                .compiled(compiled.get())
+                .compileFailures(compileFailures.get())
+                .size(templates.size() + conditionals.size())
+                .build();
+    }
+
+    private <T> T evaluate(Map<String, CachedExpression> cache,
+                           String text,
+                           Function<String, Expression> parse,
+                           EvaluationContext evaluationContext,
+                           Class<T> type) {
+        CachedExpression cached = cache.get(text);
+        if (Optional.ofNullable(cached).isPresent()) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            cached = new CachedExpression(parse.apply(text));
+            cache.put(text, cached);
+        }
+
+        T value = cached.getExpression().getValue(evaluationContext, type);
+
+        if (expressionConfig.isCompilerEnabled() && !cached.isCompileAttempted())
+            compile(cached);
+
+        return value;
+    }
+
+    /**
+     * SpEL can only compile an expression once it has been evaluated, because the
+     * generated bytecode depends on the types seen during that evaluation.
+     */
+    private void compile(CachedExpression cached) {
+        cached.setCompileAttempted(true);
+
+        boolean success = spelExpressionsOf(cached.getExpression())
+                .map(this::tryCompile)
+                .reduce(true, Boolean::logicalAnd);
+
+        if (success)
+            compiled.incrementAndGet();
+        else
+            compileFailures.incrementAndGet();
+    }
+
+    private boolean tryCompile(SpelExpression expression) {
+        try {
+            return expression.compileExpression();
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private Stream<SpelExpression> spelExpressionsOf(Expression expression) {
+        if (expression instanceof SpelExpression)
+            return Stream.of((SpelExpression) expression);
+        if (expression instanceof CompositeStringExpression)
+            return Arrays.stream(((CompositeStringExpression) expression).getExpressions())
+                    .filter(SpelExpression.class::isInstance)
+                    .map(SpelExpression.class::cast);
+        return Stream.empty();
+    }
+
+    private static Map<String, CachedExpression> boundedMap(int maxSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<String, CachedExpression>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedExpression> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    @Getter
+    private static class CachedExpression {
+        private Expression expression;
+        @Setter
+        private volatile boolean compileAttempted;
+
+        CachedExpression(Expression expression) {
+            this.expression = expression;
+        }
     }
 }
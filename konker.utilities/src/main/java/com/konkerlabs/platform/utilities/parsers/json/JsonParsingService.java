@@ -1,6 +1,7 @@
 package com.konkerlabs.platform.utilities.parsers.json;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.JsonNodeType;
 import lombok.Builder;
 import lombok.Data;
@@ -14,6 +15,14 @@ public interface JsonParsingService {
 
     Map<String,Object> toMap(String json) throws JsonProcessingException;
 
+    Map<String,JsonPathData> toFlatMap(JsonNode node) throws JsonProcessingException;
+
+    Map<String,Object> toMap(JsonNode node) throws JsonProcessingException;
+
+    JsonNode toJsonNode(byte[] content, PayloadEncoding encoding) throws JsonProcessingException;
+
+    List<Map<String,Object>> toListOfMaps(String json) throws JsonProcessingException;
+
     String toJsonString(Map<String, Object> map) throws JsonProcessingException;
 
     boolean isValid(String json);
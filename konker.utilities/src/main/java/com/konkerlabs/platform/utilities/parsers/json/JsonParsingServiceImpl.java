@@ -54,6 +54,77 @@ public class JsonParsingServiceImpl implements JsonParsingService {
 
     }
 
+    @Override
+    public Map<String, JsonPathData> toFlatMap(JsonNode node) throws JsonProcessingException {
+        Optional.ofNullable(node)
+                .orElseThrow(() -> new IllegalArgumentException("JSON cannot be null or empty"));
+
+        Map<String, JsonPathData> map = new HashMap<>();
+        addKeys("", node, map, null);
+
+        return map;
+    }
+
+    @Override
+    public Map<String, Object> toMap(JsonNode node) throws JsonProcessingException {
+        Optional.ofNullable(node)
+                .filter(JsonNode::isObject)
+                .orElseThrow(() -> new IllegalArgumentException("JSON must be an object"));
+
+        return OBJECT_MAPPER.convertValue(node,
+                new TypeReference<Map<String, Object>>() {
+                });
+    }
+
+    /**
+     * Reads a payload in any of the supported encodings into a tree, without going
+     * through JSON text for binary encodings.
+     */
+    @Override
+    public JsonNode toJsonNode(byte[] content, PayloadEncoding encoding) throws JsonProcessingException {
+        Optional.ofNullable(content)
+                .filter(bytes -> bytes.length > 0)
+                .orElseThrow(() -> new IllegalArgumentException("Content cannot be null or empty"));
+
+        try {
+            return Optional.ofNullable(encoding.getObjectMapper().readTree(content))
+                    .orElseThrow(() -> new IllegalArgumentException("Content cannot be null or empty"));
+        } catch (IOException e) {
+            throw new JsonParseException("Failed to parse " + encoding.name(), null, e);
+        }
+    }
+
+    /**
+     * Parses either a JSON array of objects or newline-delimited JSON objects
+     * into a list of maps, one per item.
+     */
+    @Override
+    public List<Map<String, Object>> toListOfMaps(String json) throws JsonProcessingException {
+        Optional.ofNullable(json)
+                .filter(s -> !s.trim().isEmpty())
+                .orElseThrow(() -> new IllegalArgumentException("JSON cannot be null or empty"));
+
+        try {
+            if (json.trim().startsWith("[")) {
+                return OBJECT_MAPPER.readValue(json,
+                        new TypeReference<List<Map<String, Object>>>() {
+                        });
+            }
+
+            List<Map<String, Object>> items = new ArrayList<>();
+            for (String line : json.split("\\r?\\n")) {
+                if (line.trim().isEmpty())
+                    continue;
+                items.add(OBJECT_MAPPER.readValue(line,
+                        new TypeReference<Map<String, Object>>() {
+                        }));
+            }
+            return items;
+        } catch (IOException e) {
+            throw new JsonParseException("Failed to parse json",null,e);
+        }
+    }
+
     @Override
     public String toJsonString(Map<String, Object> map) throws JsonProcessingException {
         Optional.ofNullable(map)
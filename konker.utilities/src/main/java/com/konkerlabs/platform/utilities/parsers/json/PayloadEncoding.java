@@ -0,0 +1,62 @@
+package com.konkerlabs.platform.utilities.parsers.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Encodings accepted for device payloads. Binary encodings are read into the same
+ * tree model as JSON text, so everything downstream works on either of them.
+ */
+public enum PayloadEncoding {
+
+    JSON("application/json", new ObjectMapper()),
+    CBOR("application/cbor", new ObjectMapper(new CBORFactory())),
+    MSGPACK("application/msgpack", new ObjectMapper(new MessagePackFactory()));
+
+    public static final String CBOR_VALUE = "application/cbor";
+    public static final String MSGPACK_VALUE = "application/msgpack";
+    public static final String X_MSGPACK_VALUE = "application/x-msgpack";
+
+    private String contentType;
+    private ObjectMapper objectMapper;
+
+    PayloadEncoding(String contentType, ObjectMapper objectMapper) {
+        this.contentType = contentType;
+        this.objectMapper = objectMapper;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    /**
+     * @param contentType a content type header, parameters are ignored
+     */
+    public static Optional<PayloadEncoding> fromContentType(String contentType) {
+        return Optional.ofNullable(contentType)
+                .map(value -> value.split(";")[0].trim().toLowerCase())
+                .map(value -> X_MSGPACK_VALUE.equals(value) ? MSGPACK_VALUE : value)
+                .flatMap(value -> Arrays.stream(values())
+                        .filter(encoding -> encoding.getContentType().equals(value))
+                        .findFirst());
+    }
+
+    /**
+     * @param name the encoding name as used in MQTT topics, like cbor or msgpack
+     */
+    public static Optional<PayloadEncoding> fromName(String name) {
+        return Optional.ofNullable(name)
+                .flatMap(value -> Arrays.stream(values())
+                        .filter(encoding -> encoding.name().equalsIgnoreCase(value))
+                        .findFirst());
+    }
+
+}
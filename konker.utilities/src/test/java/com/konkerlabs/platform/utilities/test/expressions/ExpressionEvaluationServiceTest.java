@@ -1,7 +1,9 @@
 package com.konkerlabs.platform.utilities.test.expressions;
 
+import com.konkerlabs.platform.utilities.config.ExpressionConfig;
 import com.konkerlabs.platform.utilities.config.UtilitiesConfig;
 import com.konkerlabs.platform.utilities.expressions.ExpressionEvaluationService;
+import com.konkerlabs.platform.utilities.expressions.ExpressionEvaluationServiceImpl;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -22,7 +24,8 @@ import static org.hamcrest.core.IsEqual.equalTo;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
     ExpressionEvaluationServiceTest.Template.class,
-    ExpressionEvaluationServiceTest.Conditional.class
+    ExpressionEvaluationServiceTest.Conditional.class,
+    ExpressionEvaluationServiceTest.Caching.class
 })
 public class ExpressionEvaluationServiceTest {
 
@@ -137,4 +140,63 @@ public class ExpressionEvaluationServiceTest {
             assertThat(condition,equalTo(true));
         }
     }
+
+    public static class Caching extends ExpressionEvaluationServiceTestBase {
+
+        private ExpressionConfig expressionConfig;
+
+        @Override
+        public void setUp() throws Exception {
+            super.setUp();
+
+            expressionConfig = new ExpressionConfig();
+            expressionConfig.setCacheMaxSize(1);
+            expressionConfig.setCompilerEnabled(false);
+        }
+
+        @Test
+        public void shouldParseEachExpressionOnce() throws Exception {
+            subject = new ExpressionEvaluationServiceImpl(expressionConfig);
+
+            subject.evaluateConditional("#valid == true", rootContext);
+            subject.evaluateConditional("#valid == true", rootContext);
+
+            assertThat(subject.getStats().getMisses(), equalTo(1L));
+            assertThat(subject.getStats().getHits(), equalTo(1L));
+        }
+        @Test
+        public void shouldEvictLeastRecentlyUsedExpressions() throws Exception {
+            subject = new ExpressionEvaluationServiceImpl(expressionConfig);
+
+            subject.evaluateConditional("#valid == true", rootContext);
+            subject.evaluateConditional("#fieldOne == 'valueOne'", rootContext);
+            subject.evaluateConditional("#valid == true", rootContext);
+
+            assertThat(subject.getStats().getMisses(), equalTo(3L));
+            assertThat(subject.getStats().getSize(), equalTo(1));
+        }
+        @Test
+        public void shouldAttemptToCompileOnceWhenCompilerIsEnabled() throws Exception {
+            expressionConfig.setCompilerEnabled(true);
+            subject = new ExpressionEvaluationServiceImpl(expressionConfig);
+
+            assertThat(subject.evaluateConditional("#complex.value > 30", rootContext), equalTo(true));
+            assertThat(subject.evaluateConditional("#complex.value > 30", rootContext), equalTo(true));
+            assertThat(subject.evaluateTemplate("http://host/@{#fieldOne}", rootContext), equalTo("http://host/valueOne"));
+            assertThat(subject.evaluateTemplate("http://host/@{#fieldOne}", rootContext), equalTo("http://host/valueOne"));
+
+            assertThat(subject.getStats().getCompiled() + subject.getStats().getCompileFailures(), equalTo(2L));
+        }
+        @Test
+        public void shouldKeepEvaluatingWithDifferentContextsWhenCompiled() throws Exception {
+            expressionConfig.setCompilerEnabled(true);
+            subject = new ExpressionEvaluationServiceImpl(expressionConfig);
+
+            assertThat(subject.evaluateConditional("#valid == true", rootContext), equalTo(true));
+
+            rootContext.put("valid", false);
+
+            assertThat(subject.evaluateConditional("#valid == true", rootContext), equalTo(false));
+        }
+    }
 }
\ No newline at end of file
@@ -1,9 +1,14 @@
 package com.konkerlabs.platform.utilities.test.parsers;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.JsonNodeType;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import com.konkerlabs.platform.utilities.config.UtilitiesConfig;
 import com.konkerlabs.platform.utilities.parsers.json.JsonParsingService;
+import com.konkerlabs.platform.utilities.parsers.json.PayloadEncoding;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -23,8 +28,10 @@ import static org.hamcrest.Matchers.*;
 @Suite.SuiteClasses({
         JsonParsingServiceTest.FlatMap.class,
         JsonParsingServiceTest.ToMap.class,
+        JsonParsingServiceTest.ToListOfMaps.class,
         JsonParsingServiceTest.ToJsonString.class,
-        JsonParsingServiceTest.IsValid.class
+        JsonParsingServiceTest.IsValid.class,
+        JsonParsingServiceTest.ToJsonNode.class
 })
 public class JsonParsingServiceTest {
 
@@ -247,6 +254,56 @@ public class JsonParsingServiceTest {
         }
     }
 
+    @RunWith(SpringJUnit4ClassRunner.class)
+    @ContextConfiguration(classes = {
+            UtilitiesConfig.class
+    })
+    public static class ToListOfMaps extends JsonParsingServiceTestBase {
+
+        private String jsonArray = "[{\"temperature\": 18}, {\"temperature\": 19, \"_ts\": 1474562670340}]";
+        private String ndJson = "{\"temperature\": 18}\n\n{\"temperature\": 19}\r\n";
+
+        @Test
+        public void shouldRaiseAnExceptionIfJsonStringIsNull() throws Exception {
+            thrown.expect(IllegalArgumentException.class);
+            thrown.expectMessage("JSON cannot be null or empty");
+
+            service.toListOfMaps(null);
+        }
+
+        @Test
+        public void shouldRaiseAnExceptionIfJsonStringIsEmpty() throws Exception {
+            thrown.expect(IllegalArgumentException.class);
+            thrown.expectMessage("JSON cannot be null or empty");
+
+            service.toListOfMaps(" ");
+        }
+
+        @Test
+        public void shouldRaiseAnExceptionIfJsonStringIsInvalid() throws Exception {
+            thrown.expect(JsonProcessingException.class);
+
+            service.toListOfMaps(invalidJson);
+        }
+
+        @Test
+        public void shouldParseAJsonArray() throws Exception {
+            List<Map<String, Object>> actual = service.toListOfMaps(jsonArray);
+
+            assertThat(actual, hasSize(2));
+            assertThat(actual.get(0), hasEntry("temperature", (Object) 18));
+            assertThat(actual.get(1), hasEntry("_ts", (Object) 1474562670340L));
+        }
+
+        @Test
+        public void shouldParseNewlineDelimitedJson() throws Exception {
+            List<Map<String, Object>> actual = service.toListOfMaps(ndJson);
+
+            assertThat(actual, hasSize(2));
+            assertThat(actual.get(1), hasEntry("temperature", (Object) 19));
+        }
+    }
+
     @RunWith(SpringJUnit4ClassRunner.class)
     @ContextConfiguration(classes = {
             UtilitiesConfig.class
@@ -274,4 +331,51 @@ public class JsonParsingServiceTest {
         }
 
     }
+
+    @RunWith(SpringJUnit4ClassRunner.class)
+    @ContextConfiguration(classes = {
+            UtilitiesConfig.class
+    })
+    public static class ToJsonNode extends JsonParsingServiceTestBase {
+
+        private JsonNode expectedTree;
+
+        @Before
+        public void setUp() throws Exception {
+            expectedTree = new ObjectMapper().readTree(validJson);
+        }
+
+        @Test
+        public void shouldReadCborIntoTheSameTreeAsJson() throws Exception {
+            byte[] cbor = new ObjectMapper(new CBORFactory()).writeValueAsBytes(expectedTree);
+
+            JsonNode actual = service.toJsonNode(cbor, PayloadEncoding.CBOR);
+
+            assertThat(service.toMap(actual), equalTo(service.toMap(validJson)));
+            assertThat(service.toFlatMap(actual), equalTo(service.toFlatMap(validJson)));
+        }
+
+        @Test
+        public void shouldReadMessagePackIntoTheSameTreeAsJson() throws Exception {
+            byte[] msgpack = new ObjectMapper(new MessagePackFactory()).writeValueAsBytes(expectedTree);
+
+            JsonNode actual = service.toJsonNode(msgpack, PayloadEncoding.MSGPACK);
+
+            assertThat(service.toMap(actual), equalTo(service.toMap(validJson)));
+        }
+
+        @Test
+        public void shouldRaiseAnExceptionIfContentIsInvalid() throws Exception {
+            thrown.expect(JsonProcessingException.class);
+
+            service.toJsonNode(new byte[] { (byte) 0xff, 0x01 }, PayloadEncoding.CBOR);
+        }
+
+        @Test
+        public void shouldFindEncodingByContentType() throws Exception {
+            assertThat(PayloadEncoding.fromContentType("application/cbor").get(), equalTo(PayloadEncoding.CBOR));
+            assertThat(PayloadEncoding.fromContentType("application/x-msgpack; charset=binary").get(), equalTo(PayloadEncoding.MSGPACK));
+            assertThat(PayloadEncoding.fromContentType("text/plain").isPresent(), equalTo(false));
+        }
+    }
 }
\ No newline at end of file